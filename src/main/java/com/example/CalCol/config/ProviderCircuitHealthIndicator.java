@@ -0,0 +1,37 @@
+package com.example.CalCol.config;
+
+import com.example.CalCol.service.ProviderCircuitBreakers;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Reports external provider circuit states under /actuator/health.
+ * Open circuits do not make the application unhealthy, since every provider is optional for
+ * serving pages; they are listed in the details instead.
+ */
+@Component("providers")
+@RequiredArgsConstructor
+public class ProviderCircuitHealthIndicator implements HealthIndicator {
+
+	private final ProviderCircuitBreakers circuitBreakers;
+
+	@Override
+	public Health health() {
+		Map<String, ProviderCircuitBreakers.ProviderStatus> status = circuitBreakers.getAllStatus();
+		long open = status.values().stream()
+			.filter(s -> !ProviderCircuitBreakers.CLOSED.equals(s.getState()))
+			.count();
+
+		Health.Builder health = Health.up().withDetail("openCircuits", open);
+		status.forEach((provider, s) -> health.withDetail(provider, Map.of(
+			"state", s.getState(),
+			"failureRate", s.getFailureRate(),
+			"inFlightCalls", s.getInFlightCalls(),
+			"rejectedCalls", s.getRejectedCalls())));
+		return health.build();
+	}
+}
@@ -0,0 +1,21 @@
+package com.example.CalCol.config;
+
+import com.example.CalCol.service.StandInProviderServer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+/**
+ * Runs the provider stand-in server inside the application when the "standin" profile is active.
+ * application-standin.properties points every provider at it.
+ */
+@Configuration
+@Profile("standin")
+public class StandInConfig {
+
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	public StandInProviderServer standInProviderServer(Environment environment) {
+		return new StandInProviderServer(environment);
+	}
+}
@@ -3,14 +3,20 @@ package com.example.CalCol.controller;
 import com.example.CalCol.entity.Calculator;
 import com.example.CalCol.entity.Label;
 import com.example.CalCol.service.AdminService;
+import com.example.CalCol.service.BatchEnrichmentService;
 import com.example.CalCol.service.CalculatorProposalService;
+import com.example.CalCol.service.EnrichmentRecordService;
 import com.example.CalCol.service.ExportService;
+import com.example.CalCol.service.ImageOptimizerService;
 import com.example.CalCol.service.ImageService;
 import com.example.CalCol.service.ImportService;
 import com.example.CalCol.service.LabelDerivationService;
 import com.example.CalCol.service.LabelService;
 import com.example.CalCol.service.LinkService;
+import com.example.CalCol.service.UploadLayoutService;
+import com.example.CalCol.service.UploadReconciliationService;
 import com.example.CalCol.service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -36,6 +42,11 @@ public class AdminController {
 	private final CalculatorProposalService proposalService;
 	private final UserService userService;
 	private final LinkService linkService;
+	private final BatchEnrichmentService batchEnrichmentService;
+	private final EnrichmentRecordService enrichmentRecordService;
+	private final ImageOptimizerService imageOptimizerService;
+	private final UploadLayoutService uploadLayoutService;
+	private final UploadReconciliationService uploadReconciliationService;
 	private static final int PAGE_SIZE = 20;
 
 	@GetMapping("/dashboard")
@@ -44,9 +55,32 @@ public class AdminController {
 			Model model) {
 		Pageable pageable = PageRequest.of(page, PAGE_SIZE);
 		model.addAttribute("proposals", imageService.getPendingProposals(pageable));
+		model.addAttribute("batchEnrichment", batchEnrichmentService.getStatus());
+		model.addAttribute("imageOptimization", imageOptimizerService.getStatus());
+		model.addAttribute("uploadLayout", uploadLayoutService.getStatus());
+		model.addAttribute("uploadReconciliation", uploadReconciliationService.getLastReport());
+		model.addAttribute("uploadReconciliationRunning", uploadReconciliationService.isRunning());
 		return "admin/dashboard";
 	}
 
+	@PostMapping("/enrichment/batch/pause")
+	public String pauseBatchEnrichment(
+			Authentication authentication,
+			RedirectAttributes redirectAttributes) {
+		batchEnrichmentService.pause(authentication.getName());
+		redirectAttributes.addFlashAttribute("successMessage", "Batch enrichment paused.");
+		return "redirect:/admin/dashboard";
+	}
+
+	@PostMapping("/enrichment/batch/resume")
+	public String resumeBatchEnrichment(
+			Authentication authentication,
+			RedirectAttributes redirectAttributes) {
+		batchEnrichmentService.resume(authentication.getName());
+		redirectAttributes.addFlashAttribute("successMessage", "Batch enrichment resumed.");
+		return "redirect:/admin/dashboard";
+	}
+
 	@GetMapping("/calculators")
 	public String manageCalculators(
 			@RequestParam(required = false) String search,
@@ -73,6 +107,11 @@ public class AdminController {
 			model.addAttribute("calculator", calc);
 			model.addAttribute("manufacturers", adminService.getAllManufacturers(Pageable.unpaged()).getContent());
 			model.addAttribute("links", linkService.getCalculatorLinks(id));
+			try {
+				model.addAttribute("enrichedDataJson", enrichmentRecordService.toJson(id));
+			} catch (JsonProcessingException e) {
+				model.addAttribute("errorMessage", "Could not render enrichment data: " + e.getMessage());
+			}
 		});
 		return "admin/calculator-form";
 	}
@@ -107,15 +146,25 @@ public class AdminController {
 		// Handle enrichment data
 		if (clearEnrichment) {
 			calculator.setDescription(null);
-			calculator.setEnrichedData(null);
+			enrichmentRecordService.delete(id);
 		} else {
 			// Update description if provided
 			if (description != null) {
 				calculator.setDescription(description.trim().isEmpty() ? null : description);
 			}
-			// Update enrichedData if provided
+			// Replace enrichment records if enriched data JSON was provided
 			if (enrichedData != null) {
-				calculator.setEnrichedData(enrichedData.trim().isEmpty() ? null : enrichedData);
+				try {
+					if (enrichedData.trim().isEmpty()) {
+						enrichmentRecordService.delete(id);
+					} else {
+						enrichmentRecordService.replaceFromJson(id, enrichedData);
+					}
+				} catch (JsonProcessingException e) {
+					redirectAttributes.addFlashAttribute("errorMessage",
+						"Enriched data is not valid JSON: " + e.getOriginalMessage());
+					return "redirect:/admin/calculators/edit/" + id;
+				}
 			}
 		}
 
@@ -164,6 +213,36 @@ public class AdminController {
 		return "redirect:/admin/dashboard";
 	}
 
+	@PostMapping("/images/optimize")
+	public String reoptimizeImages(RedirectAttributes redirectAttributes) {
+		if (imageOptimizerService.startReoptimization()) {
+			redirectAttributes.addFlashAttribute("successMessage", "Image re-optimization started.");
+		} else {
+			redirectAttributes.addFlashAttribute("errorMessage", "Image re-optimization is already running.");
+		}
+		return "redirect:/admin/dashboard";
+	}
+
+	@PostMapping("/uploads/check")
+	public String checkUploads(RedirectAttributes redirectAttributes) {
+		if (uploadLayoutService.startCheck()) {
+			redirectAttributes.addFlashAttribute("successMessage", "Upload consistency check started.");
+		} else {
+			redirectAttributes.addFlashAttribute("errorMessage", "An upload consistency check is already running.");
+		}
+		return "redirect:/admin/dashboard";
+	}
+
+	@PostMapping("/uploads/reconcile")
+	public String reconcileUploads(RedirectAttributes redirectAttributes) {
+		if (uploadReconciliationService.startReconciliation()) {
+			redirectAttributes.addFlashAttribute("successMessage", "Upload reconciliation started.");
+		} else {
+			redirectAttributes.addFlashAttribute("errorMessage", "Upload reconciliation is already running.");
+		}
+		return "redirect:/admin/dashboard";
+	}
+
 	@GetMapping("/labels")
 	public String manageLabels(Model model) {
 		model.addAttribute("labels", labelService.getAllLabels());
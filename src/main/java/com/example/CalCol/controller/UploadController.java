@@ -0,0 +1,243 @@
+package com.example.CalCol.controller;
+
+import com.example.CalCol.service.FileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves uploaded images. Content-addressed uploads never change under their name, so they are
+ * cached as immutable for a year. Their renditions keep the name when the rendition settings
+ * change, so they are cached for a shorter time and then revalidated; other files are revalidated
+ * on every use.
+ * Responses carry a strong ETag and Last-Modified, support a single byte range, and large bodies
+ * are handed to Tomcat's sendfile so the kernel copies them straight from the page cache.
+ * When the storage backend serves reads itself, clients are redirected to it instead.
+ */
+@Controller
+@Slf4j
+public class UploadController {
+
+	private static final Pattern FILENAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,199}");
+	private static final Pattern VERSIONED = Pattern.compile("([0-9a-f]{64})(-[a-z]+)?\\.[a-z0-9]{1,10}");
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+	// Request attributes of Tomcat's sendfile support (org.apache.catalina.Globals)
+	private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private final FileStorageService fileStorageService;
+
+	@Value("${app.uploads.serving.immutable-max-age-seconds:31536000}")
+	private long immutableMaxAgeSeconds;
+
+	@Value("${app.uploads.serving.rendition-max-age-seconds:86400}")
+	private long renditionMaxAgeSeconds;
+
+	@Value("${app.uploads.serving.sendfile-min-bytes:49152}")
+	private long sendfileMinBytes;
+
+	public UploadController(FileStorageService fileStorageService) {
+		this.fileStorageService = fileStorageService;
+	}
+
+	@GetMapping("/uploads/{filename:.+}")
+	public void serve(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		if (!FILENAME.matcher(filename).matches()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		URI location = fileStorageService.readUrl(filename);
+		if (location != null) {
+			// Presigned URLs expire, the object behind them does not change
+			response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+			response.sendRedirect(location.toString());
+			return;
+		}
+		Path file = fileStorageService.loadFile(filename);
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (IOException e) {
+			// The file may have just been moved into its shard directory
+			file = fileStorageService.loadFile(filename);
+			try {
+				attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			} catch (IOException retry) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+		}
+		if (!attributes.isRegularFile()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		long length = attributes.size();
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		String etag = etag(filename, length, lastModified);
+		response.setHeader(HttpHeaders.ETAG, etag);
+		response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(filename));
+
+		if (notModified(request, etag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		long start = 0;
+		long end = length - 1;
+		String range = request.getHeader(HttpHeaders.RANGE);
+		if (range != null && rangeApplies(request, etag, lastModified)) {
+			Matcher matcher = RANGE.matcher(range.trim());
+			// Multiple ranges are not supported; the whole file is sent instead
+			if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+				boolean satisfiable = true;
+				try {
+					if (matcher.group(1).isEmpty()) {
+						start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+					} else {
+						start = Long.parseLong(matcher.group(1));
+						if (!matcher.group(2).isEmpty()) {
+							end = Math.min(end, Long.parseLong(matcher.group(2)));
+						}
+					}
+				} catch (NumberFormatException e) {
+					// Positions beyond a long
+					satisfiable = false;
+				}
+				if (!satisfiable || start >= length || start > end) {
+					response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+					response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+			}
+		}
+
+		long count = end - start + 1;
+		response.setContentType(MediaTypeFactory.getMediaType(filename)
+			.orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+		response.setContentLengthLong(count);
+		if ("HEAD".equals(request.getMethod()) || count == 0) {
+			return;
+		}
+
+		if (count >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+			request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, end + 1);
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			 InputStream input = Channels.newInputStream(channel.position(start))) {
+			OutputStream output = response.getOutputStream();
+			long copied = 0;
+			byte[] buffer = new byte[64 * 1024];
+			while (copied < count) {
+				int read = input.read(buffer, 0, (int) Math.min(buffer.length, count - copied));
+				if (read < 0) {
+					break;
+				}
+				output.write(buffer, 0, read);
+				copied += read;
+			}
+		}
+	}
+
+	/**
+	 * Uploads are immutable under their content hash; a rendition's bytes also depend on the
+	 * rendition settings, which can change without changing its name
+	 */
+	private String cacheControl(String filename) {
+		Matcher matcher = VERSIONED.matcher(filename);
+		if (!matcher.matches()) {
+			return "public, no-cache";
+		}
+		return matcher.group(2) == null
+			? "public, max-age=" + immutableMaxAgeSeconds + ", immutable"
+			: "public, max-age=" + renditionMaxAgeSeconds;
+	}
+
+	/**
+	 * Strong validator: the content hash for content-addressed uploads, otherwise derived from
+	 * size and modification time, which change whenever a file is replaced (writes are renames)
+	 */
+	private static String etag(String filename, long length, long lastModified) {
+		Matcher matcher = VERSIONED.matcher(filename);
+		if (matcher.matches() && matcher.group(2) == null) {
+			return "\"" + matcher.group(1) + "\"";
+		}
+		return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+	}
+
+	private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			return ifNoneMatch.trim().equals("*") || matchesAny(ifNoneMatch, etag, true);
+		}
+		long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+		return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+	}
+
+	/**
+	 * If-Range: only send the range when the client's copy is still current
+	 */
+	private static boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+			return matchesAny(ifRange, etag, false);
+		}
+		long date = dateHeader(request, HttpHeaders.IF_RANGE);
+		return date >= 0 && lastModified / 1000 == date / 1000;
+	}
+
+	private static boolean matchesAny(String header, String etag, boolean weakComparison) {
+		for (String candidate : header.split(",")) {
+			String tag = candidate.trim();
+			if (weakComparison && tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long dateHeader(HttpServletRequest request, String name) {
+		try {
+			return request.getDateHeader(name);
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+}
@@ -34,19 +34,36 @@ public class CalculatorRestController {
 	private final DtoMapperService dtoMapper;
 
 	@GetMapping
-	@Operation(summary = "Browse calculators", description = "Get a paginated list of calculators with optional search and manufacturer filter")
+	@Operation(summary = "Browse calculators", description = "Get a paginated list of calculators with optional search and manufacturer filter. "
+		+ "Attribute filters (display type, digits, power source, logic, years) match the specs extracted during enrichment "
+		+ "and can be combined with the manufacturer filter.")
 	public ResponseEntity<ApiResponse<Page<CalculatorDTO>>> browseCalculators(
 			@Parameter(description = "Search term for model or manufacturer") @RequestParam(required = false) String search,
 			@Parameter(description = "Filter by manufacturer ID") @RequestParam(required = false) Long manufacturerId,
+			@Parameter(description = "Display type (LCD, LED, VFD, OLED, NIXIE, DOT_MATRIX)") @RequestParam(required = false) String displayType,
+			@Parameter(description = "Minimum number of display digits") @RequestParam(required = false) Integer minDigits,
+			@Parameter(description = "Maximum number of display digits") @RequestParam(required = false) Integer maxDigits,
+			@Parameter(description = "Power source (BATTERY, SOLAR, USB, MAINS)") @RequestParam(required = false) String powerSource,
+			@Parameter(description = "Entry logic (RPN, ALGEBRAIC, FORMULA)") @RequestParam(required = false) String logic,
+			@Parameter(description = "First sold or introduced in or after this year") @RequestParam(required = false) Integer yearFrom,
+			@Parameter(description = "First sold or introduced before this year") @RequestParam(required = false) Integer yearBefore,
 			@Parameter(description = "Page number (0-indexed)") @RequestParam(defaultValue = "0") int page,
 			@Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size) {
 
 		Pageable pageable = PageRequest.of(page, size);
 		Page<Calculator> calculatorsPage;
 
-		if (manufacturerId != null) {
+		boolean hasSearch = search != null && !search.trim().isEmpty();
+		boolean attributeFilter = displayType != null || minDigits != null || maxDigits != null
+			|| powerSource != null || logic != null || yearFrom != null || yearBefore != null;
+
+		// Combined filters all go to the one query that applies every filter
+		if (attributeFilter || (hasSearch && manufacturerId != null)) {
+			calculatorsPage = calculatorService.getCalculatorsByAttributes(search, manufacturerId, displayType,
+				minDigits, maxDigits, powerSource, logic, yearFrom, yearBefore, pageable);
+		} else if (manufacturerId != null) {
 			calculatorsPage = calculatorService.getCalculatorsByManufacturer(manufacturerId, pageable);
-		} else if (search != null && !search.trim().isEmpty()) {
+		} else if (hasSearch) {
 			calculatorsPage = calculatorService.searchCalculators(search, pageable);
 		} else {
 			calculatorsPage = calculatorService.getAllCalculators(pageable);
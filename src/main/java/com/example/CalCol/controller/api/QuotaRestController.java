@@ -1,6 +1,8 @@
 package com.example.CalCol.controller.api;
 
 import com.example.CalCol.dto.ApiResponse;
+import com.example.CalCol.service.ProviderCircuitBreakers;
+import com.example.CalCol.service.ProviderPlanner;
 import com.example.CalCol.service.QuotaService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -25,6 +27,8 @@ import java.util.Map;
 public class QuotaRestController {
 
 	private final QuotaService quotaService;
+	private final ProviderCircuitBreakers circuitBreakers;
+	private final ProviderPlanner providerPlanner;
 
 	@GetMapping("/status")
 	@Operation(summary = "Get quota status", description = "Get quota and rate limit status for all services")
@@ -39,5 +43,30 @@ public class QuotaRestController {
 		Map<String, QuotaService.QuotaStatus> status = quotaService.getAllQuotaStatus();
 		return ResponseEntity.ok(ApiResponse.success(status));
 	}
-}
 
+	@GetMapping("/circuits")
+	@Operation(summary = "Get provider circuit status", description = "Get circuit breaker state and in-flight calls for every external provider")
+	public ResponseEntity<ApiResponse<Map<String, ProviderCircuitBreakers.ProviderStatus>>> getCircuitStatus(
+			Authentication authentication) {
+
+		if (authentication == null || !authentication.isAuthenticated()) {
+			return ResponseEntity.status(org.springframework.http.HttpStatus.UNAUTHORIZED)
+				.body(ApiResponse.error("Authentication required"));
+		}
+
+		return ResponseEntity.ok(ApiResponse.success(circuitBreakers.getAllStatus()));
+	}
+
+	@GetMapping("/planner")
+	@Operation(summary = "Get provider planner statistics", description = "Get the latency and relevant-result yield the enrichment planner has measured per provider and operation")
+	public ResponseEntity<ApiResponse<Map<String, ProviderPlanner.ProviderStatsView>>> getPlannerStats(
+			Authentication authentication) {
+
+		if (authentication == null || !authentication.isAuthenticated()) {
+			return ResponseEntity.status(org.springframework.http.HttpStatus.UNAUTHORIZED)
+				.body(ApiResponse.error("Authentication required"));
+		}
+
+		return ResponseEntity.ok(ApiResponse.success(providerPlanner.getAllStats()));
+	}
+}
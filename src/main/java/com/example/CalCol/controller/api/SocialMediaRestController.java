@@ -6,6 +6,7 @@ import com.example.CalCol.dto.SocialMediaPostDTO;
 import com.example.CalCol.service.CalculatorService;
 import com.example.CalCol.service.DtoMapperService;
 import com.example.CalCol.service.EnrichmentService;
+import com.example.CalCol.service.EnrichmentStore;
 import com.example.CalCol.service.SocialMediaPostService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -18,6 +19,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,17 +34,22 @@ public class SocialMediaRestController {
 
 	private final CalculatorService calculatorService;
 	private final EnrichmentService enrichmentService;
+	private final EnrichmentStore enrichmentStore;
 	private final SocialMediaPostService socialMediaPostService;
 	private final DtoMapperService dtoMapper;
 
 	@PostMapping("/generate")
-	@Operation(summary = "Generate social media post", description = "Generate a social media post for a calculator, optionally with enrichment")
+	@Operation(summary = "Generate social media post", description = "Generate a social media post for a calculator, optionally with enrichment. "
+		+ "Persisted enrichment is reused while it is fresh; only admins can refresh stale or missing enrichment, other users get "
+		+ "the stored enrichment as it is. platform=all generates every platform from one enrichment.")
 	public ResponseEntity<ApiResponse<Map<String, Object>>> generatePost(
 			@Parameter(description = "Calculator ID") @PathVariable Long calculatorId,
-			@Parameter(description = "Social media platform (twitter, facebook, instagram, linkedin, reddit, mastodon)") 
+			@Parameter(description = "Social media platform (twitter, facebook, instagram, linkedin, reddit, mastodon, or all)") 
 				@RequestParam String platform,
 			@Parameter(description = "Enable enrichment (web search, museum search, AI)") 
 				@RequestParam(defaultValue = "false") boolean enableEnrichment,
+			@Parameter(description = "Enrich again even if the persisted enrichment is still fresh (admins only)") 
+				@RequestParam(defaultValue = "false") boolean refresh,
 			Authentication authentication) {
 
 		if (authentication == null || !authentication.isAuthenticated()) {
@@ -65,22 +72,34 @@ public class SocialMediaRestController {
 			SocialMediaPostService.CalculatorInfo calcInfo = 
 				enrichmentService.buildCalculatorInfo(calculator);
 			
-			// Enrich if requested
+			// Enrich if requested, reusing the persisted enrichment while it is fresh; only admins
+			// may run (and pay for) a new enrichment, others get what is stored
 			SocialMediaPostService.EnrichmentData enrichment = null;
+			Map<String, Object> response = new HashMap<>();
 			if (enableEnrichment) {
-				enrichment = enrichmentService.enrichCalculator(calculator);
+				boolean isAdmin = authentication.getAuthorities().stream()
+					.anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+				EnrichmentStore.StoredEnrichment stored =
+					enrichmentStore.getEnrichment(calculator, refresh, authentication.getName(), isAdmin);
+				enrichment = stored.getEnrichment();
+				response.put("enrichedAt", stored.getEnrichedAt());
+				response.put("enrichmentReused", stored.isReused());
 			}
 
-			// Generate post
-			SocialMediaPostService.SocialMediaPost post = socialMediaPostService.generatePost(
-				platform, calcInfo, enrichment);
+			// Generate post(s)
+			if ("all".equalsIgnoreCase(platform)) {
+				List<SocialMediaPostDTO> postDtos = socialMediaPostService.generateAllPosts(calcInfo, enrichment).stream()
+					.map(dtoMapper::toSocialMediaPostDTO)
+					.toList();
+				response.put("posts", postDtos);
+			} else {
+				SocialMediaPostService.SocialMediaPost post = socialMediaPostService.generatePost(
+					platform, calcInfo, enrichment);
+				response.put("post", dtoMapper.toSocialMediaPostDTO(post));
+			}
 
-			SocialMediaPostDTO postDto = dtoMapper.toSocialMediaPostDTO(post);
 			EnrichmentDTO enrichmentDto = enrichment != null ? 
 				dtoMapper.toEnrichmentDTO(enrichment) : null;
-
-			Map<String, Object> response = new HashMap<>();
-			response.put("post", postDto);
 			response.put("enrichment", enrichmentDto != null ? enrichmentDto : Map.of());
 
 			return ResponseEntity.ok(ApiResponse.success("Post generated successfully", response));
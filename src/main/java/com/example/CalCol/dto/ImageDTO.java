@@ -12,6 +12,10 @@ public class ImageDTO {
 	private Long id;
 	private String imagePath;
 	private String imageUrl;
+	private String thumbUrl;
+	private String cardUrl;
+	private String fullUrl;
+	private Long bytesSaved;
 	private String uploadedBy;
 	private Boolean isProposal;
 	private Boolean isApproved;
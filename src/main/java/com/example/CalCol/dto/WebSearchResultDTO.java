@@ -2,6 +2,8 @@ package com.example.CalCol.dto;
 
 import lombok.Data;
 
+import java.util.List;
+
 /**
  * DTO for Web Search Result
  */
@@ -10,5 +12,6 @@ public class WebSearchResultDTO {
 	private String title;
 	private String url;
 	private String snippet;
+	private List<String> providers;
 }
 
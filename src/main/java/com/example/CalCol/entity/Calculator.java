@@ -7,6 +7,8 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "calculators")
 @Data
@@ -38,8 +40,12 @@ public class Calculator {
 	@Column(name = "description", columnDefinition = "TEXT")
 	private String description;
 
+	// Legacy JSON blob; moved into the enrichment_* tables at startup by EnrichmentMigrationService
 	@Column(name = "enriched_data", columnDefinition = "TEXT")
-	private String enrichedData; // JSON string with structured enriched data
+	private String enrichedData;
+
+	@Column(name = "enriched_at")
+	private LocalDateTime enrichedAt;
 
 	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "manufacturer_id", nullable = false)
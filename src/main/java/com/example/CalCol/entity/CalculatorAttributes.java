@@ -0,0 +1,63 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Typed technical attributes of a calculator, extracted from its enrichment.
+ * Each filterable attribute has its own index so catalog queries like "VFD display, 8 digits,
+ * before 1975" do not scan description text. Values use the constants of SpecExtractionEngine.
+ */
+@Entity
+@Table(name = "calculator_attributes",
+	uniqueConstraints = @UniqueConstraint(columnNames = {"calculator_id"}),
+	indexes = {
+		@Index(name = "idx_calculator_attributes_display_type", columnList = "display_type"),
+		@Index(name = "idx_calculator_attributes_display_digits", columnList = "display_digits"),
+		@Index(name = "idx_calculator_attributes_power_source", columnList = "power_source"),
+		@Index(name = "idx_calculator_attributes_logic", columnList = "logic"),
+		@Index(name = "idx_calculator_attributes_introduced_year", columnList = "introduced_year")
+	})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CalculatorAttributes {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "calculator_id", nullable = false)
+	private Long calculatorId;
+
+	@Column(name = "display_type", length = 20)
+	private String displayType;
+
+	@Column(name = "display_digits")
+	private Integer displayDigits;
+
+	@Column(name = "power_source", length = 20)
+	private String powerSource;
+
+	@Column(length = 20)
+	private String logic;
+
+	@Column(name = "length_mm")
+	private Double lengthMm;
+
+	@Column(name = "width_mm")
+	private Double widthMm;
+
+	@Column(name = "depth_mm")
+	private Double depthMm;
+
+	@Column(name = "introduced_year")
+	private Integer introducedYear;
+
+	@Column(name = "extracted_at", nullable = false)
+	private LocalDateTime extractedAt;
+}
@@ -29,6 +29,36 @@ public class CalculatorImage {
 	@Column(nullable = false, length = 500)
 	private String imagePath;
 
+	// Downscaled JPEG renditions, generated in the background after upload
+	@Column(name = "thumb_path", length = 500)
+	private String thumbPath;
+
+	@Column(name = "card_path", length = 500)
+	private String cardPath;
+
+	@Column(name = "full_path", length = 500)
+	private String fullPath;
+
+	// Failed rendition attempts for the current upload; the backfill gives up after a limit
+	@Column(name = "derivative_attempts")
+	private Integer derivativeAttempts;
+
+	@Column(name = "derivative_failed_at")
+	private LocalDateTime derivativeFailedAt;
+
+	@Column(name = "derivative_error", length = 500)
+	private String derivativeError;
+
+	// Set by the ingest optimizer: the upload as received when it is kept, and what re-encoding saved
+	@Column(name = "original_path", length = 500)
+	private String originalPath;
+
+	@Column(name = "bytes_saved")
+	private Long bytesSaved;
+
+	@Column(name = "optimized_at")
+	private LocalDateTime optimizedAt;
+
 	@Column(name = "uploaded_by", nullable = false, length = 100)
 	private String uploadedBy;
 
@@ -47,6 +77,20 @@ public class CalculatorImage {
 	@Column(name = "approved_at")
 	private LocalDateTime approvedAt;
 
+	/**
+	 * Path of the rendition for a display size ("thumb", "card" or "full"), or of the original
+	 * upload while the renditions have not been generated yet
+	 */
+	public String pathFor(String size) {
+		String path = switch (size) {
+			case "thumb" -> thumbPath;
+			case "card" -> cardPath;
+			case "full" -> fullPath;
+			default -> null;
+		};
+		return path != null ? path : imagePath;
+	}
+
 	@PrePersist
 	protected void onCreate() {
 		if (uploadedAt == null) {
@@ -0,0 +1,37 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Generated text from an AI provider for a calculator: the LLM write-up or the Brave AI summary
+ */
+@Entity
+@Table(name = "enrichment_ai_content",
+	indexes = @Index(name = "idx_enrichment_ai_content_calculator", columnList = "calculator_id, provider"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrichmentAiContent {
+
+	public static final String PROVIDER_AI = "ai";
+	public static final String PROVIDER_BRAVE = "brave";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "calculator_id", nullable = false)
+	private Long calculatorId;
+
+	@Column(nullable = false, length = 20)
+	private String provider;
+
+	@Column(columnDefinition = "TEXT")
+	private String content;
+
+	@Column(name = "source_url", length = 1000)
+	private String sourceUrl;
+}
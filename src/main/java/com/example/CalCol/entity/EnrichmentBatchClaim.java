@@ -0,0 +1,51 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Work claim for the catalog-wide batch enrichment job.
+ * The unique calculator id lets several application nodes claim work without enriching
+ * the same calculator twice; the rows double as a persistent checkpoint of finished work.
+ */
+@Entity
+@Table(name = "enrichment_batch_claims",
+	uniqueConstraints = @UniqueConstraint(columnNames = {"calculator_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrichmentBatchClaim {
+
+	public static final String STATUS_CLAIMED = "CLAIMED";
+	public static final String STATUS_DONE = "DONE";
+	public static final String STATUS_FAILED = "FAILED";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "calculator_id", nullable = false)
+	private Long calculatorId;
+
+	@Column(nullable = false, length = 20)
+	private String status;
+
+	@Column(name = "node_id", nullable = false, length = 100)
+	private String nodeId;
+
+	@Column(name = "claimed_at", nullable = false)
+	private LocalDateTime claimedAt;
+
+	@Column(name = "completed_at")
+	private LocalDateTime completedAt;
+
+	@Column(nullable = false)
+	private Integer attempts = 0;
+
+	@Column(name = "last_error", length = 1000)
+	private String lastError;
+}
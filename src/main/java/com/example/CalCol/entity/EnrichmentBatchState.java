@@ -0,0 +1,43 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Shared state of the batch enrichment job (a single row), so that pausing from the
+ * admin UI takes effect on every application node
+ */
+@Entity
+@Table(name = "enrichment_batch_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrichmentBatchState {
+
+	public static final Long SINGLETON_ID = 1L;
+
+	@Id
+	private Long id = SINGLETON_ID;
+
+	@Column(nullable = false)
+	private Boolean paused = false;
+
+	@Column(name = "paused_by", length = 100)
+	private String pausedBy;
+
+	@Column(name = "processed_count", nullable = false)
+	private Long processedCount = 0L;
+
+	@Column(name = "failed_count", nullable = false)
+	private Long failedCount = 0L;
+
+	@Column(name = "last_run_at")
+	private LocalDateTime lastRunAt;
+
+	@Column(name = "updated_at")
+	private LocalDateTime updatedAt;
+}
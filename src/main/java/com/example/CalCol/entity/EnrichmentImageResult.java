@@ -0,0 +1,51 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Image search result found while enriching a calculator; admins can add it as a calculator image
+ */
+@Entity
+@Table(name = "enrichment_image_results",
+	indexes = @Index(name = "idx_enrichment_image_results_calculator", columnList = "calculator_id, position"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrichmentImageResult {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "calculator_id", nullable = false)
+	private Long calculatorId;
+
+	@Column(nullable = false)
+	private int position;
+
+	@Column(name = "image_url", length = 1000)
+	private String imageUrl;
+
+	@Column(name = "thumbnail_url", length = 1000)
+	private String thumbnailUrl;
+
+	@Column(length = 500)
+	private String title;
+
+	@Column(name = "source_url", length = 1000)
+	private String sourceUrl;
+
+	private Integer width;
+
+	private Integer height;
+
+	@Column(length = 50)
+	private String source;
+
+	// Comma-separated providers that returned this image, best-ranked first
+	@Column(length = 100)
+	private String providers;
+}
@@ -0,0 +1,40 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of searching one calculator museum site while enriching a calculator
+ */
+@Entity
+@Table(name = "enrichment_museum_hits",
+	indexes = @Index(name = "idx_enrichment_museum_hits_calculator", columnList = "calculator_id, position"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrichmentMuseumHit {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "calculator_id", nullable = false)
+	private Long calculatorId;
+
+	@Column(nullable = false)
+	private int position;
+
+	@Column(name = "site_url", length = 500)
+	private String siteUrl;
+
+	@Column(name = "search_url", length = 1000)
+	private String searchUrl;
+
+	@Column(nullable = false)
+	private boolean found;
+
+	@Column(length = 2000)
+	private String snippet;
+}
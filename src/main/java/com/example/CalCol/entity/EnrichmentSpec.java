@@ -0,0 +1,41 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Technical specification of a calculator: structured data from Brave AI or a spec
+ * extracted from the enrichment text
+ */
+@Entity
+@Table(name = "enrichment_specs",
+	indexes = @Index(name = "idx_enrichment_specs_calculator", columnList = "calculator_id, position"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrichmentSpec {
+
+	public static final String SOURCE_BRAVE = "brave";
+	public static final String SOURCE_EXTRACTED = "extracted";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "calculator_id", nullable = false)
+	private Long calculatorId;
+
+	@Column(nullable = false)
+	private int position;
+
+	@Column(nullable = false, length = 200)
+	private String name;
+
+	@Column(name = "spec_value", length = 1000)
+	private String value;
+
+	@Column(nullable = false, length = 20)
+	private String source;
+}
@@ -0,0 +1,41 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Web search result found while enriching a calculator
+ */
+@Entity
+@Table(name = "enrichment_web_results",
+	indexes = @Index(name = "idx_enrichment_web_results_calculator", columnList = "calculator_id, position"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrichmentWebResult {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "calculator_id", nullable = false)
+	private Long calculatorId;
+
+	@Column(nullable = false)
+	private int position;
+
+	@Column(length = 500)
+	private String title;
+
+	@Column(length = 1000)
+	private String url;
+
+	@Column(length = 2000)
+	private String snippet;
+
+	// Comma-separated providers that returned this result, best-ranked first
+	@Column(length = 100)
+	private String providers;
+}
@@ -0,0 +1,34 @@
+package com.example.CalCol.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A content-addressed file in the upload directory. The filename is the SHA-256 of the content
+ * plus the original extension; the reference count is the number of images using the file, so
+ * identical uploads share one file that is removed with its last reference.
+ */
+@Entity
+@Table(name = "stored_files")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+
+	@Id
+	@Column(length = 100)
+	private String filename;
+
+	@Column(nullable = false)
+	private Long size;
+
+	@Column(name = "ref_count", nullable = false)
+	private Integer refCount;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+}
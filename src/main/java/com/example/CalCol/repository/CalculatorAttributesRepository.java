@@ -0,0 +1,72 @@
+package com.example.CalCol.repository;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.CalculatorAttributes;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CalculatorAttributesRepository extends JpaRepository<CalculatorAttributes, Long> {
+
+	Optional<CalculatorAttributes> findByCalculatorId(Long calculatorId);
+
+	/**
+	 * Calculators matching the search text, manufacturer and every given attribute; null parameters
+	 * are ignored. Calculators without extracted attributes can only match the search, manufacturer
+	 * and year filters. The year bounds apply to the first year sold, falling back to the extracted
+	 * introduction year.
+	 */
+	@Query(value = "SELECT c FROM Calculator c LEFT JOIN CalculatorAttributes a ON a.calculatorId = c.id " +
+			"WHERE (:manufacturerId IS NULL OR c.manufacturer.id = :manufacturerId) " +
+			"AND (:search IS NULL OR LOWER(c.model) LIKE LOWER(CONCAT('%', :search, '%')) " +
+			"  OR LOWER(c.manufacturer.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+			"AND (:displayType IS NULL OR a.displayType = :displayType) " +
+			"AND (:minDigits IS NULL OR a.displayDigits >= :minDigits) " +
+			"AND (:maxDigits IS NULL OR a.displayDigits <= :maxDigits) " +
+			"AND (:powerSource IS NULL OR a.powerSource = :powerSource) " +
+			"AND (:logic IS NULL OR a.logic = :logic) " +
+			"AND (:yearFrom IS NULL OR COALESCE(c.soldFrom, a.introducedYear) >= :yearFrom) " +
+			"AND (:yearBefore IS NULL OR COALESCE(c.soldFrom, a.introducedYear) < :yearBefore)",
+		countQuery = "SELECT COUNT(c) FROM Calculator c LEFT JOIN CalculatorAttributes a ON a.calculatorId = c.id " +
+			"WHERE (:manufacturerId IS NULL OR c.manufacturer.id = :manufacturerId) " +
+			"AND (:search IS NULL OR LOWER(c.model) LIKE LOWER(CONCAT('%', :search, '%')) " +
+			"  OR LOWER(c.manufacturer.name) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+			"AND (:displayType IS NULL OR a.displayType = :displayType) " +
+			"AND (:minDigits IS NULL OR a.displayDigits >= :minDigits) " +
+			"AND (:maxDigits IS NULL OR a.displayDigits <= :maxDigits) " +
+			"AND (:powerSource IS NULL OR a.powerSource = :powerSource) " +
+			"AND (:logic IS NULL OR a.logic = :logic) " +
+			"AND (:yearFrom IS NULL OR COALESCE(c.soldFrom, a.introducedYear) >= :yearFrom) " +
+			"AND (:yearBefore IS NULL OR COALESCE(c.soldFrom, a.introducedYear) < :yearBefore)")
+	Page<Calculator> findCalculatorsByAttributes(@Param("search") String search,
+												 @Param("manufacturerId") Long manufacturerId,
+												 @Param("displayType") String displayType,
+												 @Param("minDigits") Integer minDigits,
+												 @Param("maxDigits") Integer maxDigits,
+												 @Param("powerSource") String powerSource,
+												 @Param("logic") String logic,
+												 @Param("yearFrom") Integer yearFrom,
+												 @Param("yearBefore") Integer yearBefore,
+												 Pageable pageable);
+
+	/**
+	 * Calculators with stored enrichment text but no extracted attributes yet
+	 */
+	@Query("SELECT DISTINCT e.calculatorId FROM EnrichmentWebResult e WHERE NOT EXISTS " +
+			"(SELECT a FROM CalculatorAttributes a WHERE a.calculatorId = e.calculatorId) " +
+			"UNION SELECT DISTINCT ai.calculatorId FROM EnrichmentAiContent ai WHERE NOT EXISTS " +
+			"(SELECT a FROM CalculatorAttributes a WHERE a.calculatorId = ai.calculatorId)")
+	List<Long> findCalculatorIdsWithoutAttributes();
+
+	@Modifying
+	@Query("DELETE FROM CalculatorAttributes a WHERE a.calculatorId = :calculatorId")
+	int deleteByCalculatorId(@Param("calculatorId") Long calculatorId);
+}
@@ -4,11 +4,14 @@ import com.example.CalCol.entity.CalculatorImage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CalculatorImageRepository extends JpaRepository<CalculatorImage, Long> {
@@ -21,5 +24,99 @@ public interface CalculatorImageRepository extends JpaRepository<CalculatorImage
 
 	@Query("SELECT ci FROM CalculatorImage ci WHERE ci.calculator.id = :calculatorId AND (ci.isApproved = true OR ci.uploadedBy = :username)")
 	List<CalculatorImage> findApprovedOrUserImages(@Param("calculatorId") Long calculatorId, @Param("username") String username);
-}
 
+	/**
+	 * Images without renditions that have failed fewer than maxAttempts times
+	 */
+	@Query("SELECT ci.id FROM CalculatorImage ci WHERE ci.thumbPath IS NULL " +
+			"AND (ci.derivativeAttempts IS NULL OR ci.derivativeAttempts < :maxAttempts) ORDER BY ci.id")
+	List<Long> findIdsWithoutDerivatives(@Param("maxAttempts") int maxAttempts);
+
+	/**
+	 * Count a failed rendition attempt, unless the image moved to another upload meanwhile
+	 */
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("UPDATE CalculatorImage ci SET ci.derivativeAttempts = COALESCE(ci.derivativeAttempts, 0) + 1, " +
+			"ci.derivativeFailedAt = :failedAt, ci.derivativeError = :error WHERE ci.id = :id AND ci.imagePath = :imagePath")
+	int recordDerivativeFailure(@Param("id") Long id, @Param("imagePath") String imagePath,
+								@Param("failedAt") LocalDateTime failedAt, @Param("error") String error);
+
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("UPDATE CalculatorImage ci SET ci.thumbPath = :thumbPath, ci.cardPath = :cardPath, ci.fullPath = :fullPath " +
+			"WHERE ci.id = :id AND ci.imagePath = :imagePath")
+	int updateDerivatives(@Param("id") Long id, @Param("imagePath") String imagePath, @Param("thumbPath") String thumbPath,
+						  @Param("cardPath") String cardPath, @Param("fullPath") String fullPath);
+
+	Optional<CalculatorImage> findFirstByImagePathAndThumbPathIsNotNull(String imagePath);
+
+	/**
+	 * Upload paths without a stored-file reference count, with the number of images using each
+	 */
+	@Query("SELECT ci.imagePath, COUNT(ci) FROM CalculatorImage ci " +
+			"WHERE ci.imagePath NOT IN (SELECT sf.filename FROM StoredFile sf) GROUP BY ci.imagePath")
+	List<Object[]> countImagesWithoutStoredFile();
+
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("UPDATE CalculatorImage ci SET ci.imagePath = :newPath, ci.thumbPath = null, ci.cardPath = null, ci.fullPath = null, " +
+			"ci.derivativeAttempts = null WHERE ci.imagePath = :oldPath")
+	int renameImagePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
+	@Query("SELECT ci.id FROM CalculatorImage ci WHERE ci.optimizedAt IS NULL ORDER BY ci.id")
+	List<Long> findIdsNotOptimized();
+
+	/**
+	 * Point an image at its optimized upload, unless it was changed or deleted meanwhile.
+	 * Renditions of the previous upload, and failed attempts at them, no longer apply.
+	 */
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("UPDATE CalculatorImage ci SET ci.imagePath = :newPath, ci.originalPath = :originalPath, " +
+			"ci.bytesSaved = :bytesSaved, ci.optimizedAt = :optimizedAt, " +
+			"ci.thumbPath = null, ci.cardPath = null, ci.fullPath = null, ci.derivativeAttempts = null " +
+			"WHERE ci.id = :id AND ci.imagePath = :oldPath")
+	int replaceWithOptimized(@Param("id") Long id, @Param("oldPath") String oldPath, @Param("newPath") String newPath,
+							 @Param("originalPath") String originalPath, @Param("bytesSaved") long bytesSaved,
+							 @Param("optimizedAt") LocalDateTime optimizedAt);
+
+	/**
+	 * Record that an image was looked at but left as it is
+	 */
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("UPDATE CalculatorImage ci SET ci.bytesSaved = 0, ci.optimizedAt = :optimizedAt WHERE ci.id = :id")
+	int markOptimized(@Param("id") Long id, @Param("optimizedAt") LocalDateTime optimizedAt);
+
+	/**
+	 * Number of optimized images and the bytes saved on them
+	 */
+	@Query("SELECT COUNT(ci), COALESCE(SUM(ci.bytesSaved), 0) FROM CalculatorImage ci WHERE ci.bytesSaved <> 0")
+	List<Object[]> sumBytesSaved();
+
+	long countByOptimizedAtIsNull();
+
+	@Query("SELECT DISTINCT ci.imagePath FROM CalculatorImage ci ORDER BY ci.imagePath")
+	List<String> findAllImagePaths();
+
+	/**
+	 * Keyset page of images in id order, for scans that must not hold one long cursor
+	 */
+	List<CalculatorImage> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+	@Query("SELECT COUNT(ci) FROM CalculatorImage ci WHERE ci.imagePath = :filename OR ci.originalPath = :filename")
+	long countReferences(@Param("filename") String filename);
+
+	long countByImagePath(String imagePath);
+
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("UPDATE CalculatorImage ci SET ci.originalPath = null WHERE ci.originalPath = :originalPath")
+	int clearOriginalPath(@Param("originalPath") String originalPath);
+
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("DELETE FROM CalculatorImage ci WHERE ci.imagePath = :imagePath")
+	int deleteByImagePathValue(@Param("imagePath") String imagePath);
+}
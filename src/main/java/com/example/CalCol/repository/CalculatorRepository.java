@@ -24,10 +24,23 @@ public interface CalculatorRepository extends JpaRepository<Calculator, Long> {
 
 	@Query("SELECT c FROM Calculator c JOIN FETCH c.manufacturer")
 	java.util.List<Calculator> findAllWithManufacturer();
+
+	@Query("SELECT c FROM Calculator c JOIN FETCH c.manufacturer WHERE c.id = :id")
+	java.util.Optional<Calculator> findByIdWithManufacturer(@Param("id") Long id);
 	
 	@Modifying
 	@Query("UPDATE Calculator c SET c.manufacturer.id = :targetManufacturerId WHERE c.manufacturer.id = :sourceManufacturerId")
 	int updateManufacturerForCalculators(@Param("sourceManufacturerId") Long sourceManufacturerId, 
 										 @Param("targetManufacturerId") Long targetManufacturerId);
-}
 
+	@Query("SELECT c.id FROM Calculator c WHERE c.enrichedData IS NOT NULL ORDER BY c.id")
+	java.util.List<Long> findIdsWithLegacyEnrichedData();
+
+	@Query("SELECT c.enrichedData FROM Calculator c WHERE c.id = :id")
+	String findLegacyEnrichedData(@Param("id") Long id);
+
+	@Modifying
+	@org.springframework.transaction.annotation.Transactional
+	@Query("UPDATE Calculator c SET c.enrichedData = null WHERE c.id = :id")
+	int clearLegacyEnrichedData(@Param("id") Long id);
+}
@@ -0,0 +1,20 @@
+package com.example.CalCol.repository;
+
+import com.example.CalCol.entity.EnrichmentAiContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface EnrichmentAiContentRepository extends JpaRepository<EnrichmentAiContent, Long> {
+
+	List<EnrichmentAiContent> findByCalculatorId(Long calculatorId);
+
+	@Modifying
+	@Query("DELETE FROM EnrichmentAiContent e WHERE e.calculatorId = :calculatorId")
+	int deleteByCalculatorId(@Param("calculatorId") Long calculatorId);
+}
@@ -0,0 +1,67 @@
+package com.example.CalCol.repository;
+
+import com.example.CalCol.entity.EnrichmentBatchClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EnrichmentBatchClaimRepository extends JpaRepository<EnrichmentBatchClaim, Long> {
+
+	/**
+	 * Calculators due for batch enrichment, in priority order: never enriched first, then the most
+	 * collected or wished for, then the stalest enrichment. Calculators with a live claim, a recent
+	 * failure or a recently finished claim are skipped.
+	 */
+	@Query(value = "SELECT c.id FROM calculators c " +
+			"LEFT JOIN enrichment_batch_claims bc ON bc.calculator_id = c.id " +
+			"WHERE (c.enriched_at IS NULL OR c.enriched_at < :staleBefore) " +
+			"AND (bc.id IS NULL " +
+			"  OR (bc.status = 'CLAIMED' AND bc.claimed_at < :leaseExpiredBefore) " +
+			"  OR (bc.status = 'FAILED' AND bc.completed_at < :retryBefore) " +
+			"  OR (bc.status = 'DONE' AND bc.completed_at < :staleBefore)) " +
+			"ORDER BY CASE WHEN c.enriched_at IS NULL THEN 0 ELSE 1 END, " +
+			"((SELECT COUNT(*) FROM user_calculator_collections uc WHERE uc.calculator_id = c.id) + " +
+			" (SELECT COUNT(*) FROM wishlist_items w WHERE w.calculator_id = c.id)) DESC, " +
+			"c.enriched_at ASC, c.id ASC " +
+			"LIMIT :limit", nativeQuery = true)
+	List<Long> findCandidateCalculatorIds(@Param("staleBefore") LocalDateTime staleBefore,
+										  @Param("leaseExpiredBefore") LocalDateTime leaseExpiredBefore,
+										  @Param("retryBefore") LocalDateTime retryBefore,
+										  @Param("limit") int limit);
+
+	/**
+	 * Take over an existing claim row that is eligible again: an expired lease, a failure past the
+	 * retry delay or a finished claim gone stale, the same conditions as the candidate query. Only
+	 * one node can win because the condition is re-checked by the database under the row lock.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE EnrichmentBatchClaim c SET c.status = 'CLAIMED', c.nodeId = :nodeId, c.claimedAt = :now, " +
+			"c.completedAt = null, c.attempts = c.attempts + 1 " +
+			"WHERE c.calculatorId = :calculatorId " +
+			"AND ((c.status = 'CLAIMED' AND c.claimedAt < :leaseExpiredBefore) " +
+			"  OR (c.status = 'FAILED' AND c.completedAt < :retryBefore) " +
+			"  OR (c.status = 'DONE' AND c.completedAt < :staleBefore))")
+	int reclaim(@Param("calculatorId") Long calculatorId, @Param("nodeId") String nodeId,
+				@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore,
+				@Param("leaseExpiredBefore") LocalDateTime leaseExpiredBefore,
+				@Param("retryBefore") LocalDateTime retryBefore);
+
+	@Modifying
+	@Transactional
+	@Query("UPDATE EnrichmentBatchClaim c SET c.status = :status, c.completedAt = :now, c.lastError = :error " +
+			"WHERE c.calculatorId = :calculatorId AND c.nodeId = :nodeId AND c.status = 'CLAIMED'")
+	int complete(@Param("calculatorId") Long calculatorId, @Param("nodeId") String nodeId,
+				 @Param("status") String status, @Param("error") String error, @Param("now") LocalDateTime now);
+
+	boolean existsByCalculatorId(Long calculatorId);
+
+	long countByStatus(String status);
+}
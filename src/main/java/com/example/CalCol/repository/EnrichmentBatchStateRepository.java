@@ -0,0 +1,22 @@
+package com.example.CalCol.repository;
+
+import com.example.CalCol.entity.EnrichmentBatchState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface EnrichmentBatchStateRepository extends JpaRepository<EnrichmentBatchState, Long> {
+
+	@Modifying
+	@Transactional
+	@Query("UPDATE EnrichmentBatchState s SET s.processedCount = s.processedCount + :processed, " +
+			"s.failedCount = s.failedCount + :failed, s.lastRunAt = :now WHERE s.id = :id")
+	int recordRun(@Param("id") Long id, @Param("processed") long processed, @Param("failed") long failed,
+				  @Param("now") LocalDateTime now);
+}
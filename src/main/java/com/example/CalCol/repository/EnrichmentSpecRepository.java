@@ -0,0 +1,20 @@
+package com.example.CalCol.repository;
+
+import com.example.CalCol.entity.EnrichmentSpec;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface EnrichmentSpecRepository extends JpaRepository<EnrichmentSpec, Long> {
+
+	List<EnrichmentSpec> findByCalculatorIdOrderByPositionAsc(Long calculatorId);
+
+	@Modifying
+	@Query("DELETE FROM EnrichmentSpec e WHERE e.calculatorId = :calculatorId")
+	int deleteByCalculatorId(@Param("calculatorId") Long calculatorId);
+}
@@ -0,0 +1,28 @@
+package com.example.CalCol.repository;
+
+import com.example.CalCol.entity.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+	@Modifying
+	@Query("UPDATE StoredFile sf SET sf.refCount = sf.refCount + :count WHERE sf.filename = :filename")
+	int addReferences(@Param("filename") String filename, @Param("count") int count);
+
+	@Modifying
+	@Query("DELETE FROM StoredFile sf WHERE sf.filename = :filename AND sf.refCount <= 0")
+	int deleteIfUnreferenced(@Param("filename") String filename);
+
+	@Query("SELECT sf.filename FROM StoredFile sf ORDER BY sf.filename")
+	List<String> findAllFilenames();
+
+	@Query("SELECT sf.filename FROM StoredFile sf WHERE sf.refCount <= 0 ORDER BY sf.filename")
+	List<String> findUnreferencedFilenames();
+}
@@ -1,21 +1,39 @@
 package com.example.CalCol.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Service for AI-powered search using description, labels, and images
+ * Service for AI-powered search using description, labels, and images.
+ * Catalog-wide enrichment can pack several calculators into one prompt; batches are sized by
+ * an estimated token count so prompt and answers stay within the model's limits.
+ * Single searches can stream: the providers' Server-Sent Event chunks are parsed as they arrive
+ * and the partial text is forwarded to the caller.
  */
 @Service
 @Slf4j
 public class AISearchService {
 
-	private final WebClient webClient;
+	private final WebClient openAiClient;
+	private final WebClient anthropicClient;
+	private final String openAiBaseUrl;
+	private final String anthropicBaseUrl;
 	private final QuotaService quotaService;
+	private final ProviderCircuitBreakers circuitBreakers;
 	
 	@Value("${app.search.ai.api-key:}")
 	private String aiApiKey;
@@ -23,8 +41,41 @@ public class AISearchService {
 	@Value("${app.search.ai.provider:openai}")
 	private String aiProvider; // openai, anthropic, etc.
 
-	public AISearchService(QuotaService quotaService) {
-		this.webClient = WebClient.builder().build();
+	@Value("${app.search.ai.batch.max-items:8}")
+	private int batchMaxItems;
+
+	@Value("${app.search.ai.batch.max-prompt-tokens:6000}")
+	private int batchMaxPromptTokens;
+
+	@Value("${app.search.ai.batch.output-tokens-per-item:500}")
+	private int batchOutputTokensPerItem;
+
+	@Value("${app.search.ai.batch.max-output-tokens:4000}")
+	private int batchMaxOutputTokens;
+
+	@Value("${app.search.ai.batch.retries:1}")
+	private int batchRetries;
+
+	private static final int SINGLE_MAX_TOKENS = 1000;
+
+	private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+		new ParameterizedTypeReference<>() {};
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * One answer section of a batched response: "=== CALCULATOR id ===" ... "=== END id ==="
+	 */
+	private static final Pattern BATCH_SECTION = Pattern.compile(
+		"(?s)===\\s*CALCULATOR\\s+(\\S+?)\\s*===\\s*(.*?)\\s*===\\s*END\\s+\\1\\s*===");
+
+	public AISearchService(QuotaService quotaService, OutboundHttpClients httpClients,
+			ProviderCircuitBreakers circuitBreakers) {
+		this.circuitBreakers = circuitBreakers;
+		this.openAiClient = httpClients.client("openai");
+		this.anthropicClient = httpClients.client("anthropic");
+		this.openAiBaseUrl = httpClients.baseUrl("openai", "https://api.openai.com");
+		this.anthropicBaseUrl = httpClients.baseUrl("anthropic", "https://api.anthropic.com");
 		this.quotaService = quotaService;
 	}
 
@@ -33,6 +84,15 @@ public class AISearchService {
 	 */
 	public AISearchResult searchWithAI(String description, List<String> labels, List<String> labelDescriptions, 
 			List<String> imageUrls) {
+		return searchWithAI(description, labels, labelDescriptions, imageUrls, null);
+	}
+
+	/**
+	 * Perform AI-powered search, streaming the answer when {@code onDelta} is given
+	 * @param onDelta Receives each piece of text as the provider produces it, or null to wait for the full answer
+	 */
+	public AISearchResult searchWithAI(String description, List<String> labels, List<String> labelDescriptions,
+			List<String> imageUrls, Consumer<String> onDelta) {
 		if (aiApiKey == null || aiApiKey.isEmpty()) {
 			log.warn("AI API key not configured. Skipping AI search.");
 			return new AISearchResult();
@@ -48,7 +108,14 @@ public class AISearchService {
 		try {
 			String prompt = buildSearchPrompt(description, labels, labelDescriptions, imageUrls);
 			log.debug("Calling AI with prompt length: {}", prompt.length());
-			AISearchResult result = callAI(prompt);
+			AISearchResult result = onDelta != null
+				? streamAI(prompt, SINGLE_MAX_TOKENS, onDelta)
+				: callAI(prompt, SINGLE_MAX_TOKENS);
+			if (result.isIncomplete()) {
+				log.warn("AI answer was cut off after {} characters; not using it",
+					result.getPartialContent() != null ? result.getPartialContent().length() : 0);
+				return result;
+			}
 			log.info("AI search completed. Content length: {}, Links: {}", 
 				result.getContent() != null ? result.getContent().length() : 0,
 				result.getLinks() != null ? result.getLinks().size() : 0);
@@ -61,11 +128,181 @@ public class AISearchService {
 		}
 	}
 
+	/**
+	 * Perform AI-powered search for several calculators, packing them into as few prompts as the
+	 * token budget allows. Each answered prompt uses one unit of the "ai" quota. Items whose answer
+	 * is missing or cannot be split out of the response are retried in a new batch; items of a call
+	 * that failed or came back empty are not.
+	 * @return Results by item id; items that still failed after the retries are absent
+	 */
+	public Map<String, AISearchResult> searchWithAIBatch(List<AIBatchItem> items) {
+		Map<String, AISearchResult> results = new LinkedHashMap<>();
+		if (items == null || items.isEmpty()) {
+			return results;
+		}
+		if (aiApiKey == null || aiApiKey.isEmpty()) {
+			log.warn("AI API key not configured. Skipping batched AI search.");
+			return results;
+		}
+
+		List<AIBatchItem> pending = new ArrayList<>(items);
+		boolean firstCall = true;
+		for (int attempt = 0; attempt <= batchRetries && !pending.isEmpty(); attempt++) {
+			List<AIBatchItem> failed = new ArrayList<>();
+			for (List<AIBatchItem> batch : planBatches(pending)) {
+				if (!firstCall && !waitForRateLimit()) {
+					return results;
+				}
+				firstCall = false;
+				if (!quotaService.canMakeRequest("ai")) {
+					log.warn("AI search quota/rate limit exceeded during batch. Remaining: {}",
+						quotaService.getRemainingQuota("ai"));
+					return results;
+				}
+				String prompt = buildBatchPrompt(batch);
+				int maxTokens = Math.min(batchMaxOutputTokens, batchOutputTokensPerItem * batch.size());
+				log.debug("Calling AI with batch of {} calculators, estimated prompt tokens: {}",
+					batch.size(), estimateTokens(prompt));
+				AISearchResult response = callAI(prompt, maxTokens);
+				if (response.getContent() == null || response.getContent().isBlank()) {
+					// The call itself failed: resending the same items would fail and cost the same way
+					log.warn("Batched AI call for {} calculators returned no content; not retrying them", batch.size());
+					continue;
+				}
+				quotaService.recordRequest("ai");
+
+				Map<String, String> sections = parseBatchResponse(response.getContent());
+				for (AIBatchItem item : batch) {
+					String content = sections.get(item.getId());
+					if (content != null && !content.isBlank()) {
+						AISearchResult result = new AISearchResult();
+						result.setContent(content);
+						results.put(item.getId(), result);
+					} else {
+						failed.add(item);
+					}
+				}
+			}
+			if (!failed.isEmpty()) {
+				log.info("Batched AI search: {} of {} items missing from the response{}", failed.size(),
+					pending.size(), attempt < batchRetries ? ", retrying them" : "");
+			}
+			pending = failed;
+		}
+		log.info("Batched AI search completed for {} of {} calculators", results.size(), items.size());
+		return results;
+	}
+
+	/**
+	 * Space consecutive batch calls by the AI rate limit
+	 * @return false if interrupted
+	 */
+	private boolean waitForRateLimit() {
+		try {
+			Thread.sleep(1000L / Math.max(1, quotaService.getRateLimit("ai")));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Whether an AI API key is set
+	 */
+	public boolean isConfigured() {
+		return aiApiKey != null && !aiApiKey.isEmpty();
+	}
+
+	/**
+	 * Largest number of calculators packed into one prompt
+	 */
+	public int getBatchMaxItems() {
+		return Math.max(1, batchMaxItems);
+	}
+
+	/**
+	 * Split items into batches whose estimated prompt size and expected answer size stay within
+	 * the configured token budgets. An item too large for any batch is sent on its own.
+	 */
+	List<List<AIBatchItem>> planBatches(List<AIBatchItem> items) {
+		int maxItems = Math.max(1, Math.min(getBatchMaxItems(),
+			batchMaxOutputTokens / Math.max(1, batchOutputTokensPerItem)));
+		int overhead = estimateTokens(buildBatchPrompt(List.of()));
+
+		List<List<AIBatchItem>> batches = new ArrayList<>();
+		List<AIBatchItem> current = new ArrayList<>();
+		int currentTokens = overhead;
+		for (AIBatchItem item : items) {
+			int itemTokens = estimateTokens(buildBatchItem(item));
+			if (!current.isEmpty() && (current.size() >= maxItems || currentTokens + itemTokens > batchMaxPromptTokens)) {
+				batches.add(current);
+				current = new ArrayList<>();
+				currentTokens = overhead;
+			}
+			current.add(item);
+			currentTokens += itemTokens;
+		}
+		if (!current.isEmpty()) {
+			batches.add(current);
+		}
+		return batches;
+	}
+
+	/**
+	 * Rough token count for English text and URLs (about four characters per token)
+	 */
+	static int estimateTokens(String text) {
+		return text == null ? 0 : (text.length() + 3) / 4;
+	}
+
+	/**
+	 * Split a batched response into answer sections by item id
+	 */
+	static Map<String, String> parseBatchResponse(String content) {
+		Map<String, String> sections = new HashMap<>();
+		if (content == null) {
+			return sections;
+		}
+		Matcher matcher = BATCH_SECTION.matcher(content);
+		while (matcher.find()) {
+			sections.putIfAbsent(matcher.group(1), matcher.group(2));
+		}
+		return sections;
+	}
+
+	private String buildBatchPrompt(List<AIBatchItem> batch) {
+		StringBuilder prompt = new StringBuilder();
+		prompt.append("I have ").append(batch.size()).append(" calculators. For each calculator, ");
+		appendRequestedInformation(prompt);
+		prompt.append("\nAnswer each calculator separately. Start each answer with a line \"=== CALCULATOR <id> ===\" ");
+		prompt.append("and end it with a line \"=== END <id> ===\", using the id given below. ");
+		prompt.append("Do not combine calculators in one answer.\n\n");
+		for (AIBatchItem item : batch) {
+			prompt.append(buildBatchItem(item));
+		}
+		return prompt.toString();
+	}
+
+	private String buildBatchItem(AIBatchItem item) {
+		StringBuilder section = new StringBuilder();
+		section.append("=== CALCULATOR ").append(item.getId()).append(" ===\n");
+		appendCalculatorInformation(section, item.getDescription(), item.getLabels(), item.getLabelDescriptions(),
+			item.getImageUrls());
+		return section.toString();
+	}
+
 	private String buildSearchPrompt(String description, List<String> labels, List<String> labelDescriptions, 
 			List<String> imageUrls) {
 		StringBuilder prompt = new StringBuilder();
 		prompt.append("I have a calculator with the following information:\n\n");
-		
+		appendCalculatorInformation(prompt, description, labels, labelDescriptions, imageUrls);
+		appendRequestedInformation(prompt);
+		return prompt.toString();
+	}
+
+	private void appendCalculatorInformation(StringBuilder prompt, String description, List<String> labels,
+			List<String> labelDescriptions, List<String> imageUrls) {
 		if (description != null && !description.trim().isEmpty()) {
 			prompt.append("Description: ").append(description).append("\n\n");
 		}
@@ -87,49 +324,55 @@ public class AISearchService {
 			prompt.append("Images available: ").append(imageUrls.size()).append(" image(s)\n");
 			prompt.append("Image URLs: ").append(String.join(", ", imageUrls)).append("\n\n");
 		}
-		
+	}
+
+	private void appendRequestedInformation(StringBuilder prompt) {
 		prompt.append("Please provide:\n");
 		prompt.append("1. Historical context about this calculator\n");
 		prompt.append("2. Technical specifications if known\n");
 		prompt.append("3. Interesting facts or trivia\n");
 		prompt.append("4. Links to relevant resources or museum pages\n");
 		prompt.append("5. Any notable features or innovations\n");
-		
-		return prompt.toString();
 	}
 
-	private AISearchResult callAI(String prompt) {
+	private AISearchResult callAI(String prompt, int maxTokens) {
 		if ("openai".equalsIgnoreCase(aiProvider)) {
-			return callOpenAI(prompt);
+			return callOpenAI(prompt, maxTokens);
 		} else if ("anthropic".equalsIgnoreCase(aiProvider)) {
-			return callAnthropic(prompt);
+			return callAnthropic(prompt, maxTokens);
 		} else {
 			log.warn("Unknown AI provider: {}. Using OpenAI format.", aiProvider);
-			return callOpenAI(prompt);
+			return callOpenAI(prompt, maxTokens);
+		}
+	}
+
+	private AISearchResult streamAI(String prompt, int maxTokens, Consumer<String> onDelta) {
+		if ("anthropic".equalsIgnoreCase(aiProvider)) {
+			return streamAnthropic(prompt, maxTokens, onDelta);
+		}
+		if (!"openai".equalsIgnoreCase(aiProvider)) {
+			log.warn("Unknown AI provider: {}. Using OpenAI format.", aiProvider);
 		}
+		return streamOpenAI(prompt, maxTokens, onDelta);
 	}
 
-	private AISearchResult callOpenAI(String prompt) {
+	private AISearchResult callOpenAI(String prompt, int maxTokens) {
 		try {
-			Map<String, Object> request = new HashMap<>();
-			request.put("model", "gpt-4o-mini"); // Using a cost-effective model
-			request.put("messages", List.of(
-				Map.of("role", "system", "content", "You are a calculator historian and expert. Provide detailed, accurate information about vintage calculators."),
-				Map.of("role", "user", "content", prompt)
-			));
-			request.put("max_tokens", 1000);
-			request.put("temperature", 0.7);
-
-			Map<String, Object> response = webClient.post()
-				.uri("https://api.openai.com/v1/chat/completions")
+			Map<String, Object> request = openAIRequest(prompt, maxTokens);
+
+			byte[] response = circuitBreakers.execute("openai", () -> openAiClient.post()
+				.uri(openAiBaseUrl + "/v1/chat/completions")
 				.header("Authorization", "Bearer " + aiApiKey)
 				.header("Content-Type", "application/json")
 				.bodyValue(request)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
 			return parseOpenAIResponse(response);
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping OpenAI call: {}", e.getMessage());
+			return new AISearchResult();
 		} catch (org.springframework.web.reactive.function.client.WebClientResponseException.TooManyRequests e) {
 			log.warn("OpenAI API rate limit exceeded (429). Please wait before retrying.");
 			return new AISearchResult();
@@ -139,111 +382,344 @@ public class AISearchService {
 		}
 	}
 
-	private AISearchResult callAnthropic(String prompt) {
+	private AISearchResult streamOpenAI(String prompt, int maxTokens, Consumer<String> onDelta) {
+		AISearchResult result = new AISearchResult();
+		try {
+			Map<String, Object> request = openAIRequest(prompt, maxTokens);
+			request.put("stream", true);
+
+			Flux<ServerSentEvent<String>> events = openAiClient.post()
+				.uri(openAiBaseUrl + "/v1/chat/completions")
+				.header("Authorization", "Bearer " + aiApiKey)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.bodyValue(request)
+				.retrieve()
+				.bodyToFlux(SSE_TYPE);
+			AtomicBoolean done = new AtomicBoolean();
+			circuitBreakers.execute("openai", () -> events
+				.takeWhile(event -> !endOfStream(done, "[DONE]".equals(event.data())))
+				.doOnNext(event -> forwardDelta(result, parseOpenAIChunk(event.data()), onDelta))
+				.blockLast());
+			if (done.get()) {
+				result.finishStreaming();
+				return result;
+			}
+			log.warn("OpenAI stream ended without [DONE]");
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping OpenAI call: {}", e.getMessage());
+		} catch (org.springframework.web.reactive.function.client.WebClientResponseException.TooManyRequests e) {
+			log.warn("OpenAI API rate limit exceeded (429). Please wait before retrying.");
+		} catch (Exception e) {
+			log.error("Error streaming from OpenAI API: {}", e.getMessage(), e);
+		}
+		result.abortStreaming();
+		return result;
+	}
+
+	private AISearchResult streamAnthropic(String prompt, int maxTokens, Consumer<String> onDelta) {
+		AISearchResult result = new AISearchResult();
 		try {
-			Map<String, Object> request = new HashMap<>();
-			request.put("model", "claude-3-haiku-20240307");
-			request.put("max_tokens", 1000);
-			request.put("messages", List.of(
-				Map.of("role", "user", "content", prompt)
-			));
-
-			Map<String, Object> response = webClient.post()
-				.uri("https://api.anthropic.com/v1/messages")
+			Map<String, Object> request = anthropicRequest(prompt, maxTokens);
+			request.put("stream", true);
+
+			Flux<ServerSentEvent<String>> events = anthropicClient.post()
+				.uri(anthropicBaseUrl + "/v1/messages")
+				.header("x-api-key", aiApiKey)
+				.header("anthropic-version", "2023-06-01")
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.bodyValue(request)
+				.retrieve()
+				.bodyToFlux(SSE_TYPE);
+			AtomicBoolean done = new AtomicBoolean();
+			circuitBreakers.execute("anthropic", () -> events
+				.takeWhile(event -> !endOfStream(done, "message_stop".equals(event.event())))
+				.doOnNext(event -> forwardDelta(result, parseAnthropicChunk(event.event(), event.data()), onDelta))
+				.blockLast());
+			if (done.get()) {
+				result.finishStreaming();
+				return result;
+			}
+			log.warn("Anthropic stream ended without message_stop");
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Anthropic call: {}", e.getMessage());
+		} catch (Exception e) {
+			log.error("Error streaming from Anthropic API: {}", e.getMessage(), e);
+		}
+		result.abortStreaming();
+		return result;
+	}
+
+	/**
+	 * Note the end-of-stream marker; a stream that stops without it was cut off
+	 */
+	private static boolean endOfStream(AtomicBoolean done, boolean marker) {
+		if (marker) {
+			done.set(true);
+		}
+		return marker;
+	}
+
+	private void forwardDelta(AISearchResult result, String delta, Consumer<String> onDelta) {
+		if (delta == null || delta.isEmpty()) {
+			return;
+		}
+		result.appendContent(delta);
+		try {
+			onDelta.accept(delta);
+		} catch (RuntimeException e) {
+			log.debug("AI stream listener failed: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Text of one OpenAI chat completion chunk: {"choices":[{"delta":{"content":"..."}}]}
+	 */
+	String parseOpenAIChunk(String data) {
+		JsonNode chunk = readChunk(data);
+		if (chunk == null) {
+			return null;
+		}
+		if (chunk.has("error")) {
+			throw new IllegalStateException("OpenAI stream error: " + chunk.get("error"));
+		}
+		JsonNode content = chunk.path("choices").path(0).path("delta").path("content");
+		return content.isTextual() ? content.asText() : null;
+	}
+
+	/**
+	 * Text of one Anthropic message stream event; only content_block_delta events carry text
+	 */
+	String parseAnthropicChunk(String eventName, String data) {
+		if ("error".equals(eventName)) {
+			throw new IllegalStateException("Anthropic stream error: " + data);
+		}
+		if (!"content_block_delta".equals(eventName)) {
+			return null;
+		}
+		JsonNode chunk = readChunk(data);
+		JsonNode text = chunk != null ? chunk.path("delta").path("text") : null;
+		return text != null && text.isTextual() ? text.asText() : null;
+	}
+
+	private JsonNode readChunk(String data) {
+		if (data == null || data.isBlank()) {
+			return null;
+		}
+		try {
+			return objectMapper.readTree(data);
+		} catch (Exception e) {
+			log.debug("Skipping unparseable stream chunk: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	private Map<String, Object> openAIRequest(String prompt, int maxTokens) {
+		Map<String, Object> request = new HashMap<>();
+		request.put("model", "gpt-4o-mini"); // Using a cost-effective model
+		request.put("messages", List.of(
+			Map.of("role", "system", "content", "You are a calculator historian and expert. Provide detailed, accurate information about vintage calculators."),
+			Map.of("role", "user", "content", prompt)
+		));
+		request.put("max_tokens", maxTokens);
+		request.put("temperature", 0.7);
+		return request;
+	}
+
+	private Map<String, Object> anthropicRequest(String prompt, int maxTokens) {
+		Map<String, Object> request = new HashMap<>();
+		request.put("model", "claude-3-haiku-20240307");
+		request.put("max_tokens", maxTokens);
+		request.put("messages", List.of(
+			Map.of("role", "user", "content", prompt)
+		));
+		return request;
+	}
+
+	private AISearchResult callAnthropic(String prompt, int maxTokens) {
+		try {
+			Map<String, Object> request = anthropicRequest(prompt, maxTokens);
+
+			byte[] response = circuitBreakers.execute("anthropic", () -> anthropicClient.post()
+				.uri(anthropicBaseUrl + "/v1/messages")
 				.header("x-api-key", aiApiKey)
 				.header("anthropic-version", "2023-06-01")
 				.header("Content-Type", "application/json")
 				.bodyValue(request)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
 			return parseAnthropicResponse(response);
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Anthropic call: {}", e.getMessage());
+			return new AISearchResult();
 		} catch (Exception e) {
 			log.error("Error calling Anthropic API: {}", e.getMessage(), e);
 			return new AISearchResult();
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private AISearchResult parseOpenAIResponse(Map<String, Object> response) {
+	private AISearchResult parseOpenAIResponse(byte[] response) {
 		AISearchResult result = new AISearchResult();
 		if (response == null) {
 			log.warn("OpenAI response is null");
 			return result;
 		}
-		
-		if (response.containsKey("error")) {
-			log.error("OpenAI API error: {}", response.get("error"));
-			return result;
-		}
-		
-		if (!response.containsKey("choices")) {
-			log.warn("OpenAI response missing 'choices' key. Keys: {}", response.keySet());
+
+		ProviderResponseDecoder.Decoded<String> decoded = ProviderResponseDecoder.openAIContent(response);
+		if (decoded.error() != null) {
+			log.error("OpenAI API error: {}", decoded.error());
 			return result;
 		}
-
-		List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
-		if (choices == null || choices.isEmpty()) {
+		if (decoded.total() == 0) {
 			log.warn("OpenAI response has no choices");
 			return result;
 		}
 
-		Map<String, Object> firstChoice = choices.get(0);
-		Map<String, Object> message = (Map<String, Object>) firstChoice.get("message");
-		if (message != null) {
-			String content = (String) message.get("content");
-			if (content != null && !content.trim().isEmpty()) {
-				result.setContent(content);
-				log.debug("OpenAI content extracted, length: {}", content.length());
-			} else {
-				log.warn("OpenAI message content is null or empty");
-			}
+		String content = decoded.items().isEmpty() ? null : decoded.items().get(0);
+		if (content != null && !content.trim().isEmpty()) {
+			result.setContent(content);
+			log.debug("OpenAI content extracted, length: {}", content.length());
 		} else {
-			log.warn("OpenAI choice has no message");
+			log.warn("OpenAI message content is null or empty");
 		}
 
 		return result;
 	}
 
-	@SuppressWarnings("unchecked")
-	private AISearchResult parseAnthropicResponse(Map<String, Object> response) {
+	private AISearchResult parseAnthropicResponse(byte[] response) {
 		AISearchResult result = new AISearchResult();
-		if (response == null || !response.containsKey("content")) {
+		if (response == null) {
 			return result;
 		}
 
-		List<Map<String, Object>> content = (List<Map<String, Object>>) response.get("content");
-		if (content == null || content.isEmpty()) {
+		List<String> content = ProviderResponseDecoder.anthropicContent(response).items();
+		if (content.isEmpty()) {
 			return result;
 		}
 
-		Map<String, Object> firstContent = content.get(0);
-		result.setContent((String) firstContent.get("text"));
+		result.setContent(content.get(0));
 
 		return result;
 	}
 
+	/**
+	 * One calculator in a batched AI search
+	 */
+	public static class AIBatchItem {
+		private final String id;
+		private final String description;
+		private final List<String> labels;
+		private final List<String> labelDescriptions;
+		private final List<String> imageUrls;
+
+		public AIBatchItem(String id, String description, List<String> labels, List<String> labelDescriptions,
+				List<String> imageUrls) {
+			this.id = id;
+			this.description = description;
+			this.labels = labels;
+			this.labelDescriptions = labelDescriptions;
+			this.imageUrls = imageUrls;
+		}
+
+		public String getId() { return id; }
+		public String getDescription() { return description; }
+		public List<String> getLabels() { return labels; }
+		public List<String> getLabelDescriptions() { return labelDescriptions; }
+		public List<String> getImageUrls() { return imageUrls; }
+	}
+
 	public static class AISearchResult {
+		private static final Pattern LINK_PATTERN = Pattern.compile("https?://[^\\s]+");
+		// Longest text that may be the unfinished start of a link without a match yet ("https://")
+		private static final int LINK_PREFIX_LENGTH = "https://".length();
+
 		private String content;
 		private List<String> links = new ArrayList<>();
+		private StringBuilder streamed;
+		private int linkScanFrom;
+		private boolean incomplete;
 
+		/**
+		 * The answer; null for a stream that was cut off, whose text is only in {@link #getPartialContent()}
+		 */
 		public String getContent() {
-			return content;
+			return content != null || streamed == null || incomplete ? content : streamed.toString();
+		}
+
+		/**
+		 * Whether the answer stream failed or ended early. Such a result must not be stored or charged.
+		 */
+		public boolean isIncomplete() {
+			return incomplete;
+		}
+
+		/**
+		 * Text streamed before a stream was cut off, for showing to the user who watched it arrive
+		 */
+		public String getPartialContent() {
+			return incomplete && streamed != null ? streamed.toString() : null;
 		}
 
 		public void setContent(String content) {
 			this.content = content;
 			// Extract links from content
 			if (content != null) {
-				java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("https?://[^\\s]+");
-				java.util.regex.Matcher matcher = pattern.matcher(content);
+				Matcher matcher = LINK_PATTERN.matcher(content);
 				while (matcher.find()) {
 					links.add(matcher.group());
 				}
 			}
 		}
 
+		/**
+		 * Add streamed text. Links are extracted as soon as they are complete, scanning only the new text.
+		 */
+		void appendContent(String delta) {
+			if (streamed == null) {
+				streamed = new StringBuilder();
+			}
+			streamed.append(delta);
+			scanLinks(false);
+		}
+
+		/**
+		 * End of the stream: extract a link at the very end and fix the content
+		 */
+		void finishStreaming() {
+			if (streamed == null) {
+				return;
+			}
+			scanLinks(true);
+			content = streamed.toString();
+		}
+
+		/**
+		 * The stream failed or stopped before its end marker: drop the answer, keep the streamed text
+		 */
+		void abortStreaming() {
+			incomplete = true;
+			links.clear();
+		}
+
+		private void scanLinks(boolean complete) {
+			Matcher matcher = LINK_PATTERN.matcher(streamed).region(linkScanFrom, streamed.length());
+			while (matcher.find()) {
+				if (!complete && matcher.end() == streamed.length()) {
+					// The link may continue in the next chunk
+					linkScanFrom = matcher.start();
+					return;
+				}
+				links.add(matcher.group());
+				linkScanFrom = matcher.end();
+			}
+			if (!complete) {
+				linkScanFrom = Math.max(linkScanFrom, streamed.length() - LINK_PREFIX_LENGTH);
+			}
+		}
+
 		public List<String> getLinks() {
 			return links;
 		}
@@ -20,7 +20,8 @@ public class AdminService {
 	private final CalculatorRepository calculatorRepository;
 	private final ManufacturerRepository manufacturerRepository;
 	private final CalculatorImageRepository imageRepository;
-	private final FileStorageService fileStorageService;
+	private final ImageService imageService;
+	private final EnrichmentRecordService enrichmentRecordService;
 
 	public Page<Calculator> getAllCalculators(Pageable pageable) {
 		return calculatorRepository.findAll(pageable);
@@ -49,9 +50,8 @@ public class AdminService {
 		calculator.setSourceUrl(calculatorData.getSourceUrl());
 		calculator.setRawRowText(calculatorData.getRawRowText());
 		
-		// Update enrichment data fields
+		// Update enrichment description; enrichment results are stored by EnrichmentRecordService
 		calculator.setDescription(calculatorData.getDescription());
-		calculator.setEnrichedData(calculatorData.getEnrichedData());
 
 		if (calculatorData.getManufacturer() != null && calculatorData.getManufacturer().getId() != null) {
 			Optional<Manufacturer> manufacturerOpt = manufacturerRepository.findById(calculatorData.getManufacturer().getId());
@@ -73,7 +73,8 @@ public class AdminService {
 		// Delete associated images
 		imageRepository.findByCalculatorId(calculator.getId(), Pageable.unpaged())
 			.getContent()
-			.forEach(image -> fileStorageService.deleteFile(image.getImagePath()));
+			.forEach(imageService::releaseFiles);
+		enrichmentRecordService.delete(calculator.getId());
 
 		calculatorRepository.delete(calculator);
 		return true;
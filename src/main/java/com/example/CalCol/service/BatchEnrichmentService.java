@@ -0,0 +1,346 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.EnrichmentBatchClaim;
+import com.example.CalCol.entity.EnrichmentBatchState;
+import com.example.CalCol.repository.CalculatorRepository;
+import com.example.CalCol.repository.EnrichmentBatchClaimRepository;
+import com.example.CalCol.repository.EnrichmentBatchStateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Background job that enriches the whole catalog, a few calculators at a time.
+ * Throughput is paced to the remaining monthly quota, progress is checkpointed in the
+ * database and work is claimed per calculator so several nodes can run the job at once.
+ * The AI section of the claimed calculators is fetched in batched prompts, several calculators per call.
+ */
+@Service
+@Slf4j
+public class BatchEnrichmentService {
+
+	/**
+	 * Provider calls made by one enrichment (web + image search, plus Brave AI for Brave).
+	 * The AI call is shared by a whole batch, see {@link #callsPerEnrichment(String)}.
+	 */
+	private static final Map<String, Integer> CALLS_PER_ENRICHMENT = Map.of(
+		"google", 2,
+		"bing", 2,
+		"brave", 3,
+		"ai", 1
+	);
+
+	private static final String BATCH_USERNAME = "batch-enrichment";
+
+	private final EnrichmentService enrichmentService;
+	private final QuotaService quotaService;
+	private final CalculatorRepository calculatorRepository;
+	private final EnrichmentBatchClaimRepository claimRepository;
+	private final EnrichmentBatchStateRepository stateRepository;
+	private final String nodeId;
+
+	@Value("${app.enrichment.batch.enabled:false}")
+	private boolean enabled;
+
+	@Value("${app.enrichment.batch.interval-ms:300000}")
+	private long intervalMs;
+
+	@Value("${app.enrichment.batch.max-per-run:10}")
+	private int maxPerRun;
+
+	@Value("${app.enrichment.batch.quota-share:0.8}")
+	private double quotaShare;
+
+	@Value("${app.enrichment.batch.refresh-after-days:90}")
+	private int refreshAfterDays;
+
+	@Value("${app.enrichment.batch.claim-lease-minutes:30}")
+	private int claimLeaseMinutes;
+
+	@Value("${app.enrichment.batch.retry-after-hours:24}")
+	private int retryAfterHours;
+
+	// Fractional budget carried between runs so small quotas still make progress
+	private double budgetCarry = 0.0;
+
+	public BatchEnrichmentService(EnrichmentService enrichmentService, QuotaService quotaService,
+			CalculatorRepository calculatorRepository, EnrichmentBatchClaimRepository claimRepository,
+			EnrichmentBatchStateRepository stateRepository, @Value("${app.node-id:}") String nodeId) {
+		this.enrichmentService = enrichmentService;
+		this.quotaService = quotaService;
+		this.calculatorRepository = calculatorRepository;
+		this.claimRepository = claimRepository;
+		this.stateRepository = stateRepository;
+		this.nodeId = nodeId != null && !nodeId.isBlank() ? nodeId : defaultNodeId();
+	}
+
+	@Scheduled(fixedDelayString = "${app.enrichment.batch.interval-ms:300000}",
+			initialDelayString = "${app.enrichment.batch.initial-delay-ms:60000}")
+	public void runScheduledBatch() {
+		if (!enabled) {
+			return;
+		}
+		if (getState().getPaused()) {
+			log.debug("Batch enrichment is paused");
+			return;
+		}
+		runBatch();
+	}
+
+	/**
+	 * Enrich as many calculators as the current quota budget allows
+	 * @return Number of calculators processed in this run
+	 */
+	public synchronized int runBatch() {
+		int budget = computeRunBudget();
+		if (budget == 0) {
+			log.debug("Batch enrichment: no quota budget available for this run");
+			return 0;
+		}
+
+		int processed = 0;
+		int failed = 0;
+		while (processed + failed < budget) {
+			List<Calculator> claimed = claimGroup(Math.min(budget - processed - failed, enrichmentService.getAIBatchSize()));
+			if (claimed.isEmpty()) {
+				break;
+			}
+			Map<Long, AISearchService.AISearchResult> aiResults = enrichmentService.searchAIBatch(claimed);
+			for (Calculator calculator : claimed) {
+				if (enrichClaimed(calculator, aiResults.get(calculator.getId()))) {
+					processed++;
+				} else {
+					failed++;
+				}
+			}
+			if (getState().getPaused()) {
+				log.info("Batch enrichment paused during run");
+				break;
+			}
+		}
+
+		if (processed + failed > 0) {
+			stateRepository.recordRun(EnrichmentBatchState.SINGLETON_ID, processed, failed, LocalDateTime.now());
+			log.info("Batch enrichment run on node {}: {} enriched, {} failed (budget {})",
+				nodeId, processed, failed, budget);
+		}
+		return processed + failed;
+	}
+
+	/**
+	 * Number of calculators this run may enrich, spreading each provider's remaining monthly
+	 * quota evenly over the runs left in the month
+	 */
+	int computeRunBudget() {
+		long runsLeft = Math.max(1, secondsUntilMonthEnd() / Math.max(1, intervalMs / 1000));
+
+		double allowance = Double.MAX_VALUE;
+		for (Map.Entry<String, Integer> entry : CALLS_PER_ENRICHMENT.entrySet()) {
+			double usable = quotaService.getRemainingQuota(entry.getKey()) * quotaShare;
+			allowance = Math.min(allowance, usable / (callsPerEnrichment(entry.getKey()) * runsLeft));
+		}
+
+		budgetCarry = Math.min(budgetCarry + allowance, maxPerRun);
+		int budget = (int) Math.floor(budgetCarry);
+		budgetCarry -= budget;
+		return budget;
+	}
+
+	/**
+	 * Provider calls one enrichment costs on average; one AI call covers a full AI batch
+	 */
+	private double callsPerEnrichment(String provider) {
+		int calls = CALLS_PER_ENRICHMENT.get(provider);
+		return "ai".equals(provider) ? calls / (double) enrichmentService.getAIBatchSize() : calls;
+	}
+
+	public void pause(String username) {
+		EnrichmentBatchState state = getState();
+		state.setPaused(true);
+		state.setPausedBy(username);
+		state.setUpdatedAt(LocalDateTime.now());
+		stateRepository.save(state);
+		log.info("Batch enrichment paused by {}", username);
+	}
+
+	public void resume(String username) {
+		EnrichmentBatchState state = getState();
+		state.setPaused(false);
+		state.setPausedBy(null);
+		state.setUpdatedAt(LocalDateTime.now());
+		stateRepository.save(state);
+		log.info("Batch enrichment resumed by {}", username);
+	}
+
+	/**
+	 * Snapshot of the job state for the admin dashboard
+	 */
+	public BatchStatus getStatus() {
+		EnrichmentBatchState state = getState();
+		BatchStatus status = new BatchStatus();
+		status.setEnabled(enabled);
+		status.setPaused(state.getPaused());
+		status.setPausedBy(state.getPausedBy());
+		status.setProcessedCount(state.getProcessedCount());
+		status.setFailedCount(state.getFailedCount());
+		status.setLastRunAt(state.getLastRunAt());
+		status.setInProgress(claimRepository.countByStatus(EnrichmentBatchClaim.STATUS_CLAIMED));
+		status.setNodeId(nodeId);
+		return status;
+	}
+
+	private EnrichmentBatchState getState() {
+		return stateRepository.findById(EnrichmentBatchState.SINGLETON_ID).orElseGet(() -> {
+			try {
+				return stateRepository.saveAndFlush(new EnrichmentBatchState());
+			} catch (DataIntegrityViolationException e) {
+				// Another node created the row first
+				return stateRepository.findById(EnrichmentBatchState.SINGLETON_ID).orElseThrow();
+			}
+		});
+	}
+
+	/**
+	 * Claim up to {@code size} calculators. Calculators that no longer exist are completed right away.
+	 */
+	private List<Calculator> claimGroup(int size) {
+		List<Calculator> claimed = new ArrayList<>();
+		while (claimed.size() < size) {
+			Optional<Long> next = claimNext();
+			if (next.isEmpty()) {
+				break;
+			}
+			Optional<Calculator> calculatorOpt = calculatorRepository.findByIdWithManufacturer(next.get());
+			if (calculatorOpt.isPresent()) {
+				claimed.add(calculatorOpt.get());
+			} else {
+				claimRepository.complete(next.get(), nodeId, EnrichmentBatchClaim.STATUS_DONE,
+					"Calculator no longer exists", LocalDateTime.now());
+			}
+		}
+		return claimed;
+	}
+
+	private Optional<Long> claimNext() {
+		LocalDateTime now = LocalDateTime.now();
+		List<Long> candidates = claimRepository.findCandidateCalculatorIds(
+			now.minusDays(refreshAfterDays), now.minusMinutes(claimLeaseMinutes),
+			now.minusHours(retryAfterHours), 20);
+
+		for (Long calculatorId : candidates) {
+			if (tryClaim(calculatorId, now)) {
+				return Optional.of(calculatorId);
+			}
+		}
+		return Optional.empty();
+	}
+
+	private boolean tryClaim(Long calculatorId, LocalDateTime now) {
+		if (!claimRepository.existsByCalculatorId(calculatorId)) {
+			try {
+				EnrichmentBatchClaim claim = new EnrichmentBatchClaim();
+				claim.setCalculatorId(calculatorId);
+				claim.setStatus(EnrichmentBatchClaim.STATUS_CLAIMED);
+				claim.setNodeId(nodeId);
+				claim.setClaimedAt(now);
+				claim.setAttempts(1);
+				claimRepository.saveAndFlush(claim);
+				return true;
+			} catch (DataIntegrityViolationException e) {
+				// Another node inserted the claim first; fall through to a takeover attempt
+				log.debug("Claim for calculator {} was taken by another node", calculatorId);
+			}
+		}
+		return claimRepository.reclaim(calculatorId, nodeId, now, now.minusDays(refreshAfterDays),
+			now.minusMinutes(claimLeaseMinutes), now.minusHours(retryAfterHours)) == 1;
+	}
+
+	private boolean enrichClaimed(Calculator calculator, AISearchService.AISearchResult aiContent) {
+		Long calculatorId = calculator.getId();
+		try {
+			log.info("Batch enriching calculator {}: {} {}", calculatorId,
+				calculator.getManufacturer().getName(), calculator.getModel());
+			SocialMediaPostService.EnrichmentData enrichment = enrichmentService.enrichCalculator(calculator, aiContent);
+			EnrichmentService.EnrichmentSaveResult result =
+				enrichmentService.saveEnrichment(calculator, enrichment, BATCH_USERNAME);
+
+			if (!result.isSaved()) {
+				// Every provider failed or was skipped: retry after retry-after-hours rather than
+				// treating the calculator as enriched until refresh-after-days
+				log.warn("Batch enrichment retrieved nothing for calculator {}", calculatorId);
+				claimRepository.complete(calculatorId, nodeId, EnrichmentBatchClaim.STATUS_FAILED,
+					"No enrichment data retrieved", LocalDateTime.now());
+				return false;
+			}
+			claimRepository.complete(calculatorId, nodeId, EnrichmentBatchClaim.STATUS_DONE, null, LocalDateTime.now());
+			return true;
+		} catch (Exception e) {
+			log.error("Batch enrichment failed for calculator {}: {}", calculatorId, e.getMessage(), e);
+			String error = e.getMessage() != null && e.getMessage().length() > 1000
+				? e.getMessage().substring(0, 1000) : e.getMessage();
+			claimRepository.complete(calculatorId, nodeId, EnrichmentBatchClaim.STATUS_FAILED, error,
+				LocalDateTime.now());
+			return false;
+		}
+	}
+
+	private static long secondsUntilMonthEnd() {
+		LocalDateTime now = LocalDateTime.now();
+		LocalDateTime monthEnd = YearMonth.from(now).plusMonths(1).atDay(1).atStartOfDay();
+		return Duration.between(now, monthEnd).getSeconds();
+	}
+
+	private static String defaultNodeId() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (Exception e) {
+			host = "node";
+		}
+		return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+	}
+
+	/**
+	 * Batch enrichment status information
+	 */
+	public static class BatchStatus {
+		private boolean enabled;
+		private boolean paused;
+		private String pausedBy;
+		private long processedCount;
+		private long failedCount;
+		private long inProgress;
+		private LocalDateTime lastRunAt;
+		private String nodeId;
+
+		public boolean isEnabled() { return enabled; }
+		public void setEnabled(boolean enabled) { this.enabled = enabled; }
+		public boolean isPaused() { return paused; }
+		public void setPaused(boolean paused) { this.paused = paused; }
+		public String getPausedBy() { return pausedBy; }
+		public void setPausedBy(String pausedBy) { this.pausedBy = pausedBy; }
+		public long getProcessedCount() { return processedCount; }
+		public void setProcessedCount(long processedCount) { this.processedCount = processedCount; }
+		public long getFailedCount() { return failedCount; }
+		public void setFailedCount(long failedCount) { this.failedCount = failedCount; }
+		public long getInProgress() { return inProgress; }
+		public void setInProgress(long inProgress) { this.inProgress = inProgress; }
+		public LocalDateTime getLastRunAt() { return lastRunAt; }
+		public void setLastRunAt(LocalDateTime lastRunAt) { this.lastRunAt = lastRunAt; }
+		public String getNodeId() { return nodeId; }
+		public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+	}
+}
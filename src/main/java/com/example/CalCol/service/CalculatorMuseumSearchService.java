@@ -1,9 +1,19 @@
 package com.example.CalCol.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,98 +24,172 @@ import java.util.List;
 @Slf4j
 public class CalculatorMuseumSearchService {
 
-	private final WebClient webClient;
-	
-	private static final List<String> MUSEUM_SITES = List.of(
-		"https://calculator-museum.nl/",
-		"http://www.calcuseum.com/",
-		"https://www.hpmuseum.org/",
-		"http://www.vintagecalculators.com/",
-		"https://www.calculators.de/",
-		"http://www.datamath.org/",
-		"http://www.arithmomuseum.com/",
-		"https://www.oldcalculatormuseum.com/"
+	/**
+	 * Museum sites with the search page to query. Sites without a known search page are
+	 * scanned from their homepage.
+	 */
+	static final List<SiteAdapter> SITE_ADAPTERS = List.of(
+		new SiteAdapter("https://calculator-museum.nl/", "?s="),
+		new SiteAdapter("http://www.calcuseum.com/", null),
+		new SiteAdapter("https://www.hpmuseum.org/", "search.php?q="),
+		new SiteAdapter("http://www.vintagecalculators.com/", null),
+		new SiteAdapter("https://www.calculators.de/", null),
+		new SiteAdapter("http://www.datamath.org/", null),
+		new SiteAdapter("http://www.arithmomuseum.com/", null),
+		new SiteAdapter("https://www.oldcalculatormuseum.com/", null)
 	);
 
-	public CalculatorMuseumSearchService() {
-		this.webClient = WebClient.builder()
-			.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024)) // 10MB
-			.build();
+	static final List<String> MUSEUM_SITES = SITE_ADAPTERS.stream().map(SiteAdapter::siteUrl).toList();
+
+	private static final int SNIPPET_CONTEXT = 100;
+
+	private final WebClient webClient;
+	private final MuseumIndex museumIndex;
+	private final ProviderCircuitBreakers circuitBreakers;
+	private final List<SiteAdapter> siteAdapters;
+	private final Duration siteTimeout;
+	private final int maxScanBytes;
+
+	@Autowired
+	public CalculatorMuseumSearchService(MuseumIndex museumIndex, OutboundHttpClients httpClients,
+			ProviderCircuitBreakers circuitBreakers,
+			@Value("${app.museum.search.site-timeout-ms:5000}") long siteTimeoutMs,
+			@Value("${app.museum.search.max-scan-bytes:2097152}") int maxScanBytes) {
+		this(museumIndex, httpClients, circuitBreakers, rebase(SITE_ADAPTERS, httpClients.baseUrl("museum", null)),
+			Duration.ofMillis(siteTimeoutMs), maxScanBytes);
+	}
+
+	CalculatorMuseumSearchService(MuseumIndex museumIndex, OutboundHttpClients httpClients,
+			ProviderCircuitBreakers circuitBreakers, List<SiteAdapter> siteAdapters, Duration siteTimeout,
+			int maxScanBytes) {
+		this.museumIndex = museumIndex;
+		this.circuitBreakers = circuitBreakers;
+		this.siteAdapters = siteAdapters;
+		this.siteTimeout = siteTimeout;
+		this.maxScanBytes = maxScanBytes;
+		this.webClient = httpClients.client("museum");
 	}
 
 	/**
-	 * Search calculator museum sites for information about a calculator
+	 * Search calculator museum sites for information about a calculator.
+	 * Sites that have been mirrored by {@link MuseumSiteCrawler} are answered from the local index;
+	 * the remaining sites are searched live, all at once.
 	 */
 	public List<MuseumSearchResult> searchMuseums(String manufacturer, String model) {
 		List<MuseumSearchResult> results = new ArrayList<>();
 		String searchQuery = (manufacturer + " " + model).trim();
-
-		for (String site : MUSEUM_SITES) {
-			try {
-				MuseumSearchResult result = searchSite(site, searchQuery);
-				if (result != null && result.getFound()) {
-					results.add(result);
-				}
-			} catch (Exception e) {
-				log.warn("Error searching museum site {}: {}", site, e.getMessage());
-			}
+		if (searchQuery.isEmpty()) {
+			return results;
 		}
 
-		return results;
-	}
+		results.addAll(museumIndex.search(searchQuery));
 
-	private MuseumSearchResult searchSite(String baseUrl, String query) {
+		List<SiteAdapter> liveSites = siteAdapters.stream()
+			.filter(adapter -> !museumIndex.hasSite(adapter.siteUrl()))
+			.toList();
+		if (liveSites.isEmpty()) {
+			return results;
+		}
+
+		// Each site is bounded on its own, also while its circuit breaker decides, so a hanging
+		// site only loses its own result and never the index hits or the other sites
 		try {
-			// Try to search the site - this is a simplified approach
-			// In a real implementation, you might use site-specific search APIs or scrape search results
-			String searchUrl = buildSearchUrl(baseUrl, query);
-			
-			String html = webClient.get()
-				.uri(searchUrl)
-				.retrieve()
-				.bodyToMono(String.class)
-				.timeout(java.time.Duration.ofSeconds(5))
+			List<MuseumSearchResult> liveResults = Flux.fromIterable(liveSites)
+				.flatMapSequential(adapter -> searchSite(adapter, searchQuery)
+					.timeout(siteTimeout.plusSeconds(1))
+					.onErrorResume(e -> {
+						log.debug("Gave up on site {}: {}", adapter.siteUrl(), e.getMessage());
+						return Mono.empty();
+					}), liveSites.size())
+				.filter(MuseumSearchResult::getFound)
+				.collectList()
 				.block();
+			if (liveResults != null) {
+				results.addAll(liveResults);
+			}
+		} catch (RuntimeException e) {
+			log.warn("Live museum search for {} failed, answering from the index only: {}", searchQuery, e.getMessage());
+		}
+		return results;
+	}
 
-			MuseumSearchResult result = new MuseumSearchResult();
-			result.setSiteUrl(baseUrl);
-			result.setSearchUrl(searchUrl);
-			
-			// Simple check if the calculator model/manufacturer appears in the page
-			String lowerQuery = query.toLowerCase();
-			String lowerHtml = html.toLowerCase();
-			
-			if (lowerHtml.contains(lowerQuery)) {
-				result.setFound(true);
-				// Extract a snippet around the match
-				int index = lowerHtml.indexOf(lowerQuery);
-				int start = Math.max(0, index - 100);
-				int end = Math.min(html.length(), index + query.length() + 100);
-				result.setSnippet(html.substring(start, end).replaceAll("\\s+", " ").trim());
-			} else {
+	/**
+	 * Stream a site's search page through a {@link StreamingTextMatcher}. The response is
+	 * cancelled as soon as the query has been found or the byte cap is reached. Each site has
+	 * its own circuit breaker, so an unreachable museum is skipped until it recovers.
+	 */
+	Mono<MuseumSearchResult> searchSite(SiteAdapter adapter, String query) {
+		String searchUrl = adapter.searchUrl(query);
+		StreamingTextMatcher matcher = new StreamingTextMatcher(query, maxScanBytes, SNIPPET_CONTEXT);
+
+		Mono<MuseumSearchResult> scan = webClient.get()
+			.uri(searchUrl)
+			.retrieve()
+			.bodyToFlux(DataBuffer.class)
+			.map(buffer -> {
+				try {
+					return matcher.feed(buffer);
+				} finally {
+					DataBufferUtils.release(buffer);
+				}
+			})
+			.takeUntil(done -> done)
+			.then(Mono.fromSupplier(() -> {
+				MuseumSearchResult result = new MuseumSearchResult();
+				result.setSiteUrl(adapter.siteUrl());
+				result.setSearchUrl(searchUrl);
+				result.setFound(matcher.isFound());
+				result.setSnippet(matcher.getSnippet());
+				return result;
+			}))
+			.timeout(siteTimeout);
+
+		return circuitBreakers.guard(adapter.provider(), scan)
+			.onErrorResume(e -> {
+				log.debug("Could not search site {}: {}", adapter.siteUrl(), e.getMessage());
+				MuseumSearchResult result = new MuseumSearchResult();
+				result.setSiteUrl(adapter.siteUrl());
 				result.setFound(false);
-			}
+				return Mono.just(result);
+			});
+	}
 
-			return result;
-		} catch (Exception e) {
-			log.debug("Could not search site {}: {}", baseUrl, e.getMessage());
-			MuseumSearchResult result = new MuseumSearchResult();
-			result.setSiteUrl(baseUrl);
-			result.setFound(false);
-			return result;
+	/**
+	 * Fetch the sites from {@code <baseUrl>/museum/<host>/} instead, e.g. from a stand-in server
+	 * @param baseUrl Configured {@code app.http.museum.base-url}; null keeps the real sites
+	 */
+	static List<SiteAdapter> rebase(List<SiteAdapter> adapters, String baseUrl) {
+		if (baseUrl == null) {
+			return adapters;
 		}
+		return adapters.stream()
+			.map(adapter -> new SiteAdapter(adapter.siteUrl(), adapter.searchPath(),
+				baseUrl + "/museum/" + URI.create(adapter.siteUrl()).getHost() + "/"))
+			.toList();
 	}
 
-	private String buildSearchUrl(String baseUrl, String query) {
-		// Different sites have different search URL patterns
-		// This is a simplified approach - you might need to customize per site
-		if (baseUrl.contains("calculator-museum.nl")) {
-			return baseUrl + "?s=" + java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8);
-		} else if (baseUrl.contains("hpmuseum.org")) {
-			return baseUrl + "search.php?q=" + java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8);
-		} else {
-			// For other sites, try to find the calculator page directly
-			return baseUrl;
+	/**
+	 * How to query one museum site
+	 * @param siteUrl Site root
+	 * @param searchPath Search path relative to the root, ending where the encoded query goes;
+	 *                   null to scan the homepage
+	 * @param fetchRoot Root the pages are fetched from; the site root unless rebased
+	 */
+	record SiteAdapter(String siteUrl, String searchPath, String fetchRoot) {
+
+		SiteAdapter(String siteUrl, String searchPath) {
+			this(siteUrl, searchPath, siteUrl);
+		}
+
+		String provider() {
+			return "museum-" + URI.create(siteUrl).getHost();
+		}
+
+		String searchUrl(String query) {
+			if (searchPath == null) {
+				return fetchRoot;
+			}
+			return fetchRoot + searchPath + URLEncoder.encode(query, StandardCharsets.UTF_8);
 		}
 	}
 
@@ -5,6 +5,7 @@ import com.example.CalCol.entity.CalculatorImage;
 import com.example.CalCol.entity.CalculatorLink;
 import com.example.CalCol.entity.Manufacturer;
 import com.example.CalCol.entity.UserCalculatorCollection;
+import com.example.CalCol.repository.CalculatorAttributesRepository;
 import com.example.CalCol.repository.CalculatorImageRepository;
 import com.example.CalCol.repository.CalculatorLinkRepository;
 import com.example.CalCol.repository.CalculatorRepository;
@@ -27,6 +28,7 @@ public class CalculatorService {
 	private final UserCalculatorCollectionRepository userCollectionRepository;
 	private final CalculatorImageRepository calculatorImageRepository;
 	private final CalculatorLinkRepository calculatorLinkRepository;
+	private final CalculatorAttributesRepository calculatorAttributesRepository;
 
 	public Page<Calculator> getAllCalculators(Pageable pageable) {
 		return calculatorRepository.findAll(pageable);
@@ -43,6 +45,28 @@ public class CalculatorService {
 		return calculatorRepository.findByManufacturerId(manufacturerId, pageable);
 	}
 
+	/**
+	 * Calculators matching the search text, manufacturer and extracted attributes; null filters are ignored.
+	 * Text values are matched against the SpecExtractionEngine constants, case-insensitively.
+	 * @param search Text in the model or manufacturer name
+	 * @param yearBefore Only calculators first sold (or introduced) before this year
+	 */
+	public Page<Calculator> getCalculatorsByAttributes(String search, Long manufacturerId, String displayType,
+			Integer minDigits, Integer maxDigits, String powerSource, String logic, Integer yearFrom, Integer yearBefore,
+			Pageable pageable) {
+		String searchText = search == null || search.trim().isEmpty() ? null : search.trim();
+		return calculatorAttributesRepository.findCalculatorsByAttributes(searchText, manufacturerId,
+			normalizeAttribute(displayType), minDigits, maxDigits, normalizeAttribute(powerSource),
+			normalizeAttribute(logic), yearFrom, yearBefore, pageable);
+	}
+
+	private static String normalizeAttribute(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		return value.trim().toUpperCase(java.util.Locale.ROOT).replace(' ', '_');
+	}
+
 	public Optional<Calculator> getCalculatorById(Long id) {
 		return calculatorRepository.findById(id);
 	}
@@ -61,6 +61,10 @@ public class DtoMapperService {
 		dto.setId(image.getId());
 		dto.setImagePath(image.getImagePath());
 		dto.setImageUrl(buildImageUrl(image.getImagePath()));
+		dto.setThumbUrl(buildImageUrl(image.pathFor("thumb")));
+		dto.setCardUrl(buildImageUrl(image.pathFor("card")));
+		dto.setFullUrl(buildImageUrl(image.pathFor("full")));
+		dto.setBytesSaved(image.getBytesSaved());
 		dto.setUploadedBy(image.getUploadedBy());
 		dto.setIsProposal(image.getIsProposal());
 		dto.setIsApproved(image.getIsApproved());
@@ -133,6 +137,7 @@ public class DtoMapperService {
 		dto.setTitle(result.getTitle());
 		dto.setUrl(result.getUrl());
 		dto.setSnippet(result.getSnippet());
+		dto.setProviders(result.getProviders());
 		return dto;
 	}
 
@@ -0,0 +1,296 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.repository.CalculatorRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs calculator enrichment as a background job.
+ * The provider sections (web, images, Brave AI, museums, AI) run in parallel and each result is
+ * pushed to subscribers as a Server-Sent Event as soon as it arrives. A section that fails sends a
+ * "sectionError" event instead. When every section is done the merged enrichment is saved and a
+ * final "complete" event is sent, listing the failed sections; the job is PARTIAL if some sections
+ * failed and FAILED (with an "error" event) if all of them did.
+ * The AI answer is streamed: its text is sent as "aiDelta" events while it is generated.
+ */
+@Service
+@Slf4j
+public class EnrichmentJobService {
+
+	public static final String STATUS_RUNNING = "RUNNING";
+	public static final String STATUS_COMPLETED = "COMPLETED";
+	public static final String STATUS_PARTIAL = "PARTIAL";
+	public static final String STATUS_FAILED = "FAILED";
+
+	private final EnrichmentService enrichmentService;
+	private final CalculatorRepository calculatorRepository;
+	private final ExecutorService executor;
+	private final Map<String, EnrichmentJob> jobs = new ConcurrentHashMap<>();
+	private final Map<Long, String> runningByCalculator = new ConcurrentHashMap<>();
+
+	@Value("${app.enrichment.jobs.retention-minutes:30}")
+	private long retentionMinutes;
+
+	@Value("${app.enrichment.jobs.sse-timeout-ms:300000}")
+	private long sseTimeoutMs;
+
+	public EnrichmentJobService(EnrichmentService enrichmentService, CalculatorRepository calculatorRepository,
+			@Value("${app.enrichment.jobs.threads:10}") int threads) {
+		this.enrichmentService = enrichmentService;
+		this.calculatorRepository = calculatorRepository;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "enrichment-job-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Start enriching a calculator in the background. If a job for the calculator is already
+	 * running, that job is returned instead of starting another.
+	 * @return The job, or empty if the calculator does not exist
+	 */
+	public Optional<EnrichmentJob> startJob(Long calculatorId, String username) {
+		Optional<Calculator> calculatorOpt = calculatorRepository.findByIdWithManufacturer(calculatorId);
+		if (calculatorOpt.isEmpty()) {
+			return Optional.empty();
+		}
+
+		synchronized (runningByCalculator) {
+			String runningJobId = runningByCalculator.get(calculatorId);
+			EnrichmentJob running = runningJobId != null ? jobs.get(runningJobId) : null;
+			// A job that just finished is still registered until its completion handler returns
+			if (running != null && running.getFinishedAt() == null) {
+				log.info("Enrichment for calculator {} already running as job {}", calculatorId, runningJobId);
+				return Optional.of(running);
+			}
+			EnrichmentJob job = new EnrichmentJob(UUID.randomUUID().toString(), calculatorId, username);
+			jobs.put(job.getId(), job);
+			runningByCalculator.put(calculatorId, job.getId());
+			run(job, calculatorOpt.get());
+			return Optional.of(job);
+		}
+	}
+
+	public Optional<EnrichmentJob> getJob(String jobId) {
+		return Optional.ofNullable(jobs.get(jobId));
+	}
+
+	/**
+	 * Subscribe to a job's events. Events that happened before subscribing are replayed first.
+	 */
+	public SseEmitter subscribe(EnrichmentJob job) {
+		SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+		job.addSubscriber(emitter);
+		return emitter;
+	}
+
+	@Scheduled(fixedDelay = 60000)
+	public void removeExpiredJobs() {
+		Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+		jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void run(EnrichmentJob job, Calculator calculator) {
+		log.info("Starting enrichment job {} for calculator {}: {} {}", job.getId(), calculator.getId(),
+			calculator.getManufacturer().getName(), calculator.getModel());
+		SocialMediaPostService.EnrichmentData enrichment = new SocialMediaPostService.EnrichmentData();
+
+		CompletableFuture<?>[] sections = {
+			// The fetch variants throw on provider failure, so failed sections are reported as such
+			section(job, "web", calculator, enrichmentService::fetchWeb, enrichment::setWebResults),
+			section(job, "images", calculator, enrichmentService::fetchImages, enrichment::setImageResults),
+			section(job, "braveAi", calculator, enrichmentService::fetchBraveAI, enrichment::setBraveAIResult),
+			section(job, "museums", calculator, enrichmentService::fetchMuseums, enrichment::setMuseumResults),
+			section(job, "ai", calculator,
+				calc -> enrichmentService.fetchAI(calc, delta -> job.stream("aiDelta", Map.of("text", delta))),
+				// A cut-off answer is shown to subscribers as far as it got, but not saved
+				result -> enrichment.setAiContent(result != null && !result.isIncomplete() ? result : null))
+		};
+
+		CompletableFuture.allOf(sections).whenCompleteAsync((ignored, error) -> {
+			try {
+				List<String> failedSections = job.getFailedSections();
+				if (error != null || failedSections.size() == sections.length) {
+					String message = error != null ? String.valueOf(error.getMessage()) : "every section failed";
+					log.error("Enrichment job {} failed: {}", job.getId(), message);
+					job.finish(STATUS_FAILED, "error", Map.of("message", message, "failedSections", failedSections));
+					return;
+				}
+				// allOf completing makes every section's merge visible here
+				EnrichmentService.EnrichmentSaveResult saveResult =
+					enrichmentService.saveEnrichment(calculator, enrichment, job.getUsername());
+				Map<String, Object> summary = new LinkedHashMap<>();
+				summary.put("saved", saveResult.isSaved());
+				summary.put("descriptionSaved", saveResult.isDescriptionSaved());
+				summary.put("enrichedDataSaved", saveResult.isEnrichedDataSaved());
+				summary.put("linksAdded", saveResult.getLinksAdded());
+				summary.put("failedSections", failedSections);
+				job.finish(failedSections.isEmpty() ? STATUS_COMPLETED : STATUS_PARTIAL, "complete", summary);
+				log.info("Enrichment job {} completed: saved={}, links added={}, failed sections={}", job.getId(),
+					saveResult.isSaved(), saveResult.getLinksAdded(), failedSections);
+			} catch (Exception e) {
+				log.error("Enrichment job {} failed to save: {}", job.getId(), e.getMessage(), e);
+				job.finish(STATUS_FAILED, "error", Map.of("message", String.valueOf(e.getMessage())));
+			} finally {
+				runningByCalculator.remove(job.getCalculatorId(), job.getId());
+			}
+		}, executor);
+	}
+
+	/**
+	 * Run one section; a failure is published as a "sectionError" event and recorded on the job,
+	 * so the returned future always completes normally
+	 */
+	private <T> CompletableFuture<Void> section(EnrichmentJob job, String name, Calculator calculator,
+			Function<Calculator, T> search, Consumer<T> merge) {
+		return CompletableFuture.supplyAsync(() -> search.apply(calculator), executor)
+			.thenAccept(result -> {
+				merge.accept(result);
+				job.publish(name, result);
+			})
+			.exceptionally(error -> {
+				Throwable cause = error instanceof CompletionException && error.getCause() != null
+					? error.getCause() : error;
+				log.error("Enrichment job {}: section {} failed: {}", job.getId(), name, cause.getMessage(), cause);
+				job.failSection(name, String.valueOf(cause.getMessage()));
+				return null;
+			});
+	}
+
+	/**
+	 * A running or finished enrichment job with its event history
+	 */
+	public static class EnrichmentJob {
+		private final String id;
+		private final Long calculatorId;
+		private final String username;
+		private final Instant startedAt = Instant.now();
+		private final List<SectionEvent> events = new ArrayList<>();
+		private final List<SseEmitter> subscribers = new ArrayList<>();
+		private final List<String> failedSections = new ArrayList<>();
+		private volatile String status = STATUS_RUNNING;
+		private volatile Instant finishedAt;
+
+		EnrichmentJob(String id, Long calculatorId, String username) {
+			this.id = id;
+			this.calculatorId = calculatorId;
+			this.username = username;
+		}
+
+		public String getId() { return id; }
+		public Long getCalculatorId() { return calculatorId; }
+		public String getUsername() { return username; }
+		public Instant getStartedAt() { return startedAt; }
+		public String getStatus() { return status; }
+		public Instant getFinishedAt() { return finishedAt; }
+
+		/**
+		 * Names of the sections that have reported so far
+		 */
+		public synchronized List<String> getCompletedSections() {
+			return events.stream().map(SectionEvent::name).filter(name -> !"sectionError".equals(name)).toList();
+		}
+
+		/**
+		 * Names of the sections that failed so far
+		 */
+		public synchronized List<String> getFailedSections() {
+			return List.copyOf(failedSections);
+		}
+
+		synchronized void failSection(String name, String message) {
+			failedSections.add(name);
+			publish("sectionError", Map.of("section", name, "message", message));
+		}
+
+		synchronized void publish(String name, Object data) {
+			events.add(new SectionEvent(name, data));
+			stream(name, data);
+		}
+
+		/**
+		 * Send a transient event to current subscribers without adding it to the replayed history
+		 */
+		synchronized void stream(String name, Object data) {
+			SectionEvent event = new SectionEvent(name, data);
+			for (SseEmitter emitter : new ArrayList<>(subscribers)) {
+				if (!send(emitter, event)) {
+					subscribers.remove(emitter);
+				}
+			}
+		}
+
+		synchronized void finish(String finalStatus, String name, Object data) {
+			publish(name, data);
+			status = finalStatus;
+			finishedAt = Instant.now();
+			subscribers.forEach(SseEmitter::complete);
+			subscribers.clear();
+		}
+
+		synchronized void addSubscriber(SseEmitter emitter) {
+			for (SectionEvent event : events) {
+				if (!send(emitter, event)) {
+					return;
+				}
+			}
+			if (finishedAt != null) {
+				emitter.complete();
+				return;
+			}
+			subscribers.add(emitter);
+			emitter.onCompletion(() -> removeSubscriber(emitter));
+			emitter.onTimeout(() -> removeSubscriber(emitter));
+			emitter.onError(e -> removeSubscriber(emitter));
+		}
+
+		private synchronized void removeSubscriber(SseEmitter emitter) {
+			subscribers.remove(emitter);
+		}
+
+		private static boolean send(SseEmitter emitter, SectionEvent event) {
+			try {
+				emitter.send(SseEmitter.event().name(event.name()).data(
+					event.data() != null ? event.data() : Map.of(), MediaType.APPLICATION_JSON));
+				return true;
+			} catch (IOException | IllegalStateException e) {
+				// Client went away; the container completes the emitter
+				return false;
+			}
+		}
+	}
+
+	private record SectionEvent(String name, Object data) {
+	}
+}
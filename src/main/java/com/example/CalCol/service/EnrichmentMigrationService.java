@@ -0,0 +1,81 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.repository.CalculatorAttributesRepository;
+import com.example.CalCol.repository.CalculatorRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Moves enrichment still stored as JSON in calculators.enriched_data into the enrichment_* tables
+ * and clears the column. Each calculator is converted before its blob is cleared, so an
+ * interrupted run simply converts the remaining calculators on the next start.
+ * Afterwards, typed attributes are extracted for enriched calculators that do not have them yet.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Order(2)
+public class EnrichmentMigrationService implements CommandLineRunner {
+
+	private final CalculatorRepository calculatorRepository;
+	private final EnrichmentRecordService enrichmentRecordService;
+	private final CalculatorAttributesRepository attributesRepository;
+	private final SpecExtractionEngine specExtractionEngine;
+
+	@Override
+	public void run(String... args) {
+		migrateLegacyEnrichedData();
+		backfillAttributes();
+	}
+
+	private void migrateLegacyEnrichedData() {
+		List<Long> calculatorIds = calculatorRepository.findIdsWithLegacyEnrichedData();
+		if (calculatorIds.isEmpty()) {
+			return;
+		}
+
+		log.info("Migrating enriched data of {} calculators to enrichment tables", calculatorIds.size());
+		int migrated = 0;
+		for (Long calculatorId : calculatorIds) {
+			if (migrate(calculatorId)) {
+				migrated++;
+			}
+		}
+		log.info("Migrated enriched data of {} of {} calculators", migrated, calculatorIds.size());
+	}
+
+	private void backfillAttributes() {
+		List<Long> calculatorIds = attributesRepository.findCalculatorIdsWithoutAttributes();
+		if (calculatorIds.isEmpty()) {
+			return;
+		}
+
+		log.info("Extracting attributes of {} enriched calculators", calculatorIds.size());
+		for (Long calculatorId : calculatorIds) {
+			SocialMediaPostService.EnrichmentData enrichment = enrichmentRecordService.load(calculatorId);
+			if (enrichment != null) {
+				enrichmentRecordService.saveAttributes(calculatorId, specExtractionEngine.extract(enrichment));
+			}
+		}
+	}
+
+	private boolean migrate(Long calculatorId) {
+		String json = calculatorRepository.findLegacyEnrichedData(calculatorId);
+		try {
+			if (json != null && !json.isBlank()) {
+				enrichmentRecordService.replaceFromJson(calculatorId, json);
+			}
+			calculatorRepository.clearLegacyEnrichedData(calculatorId);
+			return true;
+		} catch (Exception e) {
+			// Keep the blob so the data is not lost; it can be fixed from the admin editor
+			log.warn("Could not migrate enriched data of calculator {}: {}", calculatorId, e.getMessage());
+			return false;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.CalculatorAttributes;
+import com.example.CalCol.entity.EnrichmentAiContent;
+import com.example.CalCol.entity.EnrichmentImageResult;
+import com.example.CalCol.entity.EnrichmentMuseumHit;
+import com.example.CalCol.entity.EnrichmentSpec;
+import com.example.CalCol.entity.EnrichmentWebResult;
+import com.example.CalCol.repository.CalculatorAttributesRepository;
+import com.example.CalCol.repository.EnrichmentAiContentRepository;
+import com.example.CalCol.repository.EnrichmentImageResultRepository;
+import com.example.CalCol.repository.EnrichmentMuseumHitRepository;
+import com.example.CalCol.repository.EnrichmentSpecRepository;
+import com.example.CalCol.repository.EnrichmentWebResultRepository;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores enrichment results in the enrichment_* tables, one row per result, keyed by calculator.
+ * Pages read only the parts they need (e.g. image results for the admin detail view) instead of
+ * parsing one JSON document per calculator. The JSON form is still used for the admin editor and
+ * for migrating the legacy calculators.enriched_data column.
+ */
+@Service
+@RequiredArgsConstructor
+public class EnrichmentRecordService {
+
+	private static final int TEXT_LIMIT = 2000;
+
+	private final EnrichmentWebResultRepository webResultRepository;
+	private final EnrichmentImageResultRepository imageResultRepository;
+	private final EnrichmentMuseumHitRepository museumHitRepository;
+	private final EnrichmentAiContentRepository aiContentRepository;
+	private final EnrichmentSpecRepository specRepository;
+	private final CalculatorAttributesRepository attributesRepository;
+
+	// Links are not read back: AISearchResult.setContent extracts them from the content again
+	private final ObjectMapper objectMapper = JsonMapper.builder()
+		.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+		.disable(MapperFeature.USE_GETTERS_AS_SETTERS)
+		.serializationInclusion(JsonInclude.Include.NON_NULL)
+		.build();
+
+	/**
+	 * Whether the enrichment has anything worth storing
+	 */
+	public boolean hasData(SocialMediaPostService.EnrichmentData enrichment) {
+		return enrichment != null && (notEmpty(enrichment.getWebResults()) || notEmpty(enrichment.getImageResults())
+			|| notEmpty(enrichment.getMuseumResults()) || enrichment.getAiContent() != null
+			|| enrichment.getBraveAIResult() != null);
+	}
+
+	/**
+	 * Replace all stored enrichment of a calculator
+	 * @param extractedSpecs Specs extracted from the enrichment text, in display order
+	 */
+	@Transactional
+	public void replace(Long calculatorId, SocialMediaPostService.EnrichmentData enrichment,
+			Map<String, String> extractedSpecs) {
+		delete(calculatorId);
+
+		if (enrichment.getWebResults() != null) {
+			List<EnrichmentWebResult> rows = new ArrayList<>();
+			for (WebSearchService.SearchResult result : enrichment.getWebResults()) {
+				rows.add(new EnrichmentWebResult(null, calculatorId, rows.size(),
+					truncate(result.getTitle(), 500), truncate(result.getUrl(), 1000), truncate(result.getSnippet(), TEXT_LIMIT),
+					joinProviders(result.getProviders())));
+			}
+			webResultRepository.saveAll(rows);
+		}
+
+		if (enrichment.getImageResults() != null) {
+			List<EnrichmentImageResult> rows = new ArrayList<>();
+			for (WebSearchService.ImageSearchResult result : enrichment.getImageResults()) {
+				rows.add(new EnrichmentImageResult(null, calculatorId, rows.size(),
+					truncate(result.getImageUrl(), 1000), truncate(result.getThumbnailUrl(), 1000),
+					truncate(result.getTitle(), 500), truncate(result.getSourceUrl(), 1000),
+					result.getWidth(), result.getHeight(), truncate(result.getSource(), 50),
+					joinProviders(result.getProviders())));
+			}
+			imageResultRepository.saveAll(rows);
+		}
+
+		if (enrichment.getMuseumResults() != null) {
+			List<EnrichmentMuseumHit> rows = new ArrayList<>();
+			for (CalculatorMuseumSearchService.MuseumSearchResult result : enrichment.getMuseumResults()) {
+				rows.add(new EnrichmentMuseumHit(null, calculatorId, rows.size(),
+					truncate(result.getSiteUrl(), 500), truncate(result.getSearchUrl(), 1000),
+					result.getFound(), truncate(result.getSnippet(), TEXT_LIMIT)));
+			}
+			museumHitRepository.saveAll(rows);
+		}
+
+		if (enrichment.getAiContent() != null) {
+			aiContentRepository.save(new EnrichmentAiContent(null, calculatorId, EnrichmentAiContent.PROVIDER_AI,
+				enrichment.getAiContent().getContent(), null));
+		}
+
+		List<EnrichmentSpec> specs = new ArrayList<>();
+		WebSearchService.BraveAIResult brave = enrichment.getBraveAIResult();
+		if (brave != null) {
+			aiContentRepository.save(new EnrichmentAiContent(null, calculatorId, EnrichmentAiContent.PROVIDER_BRAVE,
+				brave.getRawResponse(), truncate(brave.getSourceUrl(), 1000)));
+			if (brave.getStructuredData() != null) {
+				brave.getStructuredData().forEach((name, value) -> specs.add(
+					spec(calculatorId, specs.size(), name, value, EnrichmentSpec.SOURCE_BRAVE)));
+			}
+		}
+		if (extractedSpecs != null) {
+			extractedSpecs.forEach((name, value) -> specs.add(
+				spec(calculatorId, specs.size(), name, value, EnrichmentSpec.SOURCE_EXTRACTED)));
+		}
+		specRepository.saveAll(specs);
+	}
+
+	/**
+	 * Replace all stored enrichment of a calculator from its JSON form (see {@link #toJson})
+	 */
+	@Transactional
+	public void replaceFromJson(Long calculatorId, String json) throws JsonProcessingException {
+		StoredJson stored = objectMapper.readValue(json, StoredJson.class);
+		replace(calculatorId, stored, stored.getExtractedSpecs());
+	}
+
+	@Transactional
+	public void delete(Long calculatorId) {
+		webResultRepository.deleteByCalculatorId(calculatorId);
+		imageResultRepository.deleteByCalculatorId(calculatorId);
+		museumHitRepository.deleteByCalculatorId(calculatorId);
+		aiContentRepository.deleteByCalculatorId(calculatorId);
+		specRepository.deleteByCalculatorId(calculatorId);
+		attributesRepository.deleteByCalculatorId(calculatorId);
+	}
+
+	/**
+	 * Store the typed attributes of a calculator. A row is written even if nothing was found,
+	 * so the calculator is not picked up again by the attribute backfill.
+	 */
+	@Transactional
+	public CalculatorAttributes saveAttributes(Long calculatorId, SpecExtractionEngine.Extraction extraction) {
+		CalculatorAttributes attributes = attributesRepository.findByCalculatorId(calculatorId)
+			.orElseGet(CalculatorAttributes::new);
+		attributes.setCalculatorId(calculatorId);
+		attributes.setDisplayType(extraction.getDisplayType());
+		attributes.setDisplayDigits(extraction.getDisplayDigits());
+		attributes.setPowerSource(extraction.getPowerSource());
+		attributes.setLogic(extraction.getLogic());
+		attributes.setLengthMm(extraction.getLengthMm());
+		attributes.setWidthMm(extraction.getWidthMm());
+		attributes.setDepthMm(extraction.getDepthMm());
+		attributes.setIntroducedYear(extraction.getIntroducedYear());
+		attributes.setExtractedAt(LocalDateTime.now());
+		return attributesRepository.save(attributes);
+	}
+
+	/**
+	 * Load the stored enrichment of a calculator
+	 * @return The enrichment, or null if nothing is stored
+	 */
+	@Transactional(readOnly = true)
+	public SocialMediaPostService.EnrichmentData load(Long calculatorId) {
+		StoredJson enrichment = new StoredJson();
+
+		List<EnrichmentWebResult> webRows = webResultRepository.findByCalculatorIdOrderByPositionAsc(calculatorId);
+		if (!webRows.isEmpty()) {
+			List<WebSearchService.SearchResult> webResults = new ArrayList<>();
+			for (EnrichmentWebResult row : webRows) {
+				WebSearchService.SearchResult result = new WebSearchService.SearchResult();
+				result.setTitle(row.getTitle());
+				result.setUrl(row.getUrl());
+				result.setSnippet(row.getSnippet());
+				result.setProviders(splitProviders(row.getProviders()));
+				webResults.add(result);
+			}
+			enrichment.setWebResults(webResults);
+		}
+
+		List<EnrichmentImageResult> imageRows = getImageResults(calculatorId);
+		if (!imageRows.isEmpty()) {
+			List<WebSearchService.ImageSearchResult> imageResults = new ArrayList<>();
+			for (EnrichmentImageResult row : imageRows) {
+				WebSearchService.ImageSearchResult result = new WebSearchService.ImageSearchResult();
+				result.setImageUrl(row.getImageUrl());
+				result.setThumbnailUrl(row.getThumbnailUrl());
+				result.setTitle(row.getTitle());
+				result.setSourceUrl(row.getSourceUrl());
+				result.setWidth(row.getWidth());
+				result.setHeight(row.getHeight());
+				result.setSource(row.getSource());
+				result.setProviders(splitProviders(row.getProviders()));
+				imageResults.add(result);
+			}
+			enrichment.setImageResults(imageResults);
+		}
+
+		List<EnrichmentMuseumHit> museumRows = museumHitRepository.findByCalculatorIdOrderByPositionAsc(calculatorId);
+		if (!museumRows.isEmpty()) {
+			List<CalculatorMuseumSearchService.MuseumSearchResult> museumResults = new ArrayList<>();
+			for (EnrichmentMuseumHit row : museumRows) {
+				CalculatorMuseumSearchService.MuseumSearchResult result = new CalculatorMuseumSearchService.MuseumSearchResult();
+				result.setSiteUrl(row.getSiteUrl());
+				result.setSearchUrl(row.getSearchUrl());
+				result.setFound(row.isFound());
+				result.setSnippet(row.getSnippet());
+				museumResults.add(result);
+			}
+			enrichment.setMuseumResults(museumResults);
+		}
+
+		Map<String, String> braveSpecs = new LinkedHashMap<>();
+		Map<String, String> extractedSpecs = new LinkedHashMap<>();
+		for (EnrichmentSpec spec : specRepository.findByCalculatorIdOrderByPositionAsc(calculatorId)) {
+			(EnrichmentSpec.SOURCE_BRAVE.equals(spec.getSource()) ? braveSpecs : extractedSpecs)
+				.put(spec.getName(), spec.getValue());
+		}
+		enrichment.setExtractedSpecs(extractedSpecs.isEmpty() ? null : extractedSpecs);
+
+		for (EnrichmentAiContent row : aiContentRepository.findByCalculatorId(calculatorId)) {
+			if (EnrichmentAiContent.PROVIDER_BRAVE.equals(row.getProvider())) {
+				WebSearchService.BraveAIResult brave = new WebSearchService.BraveAIResult();
+				brave.setRawResponse(row.getContent());
+				brave.setSourceUrl(row.getSourceUrl());
+				brave.setStructuredData(braveSpecs);
+				enrichment.setBraveAIResult(brave);
+			} else {
+				AISearchService.AISearchResult ai = new AISearchService.AISearchResult();
+				ai.setContent(row.getContent());
+				enrichment.setAiContent(ai);
+			}
+		}
+
+		return hasData(enrichment) ? enrichment : null;
+	}
+
+	/**
+	 * Image results of a calculator's enrichment, in the order they were found
+	 */
+	@Transactional(readOnly = true)
+	public List<EnrichmentImageResult> getImageResults(Long calculatorId) {
+		return imageResultRepository.findByCalculatorIdOrderByPositionAsc(calculatorId);
+	}
+
+	/**
+	 * JSON form of a calculator's stored enrichment, for the admin editor
+	 * @return The JSON, or null if nothing is stored
+	 */
+	@Transactional(readOnly = true)
+	public String toJson(Long calculatorId) throws JsonProcessingException {
+		SocialMediaPostService.EnrichmentData enrichment = load(calculatorId);
+		return enrichment != null ? objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(enrichment) : null;
+	}
+
+	private static EnrichmentSpec spec(Long calculatorId, int position, String name, String value, String source) {
+		return new EnrichmentSpec(null, calculatorId, position, truncate(name, 200), truncate(value, 1000), source);
+	}
+
+	private static boolean notEmpty(List<?> list) {
+		return list != null && !list.isEmpty();
+	}
+
+	private static String truncate(String value, int maxLength) {
+		return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+	}
+
+	private static String joinProviders(List<String> providers) {
+		return notEmpty(providers) ? truncate(String.join(", ", providers), 100) : null;
+	}
+
+	private static List<String> splitProviders(String providers) {
+		return providers != null && !providers.isBlank()
+			? new ArrayList<>(List.of(providers.split(",\\s*"))) : new ArrayList<>();
+	}
+
+	/**
+	 * Enrichment plus the extracted specs, as written by {@link #toJson}
+	 */
+	static class StoredJson extends SocialMediaPostService.EnrichmentData {
+		private Map<String, String> extractedSpecs;
+
+		public Map<String, String> getExtractedSpecs() { return extractedSpecs; }
+		public void setExtractedSpecs(Map<String, String> extractedSpecs) { this.extractedSpecs = extractedSpecs; }
+	}
+}
@@ -2,17 +2,26 @@ package com.example.CalCol.service;
 
 import com.example.CalCol.entity.Calculator;
 import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.entity.CalculatorLink;
 import com.example.CalCol.entity.Label;
 import com.example.CalCol.repository.CalculatorImageRepository;
 import com.example.CalCol.repository.CalculatorLabelRepository;
+import com.example.CalCol.repository.CalculatorRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -29,127 +38,441 @@ public class EnrichmentService {
 	private final AISearchService aiSearchService;
 	private final CalculatorLabelRepository calculatorLabelRepository;
 	private final CalculatorImageRepository calculatorImageRepository;
+	private final CalculatorRepository calculatorRepository;
+	private final LinkService linkService;
+	private final EnrichmentRecordService enrichmentRecordService;
+	private final SpecExtractionEngine specExtractionEngine;
+	private final ProviderPlanner providerPlanner;
+	private final SearchResultMerger searchResultMerger;
+	private final SingleFlight<EnrichmentKey, SocialMediaPostService.EnrichmentData> enrichmentFlight = new SingleFlight<>();
+
+	private static final int WEB_RESULTS_PER_PROVIDER = 5;
+	private static final int IMAGE_RESULTS_PER_PROVIDER = 10;
+	private static final List<String> SEARCH_PROVIDERS = List.of("google", "bing", "brave");
+
+	@Value("${app.enrichment.planner.web-target:10}")
+	private int webResultsTarget;
+
+	@Value("${app.enrichment.planner.image-target:20}")
+	private int imageResultsTarget;
 	
 	@Value("${app.base-url:}")
 	private String baseUrl;
 
 	/**
-	 * Enrich calculator data with information from various sources
+	 * Enrich calculator data with information from various sources.
+	 * Concurrent requests for the same calculator and options share one enrichment run, each
+	 * getting a copy of its result to change as it likes.
 	 */
 	public SocialMediaPostService.EnrichmentData enrichCalculator(Calculator calculator) {
+		EnrichmentKey key = new EnrichmentKey(calculator.getId(), WEB_RESULTS_PER_PROVIDER, IMAGE_RESULTS_PER_PROVIDER);
+		return enrichmentFlight.execute(key, () -> runEnrichment(calculator, () -> searchAI(calculator))).copy();
+	}
+
+	/**
+	 * Enrich calculator data using an AI result that was already fetched, e.g. by a batched AI search
+	 * @param aiContent AI section to use instead of calling the AI for this calculator, may be null
+	 */
+	public SocialMediaPostService.EnrichmentData enrichCalculator(Calculator calculator,
+			AISearchService.AISearchResult aiContent) {
+		return runEnrichment(calculator, () -> aiContent);
+	}
+
+	private SocialMediaPostService.EnrichmentData runEnrichment(Calculator calculator,
+			Supplier<AISearchService.AISearchResult> aiSection) {
 		log.info("Enriching calculator: {} {}", calculator.getManufacturer().getName(), calculator.getModel());
 		
 		SocialMediaPostService.EnrichmentData enrichment = new SocialMediaPostService.EnrichmentData();
-		
-		// Build enhanced search query
-		String searchQuery = buildEnhancedSearchQuery(calculator);
-		
-		// Get labels and their descriptions
-		List<Label> labels = calculatorLabelRepository.findLabelsByCalculatorId(calculator.getId());
-		List<String> labelNames = labels.stream().map(Label::getName).collect(Collectors.toList());
-		List<String> labelDescriptions = labels.stream()
-			.map(l -> l.getDescription() != null ? l.getDescription() : "")
-			.collect(Collectors.toList());
-		
-		// Get approved images
-		List<CalculatorImage> images = calculatorImageRepository.findByCalculatorIdAndIsApprovedTrue(calculator.getId());
-		List<String> imageUrls = new ArrayList<>();
-		for (CalculatorImage image : images) {
-			String imageUrl = buildImageUrl(image.getImagePath());
-			imageUrls.add(imageUrl);
-		}
-		
-		// Perform web searches
+		enrichment.setWebResults(searchWeb(calculator));
+		enrichment.setImageResults(searchImages(calculator));
+		enrichment.setBraveAIResult(searchBraveAI(calculator));
+		enrichment.setMuseumResults(searchMuseums(calculator));
+		enrichment.setAiContent(aiSection.get());
+
+		log.info("Enrichment summary - Web: {}, Museum: {}, AI: {}, Brave AI: {}, Images: {}", 
+			enrichment.getWebResults() != null ? enrichment.getWebResults().size() : 0,
+			enrichment.getMuseumResults() != null ? enrichment.getMuseumResults().size() : 0,
+			enrichment.getAiContent() != null && enrichment.getAiContent().getContent() != null ? "present" : "null",
+			enrichment.getBraveAIResult() != null ? "present" : "null",
+			enrichment.getImageResults() != null ? enrichment.getImageResults().size() : 0);
+
+		return enrichment;
+	}
+
+	/**
+	 * Web search section: Google, Bing and Brave results filtered to the calculator.
+	 * The provider planner picks which providers to call and stops once enough relevant results are in.
+	 * @return Results, or null if the searches failed
+	 */
+	public List<WebSearchService.SearchResult> searchWeb(Calculator calculator) {
 		try {
-			String manufacturer = calculator.getManufacturer().getName();
-			String model = calculator.getModel();
-			
-			List<WebSearchService.SearchResult> googleResults = webSearchService.searchGoogle(searchQuery, 5);
-			googleResults = webSearchService.filterSearchResults(googleResults, manufacturer, model);
-			
-			List<WebSearchService.SearchResult> bingResults = webSearchService.searchBing(searchQuery, 5);
-			bingResults = webSearchService.filterSearchResults(bingResults, manufacturer, model);
-			
-			List<WebSearchService.SearchResult> braveResults = webSearchService.searchBrave(searchQuery, 5);
-			braveResults = webSearchService.filterSearchResults(braveResults, manufacturer, model);
-			
-			List<WebSearchService.SearchResult> allWebResults = new ArrayList<>();
-			allWebResults.addAll(googleResults);
-			allWebResults.addAll(bingResults);
-			allWebResults.addAll(braveResults);
-			enrichment.setWebResults(allWebResults);
-			log.info("Web search results (after filtering): Google={}, Bing={}, Brave={}, Total={}", 
-				googleResults.size(), bingResults.size(), braveResults.size(), allWebResults.size());
+			return fetchWeb(calculator);
 		} catch (Exception e) {
 			log.error("Error performing web search: {}", e.getMessage(), e);
+			return null;
 		}
+	}
+
+	/**
+	 * Web search section, throwing if the searches fail instead of returning null
+	 */
+	public List<WebSearchService.SearchResult> fetchWeb(Calculator calculator) {
+		String searchQuery = buildEnhancedSearchQuery(calculator);
+		// Irrelevant results are dropped while the responses are decoded
+		WebSearchService.RelevanceFilter filter = WebSearchService.RelevanceFilter.forWeb(
+			calculator.getManufacturer().getName(), calculator.getModel());
+		
+		Map<String, List<WebSearchService.SearchResult>> byProvider = providerPlanner.run("web", SEARCH_PROVIDERS,
+			webSearchService::isConfigured, WEB_RESULTS_PER_PROVIDER, webResultsTarget,
+			(provider, maxResults) -> webSearchService.planned(() -> switch (provider) {
+				case "google" -> webSearchService.searchGoogle(searchQuery, maxResults, filter);
+				case "bing" -> webSearchService.searchBing(searchQuery, maxResults, filter);
+				default -> webSearchService.searchBrave(searchQuery, maxResults, filter);
+			}));
+		
+		// The same page often comes back from several providers; keep one copy with its provenance
+		List<WebSearchService.SearchResult> allWebResults = searchResultMerger.mergeWeb(byProvider);
+		log.info("Web search results (after filtering): {}, Merged={}", resultCounts(byProvider), allWebResults.size());
+		return allWebResults;
+	}
+
+	private static String resultCounts(Map<String, ? extends List<?>> byProvider) {
+		StringBuilder counts = new StringBuilder();
+		byProvider.forEach((provider, results) -> counts.append(counts.length() > 0 ? ", " : "")
+			.append(provider).append('=').append(results.size()));
+		return counts.length() > 0 ? counts.toString() : "no providers called";
+	}
 
-		// Perform image searches
+	/**
+	 * Image search section: Google, Bing and Brave image results filtered to the calculator
+	 * @return Results, or null if the searches failed
+	 */
+	public List<WebSearchService.ImageSearchResult> searchImages(Calculator calculator) {
 		try {
-			String imageSearchQuery = buildImageSearchQuery(calculator);
-			String manufacturer = calculator.getManufacturer().getName();
-			String model = calculator.getModel();
-			
-			List<WebSearchService.ImageSearchResult> googleImages = webSearchService.searchGoogleImages(imageSearchQuery, 10);
-			googleImages = webSearchService.filterImageResults(googleImages, manufacturer, model);
-			
-			List<WebSearchService.ImageSearchResult> bingImages = webSearchService.searchBingImages(imageSearchQuery, 10);
-			bingImages = webSearchService.filterImageResults(bingImages, manufacturer, model);
-			
-			List<WebSearchService.ImageSearchResult> braveImages = webSearchService.searchBraveImages(imageSearchQuery, 10);
-			braveImages = webSearchService.filterImageResults(braveImages, manufacturer, model);
-			
-			List<WebSearchService.ImageSearchResult> allImageResults = new ArrayList<>();
-			allImageResults.addAll(googleImages);
-			allImageResults.addAll(bingImages);
-			allImageResults.addAll(braveImages);
-			enrichment.setImageResults(allImageResults);
-			log.info("Image search results (after filtering): Google={}, Bing={}, Brave={}, Total={}", 
-				googleImages.size(), bingImages.size(), braveImages.size(), allImageResults.size());
+			return fetchImages(calculator);
 		} catch (Exception e) {
 			log.error("Error performing image search: {}", e.getMessage(), e);
+			return null;
 		}
+	}
+
+	/**
+	 * Image search section, throwing if the searches fail instead of returning null
+	 */
+	public List<WebSearchService.ImageSearchResult> fetchImages(Calculator calculator) {
+		String imageSearchQuery = buildImageSearchQuery(calculator);
+		// Irrelevant images are dropped while the responses are decoded
+		WebSearchService.RelevanceFilter filter = WebSearchService.RelevanceFilter.forImages(
+			calculator.getManufacturer().getName(), calculator.getModel());
+		
+		Map<String, List<WebSearchService.ImageSearchResult>> byProvider = providerPlanner.run("images",
+			SEARCH_PROVIDERS, webSearchService::isConfigured, IMAGE_RESULTS_PER_PROVIDER, imageResultsTarget,
+			(provider, maxResults) -> webSearchService.planned(() -> switch (provider) {
+				case "google" -> webSearchService.searchGoogleImages(imageSearchQuery, maxResults, filter);
+				case "bing" -> webSearchService.searchBingImages(imageSearchQuery, maxResults, filter);
+				default -> webSearchService.searchBraveImages(imageSearchQuery, maxResults, filter);
+			}));
 		
-		// Perform Brave AI search for structured data
+		List<WebSearchService.ImageSearchResult> allImageResults = searchResultMerger.mergeImages(byProvider);
+		log.info("Image search results (after filtering): {}, Merged={}", resultCounts(byProvider), allImageResults.size());
+		return allImageResults;
+	}
+
+	/**
+	 * Brave AI section: structured data about the calculator
+	 */
+	public WebSearchService.BraveAIResult searchBraveAI(Calculator calculator) {
 		try {
-			WebSearchService.BraveAIResult braveAIResult = webSearchService.searchBraveAI(
-				calculator.getManufacturer().getName(), calculator.getModel());
-			if (braveAIResult != null) {
-				enrichment.setBraveAIResult(braveAIResult);
-			}
+			return fetchBraveAI(calculator);
 		} catch (Exception e) {
 			log.error("Error performing Brave AI search: {}", e.getMessage(), e);
+			return null;
 		}
-		
-		// Search calculator museums
+	}
+
+	/**
+	 * Brave AI section, throwing if Brave is configured but gave no answer
+	 * @return The answer, or null if Brave is not configured
+	 */
+	public WebSearchService.BraveAIResult fetchBraveAI(Calculator calculator) {
+		if (!webSearchService.isConfigured("brave")) {
+			return null;
+		}
+		// The search logs and swallows provider errors, quota refusals and open circuits
+		WebSearchService.BraveAIResult result = webSearchService.searchBraveAI(
+			calculator.getManufacturer().getName(), calculator.getModel());
+		if (result == null) {
+			throw new IllegalStateException("Brave AI search failed or was refused");
+		}
+		return result;
+	}
+
+	/**
+	 * Museum section: matches on calculator museum sites
+	 */
+	public List<CalculatorMuseumSearchService.MuseumSearchResult> searchMuseums(Calculator calculator) {
 		try {
-			List<CalculatorMuseumSearchService.MuseumSearchResult> museumResults = 
-				museumSearchService.searchMuseums(calculator.getManufacturer().getName(), calculator.getModel());
-			enrichment.setMuseumResults(museumResults);
+			return fetchMuseums(calculator);
 		} catch (Exception e) {
 			log.error("Error searching calculator museums: {}", e.getMessage(), e);
+			return null;
 		}
-		
-		// Perform AI search
+	}
+
+	/**
+	 * Museum section, throwing if the search fails instead of returning null
+	 */
+	public List<CalculatorMuseumSearchService.MuseumSearchResult> fetchMuseums(Calculator calculator) {
+		return museumSearchService.searchMuseums(calculator.getManufacturer().getName(), calculator.getModel());
+	}
+
+	/**
+	 * AI section: description generated from the calculator's text, labels and approved images
+	 */
+	public AISearchService.AISearchResult searchAI(Calculator calculator) {
+		return searchAI(calculator, null);
+	}
+
+	/**
+	 * AI section, streaming the generated text to {@code onDelta} as it arrives
+	 * @param onDelta Receives partial text, or null to wait for the complete answer
+	 */
+	public AISearchService.AISearchResult searchAI(Calculator calculator, Consumer<String> onDelta) {
 		try {
-			String description = calculator.getRawRowText() != null ? calculator.getRawRowText() : "";
+			AISearchService.AIBatchItem item = buildAIItem(calculator);
 			AISearchService.AISearchResult aiResult = aiSearchService.searchWithAI(
-				description, labelNames, labelDescriptions, imageUrls);
-			enrichment.setAiContent(aiResult);
+				item.getDescription(), item.getLabels(), item.getLabelDescriptions(), item.getImageUrls(), onDelta);
 			log.info("AI search completed. Content: {}", 
 				aiResult.getContent() != null && !aiResult.getContent().trim().isEmpty() ? "present" : "empty");
+			return aiResult;
 		} catch (Exception e) {
 			log.error("Error performing AI search: {}", e.getMessage(), e);
+			return null;
 		}
+	}
 
-		log.info("Enrichment summary - Web: {}, Museum: {}, AI: {}, Brave AI: {}, Images: {}", 
-			enrichment.getWebResults() != null ? enrichment.getWebResults().size() : 0,
-			enrichment.getMuseumResults() != null ? enrichment.getMuseumResults().size() : 0,
-			enrichment.getAiContent() != null && enrichment.getAiContent().getContent() != null ? "present" : "null",
-			enrichment.getBraveAIResult() != null ? "present" : "null",
-			enrichment.getImageResults() != null ? enrichment.getImageResults().size() : 0);
+	/**
+	 * AI section, throwing if the AI is configured but gave no answer. A cut-off answer is
+	 * returned as it is, so its partial text can still be shown.
+	 * @param onDelta Receives partial text, or null to wait for the complete answer
+	 */
+	public AISearchService.AISearchResult fetchAI(Calculator calculator, Consumer<String> onDelta) {
+		AISearchService.AIBatchItem item = buildAIItem(calculator);
+		// The search logs and swallows provider errors and quota refusals, answering with an empty result
+		AISearchService.AISearchResult aiResult = aiSearchService.searchWithAI(
+			item.getDescription(), item.getLabels(), item.getLabelDescriptions(), item.getImageUrls(), onDelta);
+		if (aiSearchService.isConfigured() && !aiResult.isIncomplete()
+				&& (aiResult.getContent() == null || aiResult.getContent().isBlank())) {
+			throw new IllegalStateException("AI search failed or was refused");
+		}
+		return aiResult;
+	}
 
-		return enrichment;
+	/**
+	 * AI section for several calculators at once, packed into as few AI prompts as possible
+	 * @return AI results by calculator ID; calculators whose answer could not be obtained are absent
+	 */
+	public Map<Long, AISearchService.AISearchResult> searchAIBatch(List<Calculator> calculators) {
+		Map<Long, AISearchService.AISearchResult> results = new LinkedHashMap<>();
+		try {
+			List<AISearchService.AIBatchItem> items = calculators.stream().map(this::buildAIItem).toList();
+			aiSearchService.searchWithAIBatch(items).forEach((id, result) -> results.put(Long.valueOf(id), result));
+		} catch (Exception e) {
+			log.error("Error performing batched AI search: {}", e.getMessage(), e);
+		}
+		return results;
+	}
+
+	/**
+	 * Largest number of calculators one batched AI prompt covers
+	 */
+	public int getAIBatchSize() {
+		return aiSearchService.getBatchMaxItems();
+	}
+
+	private AISearchService.AIBatchItem buildAIItem(Calculator calculator) {
+		// Get labels and their descriptions
+		List<Label> labels = calculatorLabelRepository.findLabelsByCalculatorId(calculator.getId());
+		List<String> labelNames = labels.stream().map(Label::getName).collect(Collectors.toList());
+		List<String> labelDescriptions = labels.stream()
+			.map(l -> l.getDescription() != null ? l.getDescription() : "")
+			.collect(Collectors.toList());
+
+		// Get approved images
+		List<CalculatorImage> images = calculatorImageRepository.findByCalculatorIdAndIsApprovedTrue(calculator.getId());
+		List<String> imageUrls = new ArrayList<>();
+		for (CalculatorImage image : images) {
+			imageUrls.add(buildImageUrl(image.pathFor("full")));
+		}
+
+		String description = calculator.getRawRowText() != null ? calculator.getRawRowText() : "";
+		return new AISearchService.AIBatchItem(String.valueOf(calculator.getId()), description, labelNames,
+			labelDescriptions, imageUrls);
+	}
+
+	/**
+	 * Turn enrichment results into a calculator description, enriched data JSON and links, and save them in one
+	 * transaction so a failure part way leaves the previous enrichment in place
+	 * @param username User recorded as the creator of any links added from web results
+	 */
+	@Transactional
+	public EnrichmentSaveResult saveEnrichment(Calculator calculator, SocialMediaPostService.EnrichmentData enrichment,
+			String username) {
+		// Track which URLs were converted to links (to exclude from enriched data)
+		java.util.Set<String> convertedLinkUrls = new java.util.HashSet<>();
+		
+		// Build description from enrichment data
+		StringBuilder description = new StringBuilder();
+		
+		// Add Brave AI structured data first (most structured)
+		if (enrichment.getBraveAIResult() != null) {
+			WebSearchService.BraveAIResult braveResult = 
+				enrichment.getBraveAIResult();
+			log.info("Brave AI Result - Structured Data: {}, Raw Response: {}", 
+				braveResult.getStructuredData() != null ? braveResult.getStructuredData().size() : 0,
+				braveResult.getRawResponse() != null ? "present" : "null");
+			
+			if (braveResult.getStructuredData() != null && !braveResult.getStructuredData().isEmpty()) {
+				description.append("Structured Information:\n");
+				for (java.util.Map.Entry<String, String> entry : braveResult.getStructuredData().entrySet()) {
+					description.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+				}
+				description.append("\n");
+			}
+			if (braveResult.getRawResponse() != null && !braveResult.getRawResponse().trim().isEmpty()) {
+				description.append("Additional Information:\n").append(braveResult.getRawResponse()).append("\n\n");
+			}
+		}
+		
+		// Add AI content if available
+		if (enrichment.getAiContent() != null && enrichment.getAiContent().getContent() != null 
+			&& !enrichment.getAiContent().getContent().trim().isEmpty()) {
+			log.info("AI Content length: {}", enrichment.getAiContent().getContent().length());
+			description.append(enrichment.getAiContent().getContent()).append("\n\n");
+		}
+		
+		// Extract technical specifications, facts (dates, prices) and typed attributes from
+		// the web, AI, Brave AI and museum text
+		SpecExtractionEngine.Extraction extraction = specExtractionEngine.extract(enrichment);
+		java.util.Map<String, String> technicalSpecs = extraction.getSpecs();
+		java.util.Set<String> extractedFacts = extraction.getFacts();
+			
+		// Add technical specifications to description
+		if (!technicalSpecs.isEmpty()) {
+			if (description.length() == 0) {
+				description.append("Technical Specifications:\n");
+			} else {
+				description.append("\nTechnical Specifications:\n");
+			}
+			for (java.util.Map.Entry<String, String> spec : technicalSpecs.entrySet()) {
+				description.append("- ").append(spec.getKey()).append(": ").append(spec.getValue()).append("\n");
+			}
+			description.append("\n");
+		}
+		
+		// Add extracted facts (dates, prices) to description
+		if (!extractedFacts.isEmpty()) {
+			if (description.length() == 0) {
+				description.append("Key Information:\n");
+			} else {
+				description.append("\nAdditional Information:\n");
+			}
+			for (String fact : extractedFacts) {
+				description.append("- ").append(fact).append("\n");
+			}
+			description.append("\n");
+		}
+		
+		// If still no description, add summary from remaining web results
+		if (description.length() == 0 && enrichment.getWebResults() != null && !enrichment.getWebResults().isEmpty()) {
+			description.append("Additional Information:\n");
+			int count = 0;
+			for (WebSearchService.SearchResult result : enrichment.getWebResults()) {
+				if (!convertedLinkUrls.contains(result.getUrl()) && count < 3) {
+					String cleanSnippet = cleanHtmlTags(result.getSnippet());
+					if (cleanSnippet != null && !cleanSnippet.trim().isEmpty()) {
+						String snippet = cleanSnippet.length() > 200 ? 
+							cleanSnippet.substring(0, 200) + "..." : cleanSnippet;
+						description.append("- ").append(snippet).append("\n");
+						count++;
+					}
+				}
+			}
+			description.append("\n");
+		}
+		
+		String finalDescription = description.toString().trim();
+		
+		// Check if we have any data to save
+		boolean hasEnrichedData = enrichmentRecordService.hasData(enrichment);
+		boolean hasDescription = !finalDescription.isEmpty();
+		
+		log.info("Enrichment data check - Description: {} ({} chars), EnrichedData: {}", 
+			hasDescription ? "present" : "empty", finalDescription.length(),
+			hasEnrichedData ? "present" : "empty");
+		
+		// Update calculator with enriched data
+		if (hasDescription) {
+			calculator.setDescription(finalDescription);
+			log.info("Setting description (length: {})", finalDescription.length());
+		} else {
+			log.warn("Description is empty");
+		}
+		
+		if (hasEnrichedData) {
+			enrichmentRecordService.replace(calculator.getId(), enrichment, technicalSpecs);
+			enrichmentRecordService.saveAttributes(calculator.getId(), extraction);
+			log.info("Stored enrichment records for calculator {}", calculator.getId());
+		} else {
+			log.warn("Enrichment contains no results");
+		}
+		
+		// Only save if we have something to save
+		if (!hasDescription && !hasEnrichedData) {
+			log.error("No enrichment data to save! All sources returned empty results.");
+			return new EnrichmentSaveResult(false, false, 0);
+		}
+		
+		// Automatically add web search results as links and track which ones were added
+		int linksAdded = 0;
+		if (enrichment.getWebResults() != null && !enrichment.getWebResults().isEmpty()) {
+						for (WebSearchService.SearchResult webResult : enrichment.getWebResults()) {
+				if (webResult.getUrl() != null && !webResult.getUrl().trim().isEmpty()) {
+					// Clean HTML tags from snippet for description
+					String cleanSnippet = cleanHtmlTags(webResult.getSnippet());
+					String title = webResult.getTitle() != null ? webResult.getTitle() : "Web Search Result";
+					
+					// Truncate title if too long
+					if (title.length() > 200) {
+						title = title.substring(0, 197) + "...";
+					}
+					
+					// Truncate description if too long
+					if (cleanSnippet != null && cleanSnippet.length() > 500) {
+						cleanSnippet = cleanSnippet.substring(0, 497) + "...";
+					}
+					
+					CalculatorLink link = 
+						linkService.addLinkIfNotExists(calculator.getId(), webResult.getUrl(), title, cleanSnippet, username);
+					if (link != null) {
+						linksAdded++;
+						convertedLinkUrls.add(webResult.getUrl());
+						log.debug("Added link: {} - {}", title, webResult.getUrl());
+					}
+				}
+			}
+			log.info("Added {} new links from web search results", linksAdded);
+		}
+		
+		// Save the calculator
+		calculator.setEnrichedAt(LocalDateTime.now());
+		Calculator savedCalculator = calculatorRepository.save(calculator);
+		
+		log.info("Calculator saved. ID: {}, Description: {}", 
+			savedCalculator.getId(),
+			savedCalculator.getDescription() != null ? "set (" + savedCalculator.getDescription().length() + " chars)" : "null");
+		
+		return new EnrichmentSaveResult(hasDescription, hasEnrichedData, linksAdded);
 	}
 
 	/**
@@ -172,7 +495,7 @@ public class EnrichmentService {
 		List<CalculatorImage> images = calculatorImageRepository.findByCalculatorIdAndIsApprovedTrue(calculator.getId());
 		List<String> imageUrls = new ArrayList<>();
 		for (CalculatorImage image : images) {
-			imageUrls.add(buildImageUrl(image.getImagePath()));
+			imageUrls.add(buildImageUrl(image.pathFor("full")));
 		}
 		info.setImageUrls(imageUrls);
 		
@@ -278,15 +601,71 @@ public class EnrichmentService {
 		return cleanAndDeduplicateQuery(imageQuery);
 	}
 
+	/**
+	 * Clean HTML tags from text
+	 */
+	private String cleanHtmlTags(String html) {
+		if (html == null || html.trim().isEmpty()) {
+			return null;
+		}
+		
+		// Remove HTML tags
+		String cleaned = html.replaceAll("<[^>]+>", "");
+		
+		// Decode common HTML entities
+		cleaned = cleaned.replace("&amp;", "&")
+			.replace("&lt;", "<")
+			.replace("&gt;", ">")
+			.replace("&quot;", "\"")
+			.replace("&#39;", "'")
+			.replace("&nbsp;", " ")
+			.replace("&apos;", "'");
+		
+		// Clean up multiple spaces
+		cleaned = cleaned.replaceAll("\\s+", " ").trim();
+		
+		return cleaned;
+	}
+
 	private String buildImageUrl(String imagePath) {
 		if (baseUrl != null && !baseUrl.isEmpty()) {
 			return baseUrl + "/uploads/" + imagePath;
 		}
+		// Background jobs have no current request to derive the host from
+		if (RequestContextHolder.getRequestAttributes() == null) {
+			return "/uploads/" + imagePath;
+		}
 		// Fallback to relative URL
 		return ServletUriComponentsBuilder.fromCurrentContextPath()
 			.path("/uploads/")
 			.path(imagePath)
 			.toUriString();
 	}
-}
 
+	/**
+	 * Outcome of saving enrichment results onto a calculator
+	 */
+	public static class EnrichmentSaveResult {
+		private final boolean descriptionSaved;
+		private final boolean enrichedDataSaved;
+		private final int linksAdded;
+
+		public EnrichmentSaveResult(boolean descriptionSaved, boolean enrichedDataSaved, int linksAdded) {
+			this.descriptionSaved = descriptionSaved;
+			this.enrichedDataSaved = enrichedDataSaved;
+			this.linksAdded = linksAdded;
+		}
+
+		public boolean isSaved() { return descriptionSaved || enrichedDataSaved; }
+		public boolean isDescriptionSaved() { return descriptionSaved; }
+		public boolean isEnrichedDataSaved() { return enrichedDataSaved; }
+		public int getLinksAdded() { return linksAdded; }
+	}
+
+	/**
+	 * Identity of an enrichment run for request coalescing: the calculator plus the options
+	 * that shape the result
+	 */
+	private record EnrichmentKey(Long calculatorId, int webResults, int imageResults) {
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Serves enrichment from the calculator's stored enrichment records while they are fresh.
+ * Only when the stored data is missing, older than the TTL or a refresh is requested are the
+ * searches and the AI call run again; the new results are saved for the next caller.
+ * Running them costs provider quota and rewrites the calculator's description and links, so
+ * callers that may not enrich (everyone but admins) only ever get the stored data, however old.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EnrichmentStore {
+
+	private final EnrichmentService enrichmentService;
+	private final EnrichmentRecordService enrichmentRecordService;
+
+	@Value("${app.enrichment.fresh-ttl-hours:168}")
+	private long freshTtlHours;
+
+	/**
+	 * Get enrichment for a calculator, reusing the persisted data if it is fresh
+	 * @param refresh Enrich again even if the persisted data is fresh
+	 * @param username User recorded as the creator of any links added by a new enrichment
+	 * @param mayEnrich Whether the caller may run and save a new enrichment; otherwise the stored
+	 * data is returned whatever its age, and refresh is ignored
+	 */
+	public StoredEnrichment getEnrichment(Calculator calculator, boolean refresh, String username, boolean mayEnrich) {
+		if (!mayEnrich) {
+			// Empty when the calculator was never enriched
+			return new StoredEnrichment(enrichmentRecordService.load(calculator.getId()), calculator.getEnrichedAt(), true);
+		}
+		if (!refresh && isFresh(calculator)) {
+			SocialMediaPostService.EnrichmentData stored = enrichmentRecordService.load(calculator.getId());
+			if (stored != null) {
+				log.debug("Reusing enrichment of calculator {} from {}", calculator.getId(), calculator.getEnrichedAt());
+				return new StoredEnrichment(stored, calculator.getEnrichedAt(), true);
+			}
+		}
+
+		log.info("Enriching calculator {} ({})", calculator.getId(), refresh ? "refresh requested" : "stale or missing");
+		SocialMediaPostService.EnrichmentData enrichment = enrichmentService.enrichCalculator(calculator);
+		try {
+			enrichmentService.saveEnrichment(calculator, enrichment, username);
+		} catch (Exception e) {
+			log.error("Error saving enrichment of calculator {}: {}", calculator.getId(), e.getMessage(), e);
+		}
+		return new StoredEnrichment(enrichment, calculator.getEnrichedAt(), false);
+	}
+
+	/**
+	 * Whether the calculator was enriched less than the TTL ago
+	 */
+	public boolean isFresh(Calculator calculator) {
+		return calculator.getEnrichedAt() != null
+			&& calculator.getEnrichedAt().isAfter(LocalDateTime.now().minusHours(freshTtlHours));
+	}
+
+	/**
+	 * Enrichment plus where it came from
+	 */
+	public static class StoredEnrichment {
+		private final SocialMediaPostService.EnrichmentData enrichment;
+		private final LocalDateTime enrichedAt;
+		private final boolean reused;
+
+		public StoredEnrichment(SocialMediaPostService.EnrichmentData enrichment, LocalDateTime enrichedAt, boolean reused) {
+			this.enrichment = enrichment;
+			this.enrichedAt = enrichedAt;
+			this.reused = reused;
+		}
+
+		public SocialMediaPostService.EnrichmentData getEnrichment() { return enrichment; }
+		public LocalDateTime getEnrichedAt() { return enrichedAt; }
+		public boolean isReused() { return reused; }
+	}
+}
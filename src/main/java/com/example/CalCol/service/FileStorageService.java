@@ -1,24 +1,100 @@
 package com.example.CalCol.service;
 
+import com.example.CalCol.entity.StoredFile;
+import com.example.CalCol.repository.StoredFileRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.regex.Pattern;
 
+/**
+ * Stores uploads content-addressed: the file is named after the SHA-256 of its content, so the
+ * same photo uploaded or imported several times is kept once. Every image using a file holds a
+ * reference ({@link StoredFile}); the file goes when the last reference is released.
+ * Reference counts are updated in their own transaction under a per-file lock, so a file being
+ * stored again cannot be deleted underneath the new reference. The lock is per JVM: it guards the
+ * node's own upload directory, while nodes sharing a backend rely on the reference row instead.
+ * <p>
+ * Files are spread over two levels of directories named after the first four hex digits of the
+ * content hash ({@code ab/cd/abcd…jpg}), so no directory grows to hundreds of thousands of
+ * entries; renditions share the directory of their upload. Filenames in the database stay flat.
+ * Files from the earlier flat layout remain readable until {@link UploadLayoutService} has moved
+ * them.
+ * <p>
+ * With a shared {@link StorageBackend} (several application nodes), the upload directory is a
+ * read-through cache: stored files and renditions are also written to the backend, lookups fetch
+ * files this node does not have, and {@link UploadCacheService} evicts the least recently used
+ * ones. A new reference is added before its file is written to the backend. References are added
+ * in their own transaction; when the caller's transaction rolls back, e.g. because the image row
+ * could not be saved, the new reference is released again. Releasing the last
+ * reference leaves the reference row at zero until the objects are deleted, and only then removes
+ * it if still unreferenced: a file stored again on another node meanwhile is put back rather than
+ * lost, and objects whose delete failed keep their row, so {@link #retryPendingDeletes()} finds
+ * them again.
+ */
 @Service
 @Slf4j
 public class FileStorageService {
 
+	private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,10})?");
+	private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,10}");
+	private static final Pattern HEX_PREFIX = Pattern.compile("[0-9a-f]{4}.*");
+
+	private final StoredFileRepository storedFileRepository;
+	private final TransactionTemplate referenceTransaction;
+	private final StorageBackend storageBackend;
+	private final Object[] locks = new Object[64];
+	// Last lookup per cached file, for evicting the least recently used ones
+	private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+
 	@Value("${app.upload.dir:uploads}")
 	private String uploadDir;
 
+	// Set once a full scan found no files left in the flat layout, so lookups skip it
+	private volatile boolean flatLayoutEmpty;
+
+	public FileStorageService(StoredFileRepository storedFileRepository, PlatformTransactionManager transactionManager,
+			StorageBackend storageBackend) {
+		this.storedFileRepository = storedFileRepository;
+		this.storageBackend = storageBackend;
+		this.referenceTransaction = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+		if (referenceTransaction != null) {
+			referenceTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		}
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
 	public String storeFile(MultipartFile file) throws IOException {
 		if (file.isEmpty()) {
 			throw new IllegalArgumentException("File is empty");
@@ -36,31 +112,234 @@ public class FileStorageService {
 			extension = originalFilename.substring(lastDotIndex);
 		}
 
-		// Generate unique filename
-		String uniqueFilename = UUID.randomUUID().toString() + extension;
+		// Hash while streaming to a temp file, then store under the hash
+		Path tempPath = createTempFile();
+		MessageDigest digest = sha256();
+		try (InputStream input = new DigestInputStream(file.getInputStream(), digest)) {
+			Files.copy(input, tempPath, StandardCopyOption.REPLACE_EXISTING);
+			return store(tempPath, digest, extension);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
 
-		// Create upload directory if it doesn't exist
-		Path uploadPath = Paths.get(uploadDir);
-		if (!Files.exists(uploadPath)) {
-			Files.createDirectories(uploadPath);
+	/**
+	 * Local copy of a file, fetched from a shared backend when this node does not have it yet.
+	 * Files that exist nowhere resolve to their shard directory.
+	 */
+	public Path loadFile(String filename) {
+		Path path = localPath(filename);
+		if (!storageBackend.isShared()) {
+			return path;
+		}
+		if (!Files.exists(path)) {
+			path = fetch(filename);
 		}
+		lastAccess.put(filename, System.currentTimeMillis());
+		return path;
+	}
 
-		// Save file
-		Path filePath = uploadPath.resolve(uniqueFilename);
-		Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+	/**
+	 * Where a file is on this node: in its shard directory, or still in the flat layout. Files
+	 * that do not exist yet resolve to their shard directory, which writers create with
+	 * {@link #prepareDirectory(Path)}.
+	 */
+	public Path localPath(String filename) {
+		Path sharded = shardedPath(filename);
+		if (flatLayoutEmpty || Files.exists(sharded)) {
+			return sharded;
+		}
+		Path flat = flatPath(filename);
+		// Checked in this order, a file moved between the two lookups is still found
+		return Files.exists(flat) ? flat : sharded;
+	}
 
-		log.info("File saved: {}", filePath);
-		return uniqueFilename;
+	/**
+	 * Whether a file exists, on this node or in the shared backend, without fetching it
+	 */
+	public boolean exists(String filename) throws IOException {
+		return Files.exists(localPath(filename)) || storageBackend.isShared() && storageBackend.exists(filename);
 	}
 
-	public Path loadFile(String filename) {
-		return Paths.get(uploadDir).resolve(filename);
+	public boolean isShared() {
+		return storageBackend.isShared();
+	}
+
+	/**
+	 * Write a file created next to the stored uploads, e.g. a rendition, to the shared backend
+	 */
+	public void publish(String filename) throws IOException {
+		if (storageBackend.isShared()) {
+			storageBackend.put(filename, localPath(filename));
+		}
+	}
+
+	/**
+	 * URL clients read a file from directly, when the backend serves reads itself
+	 */
+	public URI readUrl(String filename) {
+		return storageBackend.isShared() ? storageBackend.readUrl(filename) : null;
+	}
+
+	/**
+	 * When a cached file was last looked up on this node, or 0 when it was not since startup
+	 */
+	public long lastAccess(String filename) {
+		return lastAccess.getOrDefault(filename, 0L);
+	}
+
+	/**
+	 * Drop the local copy of a file that is safely in the shared backend; it is written there
+	 * first when it is missing, e.g. for uploads stored before the backend was configured
+	 * @return The size of the evicted file, or -1 when it was kept
+	 */
+	public long evict(String filename) throws IOException {
+		if (!storageBackend.isShared()) {
+			return -1;
+		}
+		synchronized (lockFor(filename)) {
+			Path file = localPath(filename);
+			if (!Files.isRegularFile(file)) {
+				return -1;
+			}
+			if (!storageBackend.exists(filename)) {
+				storageBackend.put(filename, file);
+			}
+			long size = Files.size(file);
+			deleteFile(filename);
+			lastAccess.remove(filename);
+			return size;
+		}
+	}
+
+	public Path getUploadRoot() {
+		return Paths.get(uploadDir);
+	}
+
+	/**
+	 * Location of a file in the sharded layout: two directory levels named after the first four
+	 * hex digits of the name, or of the hash of names that do not start with hex digits
+	 */
+	public Path shardedPath(String filename) {
+		String key = HEX_PREFIX.matcher(filename).matches() ? filename
+			: HexFormat.of().formatHex(sha256().digest(filename.getBytes(StandardCharsets.UTF_8)));
+		return getUploadRoot().resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(filename);
+	}
+
+	public Path flatPath(String filename) {
+		return getUploadRoot().resolve(filename);
+	}
+
+	/**
+	 * Create the directory a file is about to be written to
+	 */
+	public static void prepareDirectory(Path file) throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+	}
+
+	/**
+	 * Move a file from the flat layout into its shard directory. A file that has meanwhile been
+	 * written again in the sharded layout keeps that newer copy.
+	 * @return Whether a flat file was found
+	 */
+	public boolean moveToShard(String filename) throws IOException {
+		synchronized (lockFor(filename)) {
+			Path flat = flatPath(filename);
+			if (!Files.isRegularFile(flat)) {
+				return false;
+			}
+			Path sharded = shardedPath(filename);
+			prepareDirectory(sharded);
+			if (Files.exists(sharded)) {
+				Files.delete(flat);
+			} else {
+				Files.move(flat, sharded, StandardCopyOption.ATOMIC_MOVE);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Move a file found in the wrong shard directory to where lookups expect it, unless a file
+	 * already exists there
+	 * @return Whether the file was moved
+	 */
+	public boolean moveIntoShard(Path misplaced, String filename) throws IOException {
+		synchronized (lockFor(filename)) {
+			Path sharded = shardedPath(filename);
+			if (Files.exists(sharded) || !Files.isRegularFile(misplaced)) {
+				return false;
+			}
+			prepareDirectory(sharded);
+			Files.move(misplaced, sharded, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		}
+	}
+
+	/**
+	 * Move a file nobody references into a quarantine directory, after confirming under the
+	 * file's lock that it is still unreferenced: by the caller's check, and by its reference row,
+	 * which is counted up before the rows using a new upload are committed. Its reference row
+	 * goes with it.
+	 * @return The size of the quarantined file, or -1 when it was left in place
+	 */
+	public long quarantine(String filename, Path quarantineDir, BooleanSupplier unreferenced) throws IOException {
+		synchronized (lockFor(filename)) {
+			Path file = localPath(filename);
+			if (!Files.isRegularFile(file) || !unreferenced.getAsBoolean() || hasReferences(filename)) {
+				return -1;
+			}
+			long size = Files.size(file);
+			Files.createDirectories(quarantineDir);
+			Files.move(file, quarantineDir.resolve(filename), StandardCopyOption.ATOMIC_MOVE);
+			if (storedFileRepository != null) {
+				referenceTransaction.executeWithoutResult(status -> storedFileRepository.deleteIfUnreferenced(filename));
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * Whether the reference row of a file counts any references; files without a row have none
+	 */
+	private boolean hasReferences(String filename) {
+		return storedFileRepository != null
+			&& storedFileRepository.findById(filename).map(file -> file.getRefCount() > 0).orElse(false);
+	}
+
+	/**
+	 * Put a quarantined file back, unless the file has been stored again meanwhile
+	 * @return Whether the file was restored
+	 */
+	public boolean restore(Path quarantined, String filename) throws IOException {
+		synchronized (lockFor(filename)) {
+			if (Files.exists(localPath(filename))) {
+				return false;
+			}
+			Path target = shardedPath(filename);
+			prepareDirectory(target);
+			Files.move(quarantined, target, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		}
+	}
+
+	/**
+	 * Lookups stop checking the flat layout; called once a migration scan found it empty
+	 */
+	public void setFlatLayoutEmpty(boolean flatLayoutEmpty) {
+		this.flatLayoutEmpty = flatLayoutEmpty;
 	}
 
+	/**
+	 * Delete a file outright, regardless of references. Use {@link #release} for stored uploads.
+	 */
 	public boolean deleteFile(String filename) {
 		try {
-			Path filePath = loadFile(filename);
-			return Files.deleteIfExists(filePath);
+			// Flat copy first: a concurrent move only goes from flat to sharded, so neither is missed
+			boolean deleted = Files.deleteIfExists(flatPath(filename));
+			return Files.deleteIfExists(shardedPath(filename)) || deleted;
 		} catch (IOException e) {
 			log.error("Error deleting file: {}", filename, e);
 			return false;
@@ -68,46 +347,315 @@ public class FileStorageService {
 	}
 
 	/**
-	 * Download an image from a URL and save it to the upload directory
+	 * Release one reference to a stored upload once the current transaction (if any) commits, so
+	 * a rolled-back delete keeps its file. When it was the last reference, the upload and the
+	 * given files derived from it are deleted.
 	 */
-	public String downloadImageFromUrl(String imageUrl) throws IOException {
+	public void release(String filename, Collection<String> derivedFiles) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					releaseNow(filename, derivedFiles);
+				}
+			});
+		} else {
+			releaseNow(filename, derivedFiles);
+		}
+	}
+
+	/**
+	 * Store a file written to {@link #createTempFile()} under the hash of its content. The temp
+	 * file is moved or, when the content is already stored, left for the caller to delete.
+	 */
+	public String storeTempFile(Path tempPath, String extension) throws IOException {
+		MessageDigest digest = sha256();
+		try (InputStream input = new DigestInputStream(Files.newInputStream(tempPath), digest)) {
+			input.transferTo(OutputStream.nullOutputStream());
+		}
+		return store(tempPath, digest, extension);
+	}
+
+	/**
+	 * Temp files live in the upload directory so the final move is a rename on the same file system
+	 */
+	public Path createTempFile() throws IOException {
+		Path uploadPath = getUploadRoot();
+		if (!Files.exists(uploadPath)) {
+			Files.createDirectories(uploadPath);
+		}
+		return uploadPath.resolve(".upload-" + UUID.randomUUID() + ".tmp");
+	}
+
+	/**
+	 * Whether a filename is a content hash, rather than a random name from before content addressing
+	 */
+	public static boolean isContentAddressed(String filename) {
+		return CONTENT_ADDRESSED.matcher(filename).matches();
+	}
+
+	/**
+	 * Content-addressed name of an existing file: its SHA-256 plus the normalized extension
+	 */
+	public String contentAddressedName(String filename) throws IOException {
+		MessageDigest digest = sha256();
+		try (InputStream input = new DigestInputStream(Files.newInputStream(loadFile(filename)), digest)) {
+			input.transferTo(OutputStream.nullOutputStream());
+		}
+		int lastDotIndex = filename.lastIndexOf('.');
+		return name(digest, lastDotIndex > 0 ? filename.substring(lastDotIndex) : "");
+	}
+
+	/**
+	 * Copy a file to its content-addressed name, unless that name already holds the same content.
+	 * Used to move existing uploads over; the original is left to the caller.
+	 */
+	public void adopt(String filename, String contentAddressedName) throws IOException {
+		synchronized (lockFor(contentAddressedName)) {
+			Path target = localPath(contentAddressedName);
+			if (Files.exists(target)) {
+				return;
+			}
+			Path tempPath = createTempFile();
+			try {
+				Files.copy(loadFile(filename), tempPath);
+				prepareDirectory(target);
+				Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE);
+				publish(contentAddressedName);
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+		}
+	}
+
+	/**
+	 * Add references to a stored file, registering it if it has none yet
+	 */
+	public void addReferences(String filename, int count) throws IOException {
+		Path file = localPath(filename);
+		long size = Files.exists(file) ? Files.size(file) : 0;
+		synchronized (lockFor(filename)) {
+			referenceTransaction.executeWithoutResult(status -> {
+				if (storedFileRepository.addReferences(filename, count) == 0) {
+					storedFileRepository.save(new StoredFile(filename, size, count, LocalDateTime.now()));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Point existing references at a stored file: {@code move} rewrites them and returns how many it
+	 * moved, and the file gains that many references in the same transaction. Runs under the file's
+	 * lock, so a concurrent release cannot drop the file in between.
+	 * @return The number of references moved
+	 */
+	public int moveReferences(String filename, IntSupplier move) throws IOException {
+		Path file = localPath(filename);
+		long size = Files.exists(file) ? Files.size(file) : 0;
+		synchronized (lockFor(filename)) {
+			return referenceTransaction.execute(status -> {
+				int moved = move.getAsInt();
+				if (moved > 0 && storedFileRepository.addReferences(filename, moved) == 0) {
+					storedFileRepository.save(new StoredFile(filename, size, moved, LocalDateTime.now()));
+				}
+				return moved;
+			});
+		}
+	}
+
+	private String store(Path tempPath, MessageDigest digest, String extension) throws IOException {
+		String filename = name(digest, extension);
+		Path filePath = localPath(filename);
+		synchronized (lockFor(filename)) {
+			if (Files.exists(filePath)) {
+				log.info("Upload matches stored file {}", filename);
+			} else {
+				prepareDirectory(filePath);
+				Files.move(tempPath, filePath, StandardCopyOption.ATOMIC_MOVE);
+				log.info("File saved: {}", filePath);
+			}
+			addReferences(filename, 1);
+			releaseOnRollback(filename);
+			if (storageBackend.isShared()) {
+				// Also when this node has the file: another node may just be deleting the object
+				try {
+					storageBackend.put(filename, filePath);
+				} catch (IOException | RuntimeException e) {
+					releaseNow(filename, List.of());
+					throw e;
+				}
+			}
+		}
+		return filename;
+	}
+
+	/**
+	 * The reference to a stored file is committed right away, but belongs to whatever the caller's
+	 * transaction writes; release it when that transaction rolls back
+	 */
+	private void releaseOnRollback(String filename) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_ROLLED_BACK) {
+					log.info("Transaction storing {} rolled back, releasing its reference", filename);
+					releaseNow(filename, ImageDerivativeService.derivativePaths(filename));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Fetch a file from the shared backend into the local cache
+	 */
+	private Path fetch(String filename) {
+		Path target = shardedPath(filename);
+		synchronized (lockFor(filename)) {
+			if (Files.exists(target)) {
+				return target;
+			}
+			Path tempPath = null;
+			try {
+				tempPath = createTempFile();
+				if (storageBackend.fetch(filename, tempPath)) {
+					prepareDirectory(target);
+					Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE);
+					log.debug("Fetched {} from the storage backend", filename);
+				}
+			} catch (IOException | RuntimeException e) {
+				log.warn("Could not fetch {} from the storage backend: {}", filename, e.getMessage());
+			} finally {
+				deleteQuietly(tempPath);
+			}
+			return target;
+		}
+	}
+
+	private void releaseNow(String filename, Collection<String> derivedFiles) {
+		synchronized (lockFor(filename)) {
+			if (storageBackend.isShared()) {
+				releaseShared(filename, derivedFiles);
+				return;
+			}
+			Boolean lastReference = referenceTransaction.execute(status ->
+				// Files without a reference row have a single user
+				storedFileRepository.addReferences(filename, -1) == 0
+					|| storedFileRepository.deleteIfUnreferenced(filename) > 0);
+			if (!Boolean.TRUE.equals(lastReference)) {
+				log.debug("Stored file {} is still referenced", filename);
+				return;
+			}
+			deleteFile(filename);
+			derivedFiles.forEach(this::deleteFile);
+		}
+	}
+
+	/**
+	 * Release a reference to a file in a shared backend. The row stays, at zero references, until
+	 * the objects are gone.
+	 */
+	private void releaseShared(String filename, Collection<String> derivedFiles) {
+		Boolean lastReference = referenceTransaction.execute(status -> {
+			if (storedFileRepository.addReferences(filename, -1) == 0) {
+				// Files without a reference row have a single user
+				storedFileRepository.save(new StoredFile(filename, 0L, 0, LocalDateTime.now()));
+			}
+			return storedFileRepository.findById(filename).map(file -> file.getRefCount() <= 0).orElse(false);
+		});
+		if (!Boolean.TRUE.equals(lastReference)) {
+			log.debug("Stored file {} is still referenced", filename);
+			return;
+		}
+		deleteObjects(filename, derivedFiles);
+	}
+
+	/**
+	 * Delete the objects of files whose last reference went but whose delete from the shared
+	 * backend failed, e.g. while the backend was unreachable
+	 * @return The number of files deleted
+	 */
+	public int retryPendingDeletes() {
+		if (!storageBackend.isShared()) {
+			return 0;
+		}
+		int deleted = 0;
+		for (String filename : storedFileRepository.findUnreferencedFilenames()) {
+			synchronized (lockFor(filename)) {
+				if (deleteObjects(filename, ImageDerivativeService.derivativePaths(filename))) {
+					deleted++;
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Delete the objects of a released upload, then its zero-reference row. A node that stored the
+	 * same content meanwhile has raised the row's count before putting its object, so when the row
+	 * cannot be removed the objects are put back from the local copies, which are fetched beforehand
+	 * for that reason. When a delete fails, the row and the local copies stay for a later retry.
+	 * @return Whether the file is gone
+	 */
+	private boolean deleteObjects(String filename, Collection<String> derivedFiles) {
+		List<String> files = new ArrayList<>();
+		files.add(filename);
+		files.addAll(derivedFiles);
+		List<Path> localCopies = files.stream().map(this::loadFile).toList();
 		try {
-			java.net.URL url = new java.net.URL(imageUrl);
-			
-			// Determine file extension from URL or content type
-			String extension = ".jpg"; // default
-			String path = url.getPath().toLowerCase();
-			if (path.endsWith(".png")) {
-				extension = ".png";
-			} else if (path.endsWith(".gif")) {
-				extension = ".gif";
-			} else if (path.endsWith(".webp")) {
-				extension = ".webp";
-			} else if (path.endsWith(".jpeg") || path.endsWith(".jpg")) {
-				extension = ".jpg";
-			}
-			
-			// Generate unique filename
-			String uniqueFilename = UUID.randomUUID().toString() + extension;
-			
-			// Create upload directory if it doesn't exist
-			Path uploadPath = Paths.get(uploadDir);
-			if (!Files.exists(uploadPath)) {
-				Files.createDirectories(uploadPath);
-			}
-			
-			// Download and save file
-			Path filePath = uploadPath.resolve(uniqueFilename);
-			try (java.io.InputStream in = url.openStream()) {
-				Files.copy(in, filePath, StandardCopyOption.REPLACE_EXISTING);
-			}
-			
-			log.info("Image downloaded and saved: {}", filePath);
-			return uniqueFilename;
-		} catch (Exception e) {
-			log.error("Error downloading image from URL: {}", imageUrl, e);
-			throw new IOException("Failed to download image from URL: " + imageUrl, e);
+			for (String file : files) {
+				storageBackend.delete(file);
+			}
+		} catch (IOException | RuntimeException e) {
+			log.warn("Could not delete {} from the storage backend, will retry: {}", filename, e.getMessage());
+			return false;
 		}
+
+		if (Boolean.TRUE.equals(referenceTransaction.execute(status ->
+				storedFileRepository.deleteIfUnreferenced(filename) > 0))) {
+			files.forEach(this::deleteFile);
+			files.forEach(lastAccess::remove);
+			return true;
+		}
+		log.info("Stored file {} was stored again meanwhile, putting it back", filename);
+		for (int i = 0; i < files.size(); i++) {
+			try {
+				if (Files.exists(localCopies.get(i))) {
+					storageBackend.put(files.get(i), localCopies.get(i));
+				}
+			} catch (IOException | RuntimeException e) {
+				log.warn("Could not put {} back into the storage backend: {}", files.get(i), e.getMessage());
+			}
+		}
+		return false;
 	}
-}
 
+	private static void deleteQuietly(Path path) {
+		if (path != null) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				log.debug("Could not delete temp file {}: {}", path, e.getMessage());
+			}
+		}
+	}
+
+	private Object lockFor(String filename) {
+		return locks[Math.floorMod(filename.hashCode(), locks.length)];
+	}
+
+	private static String name(MessageDigest digest, String extension) {
+		String normalized = extension.toLowerCase();
+		return HexFormat.of().formatHex(digest.digest()) + (EXTENSION.matcher(normalized).matches() ? normalized : "");
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the downscaled JPEG renditions of uploaded calculator images: a thumbnail for lists,
+ * a card image for the image grid and a full-size image capped for screens. Renditions are made on
+ * a bounded worker pool after the image row is committed. When the pool is busy the image is left
+ * to the periodic backfill, which also covers uploads from before the pipeline; pages show the
+ * original until the renditions exist. Failed attempts are recorded on the image, and the backfill
+ * gives up on an upload after max-attempts failures.
+ */
+@Service
+@Slf4j
+public class ImageDerivativeService {
+
+	public static final List<String> SIZES = List.of("thumb", "card", "full");
+
+	private final CalculatorImageRepository imageRepository;
+	private final FileStorageService fileStorageService;
+	private final ThreadPoolExecutor executor;
+	// Running plus queued renditions; when none is free the image is left for the backfill
+	private final Semaphore slots;
+	// Uploads being rendered; images sharing an upload share its renditions, so one worker per upload
+	private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+	@Value("${app.images.derivatives.thumb-size:200}")
+	private int thumbSize;
+
+	@Value("${app.images.derivatives.card-size:480}")
+	private int cardSize;
+
+	@Value("${app.images.derivatives.full-size:1600}")
+	private int fullSize;
+
+	@Value("${app.images.derivatives.jpeg-quality:0.85}")
+	private float jpegQuality;
+
+	@Value("${app.images.derivatives.backfill-enabled:true}")
+	private boolean backfillEnabled;
+
+	@Value("${app.images.derivatives.max-attempts:3}")
+	private int maxAttempts;
+
+	public ImageDerivativeService(CalculatorImageRepository imageRepository, FileStorageService fileStorageService,
+			@Value("${app.images.derivatives.threads:2}") int threads,
+			@Value("${app.images.derivatives.queue-capacity:100}") int queueCapacity) {
+		this.imageRepository = imageRepository;
+		this.fileStorageService = fileStorageService;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+				Thread thread = new Thread(runnable, "image-derivative-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		this.slots = new Semaphore(threads + queueCapacity);
+	}
+
+	/**
+	 * Generate the renditions of a newly saved image in the background, once the surrounding
+	 * transaction (if any) has committed
+	 */
+	public void schedule(CalculatorImage image) {
+		schedule(image.getId(), image.getImagePath());
+	}
+
+	public void schedule(Long imageId, String imagePath) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					submit(imageId, imagePath);
+				}
+			});
+		} else {
+			submit(imageId, imagePath);
+		}
+	}
+
+	/**
+	 * Backfill: hand images that have no renditions yet (uploaded before the pipeline existed, or
+	 * skipped while the workers were busy) to the free worker slots. What does not fit is picked
+	 * up by the next run, so the scheduler thread never waits on the pool. Images that failed
+	 * max-attempts times are left alone until their upload changes.
+	 */
+	@Scheduled(fixedDelayString = "${app.images.derivatives.backfill-interval-ms:60000}",
+			initialDelayString = "${app.images.derivatives.backfill-initial-delay-ms:30000}")
+	public void runBackfill() {
+		if (!backfillEnabled) {
+			return;
+		}
+		int submitted = backfill();
+		if (submitted > 0) {
+			log.info("Backfilling derivatives of {} images", submitted);
+		}
+	}
+
+	/**
+	 * @return The number of images submitted
+	 */
+	public int backfill() {
+		int submitted = 0;
+		for (Long imageId : imageRepository.findIdsWithoutDerivatives(maxAttempts)) {
+			Optional<CalculatorImage> image = imageRepository.findById(imageId);
+			if (image.isEmpty() || !inFlight.add(image.get().getImagePath())) {
+				continue;
+			}
+			if (!slots.tryAcquire()) {
+				inFlight.remove(image.get().getImagePath());
+				break;
+			}
+			execute(imageId, image.get().getImagePath());
+			submitted++;
+		}
+		return submitted;
+	}
+
+	/**
+	 * Files the renditions of an upload are written to. Uploads are content-addressed, so images
+	 * sharing an upload share its renditions, and they are deleted with the upload.
+	 */
+	public static List<String> derivativePaths(String imagePath) {
+		return SIZES.stream().map(size -> derivativePath(imagePath, size)).toList();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void submit(Long imageId, String imagePath) {
+		if (!inFlight.add(imagePath)) {
+			log.info("Derivatives of {} already in progress, leaving image {} for the backfill", imagePath, imageId);
+			return;
+		}
+		if (!slots.tryAcquire()) {
+			inFlight.remove(imagePath);
+			log.info("Image derivative workers busy, leaving image {} for the backfill", imageId);
+			return;
+		}
+		execute(imageId, imagePath);
+	}
+
+	/**
+	 * Run on the pool; the caller holds a slot and has marked the upload in flight, both released
+	 * when the rendition is done
+	 */
+	private void execute(Long imageId, String imagePath) {
+		try {
+			executor.execute(() -> {
+				try {
+					// Another image with the same upload may already have them
+					Map<String, String> paths = imageRepository.findFirstByImagePathAndThumbPathIsNotNull(imagePath)
+						.map(sibling -> Map.of("thumb", sibling.getThumbPath(), "card", sibling.getCardPath(),
+							"full", sibling.getFullPath()))
+						.orElse(null);
+					if (paths == null) {
+						paths = generate(imagePath);
+					}
+					// Only if the image still uses this upload; the optimizer may have replaced it meanwhile
+					imageRepository.updateDerivatives(imageId, imagePath, paths.get("thumb"), paths.get("card"), paths.get("full"));
+				} catch (Exception e) {
+					log.warn("Could not generate derivatives of image {} ({}): {}", imageId, imagePath, e.getMessage());
+					recordFailure(imageId, imagePath, e);
+				} finally {
+					inFlight.remove(imagePath);
+					slots.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.remove(imagePath);
+			slots.release();
+			log.warn("Could not schedule derivatives of image {}: {}", imageId, e.getMessage());
+		}
+	}
+
+	/**
+	 * Count the failed attempt so the backfill stops retrying an upload that keeps failing
+	 */
+	private void recordFailure(Long imageId, String imagePath, Exception failure) {
+		String error = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+		try {
+			imageRepository.recordDerivativeFailure(imageId, imagePath, LocalDateTime.now(),
+				error.length() > 500 ? error.substring(0, 500) : error);
+			imageRepository.findById(imageId)
+				.filter(image -> image.getDerivativeAttempts() != null && image.getDerivativeAttempts() >= maxAttempts)
+				.ifPresent(image -> log.warn("Giving up on derivatives of image {} after {} attempts", imageId,
+					image.getDerivativeAttempts()));
+		} catch (RuntimeException e) {
+			log.warn("Could not record the derivative failure of image {}: {}", imageId, e.getMessage());
+		}
+	}
+
+	/**
+	 * Write the renditions of an upload next to it. Images are never enlarged: a size the original
+	 * already fits in reuses the next smaller rendition when that one is not reduced either.
+	 * Renditions carry no metadata, so the EXIF orientation of the upload is applied to the pixels.
+	 * Formats ImageIO cannot read map every size to the original.
+	 * @return The rendition path per size
+	 */
+	Map<String, String> generate(String imagePath) throws IOException {
+		Map<String, String> paths = new LinkedHashMap<>();
+		Path source = fileStorageService.loadFile(imagePath);
+		BufferedImage original = ImageIO.read(source.toFile());
+		if (original == null) {
+			SIZES.forEach(size -> paths.put(size, imagePath));
+			return paths;
+		}
+		original = ImageOptimizerService.orient(original, ImageOptimizerService.exifOrientation(source));
+
+		int longestSide = Math.max(original.getWidth(), original.getHeight());
+		List<Integer> bounds = List.of(thumbSize, cardSize, fullSize);
+		List<String> written = new ArrayList<>();
+		String previous = null;
+		for (int i = 0; i < SIZES.size(); i++) {
+			if (previous != null && longestSide <= bounds.get(i - 1)) {
+				paths.put(SIZES.get(i), previous);
+				continue;
+			}
+			String path = derivativePath(imagePath, SIZES.get(i));
+			writeJpeg(scale(original, bounds.get(i)), fileStorageService.localPath(path), jpegQuality, false);
+			fileStorageService.publish(path);
+			written.add(path);
+			paths.put(SIZES.get(i), path);
+			previous = path;
+		}
+		log.debug("Generated derivatives of {}: {}", imagePath, written);
+		return paths;
+	}
+
+	private static String derivativePath(String imagePath, String size) {
+		String baseName = imagePath.contains(".") ? imagePath.substring(0, imagePath.lastIndexOf('.')) : imagePath;
+		return baseName + "-" + size + ".jpg";
+	}
+
+	/**
+	 * Scale so the longest side fits the bound, halving first so large reductions stay smooth.
+	 * Transparency is flattened onto white since JPEG has no alpha.
+	 */
+	static BufferedImage scale(BufferedImage source, int bound) {
+		double factor = Math.min(1.0, (double) bound / Math.max(source.getWidth(), source.getHeight()));
+		int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * factor));
+		int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+		BufferedImage current = source;
+		int width = source.getWidth();
+		int height = source.getHeight();
+		do {
+			width = Math.max(targetWidth, width / 2);
+			height = Math.max(targetHeight, height / 2);
+			BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D graphics = step.createGraphics();
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, width, height);
+			graphics.drawImage(current, 0, 0, width, height, null);
+			graphics.dispose();
+			current = step;
+		} while (width != targetWidth || height != targetHeight);
+		return current;
+	}
+
+	/**
+	 * Write a baseline or progressive JPEG without any metadata beyond the JFIF header, through a
+	 * temp file of its own so readers never see a partial image and concurrent writers of the same
+	 * target never share one
+	 */
+	static void writeJpeg(BufferedImage image, Path target, float quality, boolean progressive) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(quality);
+		if (progressive) {
+			param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+		}
+		FileStorageService.prepareDirectory(target);
+		Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "rendition", ".tmp");
+		try {
+			try (OutputStream stream = Files.newOutputStream(temp);
+				 ImageOutputStream output = ImageIO.createImageOutputStream(stream)) {
+				writer.setOutput(output);
+				writer.write(null, new IIOImage(image, null, null), param);
+			} finally {
+				writer.dispose();
+			}
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
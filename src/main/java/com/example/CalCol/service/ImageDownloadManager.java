@@ -0,0 +1,262 @@
+package com.example.CalCol.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads images for import from a URL on a bounded worker pool, so slow or huge remote images
+ * cannot pile up on request threads. The body is streamed to a temp file and the download stops
+ * as soon as it passes the size cap; the response must claim to be an image and the first bytes
+ * must be a JPEG, PNG, GIF or WebP signature. Accepted files are stored content-addressed.
+ */
+@Service
+@Slf4j
+public class ImageDownloadManager {
+
+	private final OutboundHttpClients httpClients;
+	private final FileStorageService fileStorageService;
+	private final ThreadPoolExecutor executor;
+
+	@Value("${app.images.download.max-bytes:20971520}")
+	private long maxBytes;
+
+	@Value("${app.images.download.timeout-ms:60000}")
+	private long timeoutMs;
+
+	public ImageDownloadManager(OutboundHttpClients httpClients, FileStorageService fileStorageService,
+			@Value("${app.images.download.threads:4}") int threads,
+			@Value("${app.images.download.queue-capacity:50}") int queueCapacity) {
+		this.httpClients = httpClients;
+		this.fileStorageService = fileStorageService;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+				Thread thread = new Thread(runnable, "image-download-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+	}
+
+	/**
+	 * Download one image and wait for it
+	 * @return The stored filename
+	 */
+	public String download(String imageUrl) throws IOException {
+		return await(submit(imageUrl), imageUrl);
+	}
+
+	/**
+	 * Download several images in parallel on the worker pool. URLs that do not fit in the queue
+	 * fail with a "busy" error instead of waiting.
+	 * @return One result per distinct URL, in the given order
+	 */
+	public List<DownloadResult> downloadAll(List<String> imageUrls) {
+		Map<String, CompletableFuture<String>> downloads = new LinkedHashMap<>();
+		for (String imageUrl : imageUrls) {
+			downloads.computeIfAbsent(imageUrl, this::submit);
+		}
+		List<DownloadResult> results = new ArrayList<>();
+		downloads.forEach((imageUrl, download) -> {
+			try {
+				results.add(new DownloadResult(imageUrl, await(download, imageUrl), null));
+			} catch (IOException e) {
+				results.add(new DownloadResult(imageUrl, null, e.getMessage()));
+			}
+		});
+		return results;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Cancelling the returned future does not stop a running download; a file stored after the
+	 * caller gave up is released again, since no image will reference it
+	 */
+	private CompletableFuture<String> submit(String imageUrl) {
+		CompletableFuture<String> download = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				if (download.isDone()) {
+					return;
+				}
+				try {
+					String filename = fetch(imageUrl);
+					if (!download.complete(filename)) {
+						log.info("Download of image {} finished after it was given up, releasing {}", imageUrl, filename);
+						fileStorageService.release(filename, ImageDerivativeService.derivativePaths(filename));
+					}
+				} catch (IOException | RuntimeException e) {
+					download.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			download.completeExceptionally(new IOException("Too many downloads in progress, try again later"));
+		}
+		return download;
+	}
+
+	private String await(CompletableFuture<String> download, String imageUrl) throws IOException {
+		try {
+			// Queued downloads get their own timeout once they start; this only guards against a stuck pool
+			return download.get(timeoutMs * 2, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			log.warn("Download of image {} failed: {}", imageUrl, cause.getMessage());
+			throw cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+		} catch (TimeoutException e) {
+			download.cancel(true);
+			throw new IOException("Download timed out: " + imageUrl);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Download interrupted: " + imageUrl);
+		}
+	}
+
+	/**
+	 * Stream the image to a temp file, validate it and store it
+	 */
+	String fetch(String imageUrl) throws IOException {
+		URI uri;
+		try {
+			uri = URI.create(imageUrl.trim());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid URL: " + imageUrl);
+		}
+		if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+			throw new IOException("Only http and https URLs can be imported");
+		}
+
+		Path tempPath = fileStorageService.createTempFile();
+		try {
+			AtomicLong received = new AtomicLong();
+			try {
+				httpClients.client("download").get()
+					.uri(uri)
+					.exchangeToMono(response -> {
+						if (!response.statusCode().is2xxSuccessful()) {
+							return response.releaseBody()
+								.then(Mono.error(new IOException("Remote server answered " + response.statusCode().value())));
+						}
+						MediaType contentType = response.headers().contentType().orElse(null);
+						if (contentType != null && !"image".equals(contentType.getType())
+								&& !MediaType.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(contentType)) {
+							return response.releaseBody().then(Mono.error(new IOException("Not an image: " + contentType)));
+						}
+						OptionalLong contentLength = response.headers().contentLength();
+						if (contentLength.isPresent() && contentLength.getAsLong() > maxBytes) {
+							return response.releaseBody().then(Mono.error(tooLarge()));
+						}
+						Flux<DataBuffer> body = response.bodyToFlux(DataBuffer.class)
+							.handle((buffer, sink) -> {
+								if (received.addAndGet(buffer.readableByteCount()) > maxBytes) {
+									DataBufferUtils.release(buffer);
+									sink.error(tooLarge());
+								} else {
+									sink.next(buffer);
+								}
+							});
+						return DataBufferUtils.write(body, tempPath).then(Mono.fromSupplier(received::get));
+					})
+					// Cancels the exchange, so the connection stops reading too
+					.timeout(Duration.ofMillis(timeoutMs),
+						Mono.error(() -> new IOException("Download timed out after " + timeoutMs + " ms")))
+					.block();
+			} catch (RuntimeException e) {
+				Throwable cause = Exceptions.unwrap(e);
+				throw cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+			}
+
+			String extension = imageExtension(tempPath);
+			if (extension == null) {
+				throw new IOException("Not a JPEG, PNG, GIF or WebP image");
+			}
+			String filename = fileStorageService.storeTempFile(tempPath, extension);
+			log.info("Image downloaded from {} as {} ({} bytes)", imageUrl, filename, received.get());
+			return filename;
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private IOException tooLarge() {
+		return new IOException("Image is larger than " + maxBytes + " bytes");
+	}
+
+	/**
+	 * File extension for the image signature at the start of a file, or null for anything else
+	 */
+	static String imageExtension(Path file) throws IOException {
+		byte[] header = new byte[12];
+		int read;
+		try (InputStream input = Files.newInputStream(file)) {
+			read = input.readNBytes(header, 0, header.length);
+		}
+		if (read >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+			return ".jpg";
+		}
+		if (read >= 8 && Arrays.equals(Arrays.copyOf(header, 8),
+				new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})) {
+			return ".png";
+		}
+		String ascii = new String(header, 0, read, java.nio.charset.StandardCharsets.ISO_8859_1);
+		if (ascii.startsWith("GIF87a") || ascii.startsWith("GIF89a")) {
+			return ".gif";
+		}
+		if (read == 12 && ascii.startsWith("RIFF") && ascii.substring(8).equals("WEBP")) {
+			return ".webp";
+		}
+		return null;
+	}
+
+	/**
+	 * Outcome of one URL of a batch import
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class DownloadResult {
+		private String imageUrl;
+		private String filename;
+		private String error;
+
+		public boolean isSuccess() {
+			return filename != null;
+		}
+	}
+}
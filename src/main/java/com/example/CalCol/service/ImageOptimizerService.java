@@ -0,0 +1,489 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optimizes uploaded photos after they are saved: the EXIF orientation is applied to the pixels,
+ * the image is scaled down to a maximum dimension and re-encoded as a progressive JPEG without
+ * metadata. The optimized file replaces the upload when it is meaningfully smaller, had to be
+ * rotated or carried metadata; the original is released, or kept when configured. Renditions are generated from the
+ * result. Work runs on a bounded pool; images it cannot take are left for the bulk re-optimization.
+ */
+@Service
+@Slf4j
+public class ImageOptimizerService {
+
+	private static final int EXIF_ORIENTATION_TAG = 0x0112;
+	private static final Set<String> PNG_METADATA_CHUNKS = Set.of("eXIf", "tEXt", "iTXt", "zTXt");
+
+	private final CalculatorImageRepository imageRepository;
+	private final FileStorageService fileStorageService;
+	private final ImageDerivativeService imageDerivativeService;
+	private final ThreadPoolExecutor executor;
+	// Running plus queued optimizations, as for the derivative pool
+	private final Semaphore slots;
+	// The bulk job keeps at most one image per worker in the pool, leaving the queue to new uploads
+	private final Semaphore reoptimizeSlots;
+	private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean reoptimizing = new AtomicBoolean();
+	private final Counter optimized;
+	private final Counter unchanged;
+	private final Counter failed;
+	private final Counter bytesSaved;
+
+	@Value("${app.images.optimize.enabled:true}")
+	private boolean enabled;
+
+	@Value("${app.images.optimize.max-dimension:2560}")
+	private int maxDimension;
+
+	@Value("${app.images.optimize.jpeg-quality:0.82}")
+	private float jpegQuality;
+
+	@Value("${app.images.optimize.min-savings-percent:5}")
+	private int minSavingsPercent;
+
+	@Value("${app.images.optimize.keep-original:false}")
+	private boolean keepOriginal;
+
+	public ImageOptimizerService(CalculatorImageRepository imageRepository, FileStorageService fileStorageService,
+			ImageDerivativeService imageDerivativeService, MeterRegistry meterRegistry,
+			@Value("${app.images.optimize.threads:1}") int threads,
+			@Value("${app.images.optimize.queue-capacity:50}") int queueCapacity) {
+		this.imageRepository = imageRepository;
+		this.fileStorageService = fileStorageService;
+		this.imageDerivativeService = imageDerivativeService;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+				Thread thread = new Thread(runnable, "image-optimize-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		this.slots = new Semaphore(threads + queueCapacity);
+		this.reoptimizeSlots = new Semaphore(threads);
+		this.optimized = Counter.builder("images.optimize").tag("result", "optimized")
+			.description("Uploaded images run through the optimizer").register(meterRegistry);
+		this.unchanged = Counter.builder("images.optimize").tag("result", "unchanged")
+			.description("Uploaded images run through the optimizer").register(meterRegistry);
+		this.failed = Counter.builder("images.optimize").tag("result", "failed")
+			.description("Uploaded images run through the optimizer").register(meterRegistry);
+		this.bytesSaved = Counter.builder("images.optimize.bytes.saved").baseUnit("bytes")
+			.description("Bytes saved by re-encoding uploads").register(meterRegistry);
+	}
+
+	/**
+	 * Optimize a newly saved image in the background once the surrounding transaction (if any)
+	 * has committed, then generate its renditions
+	 */
+	public void schedule(CalculatorImage image) {
+		Long imageId = image.getId();
+		String imagePath = image.getImagePath();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					submit(imageId, imagePath);
+				}
+			});
+		} else {
+			submit(imageId, imagePath);
+		}
+	}
+
+	/**
+	 * Start re-optimizing every image that has not been through the optimizer, on a background
+	 * thread feeding the worker pool
+	 * @return False when a run is already in progress
+	 */
+	public boolean startReoptimization() {
+		if (!reoptimizing.compareAndSet(false, true)) {
+			return false;
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				reoptimizeAll();
+			} catch (RuntimeException e) {
+				log.error("Image re-optimization stopped", e);
+			} finally {
+				reoptimizing.set(false);
+			}
+		}, "image-reoptimize");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	/**
+	 * @return The number of images submitted
+	 */
+	int reoptimizeAll() {
+		int submitted = 0;
+		for (Long imageId : imageRepository.findIdsNotOptimized()) {
+			if (inFlight.contains(imageId)) {
+				continue;
+			}
+			Optional<CalculatorImage> image = imageRepository.findById(imageId);
+			if (image.isEmpty()) {
+				continue;
+			}
+			try {
+				reoptimizeSlots.acquire();
+				slots.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			execute(imageId, image.get().getImagePath(), reoptimizeSlots::release);
+			submitted++;
+		}
+		log.info("Image re-optimization submitted {} images", submitted);
+		return submitted;
+	}
+
+	public OptimizationStatus getStatus() {
+		Object[] totals = imageRepository.sumBytesSaved().get(0);
+		return new OptimizationStatus(enabled, reoptimizing.get(), ((Number) totals[0]).longValue(),
+			((Number) totals[1]).longValue(), imageRepository.countByOptimizedAtIsNull());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void submit(Long imageId, String imagePath) {
+		if (!enabled) {
+			imageDerivativeService.schedule(imageId, imagePath);
+			return;
+		}
+		if (inFlight.contains(imageId) || !slots.tryAcquire()) {
+			log.info("Image optimizer busy, leaving image {} for re-optimization", imageId);
+			imageDerivativeService.schedule(imageId, imagePath);
+			return;
+		}
+		execute(imageId, imagePath, () -> { });
+	}
+
+	/**
+	 * Run on the pool; the caller holds a slot, which is released when the image is done
+	 */
+	private void execute(Long imageId, String imagePath, Runnable done) {
+		inFlight.add(imageId);
+		try {
+			executor.execute(() -> {
+				try {
+					optimize(imageId, imagePath);
+				} finally {
+					inFlight.remove(imageId);
+					slots.release();
+					done.run();
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.remove(imageId);
+			slots.release();
+			done.run();
+			log.warn("Could not schedule optimization of image {}: {}", imageId, e.getMessage());
+			imageDerivativeService.schedule(imageId, imagePath);
+		}
+	}
+
+	private void optimize(Long imageId, String imagePath) {
+		String renditionSource = imagePath;
+		try {
+			Optimized result = optimizeFile(imagePath);
+			if (result == null) {
+				imageRepository.markOptimized(imageId, LocalDateTime.now());
+				unchanged.increment();
+			} else if (imageRepository.replaceWithOptimized(imageId, imagePath, result.getFilename(),
+					keepOriginal ? imagePath : null, result.getBytesSaved(), LocalDateTime.now()) == 0) {
+				// The image was deleted or changed while it was being optimized
+				fileStorageService.release(result.getFilename(), ImageDerivativeService.derivativePaths(result.getFilename()));
+				return;
+			} else {
+				if (!keepOriginal) {
+					fileStorageService.release(imagePath, ImageDerivativeService.derivativePaths(imagePath));
+				}
+				renditionSource = result.getFilename();
+				optimized.increment();
+				bytesSaved.increment(Math.max(0, result.getBytesSaved()));
+				log.info("Optimized image {}: {} bytes to {} bytes, {} saved", imageId, result.getOriginalBytes(),
+					result.getOptimizedBytes(), result.getBytesSaved());
+			}
+		} catch (Exception e) {
+			failed.increment();
+			log.warn("Could not optimize image {} ({}): {}", imageId, imagePath, e.getMessage());
+		}
+		imageDerivativeService.schedule(imageId, renditionSource);
+	}
+
+	/**
+	 * Re-encode an upload and store the result. GIF and WebP (possibly animated), PNG with
+	 * transparency and anything ImageIO cannot decode are left alone. Images whose re-encoding
+	 * saves less than the configured share are too, unless they had to be rotated (the renditions
+	 * and the metadata-free file would otherwise show them sideways) or carry metadata such as
+	 * the camera's GPS position, which the re-encoded file drops.
+	 * @return The stored optimized upload, or null to keep the upload as it is
+	 */
+	Optimized optimizeFile(String imagePath) throws IOException {
+		Path source = fileStorageService.loadFile(imagePath);
+		String extension = ImageDownloadManager.imageExtension(source);
+		if (!".jpg".equals(extension) && !".png".equals(extension)) {
+			return null;
+		}
+		long originalBytes = Files.size(source);
+		JpegMetadata metadata = ".jpg".equals(extension) ? jpegMetadata(source) : new JpegMetadata(1, pngHasMetadata(source));
+		int orientation = metadata.orientation();
+		BufferedImage image = read(source);
+		if (image == null || image.getColorModel().hasAlpha()) {
+			return null;
+		}
+
+		BufferedImage result = orient(ImageDerivativeService.scale(image, maxDimension), orientation);
+		Path tempPath = fileStorageService.createTempFile();
+		try {
+			ImageDerivativeService.writeJpeg(result, tempPath, jpegQuality, true);
+			long optimizedBytes = Files.size(tempPath);
+			if (orientation == 1 && !metadata.present()
+					&& optimizedBytes * 100 > originalBytes * (100 - minSavingsPercent)) {
+				return null;
+			}
+			return new Optimized(fileStorageService.storeTempFile(tempPath, ".jpg"), originalBytes, optimizedBytes);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/**
+	 * Decode an image, subsampling very large ones while reading so a panorama does not need its
+	 * full-resolution raster in memory. At least twice the target size is kept for smooth scaling.
+	 */
+	private BufferedImage read(Path source) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+				ImageReadParam param = reader.getDefaultReadParam();
+				if (longestSide > 4 * maxDimension) {
+					int subsampling = longestSide / (2 * maxDimension);
+					param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				}
+				return reader.read(0, param);
+			} catch (IIOException e) {
+				// E.g. CMYK JPEGs, which ImageIO cannot convert
+				log.debug("Cannot decode {}: {}", source, e.getMessage());
+				return null;
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * The EXIF orientation (1-8) of a JPEG, from the IFD0 of its APP1 Exif segment; 1 when absent
+	 */
+	static int exifOrientation(Path file) throws IOException {
+		return jpegMetadata(file).orientation();
+	}
+
+	/**
+	 * What the metadata segments of a JPEG hold: the EXIF orientation, and whether there are
+	 * APP1 (Exif, XMP) or APP13 (IPTC) segments at all
+	 */
+	static JpegMetadata jpegMetadata(Path file) throws IOException {
+		int orientation = 0;
+		boolean present = false;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (input.readUnsignedShort() != 0xFFD8) {
+				return new JpegMetadata(1, false);
+			}
+			while (true) {
+				int marker = input.readUnsignedShort();
+				// Metadata segments all come before the start of scan
+				if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+					break;
+				}
+				int length = input.readUnsignedShort() - 2;
+				if (length < 0) {
+					break;
+				}
+				present |= marker == 0xFFE1 || marker == 0xFFED;
+				if (marker != 0xFFE1 || orientation > 0) {
+					input.skipNBytes(length);
+					continue;
+				}
+				orientation = tiffOrientation(input.readNBytes(length));
+			}
+		} catch (EOFException e) {
+			// Truncated: go by what was read
+		}
+		return new JpegMetadata(orientation > 0 ? orientation : 1, present);
+	}
+
+	/**
+	 * Whether a PNG has eXIf or text chunks, where editors and cameras put Exif, XMP and comments
+	 */
+	static boolean pngHasMetadata(Path file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			input.skipNBytes(8);
+			while (true) {
+				int length = input.readInt();
+				String type = new String(input.readNBytes(4), StandardCharsets.ISO_8859_1);
+				if (PNG_METADATA_CHUNKS.contains(type)) {
+					return true;
+				}
+				if (type.equals("IEND") || length < 0) {
+					return false;
+				}
+				input.skipNBytes(length + 4L);
+			}
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	record JpegMetadata(int orientation, boolean present) { }
+
+	/**
+	 * @return The orientation in an APP1 Exif segment, 1 when it has none, or 0 when the segment
+	 * is not Exif (e.g. XMP)
+	 */
+	private static int tiffOrientation(byte[] segment) {
+		if (segment.length < 14 || !"Exif\0\0".equals(new String(segment, 0, 6, StandardCharsets.ISO_8859_1))) {
+			return 0;
+		}
+		ByteBuffer tiff = ByteBuffer.wrap(segment, 6, segment.length - 6).slice();
+		if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+			tiff.order(ByteOrder.LITTLE_ENDIAN);
+		} else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+			return 0;
+		}
+		if (tiff.getShort(2) != 42) {
+			return 0;
+		}
+		int ifd = tiff.getInt(4);
+		if (ifd < 8 || ifd + 2 > tiff.limit()) {
+			return 1;
+		}
+		int entries = tiff.getShort(ifd) & 0xFFFF;
+		for (int i = 0; i < entries; i++) {
+			int entry = ifd + 2 + i * 12;
+			if (entry + 12 > tiff.limit()) {
+				break;
+			}
+			if ((tiff.getShort(entry) & 0xFFFF) == EXIF_ORIENTATION_TAG) {
+				int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+				return orientation >= 1 && orientation <= 8 ? orientation : 1;
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Turn an image the way its EXIF orientation says it should be displayed
+	 */
+	static BufferedImage orient(BufferedImage image, int orientation) {
+		if (orientation <= 1 || orientation > 8) {
+			return image;
+		}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean transposed = orientation >= 5;
+		int targetWidth = transposed ? height : width;
+		int[] source = image.getRGB(0, 0, width, height, null, 0, width);
+		int[] target = new int[source.length];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int targetX;
+				int targetY;
+				switch (orientation) {
+					case 2 -> { targetX = width - 1 - x; targetY = y; }
+					case 3 -> { targetX = width - 1 - x; targetY = height - 1 - y; }
+					case 4 -> { targetX = x; targetY = height - 1 - y; }
+					case 5 -> { targetX = y; targetY = x; }
+					case 6 -> { targetX = height - 1 - y; targetY = x; }
+					case 7 -> { targetX = height - 1 - y; targetY = width - 1 - x; }
+					default -> { targetX = y; targetY = width - 1 - x; }
+				}
+				target[targetY * targetWidth + targetX] = source[y * width + x];
+			}
+		}
+		BufferedImage oriented = new BufferedImage(targetWidth, transposed ? width : height, BufferedImage.TYPE_INT_RGB);
+		oriented.setRGB(0, 0, targetWidth, oriented.getHeight(), target, 0, targetWidth);
+		return oriented;
+	}
+
+	/**
+	 * An upload re-encoded by the optimizer
+	 */
+	@Data
+	@AllArgsConstructor
+	static class Optimized {
+		private String filename;
+		private long originalBytes;
+		private long optimizedBytes;
+
+		long getBytesSaved() {
+			return originalBytes - optimizedBytes;
+		}
+	}
+
+	/**
+	 * Totals for the admin dashboard
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class OptimizationStatus {
+		private boolean enabled;
+		private boolean reoptimizing;
+		private long optimizedCount;
+		private long bytesSaved;
+		private long pendingCount;
+	}
+}
@@ -5,6 +5,7 @@ import com.example.CalCol.entity.CalculatorImage;
 import com.example.CalCol.repository.CalculatorImageRepository;
 import com.example.CalCol.repository.CalculatorRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -13,6 +14,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -22,6 +24,11 @@ public class ImageService {
 	private final CalculatorImageRepository imageRepository;
 	private final CalculatorRepository calculatorRepository;
 	private final FileStorageService fileStorageService;
+	private final ImageOptimizerService imageOptimizerService;
+	private final ImageDownloadManager imageDownloadManager;
+
+	@Value("${app.images.download.max-batch:50}")
+	private int maxBatchSize;
 
 	@Transactional
 	public CalculatorImage uploadImage(Long calculatorId, MultipartFile file, String username, boolean proposeForRepository) throws IOException {
@@ -39,7 +46,9 @@ public class ImageService {
 		image.setIsProposal(proposeForRepository);
 		image.setIsApproved(!proposeForRepository); // If not a proposal, auto-approve for user's own collection
 
-		return imageRepository.save(image);
+		CalculatorImage saved = imageRepository.save(image);
+		imageOptimizerService.schedule(saved);
+		return saved;
 	}
 
 	public Page<CalculatorImage> getPendingProposals(Pageable pageable) {
@@ -71,8 +80,8 @@ public class ImageService {
 		}
 
 		CalculatorImage image = imageOpt.get();
-		// Delete the file
-		fileStorageService.deleteFile(image.getImagePath());
+		// Release the file; it is deleted once no other image uses it
+		releaseFiles(image);
 		// Delete the record
 		imageRepository.delete(image);
 		return true;
@@ -91,35 +100,82 @@ public class ImageService {
 			return false;
 		}
 
-		fileStorageService.deleteFile(image.getImagePath());
+		releaseFiles(image);
 		imageRepository.delete(image);
 		return true;
 	}
 
+	/**
+	 * Release the uploads of an image that is being deleted: the upload itself and, when the
+	 * optimizer kept it, the original
+	 */
+	public void releaseFiles(CalculatorImage image) {
+		fileStorageService.release(image.getImagePath(), ImageDerivativeService.derivativePaths(image.getImagePath()));
+		if (image.getOriginalPath() != null) {
+			fileStorageService.release(image.getOriginalPath(), ImageDerivativeService.derivativePaths(image.getOriginalPath()));
+		}
+	}
+
 	public Optional<CalculatorImage> getImageById(Long imageId) {
 		return imageRepository.findById(imageId);
 	}
 
 	/**
-	 * Download and add an image from a URL
+	 * Download and add an image from a URL. The download runs on the download pool outside any
+	 * transaction; the image row is only written once the file is stored.
 	 */
-	@Transactional
 	public CalculatorImage addImageFromUrl(Long calculatorId, String imageUrl, String username, boolean proposeForRepository) throws IOException {
-		Optional<Calculator> calculatorOpt = calculatorRepository.findById(calculatorId);
-		if (calculatorOpt.isEmpty()) {
-			throw new IllegalArgumentException("Calculator not found");
+		Calculator calculator = calculatorRepository.findById(calculatorId)
+			.orElseThrow(() -> new IllegalArgumentException("Calculator not found"));
+
+		String filename = imageDownloadManager.download(imageUrl);
+		return saveDownloadedImage(calculator, filename, username, proposeForRepository);
+	}
+
+	/**
+	 * Download and add several images at once, e.g. a selection of image-search results.
+	 * Downloads run in parallel; images that fail are reported and the others are still added.
+	 * @return One result per distinct URL
+	 */
+	public List<ImageDownloadManager.DownloadResult> addImagesFromUrls(Long calculatorId, List<String> imageUrls,
+			String username, boolean proposeForRepository) {
+		Calculator calculator = calculatorRepository.findById(calculatorId)
+			.orElseThrow(() -> new IllegalArgumentException("Calculator not found"));
+		if (imageUrls.size() > maxBatchSize) {
+			throw new IllegalArgumentException("At most " + maxBatchSize + " images can be imported at once");
 		}
 
-		String filename = fileStorageService.downloadImageFromUrl(imageUrl);
+		List<ImageDownloadManager.DownloadResult> results = imageDownloadManager.downloadAll(imageUrls);
+		for (ImageDownloadManager.DownloadResult result : results) {
+			if (result.isSuccess()) {
+				try {
+					saveDownloadedImage(calculator, result.getFilename(), username, proposeForRepository);
+				} catch (RuntimeException e) {
+					result.setFilename(null);
+					result.setError(e.getMessage());
+				}
+			}
+		}
+		return results;
+	}
 
+	private CalculatorImage saveDownloadedImage(Calculator calculator, String filename, String username, boolean proposeForRepository) {
 		CalculatorImage image = new CalculatorImage();
-		image.setCalculator(calculatorOpt.get());
+		image.setCalculator(calculator);
 		image.setImagePath(filename);
 		image.setUploadedBy(username);
 		image.setIsProposal(proposeForRepository);
 		image.setIsApproved(!proposeForRepository); // If not a proposal, auto-approve for user's own collection
 
-		return imageRepository.save(image);
+		CalculatorImage saved;
+		try {
+			saved = imageRepository.save(image);
+		} catch (RuntimeException e) {
+			// The stored file has no image to belong to
+			fileStorageService.release(filename, ImageDerivativeService.derivativePaths(filename));
+			throw e;
+		}
+		imageOptimizerService.schedule(saved);
+		return saved;
 	}
 }
-
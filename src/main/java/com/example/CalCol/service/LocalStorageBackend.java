@@ -0,0 +1,47 @@
+package com.example.CalCol.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The default backend: the local upload directory is the store, so there is nothing to copy.
+ * Only suitable for a single application node.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+
+	@Override
+	public boolean isShared() {
+		return false;
+	}
+
+	@Override
+	public void put(String key, Path source) {
+		// Stored files already are in the upload directory
+	}
+
+	@Override
+	public boolean fetch(String key, Path target) {
+		return Files.exists(target);
+	}
+
+	@Override
+	public boolean exists(String key) {
+		return false;
+	}
+
+	@Override
+	public void delete(String key) {
+		// Deleting the local file is all there is
+	}
+
+	@Override
+	public URI readUrl(String key) {
+		return null;
+	}
+}
@@ -0,0 +1,281 @@
+package com.example.CalCol.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-memory positional inverted index over the mirrored museum pages.
+ * Lookups are local intersections of sorted posting lists, so museum search no longer has to
+ * download homepages for every enrichment. Each posting keeps the token positions of the term in
+ * the page text, so phrase matches and scores come from the index alone; page text is only read
+ * back from the compressed mirror for the snippet of the best page per site.
+ * The index is rebuilt by {@link MuseumSiteCrawler}.
+ */
+@Service
+@Slf4j
+public class MuseumIndex {
+
+	private static final Pattern TOKEN_SPLIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final Pattern SCRIPT_OR_STYLE = Pattern.compile("(?is)<(script|style)[^>]*>.*?</\\1>");
+	private static final Pattern TAG = Pattern.compile("<[^>]+>");
+	private static final Pattern ENTITY = Pattern.compile("&(#\\d+|[a-zA-Z]+);");
+	private static final Pattern TITLE = Pattern.compile("(?is)<title[^>]*>(.*?)</title>");
+	private static final int SNIPPET_CONTEXT = 100;
+	private static final int TITLE_BONUS = 10;
+
+	private volatile Snapshot snapshot = new Snapshot(List.of(), List.of(), Map.of(), Set.of());
+
+	/**
+	 * Replace the index with one built from the given pages
+	 */
+	public void rebuild(Collection<IndexedPage> pages) {
+		List<IndexedPage> docs = new ArrayList<>(pages);
+		List<String> titles = new ArrayList<>();
+		Map<String, PostingsBuilder> builders = new HashMap<>();
+		Set<String> sites = new HashSet<>();
+		for (int docId = 0; docId < docs.size(); docId++) {
+			IndexedPage page = docs.get(docId);
+			titles.add(normalize(page.title()));
+			String text = readText(page.file());
+			if (text == null) {
+				continue;
+			}
+			sites.add(page.siteUrl());
+			Map<String, List<Integer>> positions = new HashMap<>();
+			List<String> tokens = tokenize(text);
+			for (int position = 0; position < tokens.size(); position++) {
+				positions.computeIfAbsent(tokens.get(position), t -> new ArrayList<>()).add(position);
+			}
+			// Doc ids ascend, so every posting list comes out sorted
+			for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+				builders.computeIfAbsent(entry.getKey(), t -> new PostingsBuilder()).add(docId, entry.getValue());
+			}
+		}
+		Map<String, Postings> postings = new HashMap<>(builders.size() * 4 / 3 + 1);
+		builders.forEach((term, builder) -> postings.put(term, builder.build()));
+		snapshot = new Snapshot(docs, titles, postings, sites);
+		log.info("Museum index rebuilt: {} pages, {} terms, {} sites", docs.size(), postings.size(), sites.size());
+	}
+
+	/**
+	 * Whether any pages of the given museum site are indexed
+	 */
+	public boolean hasSite(String siteUrl) {
+		return snapshot.sites().contains(siteUrl);
+	}
+
+	public int size() {
+		return snapshot.docs().size();
+	}
+
+	/**
+	 * Find the best matching page per site for a query. A page matches when the query terms
+	 * appear as a phrase in its text; it scores one point per occurrence of the phrase, plus a
+	 * bonus when its title contains the phrase.
+	 * @return Best hit per site, in descending relevance
+	 */
+	public List<CalculatorMuseumSearchService.MuseumSearchResult> search(String query) {
+		Snapshot current = snapshot;
+		List<String> terms = tokenize(query);
+		if (terms.isEmpty() || current.docs().isEmpty()) {
+			return List.of();
+		}
+
+		List<Postings> lists = new ArrayList<>();
+		for (String term : terms) {
+			Postings list = current.postings().get(term);
+			if (list == null) {
+				return List.of();
+			}
+			lists.add(list);
+		}
+		// Walk the rarest term's pages and look each one up in the other lists
+		Postings rarest = lists.stream().min(Comparator.comparingInt(list -> list.docs().length)).orElseThrow();
+
+		String phrase = String.join(" ", terms);
+		Map<String, ScoredHit> bestPerSite = new LinkedHashMap<>();
+		int[][] positions = new int[terms.size()][];
+		candidates:
+		for (int docId : rarest.docs()) {
+			for (int i = 0; i < lists.size(); i++) {
+				positions[i] = lists.get(i).positionsIn(docId);
+				if (positions[i] == null) {
+					continue candidates;
+				}
+			}
+			int first = -1;
+			int occurrences = 0;
+			int next = 0;
+			for (int start : positions[0]) {
+				if (start >= next && phraseAt(positions, start)) {
+					first = first < 0 ? start : first;
+					occurrences++;
+					next = start + terms.size();
+				}
+			}
+			if (occurrences == 0) {
+				continue;
+			}
+			IndexedPage page = current.docs().get(docId);
+			int score = occurrences + (current.titles().get(docId).contains(phrase) ? TITLE_BONUS : 0);
+			ScoredHit existing = bestPerSite.get(page.siteUrl());
+			if (existing == null || score > existing.score()) {
+				bestPerSite.put(page.siteUrl(), new ScoredHit(page, score, first));
+			}
+		}
+
+		List<CalculatorMuseumSearchService.MuseumSearchResult> results = new ArrayList<>();
+		bestPerSite.values().stream()
+			.sorted(Comparator.comparingInt(ScoredHit::score).reversed())
+			.forEach(hit -> {
+				CalculatorMuseumSearchService.MuseumSearchResult result = toResult(hit, terms.size());
+				if (result != null) {
+					results.add(result);
+				}
+			});
+		return results;
+	}
+
+	/**
+	 * Visible text of an HTML page
+	 */
+	static String extractText(String html) {
+		String text = SCRIPT_OR_STYLE.matcher(html).replaceAll(" ");
+		text = TAG.matcher(text).replaceAll(" ");
+		return ENTITY.matcher(text).replaceAll(" ");
+	}
+
+	static String extractTitle(String html) {
+		Matcher matcher = TITLE.matcher(html);
+		return matcher.find() ? extractText(matcher.group(1)).trim() : "";
+	}
+
+	/**
+	 * Read a gzip-compressed mirrored page and return its visible text
+	 */
+	static String readText(Path file) {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			return extractText(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			log.debug("Could not read mirrored page {}: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null) {
+			return tokens;
+		}
+		for (String token : TOKEN_SPLIT.split(text.toLowerCase(Locale.ROOT))) {
+			if (!token.isEmpty()) {
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
+	private static String normalize(String text) {
+		return String.join(" ", tokenize(text));
+	}
+
+	/**
+	 * Whether term i of the phrase occurs at position start + i, for every term
+	 */
+	private static boolean phraseAt(int[][] positions, int start) {
+		for (int i = 1; i < positions.length; i++) {
+			if (Arrays.binarySearch(positions[i], start + i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Result for a hit, with a snippet around the first occurrence of the phrase in the page text
+	 * @return The result, or null when the page can no longer be read
+	 */
+	private static CalculatorMuseumSearchService.MuseumSearchResult toResult(ScoredHit hit, int phraseTokens) {
+		String text = readText(hit.page().file());
+		if (text == null) {
+			return null;
+		}
+		List<String> tokens = tokenize(text);
+		String normalizedText = String.join(" ", tokens);
+		int index = 0;
+		int phraseLength = -1;
+		for (int i = 0; i < tokens.size() && i < hit.position() + phraseTokens; i++) {
+			if (i < hit.position()) {
+				index += tokens.get(i).length() + 1;
+			} else {
+				phraseLength += tokens.get(i).length() + 1;
+			}
+		}
+		CalculatorMuseumSearchService.MuseumSearchResult result = new CalculatorMuseumSearchService.MuseumSearchResult();
+		result.setSiteUrl(hit.page().siteUrl());
+		result.setSearchUrl(hit.page().url());
+		result.setFound(true);
+		int start = Math.max(0, Math.min(normalizedText.length(), index) - SNIPPET_CONTEXT);
+		int end = Math.min(normalizedText.length(), index + Math.max(0, phraseLength) + SNIPPET_CONTEXT);
+		result.setSnippet(normalizedText.substring(start, end).trim());
+		return result;
+	}
+
+	/**
+	 * A mirrored page as seen by the index
+	 */
+	public record IndexedPage(String siteUrl, String url, String title, Path file) {
+	}
+
+	/**
+	 * Pages containing a term, ascending, with the term's ascending token positions in each
+	 */
+	private record Postings(int[] docs, int[][] positions) {
+
+		int[] positionsIn(int docId) {
+			int index = Arrays.binarySearch(docs, docId);
+			return index >= 0 ? positions[index] : null;
+		}
+	}
+
+	private static class PostingsBuilder {
+		private final List<Integer> docs = new ArrayList<>();
+		private final List<int[]> positions = new ArrayList<>();
+
+		void add(int docId, List<Integer> termPositions) {
+			docs.add(docId);
+			positions.add(termPositions.stream().mapToInt(Integer::intValue).toArray());
+		}
+
+		Postings build() {
+			return new Postings(docs.stream().mapToInt(Integer::intValue).toArray(), positions.toArray(int[][]::new));
+		}
+	}
+
+	private record ScoredHit(IndexedPage page, int score, int position) {
+	}
+
+	private record Snapshot(List<IndexedPage> docs, List<String> titles, Map<String, Postings> postings,
+			Set<String> sites) {
+	}
+}
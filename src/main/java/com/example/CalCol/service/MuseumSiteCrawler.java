@@ -0,0 +1,457 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Polite crawler that mirrors the calculator museum sites to local disk.
+ * Pages are revalidated with conditional requests (ETag / Last-Modified), stored gzip-compressed
+ * and fed into the {@link MuseumIndex}, so museum lookups during enrichment are local queries.
+ */
+@Service
+@Slf4j
+public class MuseumSiteCrawler {
+
+	private static final Pattern HREF = Pattern.compile("(?i)href\\s*=\\s*[\"']([^\"'#]+)");
+	private static final Pattern SKIPPED_EXTENSIONS = Pattern.compile(
+		"(?i).*\\.(jpe?g|png|gif|bmp|svg|ico|webp|pdf|zip|gz|rar|7z|exe|mp3|mp4|avi|mov|css|js|xml)$");
+	private static final String MANIFEST_FILE = "manifest.json";
+
+	private final MuseumIndex museumIndex;
+	private final WebClient webClient;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Path mirrorDir;
+	private final long delayMs;
+	private final int maxPagesPerSite;
+	private final String userAgent;
+
+	@Value("${app.museum.crawler.enabled:false}")
+	private boolean enabled;
+
+	public MuseumSiteCrawler(MuseumIndex museumIndex, OutboundHttpClients httpClients,
+			@Value("${app.museum.crawler.dir:data/museum-mirror}") String mirrorDir,
+			@Value("${app.museum.crawler.delay-ms:2000}") long delayMs,
+			@Value("${app.museum.crawler.max-pages-per-site:500}") int maxPagesPerSite,
+			@Value("${app.museum.crawler.max-page-bytes:2097152}") int maxPageBytes,
+			@Value("${app.museum.crawler.user-agent:CalculatorCollectorBot/1.0}") String userAgent) {
+		this.museumIndex = museumIndex;
+		this.mirrorDir = Paths.get(mirrorDir);
+		this.delayMs = delayMs;
+		this.maxPagesPerSite = maxPagesPerSite;
+		this.userAgent = userAgent;
+		this.webClient = httpClients.builder("museum-crawler")
+			.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(maxPageBytes))
+			.build();
+	}
+
+	/**
+	 * Build the index from whatever is already mirrored, so lookups work right after startup
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndex() {
+		rebuildIndex();
+	}
+
+	@Scheduled(fixedDelayString = "${app.museum.crawler.interval-ms:604800000}",
+			initialDelayString = "${app.museum.crawler.initial-delay-ms:300000}")
+	public void runScheduledCrawl() {
+		if (!enabled) {
+			return;
+		}
+		crawlAll();
+	}
+
+	/**
+	 * Refresh the mirror of every museum site and rebuild the index
+	 */
+	public synchronized void crawlAll() {
+		for (String site : CalculatorMuseumSearchService.MUSEUM_SITES) {
+			try {
+				crawlSite(site);
+			} catch (Exception e) {
+				log.warn("Crawl of museum site {} failed: {}", site, e.getMessage());
+			}
+		}
+		rebuildIndex();
+	}
+
+	/**
+	 * Mirror one site: breadth-first over same-host links, honouring robots.txt
+	 * @param siteUrl Site root, as listed in the museum site list
+	 * @return Statistics for this crawl
+	 */
+	public synchronized CrawlResult crawlSite(String siteUrl) {
+		URI root = URI.create(siteUrl);
+		Path siteDir = mirrorDir.resolve(root.getHost());
+		Map<String, MirroredPage> manifest = readManifest(siteDir).pages();
+		RobotsRules robots = fetchRobots(root);
+		long pageDelay = Math.max(delayMs, robots.crawlDelayMs());
+
+		CrawlResult result = new CrawlResult();
+		result.setSiteUrl(siteUrl);
+		Deque<String> queue = new ArrayDeque<>();
+		Set<String> seen = new HashSet<>();
+		queue.add(siteUrl);
+		seen.add(siteUrl);
+
+		int visited = 0;
+		while (!queue.isEmpty() && visited < maxPagesPerSite) {
+			String url = queue.poll();
+			if (!robots.allows(URI.create(url).getRawPath())) {
+				continue;
+			}
+			if (visited > 0) {
+				pause(pageDelay);
+			}
+			visited++;
+
+			String html = fetchPage(url, siteDir, manifest, result);
+			if (html == null) {
+				continue;
+			}
+			for (String link : extractLinks(root, url, html)) {
+				if (seen.add(link)) {
+					queue.add(link);
+				}
+			}
+		}
+
+		writeManifest(siteDir, new SiteManifest(siteUrl, manifest));
+		log.info("Crawled museum site {}: {} fetched, {} not modified, {} failed",
+			siteUrl, result.getFetched(), result.getNotModified(), result.getFailed());
+		return result;
+	}
+
+	/**
+	 * Rebuild the index from all mirrored pages on disk
+	 */
+	public void rebuildIndex() {
+		List<MuseumIndex.IndexedPage> pages = new ArrayList<>();
+		if (Files.isDirectory(mirrorDir)) {
+			try (Stream<Path> siteDirs = Files.list(mirrorDir)) {
+				siteDirs.filter(Files::isDirectory).forEach(siteDir -> {
+					SiteManifest manifest = readManifest(siteDir);
+					manifest.pages().forEach((url, page) -> pages.add(new MuseumIndex.IndexedPage(
+						manifest.siteUrl(), url, page.title(), siteDir.resolve(page.file()))));
+				});
+			} catch (IOException e) {
+				log.warn("Could not list museum mirror {}: {}", mirrorDir, e.getMessage());
+			}
+		}
+		museumIndex.rebuild(pages);
+	}
+
+	/**
+	 * Fetch a page, revalidating against the mirrored copy
+	 * @return The page HTML (fresh or from the mirror), or null if it is gone or not HTML
+	 */
+	private String fetchPage(String url, Path siteDir, Map<String, MirroredPage> manifest,
+			CrawlResult result) {
+		MirroredPage previous = manifest.get(url);
+		try {
+			FetchedPage fetched = webClient.get()
+				.uri(URI.create(url))
+				.headers(headers -> {
+					headers.set(HttpHeaders.USER_AGENT, userAgent);
+					if (previous != null && previous.etag() != null) {
+						headers.set(HttpHeaders.IF_NONE_MATCH, previous.etag());
+					}
+					if (previous != null && previous.lastModified() != null) {
+						headers.set(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified());
+					}
+				})
+				.exchangeToMono(response -> {
+					HttpHeaders headers = response.headers().asHttpHeaders();
+					if (response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+						return response.releaseBody().thenReturn(new FetchedPage(HttpStatus.NOT_MODIFIED.value(), headers, null));
+					}
+					if (!response.statusCode().is2xxSuccessful()) {
+						return response.releaseBody().thenReturn(new FetchedPage(response.statusCode().value(), headers, null));
+					}
+					MediaType contentType = headers.getContentType();
+					if (contentType != null && !MediaType.TEXT_HTML.isCompatibleWith(contentType)) {
+						return response.releaseBody().thenReturn(new FetchedPage(response.statusCode().value(), headers, null));
+					}
+					return response.bodyToMono(byte[].class)
+						.defaultIfEmpty(new byte[0])
+						.map(body -> new FetchedPage(response.statusCode().value(), headers, body));
+				})
+				.timeout(Duration.ofSeconds(30))
+				.block();
+
+			if (fetched == null) {
+				result.setFailed(result.getFailed() + 1);
+				return null;
+			}
+			if (fetched.status() == HttpStatus.NOT_MODIFIED.value() && previous != null) {
+				result.setNotModified(result.getNotModified() + 1);
+				return readPage(siteDir.resolve(previous.file()));
+			}
+			if (fetched.status() == HttpStatus.NOT_FOUND.value() || fetched.status() == HttpStatus.GONE.value()) {
+				removePage(siteDir, manifest, url);
+				return null;
+			}
+			if (fetched.body() == null) {
+				result.setFailed(result.getFailed() + 1);
+				return null;
+			}
+
+			String html = new String(fetched.body(), StandardCharsets.UTF_8);
+			String file = sha1(url) + ".html.gz";
+			writePage(siteDir.resolve(file), fetched.body());
+			manifest.put(url, new MirroredPage(
+				fetched.headers().getETag(),
+				fetched.headers().getFirst(HttpHeaders.LAST_MODIFIED),
+				file,
+				MuseumIndex.extractTitle(html)));
+			result.setFetched(result.getFetched() + 1);
+			return html;
+		} catch (Exception e) {
+			log.debug("Could not fetch museum page {}: {}", url, e.getMessage());
+			result.setFailed(result.getFailed() + 1);
+			// Keep crawling from the last good copy
+			return previous != null ? readPage(siteDir.resolve(previous.file())) : null;
+		}
+	}
+
+	/**
+	 * Same-host links of a page, resolved and without fragments
+	 */
+	static List<String> extractLinks(URI root, String pageUrl, String html) {
+		List<String> links = new ArrayList<>();
+		URI base = URI.create(pageUrl);
+		Matcher matcher = HREF.matcher(html);
+		while (matcher.find()) {
+			try {
+				URI link = base.resolve(matcher.group(1).trim());
+				if (link.getScheme() == null || !link.getScheme().startsWith("http")
+						|| !root.getHost().equalsIgnoreCase(link.getHost())) {
+					continue;
+				}
+				String path = link.getRawPath() == null || link.getRawPath().isEmpty() ? "/" : link.getRawPath();
+				if (SKIPPED_EXTENSIONS.matcher(path).matches()) {
+					continue;
+				}
+				links.add(root.getScheme() + "://" + link.getRawAuthority() + path
+					+ (link.getRawQuery() != null ? "?" + link.getRawQuery() : ""));
+			} catch (Exception e) {
+				// Malformed href; skip it
+			}
+		}
+		return links;
+	}
+
+	private RobotsRules fetchRobots(URI root) {
+		try {
+			String robots = webClient.get()
+				.uri(root.resolve("/robots.txt"))
+				.header(HttpHeaders.USER_AGENT, userAgent)
+				.retrieve()
+				.bodyToMono(String.class)
+				.onErrorResume(e -> Mono.empty())
+				.timeout(Duration.ofSeconds(10))
+				.block();
+			return RobotsRules.parse(robots);
+		} catch (Exception e) {
+			log.debug("Could not fetch robots.txt for {}: {}", root, e.getMessage());
+			return RobotsRules.parse(null);
+		}
+	}
+
+	private SiteManifest readManifest(Path siteDir) {
+		Path file = siteDir.resolve(MANIFEST_FILE);
+		if (!Files.exists(file)) {
+			return new SiteManifest(null, new LinkedHashMap<>());
+		}
+		try {
+			SiteManifest manifest = objectMapper.readValue(file.toFile(), SiteManifest.class);
+			return new SiteManifest(manifest.siteUrl(),
+				manifest.pages() != null ? new LinkedHashMap<>(manifest.pages()) : new LinkedHashMap<>());
+		} catch (IOException e) {
+			log.warn("Could not read museum mirror manifest {}: {}", file, e.getMessage());
+			return new SiteManifest(null, new LinkedHashMap<>());
+		}
+	}
+
+	private void writeManifest(Path siteDir, SiteManifest manifest) {
+		try {
+			Files.createDirectories(siteDir);
+			Path temp = Files.createTempFile(siteDir, "manifest", ".tmp");
+			objectMapper.writeValue(temp.toFile(), manifest);
+			Files.move(temp, siteDir.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warn("Could not write museum mirror manifest for {}: {}", siteDir, e.getMessage());
+		}
+	}
+
+	private void writePage(Path file, byte[] body) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(), "page", ".tmp");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+			out.write(body);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private String readPage(Path file) {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			log.debug("Could not read mirrored page {}: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	private void removePage(Path siteDir, Map<String, MirroredPage> manifest, String url) {
+		MirroredPage removed = manifest.remove(url);
+		if (removed != null) {
+			try {
+				Files.deleteIfExists(siteDir.resolve(removed.file()));
+			} catch (IOException e) {
+				log.debug("Could not delete mirrored page {}: {}", removed.file(), e.getMessage());
+			}
+		}
+	}
+
+	private static void pause(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static String sha1(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not available", e);
+		}
+	}
+
+	/**
+	 * Per-site manifest: the site root and the mirrored pages keyed by URL
+	 */
+	public record SiteManifest(String siteUrl, Map<String, MirroredPage> pages) {
+	}
+
+	/**
+	 * Manifest entry for a mirrored page
+	 */
+	public record MirroredPage(String etag, String lastModified, String file, String title) {
+	}
+
+	private record FetchedPage(int status, HttpHeaders headers, byte[] body) {
+	}
+
+	/**
+	 * The rules of a robots.txt that apply to every user agent
+	 */
+	record RobotsRules(List<String> disallowed, long crawlDelayMs) {
+
+		static RobotsRules parse(String robots) {
+			List<String> disallowed = new ArrayList<>();
+			long crawlDelayMs = 0;
+			if (robots == null) {
+				return new RobotsRules(disallowed, crawlDelayMs);
+			}
+			boolean inWildcardGroup = false;
+			for (String rawLine : robots.split("\\r?\\n")) {
+				String line = rawLine.replaceFirst("#.*", "").trim();
+				int colon = line.indexOf(':');
+				if (colon < 0) {
+					continue;
+				}
+				String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+				String value = line.substring(colon + 1).trim();
+				switch (field) {
+					case "user-agent" -> inWildcardGroup = "*".equals(value);
+					case "disallow" -> {
+						if (inWildcardGroup && !value.isEmpty()) {
+							disallowed.add(value);
+						}
+					}
+					case "crawl-delay" -> {
+						if (inWildcardGroup) {
+							try {
+								crawlDelayMs = (long) (Double.parseDouble(value) * 1000);
+							} catch (NumberFormatException e) {
+								// Ignore malformed delay
+							}
+						}
+					}
+					default -> {
+					}
+				}
+			}
+			return new RobotsRules(disallowed, crawlDelayMs);
+		}
+
+		boolean allows(String path) {
+			String target = path == null || path.isEmpty() ? "/" : path;
+			return disallowed.stream().noneMatch(target::startsWith);
+		}
+	}
+
+	/**
+	 * Statistics of one site crawl
+	 */
+	public static class CrawlResult {
+		private String siteUrl;
+		private int fetched;
+		private int notModified;
+		private int failed;
+
+		public String getSiteUrl() { return siteUrl; }
+		public void setSiteUrl(String siteUrl) { this.siteUrl = siteUrl; }
+		public int getFetched() { return fetched; }
+		public void setFetched(int fetched) { this.fetched = fetched; }
+		public int getNotModified() { return notModified; }
+		public void setNotModified(int notModified) { this.notModified = notModified; }
+		public int getFailed() { return failed; }
+		public void setFailed(int failed) { this.failed = failed; }
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.CalCol.service;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared outbound HTTP layer. Every external provider (search APIs, AI APIs, museum sites,
+ * image downloads) gets its own connection pool with connect, response and read timeouts,
+ * keep-alive, gzip and a response size cap, so one hung provider cannot exhaust the others.
+ *
+ * Settings are read per provider from {@code app.http.<provider>.*}, falling back to built-in
+ * provider defaults and then to {@code app.http.defaults.*}.
+ */
+@Service
+@Slf4j
+public class OutboundHttpClients {
+
+	/**
+	 * Built-in overrides for providers whose calls are slow or large by nature
+	 */
+	private static final Map<String, Map<String, Object>> PROVIDER_DEFAULTS = Map.of(
+		"openai", Map.of("response-timeout-ms", 90000L, "read-timeout-ms", 60000L),
+		"anthropic", Map.of("response-timeout-ms", 90000L, "read-timeout-ms", 60000L)
+	);
+
+	private final Environment environment;
+	private final Map<String, ConnectionProvider> connectionProviders = new ConcurrentHashMap<>();
+	private final Map<String, WebClient> clients = new ConcurrentHashMap<>();
+
+	public OutboundHttpClients(Environment environment) {
+		this.environment = environment;
+	}
+
+	/**
+	 * Shared client for a provider
+	 * @param provider Provider name (e.g., "google", "openai", "museum")
+	 */
+	public WebClient client(String provider) {
+		return clients.computeIfAbsent(provider, p -> builder(p).build());
+	}
+
+	/**
+	 * Builder preconfigured with the provider's pooled connector and size cap, for callers that
+	 * need further customization. Clients built from it share the provider's connection pool.
+	 */
+	public WebClient.Builder builder(String provider) {
+		int maxInMemoryBytes = setting(provider, "max-in-memory-bytes", Integer.class, 2 * 1024 * 1024);
+		return WebClient.builder()
+			.clientConnector(new ReactorClientHttpConnector(httpClient(provider)))
+			.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(maxInMemoryBytes));
+	}
+
+	/**
+	 * Base URL of a provider's API, overridable for tests and stand-in servers
+	 * @param defaultUrl Production URL, without trailing slash
+	 */
+	public String baseUrl(String provider, String defaultUrl) {
+		String configured = environment.getProperty("app.http." + provider + ".base-url");
+		if (configured == null || configured.isBlank()) {
+			return defaultUrl;
+		}
+		return configured.endsWith("/") ? configured.substring(0, configured.length() - 1) : configured;
+	}
+
+	/**
+	 * Overall time a caller should wait for one call to the provider
+	 */
+	public Duration responseTimeout(String provider) {
+		return Duration.ofMillis(setting(provider, "response-timeout-ms", Long.class, 20000L));
+	}
+
+	private HttpClient httpClient(String provider) {
+		ConnectionProvider pool = connectionProviders.computeIfAbsent(provider, this::connectionProvider);
+		int connectTimeoutMs = setting(provider, "connect-timeout-ms", Integer.class, 5000);
+		long readTimeoutMs = setting(provider, "read-timeout-ms", Long.class, 15000L);
+
+		return HttpClient.create(pool)
+			.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+			.option(ChannelOption.SO_KEEPALIVE, true)
+			.keepAlive(true)
+			.compress(true)
+			.followRedirect(true)
+			.responseTimeout(responseTimeout(provider))
+			.doOnConnected(connection ->
+				connection.addHandlerLast(new ReadTimeoutHandler(readTimeoutMs, TimeUnit.MILLISECONDS)));
+	}
+
+	private ConnectionProvider connectionProvider(String provider) {
+		int maxConnections = setting(provider, "max-connections", Integer.class, 20);
+		long pendingAcquireTimeoutMs = setting(provider, "pending-acquire-timeout-ms", Long.class, 10000L);
+		long maxIdleTimeMs = setting(provider, "max-idle-time-ms", Long.class, 30000L);
+		log.debug("Creating HTTP connection pool for {} with {} connections", provider, maxConnections);
+		return ConnectionProvider.builder("outbound-" + provider)
+			.maxConnections(maxConnections)
+			.pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+			.maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+			.evictInBackground(Duration.ofMillis(maxIdleTimeMs))
+			.build();
+	}
+
+	private <T> T setting(String provider, String key, Class<T> type, T defaultValue) {
+		T value = environment.getProperty("app.http." + provider + "." + key, type);
+		if (value != null) {
+			return value;
+		}
+		Object builtIn = PROVIDER_DEFAULTS.getOrDefault(provider, Map.of()).get(key);
+		if (builtIn != null) {
+			return type.cast(builtIn);
+		}
+		return environment.getProperty("app.http.defaults." + key, type, defaultValue);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		connectionProviders.values().forEach(ConnectionProvider::dispose);
+	}
+}
@@ -0,0 +1,336 @@
+package com.example.CalCol.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker and bulkhead per external provider.
+ * A breaker opens when the failure or slow-call rate over the last calls crosses its threshold,
+ * fails fast while open, and lets a single probe through once the open period has passed.
+ * The bulkhead caps concurrent in-flight calls so one slow provider cannot tie up every thread.
+ *
+ * Settings are read per provider from {@code app.resilience.<provider>.*}, falling back to
+ * {@code app.resilience.defaults.*}. Museum sites use the provider name {@code museum-<host>}.
+ */
+@Service
+@Slf4j
+public class ProviderCircuitBreakers {
+
+	public static final String CLOSED = "CLOSED";
+	public static final String OPEN = "OPEN";
+	public static final String HALF_OPEN = "HALF_OPEN";
+
+	private final Environment environment;
+	private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+	public ProviderCircuitBreakers(Environment environment) {
+		this.environment = environment;
+	}
+
+	/**
+	 * Run a blocking provider call through the provider's breaker and bulkhead
+	 * @throws ProviderUnavailableException if the breaker is open or the bulkhead is full
+	 */
+	public <T> T execute(String provider, Supplier<T> call) {
+		Breaker breaker = breaker(provider);
+		Permit permit = breaker.acquire();
+		long start = System.nanoTime();
+		try {
+			T result = call.get();
+			breaker.onResult(permit, true, System.nanoTime() - start);
+			return result;
+		} catch (RuntimeException e) {
+			breaker.onResult(permit, false, System.nanoTime() - start);
+			throw e;
+		} finally {
+			breaker.release();
+		}
+	}
+
+	/**
+	 * Reactive variant of {@link #execute}. Cancellation (e.g. an outer timeout) counts as a failure.
+	 */
+	public <T> Mono<T> guard(String provider, Mono<T> call) {
+		return Mono.defer(() -> {
+			Breaker breaker = breaker(provider);
+			Permit permit;
+			try {
+				permit = breaker.acquire();
+			} catch (ProviderUnavailableException e) {
+				return Mono.error(e);
+			}
+			long start = System.nanoTime();
+			return call
+				.doOnSuccess(value -> breaker.onResult(permit, true, System.nanoTime() - start))
+				.doOnError(e -> breaker.onResult(permit, false, System.nanoTime() - start))
+				.doOnCancel(() -> breaker.onResult(permit, false, System.nanoTime() - start))
+				.doFinally(signal -> breaker.release());
+		});
+	}
+
+	/**
+	 * Current state of every provider that has been called, keyed by provider
+	 */
+	public Map<String, ProviderStatus> getAllStatus() {
+		Map<String, ProviderStatus> status = new TreeMap<>();
+		breakers.forEach((provider, breaker) -> status.put(provider, breaker.status()));
+		return status;
+	}
+
+	private Breaker breaker(String provider) {
+		return breakers.computeIfAbsent(provider, p -> new Breaker(p,
+			setting(p, "window-size", Integer.class, 20),
+			setting(p, "minimum-calls", Integer.class, 5),
+			setting(p, "failure-rate-threshold", Double.class, 0.5),
+			setting(p, "slow-call-rate-threshold", Double.class, 0.5),
+			Duration.ofMillis(setting(p, "slow-call-ms", Long.class, 10000L)),
+			Duration.ofMillis(setting(p, "open-ms", Long.class, 30000L)),
+			setting(p, "max-concurrent-calls", Integer.class, 10),
+			setting(p, "max-wait-ms", Long.class, 500L)));
+	}
+
+	private <T> T setting(String provider, String key, Class<T> type, T defaultValue) {
+		T value = environment.getProperty("app.resilience." + provider + "." + key, type);
+		if (value != null) {
+			return value;
+		}
+		return environment.getProperty("app.resilience.defaults." + key, type, defaultValue);
+	}
+
+	/**
+	 * Admission of one call
+	 * @param probe Whether the call is the half-open probe; only its outcome closes or reopens the circuit
+	 * @param generation The closed period the call started in; outcomes of calls from an earlier
+	 * period are not recorded
+	 */
+	private record Permit(boolean probe, long generation) {
+	}
+
+	/**
+	 * Breaker state plus bulkhead for one provider. Outcomes of the last windowSize calls are kept
+	 * in ring buffers.
+	 */
+	private static class Breaker {
+		private final String provider;
+		private final boolean[] failures;
+		private final boolean[] slowCalls;
+		private final int minimumCalls;
+		private final double failureRateThreshold;
+		private final double slowCallRateThreshold;
+		private final long slowCallNanos;
+		private final Duration openDuration;
+		private final Semaphore bulkhead;
+		private final int maxConcurrentCalls;
+		private final long maxWaitMs;
+
+		private String state = CLOSED;
+		private int recorded;
+		private int next;
+		private Instant openedAt;
+		private boolean probeInFlight;
+		private long generation;
+		private long rejectedCalls;
+
+		Breaker(String provider, int windowSize, int minimumCalls, double failureRateThreshold,
+				double slowCallRateThreshold, Duration slowCall, Duration openDuration,
+				int maxConcurrentCalls, long maxWaitMs) {
+			this.provider = provider;
+			this.failures = new boolean[windowSize];
+			this.slowCalls = new boolean[windowSize];
+			this.minimumCalls = minimumCalls;
+			this.failureRateThreshold = failureRateThreshold;
+			this.slowCallRateThreshold = slowCallRateThreshold;
+			this.slowCallNanos = slowCall.toNanos();
+			this.openDuration = openDuration;
+			this.bulkhead = new Semaphore(maxConcurrentCalls);
+			this.maxConcurrentCalls = maxConcurrentCalls;
+			this.maxWaitMs = maxWaitMs;
+		}
+
+		Permit acquire() {
+			Permit permit;
+			boolean probe = false;
+			synchronized (this) {
+				if (OPEN.equals(state)) {
+					if (Instant.now().isBefore(openedAt.plus(openDuration))) {
+						rejectedCalls++;
+						throw new ProviderUnavailableException(provider, "circuit open");
+					}
+					state = HALF_OPEN;
+					log.info("Circuit for {} half-open, probing", provider);
+				}
+				if (HALF_OPEN.equals(state)) {
+					if (probeInFlight) {
+						rejectedCalls++;
+						throw new ProviderUnavailableException(provider, "circuit half-open, probe in flight");
+					}
+					probeInFlight = true;
+					probe = true;
+				}
+				permit = new Permit(probe, generation);
+			}
+
+			boolean acquired;
+			try {
+				acquired = bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				acquired = false;
+			}
+			if (!acquired) {
+				synchronized (this) {
+					if (permit.probe()) {
+						probeInFlight = false;
+					}
+					rejectedCalls++;
+				}
+				throw new ProviderUnavailableException(provider, "too many concurrent calls");
+			}
+			return permit;
+		}
+
+		void release() {
+			bulkhead.release();
+		}
+
+		synchronized void onResult(Permit permit, boolean success, long elapsedNanos) {
+			boolean slow = elapsedNanos >= slowCallNanos;
+			if (permit.probe()) {
+				probeInFlight = false;
+				if (success && !slow) {
+					reset();
+					log.info("Circuit for {} closed after successful probe", provider);
+				} else {
+					open();
+				}
+				return;
+			}
+			if (!CLOSED.equals(state) || permit.generation() != generation) {
+				// A straggler from before the circuit opened; the window it belonged to is gone
+				return;
+			}
+
+			failures[next] = !success;
+			slowCalls[next] = slow;
+			next = (next + 1) % failures.length;
+			recorded = Math.min(recorded + 1, failures.length);
+
+			if (recorded >= minimumCalls
+					&& (failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold)) {
+				open();
+			}
+		}
+
+		synchronized ProviderStatus status() {
+			ProviderStatus status = new ProviderStatus();
+			status.setProvider(provider);
+			status.setState(state);
+			status.setFailureRate(recorded == 0 ? 0.0 : failureRate());
+			status.setSlowCallRate(recorded == 0 ? 0.0 : slowCallRate());
+			status.setRecordedCalls(recorded);
+			status.setRejectedCalls(rejectedCalls);
+			status.setInFlightCalls(maxConcurrentCalls - bulkhead.availablePermits());
+			status.setMaxConcurrentCalls(maxConcurrentCalls);
+			status.setOpenedAt(OPEN.equals(state) ? openedAt : null);
+			return status;
+		}
+
+		private void open() {
+			state = OPEN;
+			generation++;
+			openedAt = Instant.now();
+			log.warn("Circuit for {} opened (failure rate {}, slow-call rate {}); failing fast for {} s",
+				provider, String.format("%.2f", failureRate()), String.format("%.2f", slowCallRate()),
+				openDuration.toSeconds());
+		}
+
+		private void reset() {
+			state = CLOSED;
+			recorded = 0;
+			next = 0;
+			openedAt = null;
+		}
+
+		private double failureRate() {
+			return rate(failures);
+		}
+
+		private double slowCallRate() {
+			return rate(slowCalls);
+		}
+
+		private double rate(boolean[] outcomes) {
+			if (recorded == 0) {
+				return 0.0;
+			}
+			int count = 0;
+			for (int i = 0; i < recorded; i++) {
+				if (outcomes[i]) {
+					count++;
+				}
+			}
+			return (double) count / recorded;
+		}
+	}
+
+	/**
+	 * Thrown instead of calling a provider whose circuit is open or whose bulkhead is full
+	 */
+	public static class ProviderUnavailableException extends RuntimeException {
+		private final String provider;
+
+		public ProviderUnavailableException(String provider, String reason) {
+			super(provider + " unavailable: " + reason);
+			this.provider = provider;
+		}
+
+		public String getProvider() {
+			return provider;
+		}
+	}
+
+	/**
+	 * Breaker and bulkhead status of one provider
+	 */
+	public static class ProviderStatus {
+		private String provider;
+		private String state;
+		private double failureRate;
+		private double slowCallRate;
+		private int recordedCalls;
+		private long rejectedCalls;
+		private int inFlightCalls;
+		private int maxConcurrentCalls;
+		private Instant openedAt;
+
+		public String getProvider() { return provider; }
+		public void setProvider(String provider) { this.provider = provider; }
+		public String getState() { return state; }
+		public void setState(String state) { this.state = state; }
+		public double getFailureRate() { return failureRate; }
+		public void setFailureRate(double failureRate) { this.failureRate = failureRate; }
+		public double getSlowCallRate() { return slowCallRate; }
+		public void setSlowCallRate(double slowCallRate) { this.slowCallRate = slowCallRate; }
+		public int getRecordedCalls() { return recordedCalls; }
+		public void setRecordedCalls(int recordedCalls) { this.recordedCalls = recordedCalls; }
+		public long getRejectedCalls() { return rejectedCalls; }
+		public void setRejectedCalls(long rejectedCalls) { this.rejectedCalls = rejectedCalls; }
+		public int getInFlightCalls() { return inFlightCalls; }
+		public void setInFlightCalls(int inFlightCalls) { this.inFlightCalls = inFlightCalls; }
+		public int getMaxConcurrentCalls() { return maxConcurrentCalls; }
+		public void setMaxConcurrentCalls(int maxConcurrentCalls) { this.maxConcurrentCalls = maxConcurrentCalls; }
+		public Instant getOpenedAt() { return openedAt; }
+		public void setOpenedAt(Instant openedAt) { this.openedAt = openedAt; }
+	}
+}
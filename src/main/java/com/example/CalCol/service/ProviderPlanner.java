@@ -0,0 +1,313 @@
+package com.example.CalCol.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Decides per enrichment request which search providers to call, in which order and for how many
+ * results. Every call's latency and relevant-result yield (results kept by the relevance filter per
+ * result requested) is tracked per provider and operation. Providers are called best yield per
+ * second first, asked for just enough results to reach the target, and skipped when their quota is
+ * nearly used up or their results are almost always filtered out. Calls stop once the target
+ * number of relevant results is in. Decisions and outcomes are published as metrics. Searches
+ * answered without calling the provider (from the cache, or shared with an identical search in
+ * flight) count towards the target but not towards the statistics.
+ */
+@Service
+@Slf4j
+public class ProviderPlanner {
+
+	public static final String DECISION_CALL = "call";
+	public static final String DECISION_EXPLORE = "explore";
+	public static final String DECISION_SKIP_UNCONFIGURED = "skip-unconfigured";
+	public static final String DECISION_SKIP_QUOTA = "skip-quota";
+	public static final String DECISION_SKIP_LOW_YIELD = "skip-low-yield";
+	public static final String DECISION_SKIP_ENOUGH = "skip-enough";
+
+	/**
+	 * Most results a provider's API returns per call
+	 */
+	private static final Map<String, Integer> PROVIDER_MAX_RESULTS = Map.of(
+		"google", 10,
+		"bing", 50,
+		"brave", 20
+	);
+
+	// Assumed until a provider has been measured
+	private static final double PRIOR_YIELD = 0.5;
+	private static final double PRIOR_LATENCY_MS = 1000.0;
+	// Weight of the newest sample in the moving averages
+	private static final double ALPHA = 0.2;
+	// Result counts are rounded up to this step so cache keys repeat
+	private static final int RESULT_STEP = 5;
+
+	private final QuotaService quotaService;
+	private final MeterRegistry meterRegistry;
+	private final Map<String, ProviderStats> stats = new ConcurrentHashMap<>();
+
+	@Value("${app.enrichment.planner.enabled:true}")
+	private boolean enabled;
+
+	@Value("${app.enrichment.planner.min-samples:5}")
+	private int minSamples;
+
+	@Value("${app.enrichment.planner.min-yield:0.1}")
+	private double minYield;
+
+	@Value("${app.enrichment.planner.explore-every:10}")
+	private int exploreEvery;
+
+	@Value("${app.enrichment.planner.quota-reserve:0.05}")
+	private double quotaReserve;
+
+	public ProviderPlanner(QuotaService quotaService, MeterRegistry meterRegistry) {
+		this.quotaService = quotaService;
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * One provider search with a result count
+	 */
+	@FunctionalInterface
+	public interface ProviderSearch<T> {
+		ProviderResult<T> search(String provider, int maxResults);
+	}
+
+	/**
+	 * Results of one provider search
+	 * @param providerCalled Whether the provider was actually called; false for results served
+	 * from the cache or shared with a concurrent identical search, and for skipped calls
+	 */
+	public record ProviderResult<T>(List<T> results, boolean providerCalled) {
+	}
+
+	/**
+	 * Run one search operation over the candidate providers following the plan
+	 * @param operation Operation name used for statistics and metrics (e.g., "web", "images")
+	 * @param providers Candidate providers, in their default order
+	 * @param configured Whether a provider has credentials configured
+	 * @param defaultMaxResults Results requested per provider when planning is disabled
+	 * @param target Relevant results after which no further providers are called
+	 * @param search The search itself; it must return only relevant (filtered) results
+	 * @return Results by provider, in call order; skipped providers are absent
+	 */
+	public <T> Map<String, List<T>> run(String operation, List<String> providers, Predicate<String> configured,
+			int defaultMaxResults, int target, ProviderSearch<T> search) {
+		Map<String, List<T>> results = new LinkedHashMap<>();
+		if (!enabled) {
+			for (String provider : providers) {
+				results.put(provider, resultsOf(search.search(provider, defaultMaxResults)));
+			}
+			return results;
+		}
+
+		int found = 0;
+		for (Candidate candidate : rank(operation, providers)) {
+			String provider = candidate.stats.provider;
+			String decision = decide(candidate.stats, configured.test(provider), found, target);
+			count(operation, provider, decision);
+			if (!DECISION_CALL.equals(decision) && !DECISION_EXPLORE.equals(decision)) {
+				log.debug("Planner: {} {} -> {}", provider, operation, decision);
+				continue;
+			}
+
+			int maxResults = resultsToRequest(provider, candidate.stats.yield(), target - found, defaultMaxResults);
+			long start = System.nanoTime();
+			ProviderResult<T> outcome = search.search(provider, maxResults);
+			long elapsed = System.nanoTime() - start;
+			List<T> providerResults = resultsOf(outcome);
+			int kept = providerResults.size();
+			if (outcome != null && outcome.providerCalled()) {
+				record(candidate.stats, operation, maxResults, kept, elapsed);
+			}
+			log.debug("Planner: {} {} -> {} ({} requested, {} relevant, {} ms{})", provider, operation, decision,
+				maxResults, kept, TimeUnit.NANOSECONDS.toMillis(elapsed),
+				outcome != null && outcome.providerCalled() ? "" : ", provider not called");
+
+			results.put(provider, providerResults);
+			found += kept;
+		}
+		return results;
+	}
+
+	private static <T> List<T> resultsOf(ProviderResult<T> outcome) {
+		return outcome != null && outcome.results() != null ? outcome.results() : new ArrayList<>();
+	}
+
+	/**
+	 * Current statistics per provider and operation
+	 */
+	public Map<String, ProviderStatsView> getAllStats() {
+		Map<String, ProviderStatsView> views = new LinkedHashMap<>();
+		stats.values().stream()
+			.sorted(Comparator.comparing((ProviderStats s) -> s.operation).thenComparing(s -> s.provider))
+			.forEach(s -> views.put(s.provider + "/" + s.operation, s.view()));
+		return views;
+	}
+
+	private String decide(ProviderStats providerStats, boolean configured, int found, int target) {
+		if (!configured) {
+			return DECISION_SKIP_UNCONFIGURED;
+		}
+		if (found >= target) {
+			return DECISION_SKIP_ENOUGH;
+		}
+		int limit = quotaService.getMonthlyLimit(providerStats.provider);
+		int remaining = quotaService.getRemainingQuota(providerStats.provider);
+		if (remaining <= 0 || remaining < limit * quotaReserve) {
+			return DECISION_SKIP_QUOTA;
+		}
+		if (providerStats.samples() >= minSamples && providerStats.yield() < minYield) {
+			// Call a low-yield provider now and then so its statistics can recover
+			return providerStats.nextPlan() % Math.max(1, exploreEvery) == 0
+				? DECISION_EXPLORE : DECISION_SKIP_LOW_YIELD;
+		}
+		return DECISION_CALL;
+	}
+
+	/**
+	 * Providers ordered by expected relevant results per second of latency
+	 */
+	private List<Candidate> rank(String operation, List<String> providers) {
+		List<Candidate> candidates = new ArrayList<>();
+		for (int i = 0; i < providers.size(); i++) {
+			candidates.add(new Candidate(statsFor(providers.get(i), operation), i));
+		}
+		candidates.sort(Comparator.comparingDouble((Candidate c) -> -c.stats.yieldPerSecond())
+			.thenComparingInt(c -> c.defaultPosition));
+		return candidates;
+	}
+
+	/**
+	 * Enough results to reach the target at the provider's yield, in steps of five,
+	 * within what the provider returns per call
+	 */
+	int resultsToRequest(String provider, double yield, int stillNeeded, int defaultMaxResults) {
+		int providerMax = Math.min(PROVIDER_MAX_RESULTS.getOrDefault(provider, defaultMaxResults), 2 * defaultMaxResults);
+		double expected = Math.ceil(stillNeeded / Math.max(yield, 0.05));
+		int wanted = (int) Math.ceil(expected / RESULT_STEP) * RESULT_STEP;
+		return Math.max(1, Math.min(wanted, providerMax));
+	}
+
+	private void record(ProviderStats providerStats, String operation, int requested, int kept, long elapsedNanos) {
+		providerStats.record(requested, kept, elapsedNanos);
+		Timer.builder("enrichment.planner.call.latency")
+			.description("Latency of provider calls made by the enrichment planner")
+			.tags("provider", providerStats.provider, "operation", operation)
+			.register(meterRegistry)
+			.record(elapsedNanos, TimeUnit.NANOSECONDS);
+		DistributionSummary.builder("enrichment.planner.results.requested")
+			.description("Results requested per provider call")
+			.tags("provider", providerStats.provider, "operation", operation)
+			.register(meterRegistry)
+			.record(requested);
+		DistributionSummary.builder("enrichment.planner.results.relevant")
+			.description("Results kept by the relevance filter per provider call")
+			.tags("provider", providerStats.provider, "operation", operation)
+			.register(meterRegistry)
+			.record(kept);
+	}
+
+	private void count(String operation, String provider, String decision) {
+		Counter.builder("enrichment.planner.decisions")
+			.description("Planner decisions per provider and operation")
+			.tags("provider", provider, "operation", operation, "decision", decision)
+			.register(meterRegistry)
+			.increment();
+	}
+
+	private ProviderStats statsFor(String provider, String operation) {
+		return stats.computeIfAbsent(provider + "/" + operation, key -> {
+			ProviderStats created = new ProviderStats(provider, operation);
+			Gauge.builder("enrichment.planner.yield", created, ProviderStats::yield)
+				.description("Moving average of relevant results per result requested")
+				.tags("provider", provider, "operation", operation)
+				.register(meterRegistry);
+			Gauge.builder("enrichment.planner.latency.ms", created, ProviderStats::latencyMs)
+				.description("Moving average of provider call latency")
+				.tags("provider", provider, "operation", operation)
+				.register(meterRegistry);
+			return created;
+		});
+	}
+
+	private record Candidate(ProviderStats stats, int defaultPosition) {
+	}
+
+	/**
+	 * Moving averages for one provider and operation
+	 */
+	private static class ProviderStats {
+		private final String provider;
+		private final String operation;
+		private double yield = PRIOR_YIELD;
+		private double latencyMs = PRIOR_LATENCY_MS;
+		private long samples;
+		private long plans;
+
+		ProviderStats(String provider, String operation) {
+			this.provider = provider;
+			this.operation = operation;
+		}
+
+		synchronized void record(int requested, int kept, long elapsedNanos) {
+			double sampleYield = requested > 0 ? Math.min(1.0, kept / (double) requested) : 0.0;
+			double sampleLatency = elapsedNanos / 1_000_000.0;
+			if (samples == 0) {
+				yield = sampleYield;
+				latencyMs = sampleLatency;
+			} else {
+				yield += ALPHA * (sampleYield - yield);
+				latencyMs += ALPHA * (sampleLatency - latencyMs);
+			}
+			samples++;
+		}
+
+		synchronized double yield() { return yield; }
+		synchronized double latencyMs() { return latencyMs; }
+		synchronized long samples() { return samples; }
+		synchronized long nextPlan() { return ++plans; }
+
+		synchronized double yieldPerSecond() {
+			return yield * 1000.0 / Math.max(1.0, latencyMs);
+		}
+
+		synchronized ProviderStatsView view() {
+			ProviderStatsView view = new ProviderStatsView();
+			view.setProvider(provider);
+			view.setOperation(operation);
+			view.setYield(yield);
+			view.setLatencyMs(latencyMs);
+			view.setSamples(samples);
+			return view;
+		}
+	}
+
+	/**
+	 * Planner statistics for one provider and operation
+	 */
+	@Data
+	public static class ProviderStatsView {
+		private String provider;
+		private String operation;
+		private double yield;
+		private double latencyMs;
+		private long samples;
+	}
+}
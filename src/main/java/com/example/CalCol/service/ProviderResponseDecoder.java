@@ -0,0 +1,402 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Decodes search and AI provider responses with a streaming JSON parser into typed records.
+ * Only the fields the app uses are read; every other subtree is skipped without being
+ * materialized. List responses take a relevance filter that drops unwanted results as soon as
+ * they are read, before they are converted to search results.
+ */
+final class ProviderResponseDecoder {
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	private ProviderResponseDecoder() {
+	}
+
+	// Typed views of the provider responses, holding only the fields that are used
+
+	record GoogleItem(String title, String link, String snippet, String displayLink, GoogleImage image) {
+	}
+
+	record GoogleImage(String thumbnailLink, String contextLink, Integer width, Integer height) {
+	}
+
+	record BingWebPage(String name, String url, String snippet) {
+	}
+
+	record BingImage(String contentUrl, String thumbnailUrl, String name, String hostPageUrl, Integer width,
+			Integer height) {
+	}
+
+	record BraveWebResult(String title, String url, String description) {
+	}
+
+	record BraveImage(String url, String thumbnail, String title, String source, Integer width, Integer height) {
+	}
+
+	/**
+	 * Items of a list response
+	 * @param total Number of items in the response, before filtering
+	 * @param error Provider error reported in the response body, if any
+	 */
+	record Decoded<T>(List<T> items, int total, String error) {
+	}
+
+	@FunctionalInterface
+	private interface ItemReader<T> {
+		T read(JsonParser parser) throws IOException;
+	}
+
+	static Decoded<WebSearchService.SearchResult> googleResults(byte[] body, WebSearchService.RelevanceFilter filter) {
+		return readList(body, new String[] {"items"}, ProviderResponseDecoder::readGoogleItem,
+			item -> accepts(filter, item.title(), item.snippet(), item.link()),
+			item -> searchResult(item.title(), item.link(), item.snippet()));
+	}
+
+	static Decoded<WebSearchService.SearchResult> bingResults(byte[] body, WebSearchService.RelevanceFilter filter) {
+		return readList(body, new String[] {"webPages", "value"}, ProviderResponseDecoder::readBingWebPage,
+			page -> accepts(filter, page.name(), page.snippet(), page.url()),
+			page -> searchResult(page.name(), page.url(), page.snippet()));
+	}
+
+	static Decoded<WebSearchService.SearchResult> braveResults(byte[] body, WebSearchService.RelevanceFilter filter) {
+		return readList(body, new String[] {"web", "results"}, ProviderResponseDecoder::readBraveWebResult,
+			result -> accepts(filter, result.title(), result.description(), result.url()),
+			result -> searchResult(result.title(), result.url(), result.description()));
+	}
+
+	/**
+	 * Brave web results as typed records, for the Brave AI table lookup
+	 */
+	static Decoded<BraveWebResult> braveWebResults(byte[] body) {
+		return readList(body, new String[] {"web", "results"}, ProviderResponseDecoder::readBraveWebResult,
+			result -> true, result -> result);
+	}
+
+	static Decoded<WebSearchService.ImageSearchResult> googleImages(byte[] body,
+			WebSearchService.RelevanceFilter filter) {
+		return readList(body, new String[] {"items"}, ProviderResponseDecoder::readGoogleItem,
+			item -> hasText(item.link()) && accepts(filter, item.title(),
+				item.image() != null ? item.image().contextLink() : item.displayLink(), item.link()),
+			item -> {
+				GoogleImage image = item.image();
+				// Without image details the link doubles as thumbnail
+				return imageResult(item.link(), image != null ? image.thumbnailLink() : item.link(), item.title(),
+					image != null ? image.contextLink() : item.displayLink(),
+					image != null ? image.width() : null, image != null ? image.height() : null, "Google");
+			});
+	}
+
+	static Decoded<WebSearchService.ImageSearchResult> bingImages(byte[] body, WebSearchService.RelevanceFilter filter) {
+		return readList(body, new String[] {"value"}, ProviderResponseDecoder::readBingImage,
+			image -> hasText(image.contentUrl()) && accepts(filter, image.name(), image.hostPageUrl(), image.contentUrl()),
+			image -> imageResult(image.contentUrl(), image.thumbnailUrl(), image.name(), image.hostPageUrl(),
+				image.width(), image.height(), "Bing"));
+	}
+
+	static Decoded<WebSearchService.ImageSearchResult> braveImages(byte[] body, WebSearchService.RelevanceFilter filter) {
+		return readList(body, new String[] {"results"}, ProviderResponseDecoder::readBraveImage,
+			image -> hasText(image.url()) && accepts(filter, image.title(), image.source(), image.url()),
+			image -> imageResult(image.url(), image.thumbnail(), image.title(), image.source(),
+				image.width(), image.height(), "Brave"));
+	}
+
+	/**
+	 * Text of an OpenAI chat completion: choices[0].message.content
+	 */
+	static Decoded<String> openAIContent(byte[] body) {
+		return readList(body, new String[] {"choices"}, parser -> {
+			String content = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				if ("message".equals(parser.currentName()) && parser.nextToken() == JsonToken.START_OBJECT) {
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						String field = parser.currentName();
+						parser.nextToken();
+						if ("content".equals(field)) {
+							content = text(parser);
+						} else {
+							parser.skipChildren();
+						}
+					}
+				} else {
+					parser.nextToken();
+					parser.skipChildren();
+				}
+			}
+			return content;
+		}, content -> true, content -> content);
+	}
+
+	/**
+	 * Text blocks of an Anthropic message: content[].text
+	 */
+	static Decoded<String> anthropicContent(byte[] body) {
+		return readList(body, new String[] {"content"}, parser -> {
+			String text = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.currentName();
+				parser.nextToken();
+				if ("text".equals(field)) {
+					text = text(parser);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			return text;
+		}, text -> true, text -> text);
+	}
+
+	/**
+	 * Walk to the array at {@code path}, skipping every other subtree, and read its objects
+	 */
+	private static <R, T> Decoded<T> readList(byte[] body, String[] path, ItemReader<R> reader, Predicate<R> accept,
+			Function<R, T> convert) {
+		List<T> items = new ArrayList<>();
+		if (body == null || body.length == 0) {
+			return new Decoded<>(items, 0, null);
+		}
+		int total = 0;
+		String error = null;
+		try (JsonParser parser = JSON.createParser(body)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return new Decoded<>(items, 0, null);
+			}
+			int depth = 0;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.currentName();
+				JsonToken value = parser.nextToken();
+				if (depth == 0 && "error".equals(field)) {
+					error = readError(parser);
+				} else if (!field.equals(path[depth])) {
+					parser.skipChildren();
+				} else if (depth < path.length - 1 && value == JsonToken.START_OBJECT) {
+					// Descend; the loop continues with the fields of the nested object
+					depth++;
+				} else if (depth == path.length - 1 && value == JsonToken.START_ARRAY) {
+					while (parser.nextToken() != JsonToken.END_ARRAY) {
+						if (parser.currentToken() != JsonToken.START_OBJECT) {
+							parser.skipChildren();
+							continue;
+						}
+						R item = reader.read(parser);
+						total++;
+						if (item != null && accept.test(item)) {
+							items.add(convert.apply(item));
+						}
+					}
+					break;
+				} else {
+					parser.skipChildren();
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Invalid provider response: " + e.getMessage(), e);
+		}
+		return new Decoded<>(items, total, error);
+	}
+
+	private static GoogleItem readGoogleItem(JsonParser parser) throws IOException {
+		String title = null, link = null, snippet = null, displayLink = null;
+		GoogleImage image = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken value = parser.nextToken();
+			switch (field) {
+				case "title" -> title = text(parser);
+				case "link" -> link = text(parser);
+				case "snippet" -> snippet = text(parser);
+				case "displayLink" -> displayLink = text(parser);
+				case "image" -> image = value == JsonToken.START_OBJECT ? readGoogleImage(parser) : skip(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new GoogleItem(title, link, snippet, displayLink, image);
+	}
+
+	private static GoogleImage readGoogleImage(JsonParser parser) throws IOException {
+		String thumbnailLink = null, contextLink = null;
+		Integer width = null, height = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			parser.nextToken();
+			switch (field) {
+				case "thumbnailLink" -> thumbnailLink = text(parser);
+				case "contextLink" -> contextLink = text(parser);
+				case "width" -> width = integer(parser);
+				case "height" -> height = integer(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new GoogleImage(thumbnailLink, contextLink, width, height);
+	}
+
+	private static BingWebPage readBingWebPage(JsonParser parser) throws IOException {
+		String name = null, url = null, snippet = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			parser.nextToken();
+			switch (field) {
+				case "name" -> name = text(parser);
+				case "url" -> url = text(parser);
+				case "snippet" -> snippet = text(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new BingWebPage(name, url, snippet);
+	}
+
+	private static BingImage readBingImage(JsonParser parser) throws IOException {
+		String contentUrl = null, thumbnailUrl = null, name = null, hostPageUrl = null;
+		Integer width = null, height = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			parser.nextToken();
+			switch (field) {
+				case "contentUrl" -> contentUrl = text(parser);
+				case "thumbnailUrl" -> thumbnailUrl = text(parser);
+				case "name" -> name = text(parser);
+				case "hostPageUrl" -> hostPageUrl = text(parser);
+				case "width" -> width = integer(parser);
+				case "height" -> height = integer(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new BingImage(contentUrl, thumbnailUrl, name, hostPageUrl, width, height);
+	}
+
+	private static BraveWebResult readBraveWebResult(JsonParser parser) throws IOException {
+		String title = null, url = null, description = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			parser.nextToken();
+			switch (field) {
+				case "title" -> title = text(parser);
+				case "url" -> url = text(parser);
+				case "description" -> description = text(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new BraveWebResult(title, url, description);
+	}
+
+	private static BraveImage readBraveImage(JsonParser parser) throws IOException {
+		String url = null, thumbnail = null, title = null, source = null;
+		Integer width = null, height = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken value = parser.nextToken();
+			switch (field) {
+				case "url" -> url = text(parser);
+				// Either a URL or an object with the URL in "src"
+				case "thumbnail" -> thumbnail = value == JsonToken.START_OBJECT ? readSrc(parser) : text(parser);
+				case "title" -> title = text(parser);
+				case "source" -> source = text(parser);
+				case "width" -> width = integer(parser);
+				case "height" -> height = integer(parser);
+				default -> parser.skipChildren();
+			}
+		}
+		return new BraveImage(url, thumbnail, title, source, width, height);
+	}
+
+	private static String readSrc(JsonParser parser) throws IOException {
+		String src = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			parser.nextToken();
+			if ("src".equals(field)) {
+				src = text(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return src;
+	}
+
+	/**
+	 * Provider error object or message, as text for logging
+	 */
+	private static String readError(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			return text(parser);
+		}
+		String message = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			parser.nextToken();
+			if ("message".equals(field)) {
+				message = text(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return message != null ? message : "unknown error";
+	}
+
+	/**
+	 * Current value as text; objects and arrays are skipped and read as null
+	 */
+	private static String text(JsonParser parser) throws IOException {
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.VALUE_STRING) {
+			return parser.getText();
+		}
+		if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+			parser.skipChildren();
+		}
+		return null;
+	}
+
+	private static Integer integer(JsonParser parser) throws IOException {
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+			return parser.getIntValue();
+		}
+		parser.skipChildren();
+		return null;
+	}
+
+	private static <T> T skip(JsonParser parser) throws IOException {
+		parser.skipChildren();
+		return null;
+	}
+
+	private static boolean accepts(WebSearchService.RelevanceFilter filter, String... fields) {
+		return filter == null || filter.accepts(fields);
+	}
+
+	private static boolean hasText(String value) {
+		return value != null && !value.trim().isEmpty();
+	}
+
+	private static WebSearchService.SearchResult searchResult(String title, String url, String snippet) {
+		WebSearchService.SearchResult result = new WebSearchService.SearchResult();
+		result.setTitle(title);
+		result.setUrl(url);
+		result.setSnippet(snippet);
+		return result;
+	}
+
+	private static WebSearchService.ImageSearchResult imageResult(String imageUrl, String thumbnailUrl, String title,
+			String sourceUrl, Integer width, Integer height, String source) {
+		WebSearchService.ImageSearchResult result = new WebSearchService.ImageSearchResult();
+		result.setImageUrl(imageUrl);
+		result.setThumbnailUrl(thumbnailUrl);
+		result.setTitle(title);
+		result.setSourceUrl(sourceUrl);
+		result.setWidth(width);
+		result.setHeight(height);
+		result.setSource(source);
+		return result;
+	}
+}
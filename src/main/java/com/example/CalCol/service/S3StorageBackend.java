@@ -0,0 +1,365 @@
+package com.example.CalCol.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps uploads in an S3-compatible bucket (AWS S3, MinIO, Ceph RGW, ...), so several
+ * application nodes share them. Requests are signed with AWS Signature Version 4 and go through
+ * the "storage" client of {@link OutboundHttpClients}. Files are streamed from disk: small ones in
+ * a single PUT, larger ones as a multipart upload of fixed-size parts. Content-addressed uploads
+ * are sent with their hash as payload checksum, so the bucket verifies what it stores. Reads can
+ * be redirected to presigned URLs instead of going through the application.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3")
+@Slf4j
+public class S3StorageBackend implements StorageBackend {
+
+	private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+	private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+	private static final Pattern VERSIONED = Pattern.compile("[0-9a-f]{64}(-[a-z]+)?\\.[a-z0-9]{1,10}");
+	private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+	private static final Pattern ERROR_CODE = Pattern.compile("<Code>([^<]+)</Code>");
+	private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+		.withZone(ZoneOffset.UTC);
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final WebClient client;
+	private final URI endpoint;
+	private final String bucket;
+	private final String region;
+	private final String accessKey;
+	private final String secretKey;
+
+	@Value("${app.storage.s3.public-endpoint:}")
+	private String publicEndpoint;
+
+	@Value("${app.storage.s3.prefix:}")
+	private String prefix;
+
+	@Value("${app.storage.s3.path-style:true}")
+	private boolean pathStyle;
+
+	@Value("${app.storage.s3.multipart-threshold-bytes:16777216}")
+	private long multipartThreshold;
+
+	@Value("${app.storage.s3.part-size-bytes:8388608}")
+	private long partSize;
+
+	@Value("${app.storage.s3.request-timeout-ms:120000}")
+	private long requestTimeoutMs;
+
+	@Value("${app.storage.s3.redirect-reads:false}")
+	private boolean redirectReads;
+
+	@Value("${app.storage.s3.presign-seconds:900}")
+	private long presignSeconds;
+
+	public S3StorageBackend(OutboundHttpClients httpClients,
+			@Value("${app.storage.s3.endpoint:}") String endpoint,
+			@Value("${app.storage.s3.bucket}") String bucket,
+			@Value("${app.storage.s3.region:us-east-1}") String region,
+			@Value("${app.storage.s3.access-key}") String accessKey,
+			@Value("${app.storage.s3.secret-key}") String secretKey) {
+		this.client = httpClients.client("storage");
+		this.endpoint = URI.create(endpoint == null || endpoint.isBlank()
+			? "https://s3." + region + ".amazonaws.com" : endpoint.trim());
+		this.bucket = bucket;
+		this.region = region;
+		this.accessKey = accessKey;
+		this.secretKey = secretKey;
+		log.info("Uploads are stored in bucket {} at {}", bucket, this.endpoint);
+	}
+
+	@Override
+	public boolean isShared() {
+		return true;
+	}
+
+	@Override
+	public void put(String key, Path source) throws IOException {
+		long size = Files.size(source);
+		if (size >= multipartThreshold) {
+			putMultipart(key, source, size);
+		} else {
+			// The name of a content-addressed upload is the SHA-256 of its content
+			String payloadHash = FileStorageService.isContentAddressed(key) ? key.substring(0, 64) : UNSIGNED_PAYLOAD;
+			send(HttpMethod.PUT, key, Map.of(), payloadHash, headers -> {
+				objectHeaders(key).accept(headers);
+				headers.setContentLength(size);
+			}, BodyInserters.fromDataBuffers(read(source, 0, size)), this::success);
+		}
+		log.debug("Stored {} in the bucket ({} bytes)", key, size);
+	}
+
+	@Override
+	public boolean fetch(String key, Path target) throws IOException {
+		return send(HttpMethod.GET, key, Map.of(), UNSIGNED_PAYLOAD, headers -> { }, null, response -> {
+			if (response.statusCode().value() == 404) {
+				return response.releaseBody().thenReturn(false);
+			}
+			if (!response.statusCode().is2xxSuccessful()) {
+				return failure(response);
+			}
+			return DataBufferUtils.write(response.bodyToFlux(DataBuffer.class), target).thenReturn(true);
+		});
+	}
+
+	@Override
+	public boolean exists(String key) throws IOException {
+		return send(HttpMethod.HEAD, key, Map.of(), UNSIGNED_PAYLOAD, headers -> { }, null, response ->
+			response.statusCode().value() == 404 ? response.releaseBody().thenReturn(false) : success(response));
+	}
+
+	@Override
+	public void delete(String key) throws IOException {
+		send(HttpMethod.DELETE, key, Map.of(), UNSIGNED_PAYLOAD, headers -> { }, null, this::success);
+	}
+
+	@Override
+	public URI readUrl(String key) {
+		return redirectReads ? presign(key, Instant.now(), Duration.ofSeconds(presignSeconds)) : null;
+	}
+
+	/**
+	 * Upload parts of the file one after the other, each streamed from its offset. An upload that
+	 * fails is aborted, so the bucket does not keep its parts.
+	 */
+	private void putMultipart(String key, Path source, long size) throws IOException {
+		String initiated = send(HttpMethod.POST, key, Map.of("uploads", ""), UNSIGNED_PAYLOAD, objectHeaders(key),
+			null, this::body);
+		Matcher uploadIdMatcher = UPLOAD_ID.matcher(initiated);
+		if (!uploadIdMatcher.find()) {
+			throw new IOException("No upload id in the response to initiating the upload of " + key);
+		}
+		String uploadId = uploadIdMatcher.group(1);
+		try {
+			List<String> etags = new ArrayList<>();
+			for (long offset = 0; offset < size; offset += partSize) {
+				long length = Math.min(partSize, size - offset);
+				String partNumber = String.valueOf(etags.size() + 1);
+				etags.add(send(HttpMethod.PUT, key, Map.of("partNumber", partNumber, "uploadId", uploadId),
+					UNSIGNED_PAYLOAD, headers -> headers.setContentLength(length),
+					BodyInserters.fromDataBuffers(read(source, offset, length)), response ->
+						response.statusCode().is2xxSuccessful()
+							? response.releaseBody().thenReturn(response.headers().asHttpHeaders().getFirst(HttpHeaders.ETAG))
+							: failure(response)));
+			}
+			StringBuilder parts = new StringBuilder("<CompleteMultipartUpload>");
+			for (int i = 0; i < etags.size(); i++) {
+				parts.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+					.append(etags.get(i)).append("</ETag></Part>");
+			}
+			parts.append("</CompleteMultipartUpload>");
+			String completed = send(HttpMethod.POST, key, Map.of("uploadId", uploadId), UNSIGNED_PAYLOAD,
+				headers -> headers.setContentType(MediaType.APPLICATION_XML),
+				BodyInserters.fromValue(parts.toString()), this::body);
+			// Completion can fail after the response status was sent
+			if (completed.contains("<Error>")) {
+				throw new IOException("Completing the upload of " + key + " failed: " + errorCode(completed));
+			}
+			log.debug("Uploaded {} in {} parts", key, etags.size());
+		} catch (IOException | RuntimeException e) {
+			try {
+				send(HttpMethod.DELETE, key, Map.of("uploadId", uploadId), UNSIGNED_PAYLOAD, headers -> { }, null,
+					this::success);
+			} catch (IOException abort) {
+				log.warn("Could not abort the upload of {}: {}", key, abort.getMessage());
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Presigned GET URL of an object, signed for the host clients see
+	 */
+	URI presign(String key, Instant now, Duration validity) {
+		URI base = publicEndpoint == null || publicEndpoint.isBlank() ? endpoint : URI.create(publicEndpoint.trim());
+		String host = host(base);
+		Map<String, String> query = new TreeMap<>();
+		query.put("X-Amz-Algorithm", ALGORITHM);
+		query.put("X-Amz-Credential", accessKey + "/" + scope(now));
+		query.put("X-Amz-Date", AMZ_DATE.format(now));
+		query.put("X-Amz-Expires", String.valueOf(validity.toSeconds()));
+		query.put("X-Amz-SignedHeaders", "host");
+		String canonicalQuery = canonicalQuery(query);
+		String canonicalRequest = String.join("\n", "GET", path(key), canonicalQuery, "host:" + host + "\n", "host",
+			UNSIGNED_PAYLOAD);
+		return URI.create(base.getScheme() + "://" + host + path(key) + "?" + canonicalQuery
+			+ "&X-Amz-Signature=" + signature(now, canonicalRequest));
+	}
+
+	private <T> T send(HttpMethod method, String key, Map<String, String> query, String payloadHash,
+			Consumer<HttpHeaders> headers, BodyInserter<?, ? super ClientHttpRequest> body,
+			Function<ClientResponse, Mono<T>> handler) throws IOException {
+		Instant now = Instant.now();
+		String host = host(endpoint);
+		String canonicalQuery = canonicalQuery(new TreeMap<>(query));
+		String amzDate = AMZ_DATE.format(now);
+		String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+		String canonicalHeaders = "host:" + host + "\nx-amz-content-sha256:" + payloadHash + "\nx-amz-date:" + amzDate + "\n";
+		String canonicalRequest = String.join("\n", method.name(), path(key), canonicalQuery, canonicalHeaders,
+			signedHeaders, payloadHash);
+		URI uri = URI.create(endpoint.getScheme() + "://" + host + path(key)
+			+ (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+
+		WebClient.RequestBodySpec request = client.method(method).uri(uri)
+			.header("x-amz-content-sha256", payloadHash)
+			.header("x-amz-date", amzDate)
+			.header(HttpHeaders.AUTHORIZATION, ALGORITHM + " Credential=" + accessKey + "/" + scope(now)
+				+ ", SignedHeaders=" + signedHeaders + ", Signature=" + signature(now, canonicalRequest))
+			.headers(headers);
+		try {
+			return (body != null ? request.body(body) : request).exchangeToMono(handler)
+				.block(Duration.ofMillis(requestTimeoutMs));
+		} catch (IllegalStateException e) {
+			throw new IOException(method + " " + key + " timed out after " + requestTimeoutMs + " ms");
+		} catch (RuntimeException e) {
+			Throwable cause = Exceptions.unwrap(e);
+			throw cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+		}
+	}
+
+	private Consumer<HttpHeaders> objectHeaders(String key) {
+		return headers -> {
+			headers.setContentType(MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM));
+			// Returned on reads from the bucket, e.g. through presigned URLs
+			headers.setCacheControl(VERSIONED.matcher(key).matches()
+				? "public, max-age=31536000, immutable" : "public, no-cache");
+		};
+	}
+
+	private static Flux<DataBuffer> read(Path source, long offset, long length) {
+		return DataBufferUtils.takeUntilByteCount(DataBufferUtils.readAsynchronousFileChannel(
+			() -> AsynchronousFileChannel.open(source, StandardOpenOption.READ), offset,
+			DefaultDataBufferFactory.sharedInstance, BUFFER_SIZE), length);
+	}
+
+	private Mono<Boolean> success(ClientResponse response) {
+		return response.statusCode().is2xxSuccessful() ? response.releaseBody().thenReturn(true) : failure(response);
+	}
+
+	private Mono<String> body(ClientResponse response) {
+		return response.statusCode().is2xxSuccessful() ? response.bodyToMono(String.class).defaultIfEmpty("")
+			: failure(response);
+	}
+
+	private static <T> Mono<T> failure(ClientResponse response) {
+		return response.bodyToMono(String.class).defaultIfEmpty("").flatMap(body -> Mono.<T>error(new IOException(
+			"Storage backend answered " + response.statusCode().value() + " " + errorCode(body))));
+	}
+
+	private static String errorCode(String body) {
+		Matcher matcher = ERROR_CODE.matcher(body);
+		return matcher.find() ? matcher.group(1) : "";
+	}
+
+	private String host(URI base) {
+		int port = base.getPort();
+		boolean defaultPort = port == -1 || port == 80 && "http".equals(base.getScheme())
+			|| port == 443 && "https".equals(base.getScheme());
+		String host = base.getHost() + (defaultPort ? "" : ":" + port);
+		return pathStyle ? host : bucket + "." + host;
+	}
+
+	private String path(String key) {
+		String objectKey = uriEncode(prefix + key, false);
+		return pathStyle ? "/" + uriEncode(bucket, true) + "/" + objectKey : "/" + objectKey;
+	}
+
+	private String scope(Instant now) {
+		return AMZ_DATE.format(now).substring(0, 8) + "/" + region + "/s3/aws4_request";
+	}
+
+	private String signature(Instant now, String canonicalRequest) {
+		try {
+			String stringToSign = ALGORITHM + "\n" + AMZ_DATE.format(now) + "\n" + scope(now) + "\n"
+				+ HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+					.digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+			byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), AMZ_DATE.format(now).substring(0, 8));
+			key = hmac(key, region);
+			key = hmac(key, "s3");
+			key = hmac(key, "aws4_request");
+			return HexFormat.of().formatHex(hmac(key, stringToSign));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Cannot sign storage requests", e);
+		}
+	}
+
+	private static byte[] hmac(byte[] key, String data) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(key, "HmacSHA256"));
+		return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String canonicalQuery(Map<String, String> sortedQuery) {
+		StringBuilder query = new StringBuilder();
+		sortedQuery.forEach((name, value) -> {
+			if (!query.isEmpty()) {
+				query.append('&');
+			}
+			query.append(uriEncode(name, true)).append('=').append(uriEncode(value, true));
+		});
+		return query.toString();
+	}
+
+	/**
+	 * Percent-encoding of SigV4: everything but unreserved characters, and slashes in keys
+	 */
+	static String uriEncode(String value, boolean encodeSlash) {
+		StringBuilder encoded = new StringBuilder();
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			char c = (char) (b & 0xff);
+			if (c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9'
+					|| c == '-' || c == '_' || c == '.' || c == '~' || c == '/' && !encodeSlash) {
+				encoded.append(c);
+			} else {
+				encoded.append('%').append(String.format("%02X", b & 0xff));
+			}
+		}
+		return encoded.toString();
+	}
+}
@@ -0,0 +1,311 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache for paid search provider results.
+ * A bounded in-memory LRU tier sits in front of a disk tier with a TTL, so repeated
+ * queries (re-enrichment, several social posts for one calculator) do not spend quota.
+ * Both tiers hold serialized snapshots, so every lookup returns its own copy and callers can
+ * modify what they get (or what they stored) without affecting other callers. The disk tier is
+ * swept periodically: expired entries are removed and the oldest go once it exceeds its limit.
+ * Empty results expire after a much shorter TTL: they are as likely to come from a provider
+ * hiccup or an over-strict filter as from a query that really has no answers.
+ */
+@Service
+@Slf4j
+public class SearchResultCache {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	// Values are kept as JSON so each hit deserializes a fresh copy
+	private final Map<String, CacheEntry> memory;
+	private final Counter hits;
+	private final Counter misses;
+
+	@Value("${app.search.cache.enabled:true}")
+	private boolean enabled;
+
+	@Value("${app.search.cache.dir:data/search-cache}")
+	private String cacheDir;
+
+	@Value("${app.search.cache.ttl-hours:168}")
+	private long ttlHours;
+
+	@Value("${app.search.cache.empty-ttl-minutes:30}")
+	private long emptyTtlMinutes;
+
+	@Value("${app.search.cache.disk-max-entries:20000}")
+	private int diskMaxEntries;
+
+	public SearchResultCache(MeterRegistry meterRegistry,
+			@Value("${app.search.cache.memory-max-entries:500}") int memoryMaxEntries) {
+		this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				return size() > memoryMaxEntries;
+			}
+		};
+		this.hits = Counter.builder("search.cache.requests").tag("result", "hit")
+			.description("Search result cache lookups").register(meterRegistry);
+		this.misses = Counter.builder("search.cache.requests").tag("result", "miss")
+			.description("Search result cache lookups").register(meterRegistry);
+		Gauge.builder("search.cache.hit.ratio", this, SearchResultCache::getHitRatio)
+			.description("Fraction of search lookups served from cache").register(meterRegistry);
+		Gauge.builder("search.cache.memory.entries", this, c -> c.memorySize())
+			.description("Entries held in the in-memory tier").register(meterRegistry);
+	}
+
+	/**
+	 * Look up a cached result
+	 * @param provider Provider name (e.g., "google", "brave")
+	 * @param operation Operation name including any result-shaping parameters (e.g., "web/5")
+	 * @param query Raw query; it is normalized before building the key
+	 * @return Cached value, or null on a miss
+	 */
+	public <T> T get(String provider, String operation, String query, TypeReference<T> type) {
+		if (!enabled) {
+			return null;
+		}
+		String key = buildKey(provider, operation, query);
+
+		CacheEntry entry;
+		synchronized (memory) {
+			entry = memory.get(key);
+		}
+		if (entry != null && !entry.isExpired(ttl(entry.empty()))) {
+			try {
+				T value = objectMapper.readValue(entry.json(), type);
+				hits.increment();
+				return value;
+			} catch (IOException e) {
+				log.debug("Could not read cached search result {}: {}", key, e.getMessage());
+			}
+		}
+
+		T value = readFromDisk(key, type);
+		if (value != null) {
+			hits.increment();
+			return value;
+		}
+
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Store a result in both tiers; empty lists and maps are kept for the shorter empty TTL
+	 */
+	public void put(String provider, String operation, String query, Object value) {
+		if (!enabled || value == null) {
+			return;
+		}
+		String key = buildKey(provider, operation, query);
+		Instant now = Instant.now();
+		byte[] json;
+		try {
+			json = objectMapper.writeValueAsBytes(value);
+		} catch (IOException e) {
+			log.warn("Could not cache search result {}: {}", key, e.getMessage());
+			return;
+		}
+		boolean empty = isEmpty(value);
+		synchronized (memory) {
+			memory.put(key, new CacheEntry(json, now, empty));
+		}
+		writeToDisk(key, json, now, empty);
+	}
+
+	/**
+	 * Remove expired disk entries, then the oldest ones while the disk tier is over its limit.
+	 * Entries count from their file's modification time, which is when they were stored.
+	 */
+	@Scheduled(fixedDelayString = "${app.search.cache.sweep-interval-ms:3600000}",
+			initialDelayString = "${app.search.cache.sweep-initial-delay-ms:300000}")
+	public void sweepDisk() {
+		if (!enabled) {
+			return;
+		}
+		Path root = Paths.get(cacheDir);
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+		long expiredBefore = Instant.now().minus(ttl()).toEpochMilli();
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(root, 2)) {
+			files = walk.filter(file -> file.getFileName().toString().endsWith(".json")).toList();
+		} catch (IOException e) {
+			log.warn("Could not sweep search cache {}: {}", root, e.getMessage());
+			return;
+		}
+
+		List<DiskEntry> kept = new ArrayList<>();
+		int expired = 0;
+		for (Path file : files) {
+			try {
+				long storedAt = Files.getLastModifiedTime(file).toMillis();
+				if (storedAt < expiredBefore) {
+					Files.deleteIfExists(file);
+					expired++;
+				} else {
+					kept.add(new DiskEntry(file, storedAt));
+				}
+			} catch (IOException e) {
+				// Removed concurrently, or unreadable; the next sweep retries
+				log.debug("Could not sweep search cache entry {}: {}", file, e.getMessage());
+			}
+		}
+
+		int evicted = 0;
+		if (kept.size() > diskMaxEntries) {
+			kept.sort(Comparator.comparingLong(DiskEntry::storedAt));
+			for (DiskEntry entry : kept.subList(0, kept.size() - Math.max(0, diskMaxEntries))) {
+				try {
+					Files.deleteIfExists(entry.file());
+					evicted++;
+				} catch (IOException e) {
+					log.debug("Could not evict search cache entry {}: {}", entry.file(), e.getMessage());
+				}
+			}
+		}
+		if (expired > 0 || evicted > 0) {
+			log.info("Search cache sweep removed {} expired and {} excess entries", expired, evicted);
+		}
+	}
+
+	/**
+	 * Fraction of lookups that were hits since startup
+	 */
+	public double getHitRatio() {
+		double total = hits.count() + misses.count();
+		return total == 0 ? 0.0 : hits.count() / total;
+	}
+
+	/**
+	 * Normalize a query so trivially different spellings share one cache entry
+	 */
+	static String normalizeQuery(String query) {
+		if (query == null) {
+			return "";
+		}
+		return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+	private String buildKey(String provider, String operation, String query) {
+		return provider.toLowerCase(Locale.ROOT) + "|" + operation + "|" + normalizeQuery(query);
+	}
+
+	private int memorySize() {
+		synchronized (memory) {
+			return memory.size();
+		}
+	}
+
+	private Duration ttl() {
+		return Duration.ofHours(ttlHours);
+	}
+
+	private Duration ttl(boolean empty) {
+		return empty ? Duration.ofMinutes(emptyTtlMinutes) : ttl();
+	}
+
+	private static boolean isEmpty(Object value) {
+		return value instanceof Collection<?> collection ? collection.isEmpty()
+			: value instanceof Map<?, ?> map && map.isEmpty();
+	}
+
+	private <T> T readFromDisk(String key, TypeReference<T> type) {
+		Path file = diskPath(key);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try {
+			JsonNode node = objectMapper.readTree(file.toFile());
+			Instant storedAt = Instant.ofEpochMilli(node.path("storedAt").asLong());
+			boolean empty = node.path("empty").asBoolean(false);
+			if (storedAt.plus(ttl(empty)).isBefore(Instant.now()) || !key.equals(node.path("key").asText())) {
+				Files.deleteIfExists(file);
+				return null;
+			}
+			byte[] json = objectMapper.writeValueAsBytes(node.get("value"));
+			synchronized (memory) {
+				memory.put(key, new CacheEntry(json, storedAt, empty));
+			}
+			return objectMapper.readValue(json, type);
+		} catch (Exception e) {
+			log.debug("Could not read search cache entry {}: {}", file, e.getMessage());
+			return null;
+		}
+	}
+
+	private void writeToDisk(String key, byte[] json, Instant storedAt, boolean empty) {
+		Path file = diskPath(key);
+		try {
+			Files.createDirectories(file.getParent());
+			ObjectNode node = objectMapper.createObjectNode();
+			node.put("key", key);
+			node.put("storedAt", storedAt.toEpochMilli());
+			if (empty) {
+				node.put("empty", true);
+			}
+			node.set("value", objectMapper.readTree(json));
+			Path temp = Files.createTempFile(file.getParent(), "entry", ".tmp");
+			objectMapper.writeValue(temp.toFile(), node);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warn("Could not write search cache entry {}: {}", file, e.getMessage());
+		}
+	}
+
+	private Path diskPath(String key) {
+		String hash = sha256(key);
+		return Paths.get(cacheDir).resolve(hash.substring(0, 2)).resolve(hash + ".json");
+	}
+
+	private static String sha256(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private record DiskEntry(Path file, long storedAt) {
+	}
+
+	private record CacheEntry(byte[] json, Instant storedAt, boolean empty) {
+		boolean isExpired(Duration ttl) {
+			return storedAt.plus(ttl).isBefore(Instant.now());
+		}
+	}
+}
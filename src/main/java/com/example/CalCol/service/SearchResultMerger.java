@@ -0,0 +1,334 @@
+package com.example.CalCol.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Merges the web and image results of several search providers into one list.
+ * Results are interleaved by their rank at each provider. A result whose canonical URL was
+ * already seen, or whose text fingerprint is within a few bits of a kept result, is dropped
+ * and its provider is added to the kept result's provenance.
+ */
+@Service
+@Slf4j
+public class SearchResultMerger {
+
+	private static final Set<String> TRACKING_PARAMETERS = Set.of(
+		"fbclid", "gclid", "dclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "ref", "ref_src", "_ga", "_gl"
+	);
+
+	// Query parameters that only select a rendition of the same image
+	private static final Set<String> IMAGE_SIZE_PARAMETERS = Set.of(
+		"w", "h", "width", "height", "resize", "fit", "crop", "quality", "dpr", "size"
+	);
+
+	// Size and rendition suffixes in image file names, e.g. hp35-300x200.jpg or hp35_thumb.jpg
+	private static final Pattern IMAGE_SIZE_SUFFIX = Pattern.compile(
+		"(?:[-_](?:\\d{2,4}x\\d{2,4}|thumb|thumbnail|small|medium|large|scaled))+(?=\\.[A-Za-z0-9]{2,5}$)");
+
+	private static final Pattern INDEX_PAGE = Pattern.compile("/(?:index|default)\\.(?:html?|php|aspx?)$");
+	private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+	// Thumbnail prefixes in image file names, e.g. 640px-HP-35.jpg
+	private static final Pattern IMAGE_SIZE_PREFIX = Pattern.compile("^\\d{2,4}px-");
+
+	// Shorter texts are only merged on their URL; their fingerprints collide too easily
+	static final int MIN_FINGERPRINT_TOKENS = 8;
+
+	@Value("${app.enrichment.dedup.max-distance:6}")
+	private int maxDistance;
+
+	@Value("${app.enrichment.dedup.image-max-distance:16}")
+	private int imageMaxDistance;
+
+	/**
+	 * Merge web results per provider, in the order the providers were called
+	 */
+	public List<WebSearchService.SearchResult> mergeWeb(Map<String, List<WebSearchService.SearchResult>> byProvider) {
+		return merge(byProvider, this::copy,
+			result -> canonicalUrl(result.getUrl(), Set.of()),
+			result -> fingerprint(join(result.getTitle(), result.getSnippet())),
+			result -> "", maxDistance,
+			WebSearchService.SearchResult::getProviders);
+	}
+
+	/**
+	 * Merge image results per provider, in the order the providers were called.
+	 * Near-identical image URLs are only merged when their file names match, so different
+	 * photos of one calculator on the same site stay apart.
+	 */
+	public List<WebSearchService.ImageSearchResult> mergeImages(
+			Map<String, List<WebSearchService.ImageSearchResult>> byProvider) {
+		return merge(byProvider, this::copy,
+			result -> imageKey(result.getImageUrl()),
+			result -> urlFingerprint(imageKey(result.getImageUrl())),
+			result -> imageFileName(result.getImageUrl()), imageMaxDistance,
+			WebSearchService.ImageSearchResult::getProviders);
+	}
+
+	private <T> List<T> merge(Map<String, List<T>> byProvider, Function<T, T> copy, Function<T, String> key,
+			Function<T, Long> fingerprint, Function<T, String> group, int maxDistance,
+			Function<T, List<String>> providers) {
+		List<T> merged = new ArrayList<>();
+		List<Long> fingerprints = new ArrayList<>();
+		List<String> groups = new ArrayList<>();
+		Map<String, T> byKey = new HashMap<>();
+		int total = 0;
+
+		int depth = byProvider.values().stream().mapToInt(results -> results != null ? results.size() : 0).max().orElse(0);
+		for (int rank = 0; rank < depth; rank++) {
+			for (Map.Entry<String, List<T>> entry : byProvider.entrySet()) {
+				List<T> results = entry.getValue();
+				if (results == null || rank >= results.size()) {
+					continue;
+				}
+				total++;
+				T result = results.get(rank);
+				String provider = displayName(entry.getKey());
+				String resultKey = key.apply(result);
+				Long resultFingerprint = fingerprint.apply(result);
+				String resultGroup = group.apply(result);
+
+				T kept = resultKey != null ? byKey.get(resultKey) : null;
+				if (kept == null && resultFingerprint != null && resultGroup != null) {
+					kept = nearDuplicate(merged, fingerprints, groups, resultFingerprint, resultGroup, maxDistance);
+				}
+				if (kept != null) {
+					List<String> keptProviders = providers.apply(kept);
+					if (!keptProviders.contains(provider)) {
+						keptProviders.add(provider);
+					}
+					if (resultKey != null) {
+						byKey.putIfAbsent(resultKey, kept);
+					}
+					continue;
+				}
+
+				// Copy, so results shared through the cache or a coalesced search are not modified
+				T copied = copy.apply(result);
+				providers.apply(copied).add(provider);
+				merged.add(copied);
+				fingerprints.add(resultFingerprint);
+				groups.add(resultGroup);
+				if (resultKey != null) {
+					byKey.put(resultKey, copied);
+				}
+			}
+		}
+
+		if (merged.size() < total) {
+			log.debug("Merged {} search results into {}", total, merged.size());
+		}
+		return merged;
+	}
+
+	private static <T> T nearDuplicate(List<T> merged, List<Long> fingerprints, List<String> groups, long fingerprint,
+			String group, int maxDistance) {
+		if (maxDistance < 0) {
+			return null;
+		}
+		for (int i = 0; i < merged.size(); i++) {
+			Long other = fingerprints.get(i);
+			if (other != null && group.equals(groups.get(i)) && Long.bitCount(other ^ fingerprint) <= maxDistance) {
+				return merged.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * URL with scheme, "www.", default port, fragment, tracking parameters, index page and
+	 * trailing slash removed and the remaining query parameters sorted, so trivially
+	 * different links to one page compare equal
+	 * @param droppedParameters Further query parameters to remove
+	 * @return The canonical form, or null for a blank URL
+	 */
+	static String canonicalUrl(String url, Set<String> droppedParameters) {
+		if (url == null || url.isBlank()) {
+			return null;
+		}
+		URI uri;
+		try {
+			uri = new URI(url.trim());
+		} catch (URISyntaxException e) {
+			return url.trim().toLowerCase(Locale.ROOT);
+		}
+		String host = uri.getHost();
+		if (host == null) {
+			return url.trim().toLowerCase(Locale.ROOT);
+		}
+		host = host.toLowerCase(Locale.ROOT);
+		if (host.startsWith("www.")) {
+			host = host.substring(4);
+		}
+		StringBuilder canonical = new StringBuilder(host);
+		int port = uri.getPort();
+		if (port != -1 && port != 80 && port != 443) {
+			canonical.append(':').append(port);
+		}
+
+		String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+		path = INDEX_PAGE.matcher(path).replaceFirst("/");
+		int end = path.length();
+		while (end > 0 && path.charAt(end - 1) == '/') {
+			end--;
+		}
+		canonical.append(path, 0, end);
+
+		String query = uri.getRawQuery();
+		if (query != null && !query.isEmpty()) {
+			List<String> parameters = new ArrayList<>();
+			for (String parameter : query.split("&")) {
+				if (parameter.isEmpty()) {
+					continue;
+				}
+				String name = parameter.split("=", 2)[0].toLowerCase(Locale.ROOT);
+				if (name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name) || droppedParameters.contains(name)) {
+					continue;
+				}
+				parameters.add(parameter);
+			}
+			if (!parameters.isEmpty()) {
+				parameters.sort(null);
+				canonical.append('?').append(String.join("&", parameters));
+			}
+		}
+		return canonical.toString();
+	}
+
+	/**
+	 * Canonical image URL with size renditions folded together
+	 */
+	static String imageKey(String imageUrl) {
+		String canonical = canonicalUrl(imageUrl, IMAGE_SIZE_PARAMETERS);
+		if (canonical == null) {
+			return null;
+		}
+		int queryStart = canonical.indexOf('?');
+		String path = queryStart >= 0 ? canonical.substring(0, queryStart) : canonical;
+		String query = queryStart >= 0 ? canonical.substring(queryStart) : "";
+		return IMAGE_SIZE_SUFFIX.matcher(path).replaceFirst("") + query;
+	}
+
+	private static String imageFileName(String imageUrl) {
+		String key = imageKey(imageUrl);
+		if (key == null) {
+			return null;
+		}
+		int queryStart = key.indexOf('?');
+		String path = queryStart >= 0 ? key.substring(0, queryStart) : key;
+		String fileName = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+		return IMAGE_SIZE_PREFIX.matcher(fileName).replaceFirst("");
+	}
+
+	/**
+	 * 64-bit simhash over the words and word pairs of a text; near-identical texts differ in few bits
+	 * @return The fingerprint, or null when the text is too short to fingerprint reliably
+	 */
+	static Long fingerprint(String text) {
+		if (text == null) {
+			return null;
+		}
+		String[] words = Arrays.stream(NON_WORD.split(text.toLowerCase(Locale.ROOT)))
+			.filter(word -> !word.isEmpty())
+			.toArray(String[]::new);
+		if (words.length < MIN_FINGERPRINT_TOKENS) {
+			return null;
+		}
+		int[] weights = new int[64];
+		for (int i = 0; i < words.length; i++) {
+			addFeature(weights, hash(words[i]));
+			if (i + 1 < words.length) {
+				addFeature(weights, hash(words[i] + " " + words[i + 1]));
+			}
+		}
+		return simhash(weights);
+	}
+
+	/**
+	 * 64-bit simhash over the character trigrams of a URL; URLs are too short for word features
+	 */
+	static Long urlFingerprint(String url) {
+		if (url == null || url.length() < 3) {
+			return null;
+		}
+		int[] weights = new int[64];
+		for (int i = 0; i + 3 <= url.length(); i++) {
+			addFeature(weights, hash(url.subSequence(i, i + 3)));
+		}
+		return simhash(weights);
+	}
+
+	private static void addFeature(int[] weights, long hash) {
+		for (int bit = 0; bit < 64; bit++) {
+			weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+		}
+	}
+
+	private static long simhash(int[] weights) {
+		long fingerprint = 0;
+		for (int bit = 0; bit < 64; bit++) {
+			if (weights[bit] > 0) {
+				fingerprint |= 1L << bit;
+			}
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * FNV-1a, spread with the SplitMix64 finalizer
+	 */
+	private static long hash(CharSequence feature) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < feature.length(); i++) {
+			hash = (hash ^ feature.charAt(i)) * 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+
+	private static String join(String first, String second) {
+		if (first == null) {
+			return second;
+		}
+		return second == null ? first : first + " " + second;
+	}
+
+	private static String displayName(String provider) {
+		return provider.isEmpty() ? provider : Character.toUpperCase(provider.charAt(0)) + provider.substring(1);
+	}
+
+	private WebSearchService.SearchResult copy(WebSearchService.SearchResult result) {
+		WebSearchService.SearchResult copy = new WebSearchService.SearchResult();
+		copy.setTitle(result.getTitle());
+		copy.setUrl(result.getUrl());
+		copy.setSnippet(result.getSnippet());
+		return copy;
+	}
+
+	private WebSearchService.ImageSearchResult copy(WebSearchService.ImageSearchResult result) {
+		WebSearchService.ImageSearchResult copy = new WebSearchService.ImageSearchResult();
+		copy.setImageUrl(result.getImageUrl());
+		copy.setThumbnailUrl(result.getThumbnailUrl());
+		copy.setTitle(result.getTitle());
+		copy.setSourceUrl(result.getSourceUrl());
+		copy.setWidth(result.getWidth());
+		copy.setHeight(result.getHeight());
+		copy.setSource(result.getSource());
+		return copy;
+	}
+}
@@ -0,0 +1,60 @@
+package com.example.CalCol.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one computation.
+ * The first caller for a key runs the supplier; callers arriving while it is in flight wait for
+ * and share its result (or exception). Once the call completes the key is forgotten, so this
+ * is not a cache.
+ */
+public class SingleFlight<K, V> {
+
+	private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Run the supplier, or join the in-flight call for the same key
+	 */
+	public V execute(K key, Supplier<V> supplier) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			return join(existing);
+		}
+
+		try {
+			future.complete(supplier.get());
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+		} finally {
+			inFlight.remove(key, future);
+		}
+		return join(future);
+	}
+
+	/**
+	 * Number of keys with a call in flight
+	 */
+	public int inFlightCount() {
+		return inFlight.size();
+	}
+
+	private static <V> V join(CompletableFuture<V> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw e;
+		}
+	}
+}
@@ -13,6 +13,23 @@ import java.util.List;
 @Slf4j
 public class SocialMediaPostService {
 
+	/**
+	 * Platforms generated by {@link #generateAllPosts}, in display order
+	 */
+	public static final List<String> PLATFORMS =
+		List.of("twitter", "facebook", "instagram", "linkedin", "reddit", "mastodon");
+
+	/**
+	 * Generate posts for every platform from one enrichment
+	 */
+	public List<SocialMediaPost> generateAllPosts(CalculatorInfo calculatorInfo, EnrichmentData enrichmentData) {
+		List<SocialMediaPost> posts = new ArrayList<>();
+		for (String platform : PLATFORMS) {
+			posts.add(generatePost(platform, calculatorInfo, enrichmentData));
+		}
+		return posts;
+	}
+
 	/**
 	 * Generate a social media post for a specific platform
 	 */
@@ -363,6 +380,20 @@ public class SocialMediaPostService {
 		public void setBraveAIResult(WebSearchService.BraveAIResult braveAIResult) { this.braveAIResult = braveAIResult; }
 		public List<WebSearchService.ImageSearchResult> getImageResults() { return imageResults; }
 		public void setImageResults(List<WebSearchService.ImageSearchResult> imageResults) { this.imageResults = imageResults; }
+
+		/**
+		 * A copy with lists of its own, so callers sharing one enrichment run can change theirs
+		 * without affecting the others. The results in the lists are shared.
+		 */
+		public EnrichmentData copy() {
+			EnrichmentData copy = new EnrichmentData();
+			copy.setWebResults(webResults != null ? new ArrayList<>(webResults) : null);
+			copy.setMuseumResults(museumResults != null ? new ArrayList<>(museumResults) : null);
+			copy.setAiContent(aiContent);
+			copy.setBraveAIResult(braveAIResult);
+			copy.setImageResults(imageResults != null ? new ArrayList<>(imageResults) : null);
+			return copy;
+		}
 	}
 }
 
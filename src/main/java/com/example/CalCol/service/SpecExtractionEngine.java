@@ -0,0 +1,333 @@
+package com.example.CalCol.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts technical specifications from enrichment text (search snippets, AI content, Brave AI
+ * and museum snippets). All patterns are compiled once; each text is lower-cased once and the
+ * cheap keyword checks run before any regex. For every attribute the first text that yields a
+ * value wins, so sources are passed in order of trust.
+ *
+ * The result has the human-readable specs and facts used for the calculator description as
+ * well as typed attributes that are stored for filtering.
+ */
+@Service
+public class SpecExtractionEngine {
+
+	public static final String DISPLAY_LCD = "LCD";
+	public static final String DISPLAY_LED = "LED";
+	public static final String DISPLAY_VFD = "VFD";
+	public static final String DISPLAY_OLED = "OLED";
+	public static final String DISPLAY_NIXIE = "NIXIE";
+	public static final String DISPLAY_DOT_MATRIX = "DOT_MATRIX";
+
+	public static final String POWER_BATTERY = "BATTERY";
+	public static final String POWER_SOLAR = "SOLAR";
+	public static final String POWER_USB = "USB";
+	public static final String POWER_MAINS = "MAINS";
+
+	public static final String LOGIC_RPN = "RPN";
+	public static final String LOGIC_ALGEBRAIC = "ALGEBRAIC";
+	public static final String LOGIC_FORMULA = "FORMULA";
+
+	private static final Pattern HTML_TAG = Pattern.compile("<[^>]+>");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final Pattern DISPLAY = Pattern.compile(
+		"(?i)\\b(lcd|led|vfd|oled|nixie|vacuum\\s+fluorescent|dot\\s+matrix|segmented)\\b");
+	private static final Pattern DISPLAY_WIDTH = Pattern.compile(
+		"(?i)(?:display|screen|width|size)[^\\d]*(\\d+)\\s*(?:digit|char|character|dot|pixel|segments?|\\s*x\\s*\\d+)");
+	private static final Pattern DIGITS = Pattern.compile("(?i)\\b(\\d{1,2})[\\s-]*(?:digits?|places?)\\b");
+	private static final Pattern RESOLUTION = Pattern.compile("(?i)(\\d+)\\s*x\\s*(\\d+)\\s*(?:pixel|dot|resolution)");
+	private static final Pattern PROCESSOR = Pattern.compile(
+		"(?i)\\b(cpu|processor|microprocessor|chip|ic|integrated\\s+circuit)[^\\w]*(?:type|model|name)?[^\\w]*([A-Z0-9\\-]+)");
+	private static final Pattern OS = Pattern.compile(
+		"(?i)\\b(os|operating\\s+system|firmware|rom|software)[^\\w]*(?:version|type|name)?[^\\w]*([A-Z0-9\\-\\.]+)");
+	private static final Pattern BATTERY = Pattern.compile("(?i)(\\d+)\\s*(?:x\\s*)?(AAA|AA|button|coin|cell|batteries?)");
+	private static final Pattern LOGIC = Pattern.compile(
+		"(?i)\\b(rpn|reverse\\s+polish|algebraic|aos|formula\\s+entry|textbook\\s+display)\\b");
+	private static final Pattern DIMENSIONS = Pattern.compile(
+		"(?i)(\\d+(?:\\.\\d+)?)\\s*[x×]\\s*(\\d+(?:\\.\\d+)?)\\s*[x×]\\s*(\\d+(?:\\.\\d+)?)\\s*(mm|cm|inch(?:es)?|in)\\b");
+	private static final Pattern DATE = Pattern.compile(
+		"(?i)(introduced|released|discontinued|manufactured|produced)\\s+(?:in\\s+)?(\\d{4})");
+	private static final Pattern PRICE = Pattern.compile("(?i)(?:retail\\s+)?price(?:\\s+of)?\\s+\\$?([\\d,]+(?:\\.\\d{2})?)");
+
+	private static final int MAX_DIGITS = 40;
+
+	/**
+	 * Collect the enrichment texts in extraction order: web snippets, AI content, Brave AI
+	 * (structured data, then raw response), museum snippets. HTML is stripped.
+	 */
+	public List<String> collectText(SocialMediaPostService.EnrichmentData enrichment) {
+		List<String> texts = new ArrayList<>();
+		if (enrichment == null) {
+			return texts;
+		}
+		if (enrichment.getWebResults() != null) {
+			for (WebSearchService.SearchResult result : enrichment.getWebResults()) {
+				addText(texts, result.getSnippet());
+			}
+		}
+		if (enrichment.getAiContent() != null) {
+			addText(texts, enrichment.getAiContent().getContent());
+		}
+		WebSearchService.BraveAIResult brave = enrichment.getBraveAIResult();
+		if (brave != null) {
+			if (brave.getStructuredData() != null) {
+				brave.getStructuredData().forEach((key, value) -> addText(texts, key + ": " + value));
+			}
+			addText(texts, brave.getRawResponse());
+		}
+		if (enrichment.getMuseumResults() != null) {
+			for (CalculatorMuseumSearchService.MuseumSearchResult result : enrichment.getMuseumResults()) {
+				addText(texts, result.getSnippet());
+			}
+		}
+		return texts;
+	}
+
+	public Extraction extract(SocialMediaPostService.EnrichmentData enrichment) {
+		return extract(collectText(enrichment));
+	}
+
+	public Extraction extract(List<String> texts) {
+		Extraction extraction = new Extraction();
+		for (String text : texts) {
+			if (text == null || text.isEmpty()) {
+				continue;
+			}
+			extractSpecs(text, text.toLowerCase(Locale.ROOT), extraction);
+			extractFacts(text, extraction);
+		}
+		return extraction;
+	}
+
+	private void extractSpecs(String text, String lower, Extraction extraction) {
+		Map<String, String> specs = extraction.specs;
+
+		if (extraction.displayType == null) {
+			Matcher matcher = DISPLAY.matcher(text);
+			if (matcher.find()) {
+				specs.put("Display Type", matcher.group(1).toUpperCase(Locale.ROOT));
+				extraction.displayType = normalizeDisplay(matcher.group(1).toLowerCase(Locale.ROOT));
+			}
+		}
+
+		if (!specs.containsKey("Display Width")) {
+			Matcher matcher = DISPLAY_WIDTH.matcher(text);
+			if (matcher.find()) {
+				specs.put("Display Width", matcher.group(1) + " digits/characters");
+			}
+		}
+
+		if (extraction.displayDigits == null && (lower.contains("digit") || lower.contains("place"))) {
+			Matcher matcher = DIGITS.matcher(text);
+			while (matcher.find()) {
+				int digits = Integer.parseInt(matcher.group(1));
+				if (digits > 0 && digits <= MAX_DIGITS) {
+					extraction.displayDigits = digits;
+					break;
+				}
+			}
+		}
+
+		if (!specs.containsKey("Resolution")) {
+			Matcher matcher = RESOLUTION.matcher(text);
+			if (matcher.find()) {
+				specs.put("Resolution", matcher.group(1) + "x" + matcher.group(2));
+			}
+		}
+
+		if (!specs.containsKey("Processor")) {
+			Matcher matcher = PROCESSOR.matcher(text);
+			if (matcher.find()) {
+				specs.put("Processor", matcher.group(2));
+			}
+		}
+
+		if (!specs.containsKey("OS/Firmware")) {
+			Matcher matcher = OS.matcher(text);
+			if (matcher.find()) {
+				specs.put("OS/Firmware", matcher.group(2));
+			}
+		}
+
+		if (!specs.containsKey("Power Supply")) {
+			extractPower(text, lower, extraction);
+		}
+
+		if (extraction.logic == null && (lower.contains("rpn") || lower.contains("polish")
+				|| lower.contains("algebraic") || lower.contains("aos") || lower.contains("formula")
+				|| lower.contains("textbook"))) {
+			Matcher matcher = LOGIC.matcher(text);
+			if (matcher.find()) {
+				extraction.logic = normalizeLogic(matcher.group(1).toLowerCase(Locale.ROOT));
+				specs.putIfAbsent("Entry Logic", extraction.logic);
+			}
+		}
+
+		if (extraction.lengthMm == null && (lower.indexOf('x') >= 0 || lower.indexOf('×') >= 0)) {
+			Matcher matcher = DIMENSIONS.matcher(text);
+			if (matcher.find()) {
+				double factor = toMillimetres(matcher.group(4).toLowerCase(Locale.ROOT));
+				extraction.lengthMm = round(Double.parseDouble(matcher.group(1)) * factor);
+				extraction.widthMm = round(Double.parseDouble(matcher.group(2)) * factor);
+				extraction.depthMm = round(Double.parseDouble(matcher.group(3)) * factor);
+				specs.putIfAbsent("Dimensions", matcher.group(1) + " x " + matcher.group(2) + " x "
+					+ matcher.group(3) + " " + matcher.group(4));
+			}
+		}
+	}
+
+	private void extractPower(String text, String lower, Extraction extraction) {
+		Map<String, String> specs = extraction.specs;
+		if (lower.contains("batter")) {
+			Matcher matcher = BATTERY.matcher(text);
+			if (matcher.find()) {
+				specs.put("Power Supply", matcher.group(1) + "x " + matcher.group(2));
+			} else {
+				specs.put("Power Supply", "Batteries");
+			}
+			extraction.powerSource = POWER_BATTERY;
+		} else if (lower.contains("solar")) {
+			specs.put("Power Supply", "Solar powered");
+			extraction.powerSource = POWER_SOLAR;
+		} else if (lower.contains("usb") && lower.contains("power")) {
+			specs.put("Power Supply", "USB powered");
+			extraction.powerSource = POWER_USB;
+		} else if (lower.contains("external") && lower.contains("power")) {
+			specs.put("Power Supply", "External power supply");
+			extraction.powerSource = POWER_MAINS;
+		} else if (lower.contains("ac") && lower.contains("adapter")) {
+			specs.put("Power Supply", "AC adapter");
+			extraction.powerSource = POWER_MAINS;
+		}
+	}
+
+	private void extractFacts(String text, Extraction extraction) {
+		String clean = clean(text);
+		if (clean == null) {
+			return;
+		}
+		Matcher dateMatcher = DATE.matcher(clean);
+		while (dateMatcher.find()) {
+			extraction.facts.add(dateMatcher.group(1) + " " + dateMatcher.group(2));
+			String event = dateMatcher.group(1).toLowerCase(Locale.ROOT);
+			if (extraction.introducedYear == null && (event.equals("introduced") || event.equals("released"))) {
+				extraction.introducedYear = Integer.parseInt(dateMatcher.group(2));
+			}
+		}
+		Matcher priceMatcher = PRICE.matcher(clean);
+		if (priceMatcher.find()) {
+			extraction.facts.add("Retail price: $" + priceMatcher.group(1));
+		}
+	}
+
+	private static String normalizeDisplay(String match) {
+		if (match.startsWith("vacuum") || match.equals("vfd")) {
+			return DISPLAY_VFD;
+		}
+		if (match.startsWith("dot")) {
+			return DISPLAY_DOT_MATRIX;
+		}
+		return switch (match) {
+			case "lcd" -> DISPLAY_LCD;
+			case "oled" -> DISPLAY_OLED;
+			case "nixie" -> DISPLAY_NIXIE;
+			// Segmented displays of that era are almost always LED
+			default -> DISPLAY_LED;
+		};
+	}
+
+	private static String normalizeLogic(String match) {
+		if (match.equals("rpn") || match.startsWith("reverse")) {
+			return LOGIC_RPN;
+		}
+		if (match.startsWith("formula") || match.startsWith("textbook")) {
+			return LOGIC_FORMULA;
+		}
+		return LOGIC_ALGEBRAIC;
+	}
+
+	private static double toMillimetres(String unit) {
+		return switch (unit) {
+			case "cm" -> 10.0;
+			case "mm" -> 1.0;
+			default -> 25.4;
+		};
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 10.0) / 10.0;
+	}
+
+	private static void addText(List<String> texts, String text) {
+		String clean = clean(text);
+		if (clean != null) {
+			texts.add(clean);
+		}
+	}
+
+	private static String clean(String html) {
+		if (html == null || html.isBlank()) {
+			return null;
+		}
+		String cleaned = HTML_TAG.matcher(html).replaceAll("");
+		if (cleaned.indexOf('&') >= 0) {
+			cleaned = cleaned.replace("&amp;", "&")
+				.replace("&lt;", "<")
+				.replace("&gt;", ">")
+				.replace("&quot;", "\"")
+				.replace("&#39;", "'")
+				.replace("&nbsp;", " ")
+				.replace("&apos;", "'");
+		}
+		cleaned = WHITESPACE.matcher(cleaned).replaceAll(" ").trim();
+		return cleaned.isEmpty() ? null : cleaned;
+	}
+
+	/**
+	 * Specs and facts for the description plus the typed attributes
+	 */
+	public static class Extraction {
+		private final Map<String, String> specs = new LinkedHashMap<>();
+		private final Set<String> facts = new LinkedHashSet<>();
+		private String displayType;
+		private Integer displayDigits;
+		private String powerSource;
+		private String logic;
+		private Double lengthMm;
+		private Double widthMm;
+		private Double depthMm;
+		private Integer introducedYear;
+
+		public Map<String, String> getSpecs() { return specs; }
+		public Set<String> getFacts() { return facts; }
+		public String getDisplayType() { return displayType; }
+		public Integer getDisplayDigits() { return displayDigits; }
+		public String getPowerSource() { return powerSource; }
+		public String getLogic() { return logic; }
+		public Double getLengthMm() { return lengthMm; }
+		public Double getWidthMm() { return widthMm; }
+		public Double getDepthMm() { return depthMm; }
+		public Integer getIntroducedYear() { return introducedYear; }
+
+		/**
+		 * Whether any typed attribute was found
+		 */
+		public boolean hasAttributes() {
+			return displayType != null || displayDigits != null || powerSource != null || logic != null
+				|| lengthMm != null || introducedYear != null;
+		}
+	}
+}
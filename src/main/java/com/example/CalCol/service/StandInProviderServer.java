@@ -0,0 +1,522 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the external providers, so enrichment can be run and load-tested without
+ * spending real quota. It answers in the response shapes that {@link WebSearchService},
+ * {@link AISearchService} and {@link CalculatorMuseumSearchService} parse: Google Custom Search,
+ * Bing and Brave web and image search, OpenAI and Anthropic (plain and streamed) and museum
+ * search pages under {@code /museum/<host>/}.
+ *
+ * Behavior is read per provider from {@code app.standin.<provider>.*}, falling back to built-in
+ * provider defaults and then to {@code app.standin.defaults.*}: log-normal latency around
+ * {@code latency-median-ms}, {@code error-rate} (HTTP 500), {@code throttle-rate} and
+ * {@code rate-limit-per-second} (HTTP 429 with Retry-After) and the {@code relevant-fraction}
+ * of search results that mention the query.
+ */
+@Slf4j
+public class StandInProviderServer {
+
+	public static final List<String> PROVIDERS = List.of("google", "bing", "brave", "openai", "anthropic", "museum");
+
+	/**
+	 * Built-in overrides: AI answers take seconds, searches a few hundred milliseconds
+	 */
+	private static final Map<String, Map<String, Object>> PROVIDER_DEFAULTS = Map.of(
+		"openai", Map.of("latency-median-ms", 1500L),
+		"anthropic", Map.of("latency-median-ms", 1500L),
+		"museum", Map.of("latency-median-ms", 400L)
+	);
+
+	private static final Pattern BATCH_HEADER = Pattern.compile("=== CALCULATOR (\\S+) ===");
+	private static final int STREAM_CHUNK_CHARS = 40;
+	private static final String FILLER = "<p>Our collection holds mechanical, electronic and programmable "
+		+ "calculators from all over the world, with photographs, manuals and notes on their history.</p>\n";
+
+	private final Environment environment;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Map<String, Behavior> behaviors = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public StandInProviderServer(Environment environment) {
+		this.environment = environment;
+	}
+
+	/**
+	 * Start listening on {@code app.standin.port} (0 picks a free port)
+	 */
+	public synchronized void start() throws IOException {
+		int port = environment.getProperty("app.standin.port", Integer.class, 0);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		server.setExecutor(executor);
+		server.createContext("/customsearch/v1", exchange -> handle(exchange, "google", this::google));
+		server.createContext("/v7.0/", exchange -> handle(exchange, "bing", this::bing));
+		server.createContext("/res/v1/", exchange -> handle(exchange, "brave", this::brave));
+		server.createContext("/v1/chat/completions", exchange -> handle(exchange, "openai", this::openAI));
+		server.createContext("/v1/messages", exchange -> handle(exchange, "anthropic", this::anthropic));
+		server.createContext("/museum/", exchange -> handle(exchange, "museum", this::museum));
+		server.start();
+		log.info("Provider stand-in server listening on {}", getBaseUrl());
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	/**
+	 * Base URL to configure as {@code app.http.<provider>.base-url}
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Requests answered per provider and HTTP status, e.g. "google 200" or "brave 429"
+	 */
+	public Map<String, Long> getRequestCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		requestCounts.forEach((key, count) -> counts.put(key, count.get()));
+		return counts;
+	}
+
+	@FunctionalInterface
+	private interface Responder {
+		void respond(HttpExchange exchange, Map<String, String> query, Behavior behavior) throws IOException;
+	}
+
+	private void handle(HttpExchange exchange, String provider, Responder responder) {
+		try {
+			Behavior behavior = behavior(provider);
+			// Throttled calls are refused right away, as real APIs do
+			if (behavior.throttled()) {
+				count(provider, 429);
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				sendJson(exchange, 429, error(429, "Rate limit exceeded (stand-in)"));
+				return;
+			}
+			Thread.sleep(behavior.sampleLatencyMs());
+			if (ThreadLocalRandom.current().nextDouble() < behavior.errorRate) {
+				count(provider, 500);
+				sendJson(exchange, 500, error(500, "Internal error (stand-in)"));
+				return;
+			}
+			count(provider, 200);
+			responder.respond(exchange, queryParameters(exchange.getRequestURI()), behavior);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			// Callers cancel streamed pages once they have found what they need
+			log.debug("Stand-in {} response aborted: {}", provider, e.getMessage());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void google(HttpExchange exchange, Map<String, String> query, Behavior behavior) throws IOException {
+		String q = query.getOrDefault("q", "");
+		boolean images = "image".equals(query.get("searchType"));
+		List<Map<String, Object>> items = new ArrayList<>();
+		for (Result result : results(q, count(query.get("num"), 10, 10), behavior.relevantFraction)) {
+			Map<String, Object> item = new LinkedHashMap<>();
+			item.put("kind", "customsearch#result");
+			item.put("title", result.title());
+			item.put("displayLink", result.host());
+			if (images) {
+				item.put("link", result.imageUrl());
+				item.put("image", Map.of("contextLink", result.pageUrl(), "thumbnailLink", result.thumbnailUrl(),
+					"width", 1200, "height", 900));
+			} else {
+				item.put("link", result.pageUrl());
+				item.put("snippet", result.snippet());
+			}
+			items.add(item);
+		}
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("kind", "customsearch#search");
+		body.put("searchInformation", Map.of("totalResults", String.valueOf(items.size() * 100)));
+		body.put("items", items);
+		sendJson(exchange, 200, body);
+	}
+
+	private void bing(HttpExchange exchange, Map<String, String> query, Behavior behavior) throws IOException {
+		String q = query.getOrDefault("q", "");
+		List<Result> results = results(q, count(query.get("count"), 10, 50), behavior.relevantFraction);
+		List<Map<String, Object>> values = new ArrayList<>();
+		Map<String, Object> body = new LinkedHashMap<>();
+		if (exchange.getRequestURI().getPath().endsWith("/images/search")) {
+			for (Result result : results) {
+				values.add(Map.of("name", result.title(), "contentUrl", result.imageUrl(),
+					"thumbnailUrl", result.thumbnailUrl(), "hostPageUrl", result.pageUrl(), "width", 1200, "height", 900));
+			}
+			body.put("_type", "Images");
+			body.put("value", values);
+		} else {
+			for (Result result : results) {
+				values.add(Map.of("name", result.title(), "url", result.pageUrl(), "snippet", result.snippet()));
+			}
+			body.put("_type", "SearchResponse");
+			body.put("webPages", Map.of("totalEstimatedMatches", values.size() * 100, "value", values));
+		}
+		sendJson(exchange, 200, body);
+	}
+
+	private void brave(HttpExchange exchange, Map<String, String> query, Behavior behavior) throws IOException {
+		String q = query.getOrDefault("q", "");
+		List<Result> results = results(q, count(query.get("count"), 20, 20), behavior.relevantFraction);
+		List<Map<String, Object>> values = new ArrayList<>();
+		Map<String, Object> body = new LinkedHashMap<>();
+		if (exchange.getRequestURI().getPath().endsWith("/images/search")) {
+			for (Result result : results) {
+				values.add(Map.of("type", "image_result", "title", result.title(), "url", result.imageUrl(),
+					"source", result.pageUrl(), "thumbnail", Map.of("src", result.thumbnailUrl()),
+					"width", 1200, "height", 900));
+			}
+			body.put("type", "images");
+			body.put("results", values);
+		} else {
+			for (Result result : results) {
+				values.add(Map.of("type", "search_result", "title", result.title(), "url", result.pageUrl(),
+					"description", result.snippet()));
+			}
+			body.put("type", "search");
+			body.put("web", Map.of("type", "search", "results", values));
+		}
+		sendJson(exchange, 200, body);
+	}
+
+	private void openAI(HttpExchange exchange, Map<String, String> query, Behavior behavior) throws IOException {
+		JsonNode request = readJson(exchange);
+		String answer = answer(lastMessage(request));
+		if (!request.path("stream").asBoolean(false)) {
+			sendJson(exchange, 200, Map.of("id", "chatcmpl-standin", "object", "chat.completion",
+				"choices", List.of(Map.of("index", 0, "finish_reason", "stop",
+					"message", Map.of("role", "assistant", "content", answer)))));
+			return;
+		}
+		try (OutputStream out = startEventStream(exchange)) {
+			for (String piece : pieces(answer)) {
+				sendEvent(out, null, Map.of("choices", List.of(Map.of("index", 0, "delta", Map.of("content", piece)))));
+				pause(behavior.streamChunkDelayMs);
+			}
+			out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void anthropic(HttpExchange exchange, Map<String, String> query, Behavior behavior) throws IOException {
+		JsonNode request = readJson(exchange);
+		String answer = answer(lastMessage(request));
+		if (!request.path("stream").asBoolean(false)) {
+			sendJson(exchange, 200, Map.of("id", "msg_standin", "type", "message", "role", "assistant",
+				"content", List.of(Map.of("type", "text", "text", answer))));
+			return;
+		}
+		try (OutputStream out = startEventStream(exchange)) {
+			sendEvent(out, "message_start", Map.of("type", "message_start", "message", Map.of("id", "msg_standin")));
+			for (String piece : pieces(answer)) {
+				sendEvent(out, "content_block_delta", Map.of("type", "content_block_delta", "index", 0,
+					"delta", Map.of("type", "text_delta", "text", piece)));
+				pause(behavior.streamChunkDelayMs);
+			}
+			sendEvent(out, "message_stop", Map.of("type", "message_stop"));
+		}
+	}
+
+	/**
+	 * A museum page of {@code page-bytes}; the query appears halfway for a relevant-fraction of queries
+	 */
+	private void museum(HttpExchange exchange, Map<String, String> query, Behavior behavior) throws IOException {
+		String q = query.get("q") != null ? query.get("q") : query.get("s");
+		int pageBytes = setting("museum", "page-bytes", Integer.class, 16384);
+		boolean found = q != null && new Random(q.hashCode()).nextDouble() < behavior.relevantFraction;
+
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		try (OutputStream out = exchange.getResponseBody()) {
+			int written = write(out, "<html><head><title>Stand-in calculator museum</title></head><body>\n");
+			while (written < pageBytes / 2) {
+				written += write(out, FILLER);
+			}
+			if (found) {
+				written += write(out, "<p>The " + escapeHtml(q) + " is part of our collection; see its page for "
+					+ "photographs and a description.</p>\n");
+			}
+			while (written < pageBytes) {
+				written += write(out, FILLER);
+			}
+			write(out, "</body></html>\n");
+		}
+	}
+
+	/**
+	 * The same query gets the same results at every provider, so merging has duplicates to fold
+	 */
+	private static List<Result> results(String query, int count, double relevantFraction) {
+		Random random = new Random(query.hashCode());
+		String slug = query.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("(^-|-$)", "");
+		List<Result> results = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			if (random.nextDouble() < relevantFraction) {
+				results.add(new Result(query + " - calculator details (" + (i + 1) + ")",
+					"https://calculators.standin.example/" + slug + "/" + i,
+					"The " + query + " is a calculator with a 10-digit LED display, introduced in 1975. "
+						+ "Page " + (i + 1) + " covers its history, specifications and photographs.",
+					"https://images.standin.example/" + slug + "-" + i + ".jpg"));
+			} else {
+				int item = random.nextInt(1_000_000);
+				results.add(new Result("Listing " + item + " - office equipment",
+					"https://listings.standin.example/item/" + item,
+					"Assorted office equipment, typewriters and vintage electronics for sale.",
+					"https://images.standin.example/listing-" + item + ".jpg"));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * An answer for each calculator of a batched prompt, or one answer otherwise
+	 */
+	private static String answer(String prompt) {
+		Matcher matcher = BATCH_HEADER.matcher(prompt);
+		List<String> ids = new ArrayList<>();
+		while (matcher.find()) {
+			if (!ids.contains(matcher.group(1)) && !matcher.group(1).startsWith("<")) {
+				ids.add(matcher.group(1));
+			}
+		}
+		if (ids.isEmpty()) {
+			return paragraph(Integer.toHexString(prompt.hashCode()));
+		}
+		StringBuilder answer = new StringBuilder();
+		for (String id : ids) {
+			answer.append("=== CALCULATOR ").append(id).append(" ===\n")
+				.append(paragraph(id)).append("\n=== END ").append(id).append(" ===\n\n");
+		}
+		return answer.toString();
+	}
+
+	private static String paragraph(String key) {
+		return "This calculator was introduced in 1975 and has a 10-digit LED display, algebraic logic and "
+			+ "runs on a rechargeable battery pack. It was sold for several years and is now a sought-after "
+			+ "collector's item. Sources: https://calculators.standin.example/ai/" + key + "/history and "
+			+ "https://calculators.standin.example/ai/" + key + "/specifications";
+	}
+
+	private static String lastMessage(JsonNode request) {
+		JsonNode messages = request.path("messages");
+		if (!messages.isArray() || messages.isEmpty()) {
+			return "";
+		}
+		JsonNode content = messages.get(messages.size() - 1).path("content");
+		return content.isTextual() ? content.asText() : content.toString();
+	}
+
+	private static List<String> pieces(String text) {
+		List<String> pieces = new ArrayList<>();
+		for (int start = 0; start < text.length(); start += STREAM_CHUNK_CHARS) {
+			pieces.add(text.substring(start, Math.min(text.length(), start + STREAM_CHUNK_CHARS)));
+		}
+		return pieces;
+	}
+
+	private static int count(String requested, int defaultCount, int max) {
+		try {
+			return requested != null ? Math.max(1, Math.min(max, Integer.parseInt(requested))) : defaultCount;
+		} catch (NumberFormatException e) {
+			return defaultCount;
+		}
+	}
+
+	private JsonNode readJson(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			return objectMapper.readTree(in.readAllBytes());
+		}
+	}
+
+	private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = objectMapper.writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static OutputStream startEventStream(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+		exchange.sendResponseHeaders(200, 0);
+		return exchange.getResponseBody();
+	}
+
+	private void sendEvent(OutputStream out, String event, Object data) throws IOException {
+		StringBuilder frame = new StringBuilder();
+		if (event != null) {
+			frame.append("event: ").append(event).append('\n');
+		}
+		frame.append("data: ").append(objectMapper.writeValueAsString(data)).append("\n\n");
+		out.write(frame.toString().getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+
+	private static int write(OutputStream out, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.write(bytes);
+		return bytes.length;
+	}
+
+	private static Map<String, Object> error(int code, String message) {
+		return Map.of("error", Map.of("code", code, "message", message));
+	}
+
+	private static Map<String, String> queryParameters(URI uri) {
+		Map<String, String> parameters = new LinkedHashMap<>();
+		String rawQuery = uri.getRawQuery();
+		if (rawQuery == null) {
+			return parameters;
+		}
+		for (String parameter : rawQuery.split("&")) {
+			String[] pair = parameter.split("=", 2);
+			parameters.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+				pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+		}
+		return parameters;
+	}
+
+	private static String escapeHtml(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+	private static void pause(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void count(String provider, int status) {
+		requestCounts.computeIfAbsent(provider + " " + status, key -> new AtomicLong()).incrementAndGet();
+	}
+
+	private Behavior behavior(String provider) {
+		return behaviors.computeIfAbsent(provider, p -> new Behavior(
+			setting(p, "latency-median-ms", Long.class, 300L),
+			setting(p, "latency-sigma", Double.class, 0.5),
+			setting(p, "latency-max-ms", Long.class, 30000L),
+			setting(p, "error-rate", Double.class, 0.0),
+			setting(p, "throttle-rate", Double.class, 0.0),
+			setting(p, "rate-limit-per-second", Integer.class, 0),
+			setting(p, "stream-chunk-delay-ms", Long.class, 20L),
+			setting(p, "relevant-fraction", Double.class, 0.7)));
+	}
+
+	private <T> T setting(String provider, String key, Class<T> type, T defaultValue) {
+		T value = environment.getProperty("app.standin." + provider + "." + key, type);
+		if (value != null) {
+			return value;
+		}
+		Object builtIn = PROVIDER_DEFAULTS.getOrDefault(provider, Map.of()).get(key);
+		if (builtIn != null) {
+			return type.cast(builtIn);
+		}
+		return environment.getProperty("app.standin.defaults." + key, type, defaultValue);
+	}
+
+	private record Result(String title, String pageUrl, String snippet, String imageUrl) {
+
+		String host() {
+			return URI.create(pageUrl).getHost();
+		}
+
+		String thumbnailUrl() {
+			return imageUrl.replace(".jpg", "-150x150.jpg");
+		}
+	}
+
+	/**
+	 * Latency, failure and throttling of one stand-in provider
+	 */
+	private static final class Behavior {
+		private final long latencyMedianMs;
+		private final double latencySigma;
+		private final long latencyMaxMs;
+		private final double errorRate;
+		private final double throttleRate;
+		private final int rateLimitPerSecond;
+		private final long streamChunkDelayMs;
+		private final double relevantFraction;
+		private long windowSecond;
+		private int windowCount;
+
+		Behavior(long latencyMedianMs, double latencySigma, long latencyMaxMs, double errorRate, double throttleRate,
+				int rateLimitPerSecond, long streamChunkDelayMs, double relevantFraction) {
+			this.latencyMedianMs = latencyMedianMs;
+			this.latencySigma = latencySigma;
+			this.latencyMaxMs = latencyMaxMs;
+			this.errorRate = errorRate;
+			this.throttleRate = throttleRate;
+			this.rateLimitPerSecond = rateLimitPerSecond;
+			this.streamChunkDelayMs = streamChunkDelayMs;
+			this.relevantFraction = relevantFraction;
+		}
+
+		long sampleLatencyMs() {
+			if (latencyMedianMs <= 0) {
+				return 0;
+			}
+			double latency = latencyMedianMs * Math.exp(latencySigma * ThreadLocalRandom.current().nextGaussian());
+			return (long) Math.min(latency, latencyMaxMs);
+		}
+
+		/**
+		 * Whether to answer 429: over the per-second limit, or picked at throttle-rate
+		 */
+		synchronized boolean throttled() {
+			if (rateLimitPerSecond > 0) {
+				long second = System.currentTimeMillis() / 1000;
+				if (second != windowSecond) {
+					windowSecond = second;
+					windowCount = 0;
+				}
+				if (++windowCount > rateLimitPerSecond) {
+					return true;
+				}
+			}
+			return throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.example.CalCol.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * Where uploads are kept. {@link FileStorageService} always works on files in the local upload
+ * directory; with a shared backend that directory is a read-through cache, every stored file is
+ * also written to the backend, and files missing locally are fetched from it. Keys are the
+ * upload filenames, which never change content.
+ */
+public interface StorageBackend {
+
+	/**
+	 * Whether files live beyond this node. When false the local upload directory is the store and
+	 * the other operations are not used.
+	 */
+	boolean isShared();
+
+	/**
+	 * Store the content of a local file under a key, replacing any object with that key
+	 */
+	void put(String key, Path source) throws IOException;
+
+	/**
+	 * Copy an object to a local file
+	 * @return False when there is no such object
+	 */
+	boolean fetch(String key, Path target) throws IOException;
+
+	boolean exists(String key) throws IOException;
+
+	void delete(String key) throws IOException;
+
+	/**
+	 * URL clients can read an object from directly, or null when the application serves it
+	 */
+	URI readUrl(String key);
+}
@@ -0,0 +1,176 @@
+package com.example.CalCol.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental, case-insensitive (ASCII) substring matcher over response bytes.
+ * Bytes are fed chunk by chunk as they arrive, so a page never has to be buffered or lower-cased
+ * as a whole. Scanning stops once the query has been found and some trailing context captured,
+ * or once the byte cap has been reached.
+ */
+class StreamingTextMatcher {
+
+	private final byte[] pattern;
+	private final int[] failure;
+	private final int maxBytes;
+	private final int context;
+
+	// Most recent bytes (match plus leading context), for the snippet
+	private final byte[] before;
+	private int beforeLength;
+	private int beforeStart;
+
+	private byte[] snippetHead;
+	private byte[] after;
+	private int afterLength;
+
+	private int matched;
+	private long scanned;
+	private boolean found;
+
+	StreamingTextMatcher(String query, int maxBytes, int context) {
+		if (query == null || query.isEmpty()) {
+			throw new IllegalArgumentException("Query must not be empty");
+		}
+		this.pattern = lowerAscii(query.getBytes(StandardCharsets.UTF_8));
+		this.failure = buildFailureTable(pattern);
+		this.maxBytes = maxBytes;
+		this.context = context;
+		this.before = new byte[context + pattern.length];
+	}
+
+	/**
+	 * Scan the readable bytes of a buffer without consuming it
+	 * @return true when no more input is needed
+	 */
+	boolean feed(DataBuffer buffer) {
+		int readable = buffer.readableByteCount();
+		int offset = buffer.readPosition();
+		for (int i = 0; i < readable && !isDone(); i++) {
+			accept(buffer.getByte(offset + i));
+		}
+		return isDone();
+	}
+
+	/**
+	 * Scan a byte range
+	 * @return true when no more input is needed
+	 */
+	boolean feed(byte[] bytes, int offset, int length) {
+		for (int i = 0; i < length && !isDone(); i++) {
+			accept(bytes[offset + i]);
+		}
+		return isDone();
+	}
+
+	boolean isFound() {
+		return found;
+	}
+
+	long getScannedBytes() {
+		return scanned;
+	}
+
+	/**
+	 * Text around the first match with whitespace collapsed, or null when nothing matched
+	 */
+	String getSnippet() {
+		if (!found) {
+			return null;
+		}
+		byte[] bytes = new byte[snippetHead.length + afterLength];
+		System.arraycopy(snippetHead, 0, bytes, 0, snippetHead.length);
+		System.arraycopy(after, 0, bytes, snippetHead.length, afterLength);
+		return collapseWhitespace(new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	private boolean isDone() {
+		return (found && afterLength == after.length) || scanned >= maxBytes;
+	}
+
+	private void accept(byte b) {
+		scanned++;
+		if (found) {
+			after[afterLength++] = b;
+			return;
+		}
+
+		remember(b);
+		byte lower = lowerAscii(b);
+		while (matched > 0 && pattern[matched] != lower) {
+			matched = failure[matched - 1];
+		}
+		if (pattern[matched] == lower) {
+			matched++;
+		}
+		if (matched == pattern.length) {
+			found = true;
+			snippetHead = recentBytes();
+			after = new byte[context];
+		}
+	}
+
+	private void remember(byte b) {
+		if (beforeLength < before.length) {
+			before[(beforeStart + beforeLength++) % before.length] = b;
+		} else {
+			before[beforeStart] = b;
+			beforeStart = (beforeStart + 1) % before.length;
+		}
+	}
+
+	private byte[] recentBytes() {
+		byte[] bytes = new byte[beforeLength];
+		for (int i = 0; i < beforeLength; i++) {
+			bytes[i] = before[(beforeStart + i) % before.length];
+		}
+		return bytes;
+	}
+
+	private static int[] buildFailureTable(byte[] pattern) {
+		int[] table = new int[pattern.length];
+		int k = 0;
+		for (int i = 1; i < pattern.length; i++) {
+			while (k > 0 && pattern[i] != pattern[k]) {
+				k = table[k - 1];
+			}
+			if (pattern[i] == pattern[k]) {
+				k++;
+			}
+			table[i] = k;
+		}
+		return table;
+	}
+
+	private static byte[] lowerAscii(byte[] bytes) {
+		byte[] lower = new byte[bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			lower[i] = lowerAscii(bytes[i]);
+		}
+		return lower;
+	}
+
+	private static byte lowerAscii(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static String collapseWhitespace(String text) {
+		StringBuilder builder = new StringBuilder(text.length());
+		boolean space = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = builder.length() > 0;
+			} else {
+				if (space) {
+					builder.append(' ');
+					space = false;
+				}
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.CalCol.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Keeps the local upload directory within its size limit when it caches a shared storage
+ * backend: the least recently used files are evicted until the cache is back at the low-water
+ * mark. Files not looked up since startup count by their modification time.
+ */
+@Service
+@Slf4j
+public class UploadCacheService {
+
+	private final FileStorageService fileStorageService;
+	private final Counter evictedBytes;
+
+	@Value("${app.storage.cache.max-bytes:10737418240}")
+	private long maxBytes;
+
+	@Value("${app.storage.cache.low-water-percent:90}")
+	private int lowWaterPercent;
+
+	public UploadCacheService(FileStorageService fileStorageService, MeterRegistry meterRegistry) {
+		this.fileStorageService = fileStorageService;
+		this.evictedBytes = Counter.builder("uploads.cache.evicted.bytes").baseUnit("bytes")
+			.description("Bytes of cached uploads evicted from the local upload directory").register(meterRegistry);
+	}
+
+	@Scheduled(fixedDelayString = "${app.storage.cache.evict-interval-ms:300000}",
+			initialDelayString = "${app.storage.cache.evict-initial-delay-ms:60000}")
+	public void runEviction() {
+		if (!fileStorageService.isShared()) {
+			return;
+		}
+		try {
+			long evicted = evict();
+			if (evicted > 0) {
+				log.info("Evicted {} bytes of cached uploads", evicted);
+			}
+		} catch (IOException e) {
+			log.warn("Upload cache eviction failed: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Evict the least recently used files once the cache exceeds its limit
+	 * @return The number of bytes evicted
+	 */
+	long evict() throws IOException {
+		List<CachedFile> files = cachedFiles();
+		long total = files.stream().mapToLong(CachedFile::size).sum();
+		if (total <= maxBytes) {
+			return 0;
+		}
+		long target = maxBytes * lowWaterPercent / 100;
+		files.sort(Comparator.comparingLong(CachedFile::lastUsed));
+		long evicted = 0;
+		for (CachedFile file : files) {
+			if (total - evicted <= target) {
+				break;
+			}
+			try {
+				long size = fileStorageService.evict(file.name());
+				if (size > 0) {
+					evicted += size;
+				}
+			} catch (IOException e) {
+				log.warn("Could not evict cached upload {}: {}", file.name(), e.getMessage());
+			}
+		}
+		evictedBytes.increment(evicted);
+		return evicted;
+	}
+
+	private List<CachedFile> cachedFiles() throws IOException {
+		Path root = fileStorageService.getUploadRoot();
+		List<CachedFile> files = new ArrayList<>();
+		if (!Files.isDirectory(root)) {
+			return files;
+		}
+		Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), 3, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+				return !dir.equals(root) && dir.getFileName().toString().startsWith(".")
+					? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				String name = file.getFileName().toString();
+				if (attributes.isRegularFile() && !name.startsWith(".") && !name.endsWith(".tmp")) {
+					long lastUsed = Math.max(fileStorageService.lastAccess(name), attributes.lastModifiedTime().toMillis());
+					files.add(new CachedFile(name, attributes.size(), lastUsed));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return files;
+	}
+
+	private record CachedFile(String name, long size, long lastUsed) {
+	}
+}
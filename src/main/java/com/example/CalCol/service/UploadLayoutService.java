@@ -0,0 +1,276 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.repository.CalculatorImageRepository;
+import com.example.CalCol.repository.StoredFileRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves uploads from the flat directory into the sharded layout of {@link FileStorageService}
+ * while the application runs: a scheduled job moves a batch of files per run, each under the
+ * file's storage lock, and lookups find a file in either layout meanwhile. The consistency check
+ * walks both layouts, reports files in the wrong place and database rows whose file is missing,
+ * and moves misplaced files where they belong.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadLayoutService {
+
+	private static final int MAX_EXAMPLES = 20;
+
+	private final FileStorageService fileStorageService;
+	private final StoredFileRepository storedFileRepository;
+	private final CalculatorImageRepository imageRepository;
+
+	private final AtomicLong movedFiles = new AtomicLong();
+	private final AtomicBoolean checking = new AtomicBoolean();
+	private volatile boolean migrationComplete;
+	private volatile LayoutReport lastReport;
+
+	@Value("${app.upload.layout.migration-enabled:true}")
+	private boolean migrationEnabled;
+
+	@Value("${app.upload.layout.migration-batch-size:500}")
+	private int batchSize;
+
+	@Scheduled(fixedDelayString = "${app.upload.layout.migration-interval-ms:10000}",
+			initialDelayString = "${app.upload.layout.migration-initial-delay-ms:20000}")
+	public void runMigration() {
+		if (!migrationEnabled || migrationComplete) {
+			return;
+		}
+		try {
+			int moved = migrateBatch();
+			if (moved > 0) {
+				log.info("Moved {} uploads into the sharded layout ({} so far)", moved, movedFiles.get());
+			}
+		} catch (IOException e) {
+			log.warn("Upload layout migration failed: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Move up to one batch of files from the flat layout into their shard directories. When none
+	 * are left, lookups stop checking the flat layout.
+	 * @return The number of files moved
+	 */
+	public int migrateBatch() throws IOException {
+		List<String> batch = new ArrayList<>();
+		Path root = fileStorageService.getUploadRoot();
+		if (Files.isDirectory(root)) {
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+				for (Path entry : entries) {
+					if (isStoredFile(entry.getFileName().toString()) && Files.isRegularFile(entry)) {
+						batch.add(entry.getFileName().toString());
+						if (batch.size() >= batchSize) {
+							break;
+						}
+					}
+				}
+			}
+		}
+		if (batch.isEmpty()) {
+			migrationComplete = true;
+			fileStorageService.setFlatLayoutEmpty(true);
+			log.info("All uploads are in the sharded layout");
+			return 0;
+		}
+
+		int moved = 0;
+		for (String filename : batch) {
+			try {
+				if (fileStorageService.moveToShard(filename)) {
+					moved++;
+				}
+			} catch (IOException e) {
+				log.warn("Could not move upload {} into the sharded layout: {}", filename, e.getMessage());
+			}
+		}
+		movedFiles.addAndGet(moved);
+		return moved;
+	}
+
+	/**
+	 * Run the consistency check, with repairs, on a background thread
+	 * @return False when a check is already running
+	 */
+	public boolean startCheck() {
+		if (!checking.compareAndSet(false, true)) {
+			return false;
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				check(true);
+			} catch (Exception e) {
+				log.error("Upload consistency check failed", e);
+			} finally {
+				checking.set(false);
+			}
+		}, "upload-layout-check");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	public LayoutReport check(boolean repair) throws IOException {
+		LayoutReport report = new LayoutReport();
+		scanFiles(report, repair);
+		for (String filename : storedFileRepository.findAllFilenames()) {
+			if (!fileStorageService.exists(filename)) {
+				report.setMissingStoredFiles(report.getMissingStoredFiles() + 1);
+				report.addProblem("Stored file " + filename + " is missing");
+			}
+		}
+		for (String imagePath : imageRepository.findAllImagePaths()) {
+			if (!fileStorageService.exists(imagePath)) {
+				report.setMissingImageFiles(report.getMissingImageFiles() + 1);
+				report.addProblem("Image upload " + imagePath + " is missing");
+			}
+		}
+		report.setCheckedAt(LocalDateTime.now());
+		lastReport = report;
+		log.info("Upload consistency check: {} flat, {} sharded, {} misplaced ({} repaired), {} stored and {} image files missing",
+			report.getFlatFiles(), report.getShardedFiles(), report.getMisplacedFiles(), report.getRepairedFiles(),
+			report.getMissingStoredFiles(), report.getMissingImageFiles());
+		return report;
+	}
+
+	/**
+	 * Walk both layouts. Flat files that also exist in the sharded layout, and sharded files in a
+	 * directory their name does not hash to, are misplaced: lookups may not find them.
+	 */
+	void scanFiles(LayoutReport report, boolean repair) throws IOException {
+		Path root = fileStorageService.getUploadRoot();
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+		List<Path> misplaced = new ArrayList<>();
+		Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), 3, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+				// E.g. the quarantine of the upload reconciliation
+				return !dir.equals(root) && dir.getFileName().toString().startsWith(".")
+					? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				String filename = file.getFileName().toString();
+				if (!attributes.isRegularFile() || !isStoredFile(filename)) {
+					return FileVisitResult.CONTINUE;
+				}
+				Path sharded = fileStorageService.shardedPath(filename);
+				if (file.getParent().equals(root)) {
+					report.setFlatFiles(report.getFlatFiles() + 1);
+					if (Files.exists(sharded)) {
+						misplaced.add(file);
+						report.addProblem(filename + " exists in both layouts");
+					}
+				} else if (file.equals(sharded)) {
+					report.setShardedFiles(report.getShardedFiles() + 1);
+				} else {
+					misplaced.add(file);
+					report.addProblem(root.relativize(file) + " is not in its shard directory");
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		report.setMisplacedFiles(misplaced.size());
+		if (report.getFlatFiles() > misplaced.stream().filter(file -> file.getParent().equals(root)).count()) {
+			// Files turned up in the flat layout again (e.g. restored from a backup): look there and move them
+			fileStorageService.setFlatLayoutEmpty(false);
+			migrationComplete = false;
+		}
+		if (!repair) {
+			return;
+		}
+
+		// Repaired after the walk, so moved files are not visited twice
+		for (Path file : misplaced) {
+			String filename = file.getFileName().toString();
+			try {
+				if (file.getParent().equals(root)) {
+					if (fileStorageService.moveToShard(filename)) {
+						report.setRepairedFiles(report.getRepairedFiles() + 1);
+					}
+				} else if (fileStorageService.moveIntoShard(file, filename)) {
+					report.setRepairedFiles(report.getRepairedFiles() + 1);
+				}
+			} catch (IOException e) {
+				log.warn("Could not repair the location of {}: {}", file, e.getMessage());
+			}
+		}
+	}
+
+	public LayoutStatus getStatus() {
+		return new LayoutStatus(migrationEnabled, migrationComplete, movedFiles.get(), checking.get(), lastReport);
+	}
+
+	/**
+	 * Temp files (uploads in progress, renditions being written) are not stored files
+	 */
+	private static boolean isStoredFile(String filename) {
+		return !filename.startsWith(".") && !filename.endsWith(".tmp");
+	}
+
+	/**
+	 * Outcome of a consistency check
+	 */
+	@Data
+	public static class LayoutReport {
+		private long flatFiles;
+		private long shardedFiles;
+		private long misplacedFiles;
+		private long repairedFiles;
+		private long missingStoredFiles;
+		private long missingImageFiles;
+		private List<String> problems = new ArrayList<>();
+		private LocalDateTime checkedAt;
+
+		public boolean isConsistent() {
+			return misplacedFiles == repairedFiles && missingStoredFiles == 0 && missingImageFiles == 0;
+		}
+
+		void addProblem(String problem) {
+			if (problems.size() < MAX_EXAMPLES) {
+				problems.add(problem);
+			}
+		}
+	}
+
+	/**
+	 * Migration progress and the last check, for the admin dashboard
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class LayoutStatus {
+		private boolean migrationEnabled;
+		private boolean migrationComplete;
+		private long movedFiles;
+		private boolean checking;
+		private LayoutReport lastReport;
+	}
+}
@@ -0,0 +1,109 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Moves uploads stored under random names to content-addressed names, so duplicates collapse
+ * into one file, and registers the reference counts of uploads that have none. Each file is
+ * copied to its new name before its images are updated and the old file is deleted last, so an
+ * interrupted run finishes on the next start. The images are renamed in the same transaction
+ * that adds their references to the new name, which may already be in use by other images.
+ * Renditions made for the old names are dropped and regenerated by the derivative backfill.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Order(3)
+public class UploadMigrationService implements CommandLineRunner {
+
+	private static final int PAGE_SIZE = 1000;
+
+	private final CalculatorImageRepository imageRepository;
+	private final FileStorageService fileStorageService;
+
+	@Override
+	public void run(String... args) {
+		migrateRandomNames();
+		registerReferences();
+	}
+
+	private void migrateRandomNames() {
+		// Legacy upload paths with the renditions made for them
+		Map<String, Set<String>> legacyPaths = findLegacyPaths();
+		if (legacyPaths.isEmpty()) {
+			return;
+		}
+
+		log.info("Moving {} uploads to content-addressed storage", legacyPaths.size());
+		Set<String> contentAddressed = new TreeSet<>();
+		for (Map.Entry<String, Set<String>> entry : legacyPaths.entrySet()) {
+			String legacyPath = entry.getKey();
+			try {
+				if (!Files.exists(fileStorageService.loadFile(legacyPath))) {
+					log.warn("Upload {} is missing, leaving its images as they are", legacyPath);
+					continue;
+				}
+				String name = fileStorageService.contentAddressedName(legacyPath);
+				fileStorageService.adopt(legacyPath, name);
+				fileStorageService.moveReferences(name, () -> imageRepository.renameImagePath(legacyPath, name));
+				fileStorageService.deleteFile(legacyPath);
+				entry.getValue().forEach(fileStorageService::deleteFile);
+				contentAddressed.add(name);
+			} catch (Exception e) {
+				log.warn("Could not move upload {}: {}", legacyPath, e.getMessage());
+			}
+		}
+		log.info("Moved {} uploads into {} content-addressed files", legacyPaths.size(), contentAddressed.size());
+	}
+
+	private Map<String, Set<String>> findLegacyPaths() {
+		Map<String, Set<String>> legacyPaths = new TreeMap<>();
+		long lastId = 0;
+		List<CalculatorImage> page;
+		do {
+			page = imageRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, PAGE_SIZE));
+			for (CalculatorImage image : page) {
+				lastId = image.getId();
+				String imagePath = image.getImagePath();
+				if (FileStorageService.isContentAddressed(imagePath)) {
+					continue;
+				}
+				Set<String> derivatives = legacyPaths.computeIfAbsent(imagePath, path -> new TreeSet<>());
+				ImageDerivativeService.SIZES.stream()
+					.map(image::pathFor)
+					.filter(path -> !path.equals(imagePath))
+					.forEach(derivatives::add);
+			}
+		} while (page.size() == PAGE_SIZE);
+		return legacyPaths;
+	}
+
+	private void registerReferences() {
+		List<Object[]> counts = imageRepository.countImagesWithoutStoredFile();
+		for (Object[] row : counts) {
+			String filename = (String) row[0];
+			try {
+				fileStorageService.addReferences(filename, ((Number) row[1]).intValue());
+			} catch (Exception e) {
+				log.warn("Could not register references of upload {}: {}", filename, e.getMessage());
+			}
+		}
+		if (!counts.isEmpty()) {
+			log.info("Registered reference counts of {} uploads", counts.size());
+		}
+	}
+}
@@ -0,0 +1,445 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles the upload store with the images that use it, for files and rows left behind when
+ * a delete failed halfway. The shard directories are walked in parallel and the images are read
+ * in id order in keyset pages; both sides are then sorted by filename and diffed in one merge pass.
+ * <ul>
+ * <li>Files no image uses (and that are older than the grace period) are moved to a quarantine
+ * directory; quarantines older than the retention period are deleted, and the bytes reclaimed.</li>
+ * <li>Images whose upload is missing get it back from quarantine when it is there; otherwise they
+ * are reported, and deleted when configured. Kept originals that are missing are forgotten.</li>
+ * <li>Renditions that are missing are reset, so the derivative backfill generates them again.</li>
+ * </ul>
+ * With a shared storage backend the upload directory is only a cache; a run then retries the
+ * deletes from the backend that failed when their last reference was released.
+ */
+@Service
+@Slf4j
+public class UploadReconciliationService {
+
+	static final String QUARANTINE_DIR = ".quarantine";
+	private static final Pattern RENDITION = Pattern.compile("(.+)-(?:thumb|card|full)\\.jpg");
+	private static final DateTimeFormatter RUN_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+	private static final int MAX_EXAMPLES = 20;
+
+	private final FileStorageService fileStorageService;
+	private final CalculatorImageRepository imageRepository;
+	private final Counter bytesReclaimed;
+	private final AtomicBoolean running = new AtomicBoolean();
+	private volatile ReconciliationReport lastReport;
+
+	@Value("${app.uploads.gc.enabled:true}")
+	private boolean enabled;
+
+	@Value("${app.uploads.gc.threads:4}")
+	private int threads;
+
+	@Value("${app.uploads.gc.page-size:1000}")
+	private int pageSize;
+
+	@Value("${app.uploads.gc.min-age-minutes:60}")
+	private long minAgeMinutes;
+
+	@Value("${app.uploads.gc.quarantine-hours:168}")
+	private long quarantineHours;
+
+	@Value("${app.uploads.gc.delete-dangling-images:false}")
+	private boolean deleteDanglingImages;
+
+	public UploadReconciliationService(FileStorageService fileStorageService, CalculatorImageRepository imageRepository,
+			MeterRegistry meterRegistry) {
+		this.fileStorageService = fileStorageService;
+		this.imageRepository = imageRepository;
+		this.bytesReclaimed = Counter.builder("uploads.gc.bytes.reclaimed").baseUnit("bytes")
+			.description("Bytes of orphan uploads deleted from quarantine").register(meterRegistry);
+	}
+
+	@Scheduled(fixedDelayString = "${app.uploads.gc.interval-ms:86400000}",
+			initialDelayString = "${app.uploads.gc.initial-delay-ms:600000}")
+	public void runReconciliation() {
+		if (enabled) {
+			reconcileIfIdle();
+		}
+	}
+
+	/**
+	 * Run the reconciliation on a background thread, e.g. from the admin dashboard
+	 * @return False when a run is already in progress
+	 */
+	public boolean startReconciliation() {
+		if (running.get()) {
+			return false;
+		}
+		Thread thread = new Thread(this::reconcileIfIdle, "upload-reconcile");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	public ReconciliationReport getLastReport() {
+		return lastReport;
+	}
+
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	private void reconcileIfIdle() {
+		if (!running.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			reconcile();
+		} catch (Exception e) {
+			log.error("Upload reconciliation failed", e);
+		} finally {
+			running.set(false);
+		}
+	}
+
+	ReconciliationReport reconcile() throws IOException {
+		ReconciliationReport report = new ReconciliationReport();
+		report.setStartedAt(LocalDateTime.now());
+		if (fileStorageService.isShared()) {
+			// The upload directory only caches the shared backend: there are no orphans to find in
+			// it, but deletes from the backend that failed are retried
+			report.setRetriedDeletes(fileStorageService.retryPendingDeletes());
+			report.setFinishedAt(LocalDateTime.now());
+			lastReport = report;
+			log.info("Upload reconciliation: {} pending deletes from the storage backend completed",
+				report.getRetriedDeletes());
+			return report;
+		}
+		Instant cutoff = Instant.now().minus(Duration.ofMinutes(minAgeMinutes));
+		Path quarantineDir = quarantineRoot().resolve(RUN_NAME.format(Instant.now()));
+
+		List<StoreEntry> files = walkStore();
+		String[] fileNames = files.stream().map(StoreEntry::name).toArray(String[]::new);
+		report.setFilesScanned(files.size());
+
+		String[] references = readReferences(fileNames, report);
+		report.setReferencedUploads(references.length);
+
+		// Merge pass over both sorted lists
+		int f = 0;
+		int r = 0;
+		while (f < files.size() || r < references.length) {
+			int comparison = f == files.size() ? 1 : r == references.length ? -1
+				: files.get(f).name().compareTo(references[r]);
+			if (comparison == 0) {
+				f++;
+				r++;
+			} else if (comparison < 0) {
+				unreferencedFile(files.get(f++), references, cutoff, quarantineDir, report);
+			} else {
+				missingUpload(references[r++], report);
+			}
+		}
+
+		purgeQuarantine(report);
+		report.setFinishedAt(LocalDateTime.now());
+		lastReport = report;
+		log.info("Upload reconciliation: {} files, {} referenced uploads; {} orphans quarantined ({} bytes), " +
+				"{} restored, {} images with missing uploads, {} renditions reset, {} bytes reclaimed",
+			report.getFilesScanned(), report.getReferencedUploads(), report.getQuarantinedFiles(),
+			report.getQuarantinedBytes(), report.getRestoredFiles(), report.getDanglingImages(),
+			report.getResetRenditions(), report.getBytesReclaimed());
+		return report;
+	}
+
+	/**
+	 * Every stored file in both layouts, sorted by name. The flat directory and each top-level
+	 * shard directory are walked as separate tasks on a pool of the configured size.
+	 */
+	List<StoreEntry> walkStore() throws IOException {
+		Path root = fileStorageService.getUploadRoot();
+		if (!Files.isDirectory(root)) {
+			return List.of();
+		}
+		List<Path> shardDirs = new ArrayList<>();
+		List<StoreEntry> entries = new ArrayList<>();
+		try (DirectoryStream<Path> children = Files.newDirectoryStream(root)) {
+			for (Path child : children) {
+				String name = child.getFileName().toString();
+				if (name.startsWith(".")) {
+					continue;
+				}
+				BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class);
+				if (attributes.isDirectory()) {
+					shardDirs.add(child);
+				} else if (attributes.isRegularFile() && !name.endsWith(".tmp")) {
+					entries.add(new StoreEntry(name, attributes.size(), attributes.lastModifiedTime().toInstant()));
+				}
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			entries.addAll(pool.submit(() -> shardDirs.parallelStream()
+				.flatMap(UploadReconciliationService::walkShard)
+				.toList()).get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while walking the upload store");
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof UncheckedIOException io ? io.getCause() : new IOException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		entries.sort(Comparator.comparing(StoreEntry::name));
+		// A file moved between layouts during the walk may have been seen twice
+		List<StoreEntry> distinct = new ArrayList<>(entries.size());
+		for (StoreEntry entry : entries) {
+			if (distinct.isEmpty() || !distinct.get(distinct.size() - 1).name().equals(entry.name())) {
+				distinct.add(entry);
+			}
+		}
+		return distinct;
+	}
+
+	private static Stream<StoreEntry> walkShard(Path shardDir) {
+		List<StoreEntry> entries = new ArrayList<>();
+		try {
+			Files.walkFileTree(shardDir, EnumSet.noneOf(FileVisitOption.class), 2, new SimpleFileVisitor<>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+					String name = file.getFileName().toString();
+					if (attributes.isRegularFile() && !name.startsWith(".") && !name.endsWith(".tmp")) {
+						entries.add(new StoreEntry(name, attributes.size(), attributes.lastModifiedTime().toInstant()));
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return entries.stream();
+	}
+
+	/**
+	 * Read the images in id order and collect the uploads they use. Renditions are checked on
+	 * the way against the sorted file names; they are not references of their own, since they
+	 * are kept with their upload.
+	 * @return Referenced uploads, sorted and distinct
+	 */
+	private String[] readReferences(String[] fileNames, ReconciliationReport report) {
+		List<String> references = new ArrayList<>();
+		long lastId = 0;
+		List<CalculatorImage> page;
+		do {
+			page = imageRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, pageSize));
+			for (CalculatorImage image : page) {
+				lastId = image.getId();
+				references.add(image.getImagePath());
+				if (image.getOriginalPath() != null) {
+					references.add(image.getOriginalPath());
+				}
+				if (image.getThumbPath() != null && missingRendition(image, fileNames)) {
+					imageRepository.updateDerivatives(image.getId(), image.getImagePath(), null, null, null);
+					report.setResetRenditions(report.getResetRenditions() + 1);
+				}
+			}
+		} while (page.size() == pageSize);
+
+		return references.stream().sorted().distinct().toArray(String[]::new);
+	}
+
+	private boolean missingRendition(CalculatorImage image, String[] fileNames) {
+		return Stream.of(image.getThumbPath(), image.getCardPath(), image.getFullPath())
+			.filter(path -> path != null && Arrays.binarySearch(fileNames, path) < 0)
+			// Written after the walk started
+			.anyMatch(path -> !Files.exists(fileStorageService.loadFile(path)));
+	}
+
+	private void unreferencedFile(StoreEntry file, String[] references, Instant cutoff, Path quarantineDir,
+			ReconciliationReport report) {
+		Matcher rendition = RENDITION.matcher(file.name());
+		if (rendition.matches() && hasUploadWithBase(references, rendition.group(1))) {
+			return;
+		}
+		// Uploads are written before their image row, so recent files may simply not be used yet
+		if (file.modified().isAfter(cutoff)) {
+			return;
+		}
+		report.setOrphanFiles(report.getOrphanFiles() + 1);
+		try {
+			long size = fileStorageService.quarantine(file.name(), quarantineDir,
+				() -> rendition.matches() || imageRepository.countReferences(file.name()) == 0);
+			if (size >= 0) {
+				report.setQuarantinedFiles(report.getQuarantinedFiles() + 1);
+				report.setQuarantinedBytes(report.getQuarantinedBytes() + size);
+				report.addProblem("Quarantined orphan " + file.name());
+			}
+		} catch (IOException e) {
+			log.warn("Could not quarantine orphan upload {}: {}", file.name(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Whether a referenced upload is named {@code base} plus an optional extension, i.e. has the
+	 * given rendition base name. Found by binary search in the sorted references.
+	 */
+	static boolean hasUploadWithBase(String[] references, String base) {
+		int index = Arrays.binarySearch(references, base);
+		if (index >= 0) {
+			return true;
+		}
+		for (int i = -index - 1; i < references.length && references[i].startsWith(base); i++) {
+			String candidate = references[i];
+			if (candidate.length() > base.length() && candidate.charAt(base.length()) == '.'
+					&& candidate.indexOf('.', base.length() + 1) < 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void missingUpload(String filename, ReconciliationReport report) {
+		try {
+			// Stored after the walk started
+			if (Files.exists(fileStorageService.loadFile(filename))) {
+				return;
+			}
+			Path quarantined = findInQuarantine(filename);
+			if (quarantined != null && fileStorageService.restore(quarantined, filename)) {
+				fileStorageService.addReferences(filename, (int) imageRepository.countReferences(filename));
+				report.setRestoredFiles(report.getRestoredFiles() + 1);
+				report.addProblem("Restored " + filename + " from quarantine");
+				return;
+			}
+		} catch (IOException e) {
+			log.warn("Could not restore upload {}: {}", filename, e.getMessage());
+			return;
+		}
+
+		imageRepository.clearOriginalPath(filename);
+		long images = imageRepository.countByImagePath(filename);
+		if (images == 0) {
+			return;
+		}
+		report.setDanglingImages(report.getDanglingImages() + images);
+		if (deleteDanglingImages) {
+			imageRepository.deleteByImagePathValue(filename);
+			report.addProblem("Deleted " + images + " images whose upload " + filename + " is missing");
+		} else {
+			report.addProblem(images + " images use missing upload " + filename);
+		}
+	}
+
+	private Path findInQuarantine(String filename) throws IOException {
+		Path root = quarantineRoot();
+		if (!Files.isDirectory(root)) {
+			return null;
+		}
+		try (DirectoryStream<Path> runs = Files.newDirectoryStream(root)) {
+			for (Path run : runs) {
+				Path candidate = run.resolve(filename);
+				if (Files.isRegularFile(candidate)) {
+					return candidate;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Delete quarantine runs older than the retention period
+	 */
+	private void purgeQuarantine(ReconciliationReport report) throws IOException {
+		Path root = quarantineRoot();
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+		Instant expiry = Instant.now().minus(Duration.ofHours(quarantineHours));
+		try (DirectoryStream<Path> runs = Files.newDirectoryStream(root)) {
+			for (Path run : runs) {
+				if (!Files.isDirectory(run) || Files.getLastModifiedTime(run).toInstant().isAfter(expiry)) {
+					continue;
+				}
+				try (DirectoryStream<Path> quarantined = Files.newDirectoryStream(run)) {
+					for (Path file : quarantined) {
+						long size = Files.size(file);
+						Files.delete(file);
+						report.setPurgedFiles(report.getPurgedFiles() + 1);
+						report.setBytesReclaimed(report.getBytesReclaimed() + size);
+						bytesReclaimed.increment(size);
+					}
+				}
+				Files.delete(run);
+			}
+		}
+	}
+
+	private Path quarantineRoot() {
+		return fileStorageService.getUploadRoot().resolve(QUARANTINE_DIR);
+	}
+
+	record StoreEntry(String name, long size, Instant modified) {
+	}
+
+	/**
+	 * Outcome of a reconciliation run
+	 */
+	@Data
+	public static class ReconciliationReport {
+		private long filesScanned;
+		private long referencedUploads;
+		private long orphanFiles;
+		private long quarantinedFiles;
+		private long quarantinedBytes;
+		private long restoredFiles;
+		private long danglingImages;
+		private long resetRenditions;
+		private long purgedFiles;
+		private long bytesReclaimed;
+		private long retriedDeletes;
+		private List<String> problems = new ArrayList<>();
+		private LocalDateTime startedAt;
+		private LocalDateTime finishedAt;
+
+		void addProblem(String problem) {
+			if (problems.size() < MAX_EXAMPLES) {
+				problems.add(problem);
+			}
+		}
+	}
+}
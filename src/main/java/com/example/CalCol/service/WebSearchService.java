@@ -1,5 +1,6 @@
 package com.example.CalCol.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -7,7 +8,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Service for performing web searches on Google and Bing
@@ -16,8 +17,26 @@ import java.util.Map;
 @Slf4j
 public class WebSearchService {
 
-	private final WebClient webClient;
+	private static final TypeReference<List<SearchResult>> SEARCH_RESULTS = new TypeReference<>() {};
+	private static final TypeReference<List<ImageSearchResult>> IMAGE_RESULTS = new TypeReference<>() {};
+	private static final TypeReference<BraveAIResult> BRAVE_AI_RESULT = new TypeReference<>() {};
+
+	private final WebClient googleClient;
+	private final WebClient bingClient;
+	private final WebClient braveClient;
+	private final String googleBaseUrl;
+	private final String bingBaseUrl;
+	private final String braveBaseUrl;
 	private final QuotaService quotaService;
+	private final SearchResultCache searchResultCache;
+	private final ProviderCircuitBreakers circuitBreakers;
+
+	// Concurrent identical searches share one provider call
+	private final SingleFlight<String, List<SearchResult>> searchFlight = new SingleFlight<>();
+	private final SingleFlight<String, List<ImageSearchResult>> imageSearchFlight = new SingleFlight<>();
+	private final SingleFlight<String, BraveAIResult> braveAiFlight = new SingleFlight<>();
+	// Set while a planned search runs; marked when the search goes out to the provider
+	private final ThreadLocal<boolean[]> providerCalled = new ThreadLocal<>();
 	
 	@Value("${app.search.google.api-key:}")
 	private String googleApiKey;
@@ -31,21 +50,63 @@ public class WebSearchService {
 	@Value("${app.search.brave.api-key:}")
 	private String braveApiKey;
 
-	public WebSearchService(QuotaService quotaService) {
-		this.webClient = WebClient.builder().build();
+	public WebSearchService(QuotaService quotaService, SearchResultCache searchResultCache,
+			OutboundHttpClients httpClients, ProviderCircuitBreakers circuitBreakers) {
+		this.circuitBreakers = circuitBreakers;
+		this.googleClient = httpClients.client("google");
+		this.bingClient = httpClients.client("bing");
+		this.braveClient = httpClients.client("brave");
+		this.googleBaseUrl = httpClients.baseUrl("google", "https://www.googleapis.com");
+		this.bingBaseUrl = httpClients.baseUrl("bing", "https://api.bing.microsoft.com");
+		this.braveBaseUrl = httpClients.baseUrl("brave", "https://api.search.brave.com");
 		this.quotaService = quotaService;
+		this.searchResultCache = searchResultCache;
+	}
+
+	/**
+	 * Whether a search provider ("google", "bing", "brave") has its credentials configured
+	 */
+	public boolean isConfigured(String provider) {
+		return switch (provider) {
+			case "google" -> googleApiKey != null && !googleApiKey.isEmpty()
+				&& googleSearchEngineId != null && !googleSearchEngineId.isEmpty();
+			case "bing" -> bingApiKey != null && !bingApiKey.isEmpty();
+			case "brave" -> braveApiKey != null && !braveApiKey.isEmpty();
+			default -> false;
+		};
 	}
 
 	/**
 	 * Search Google for calculator information
 	 */
 	public List<SearchResult> searchGoogle(String query, int maxResults) {
+		return searchGoogle(query, maxResults, null);
+	}
+
+	/**
+	 * Search Google for calculator information, keeping only results the filter accepts
+	 * @param filter Relevance filter applied while the response is decoded, or null to keep all results
+	 */
+	public List<SearchResult> searchGoogle(String query, int maxResults, RelevanceFilter filter) {
+		String operation = "web/" + maxResults + RelevanceFilter.keyOf(filter);
+		return new ArrayList<>(searchFlight.execute(flightKey("google", operation, query),
+			() -> fetchGoogle(query, maxResults, filter, operation)));
+	}
+
+	private List<SearchResult> fetchGoogle(String query, int maxResults, RelevanceFilter filter, String operation) {
 		if (googleApiKey == null || googleApiKey.isEmpty() || 
 			googleSearchEngineId == null || googleSearchEngineId.isEmpty()) {
 			log.warn("Google API key or search engine ID not configured. Skipping Google search.");
 			return new ArrayList<>();
 		}
 
+		// Serve repeated queries from cache without spending quota
+		List<SearchResult> cached = searchResultCache.get("google", operation, query, SEARCH_RESULTS);
+		if (cached != null) {
+			log.debug("Google search served from cache for query: {}", query);
+			return new ArrayList<>(cached);
+		}
+
 		// Check quota before making request
 		if (!quotaService.canMakeRequest("google")) {
 			log.warn("Google search quota/rate limit exceeded. Remaining: {}", 
@@ -55,19 +116,23 @@ public class WebSearchService {
 
 		try {
 			String url = String.format(
-				"https://www.googleapis.com/customsearch/v1?key=%s&cx=%s&q=%s&num=%d",
-				googleApiKey, googleSearchEngineId, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
+				"%s/customsearch/v1?key=%s&cx=%s&q=%s&num=%d",
+				googleBaseUrl, googleApiKey, googleSearchEngineId, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
 
-			Map<String, Object> response = webClient.get()
+			byte[] response = callProvider("google", () -> googleClient.get()
 				.uri(url)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
-			List<SearchResult> results = parseGoogleResults(response);
+			List<SearchResult> results = decoded("Google search", ProviderResponseDecoder.googleResults(response, filter), filter);
 			// Record successful request
 			quotaService.recordRequest("google");
+			searchResultCache.put("google", operation, query, results);
 			return results;
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Google call: {}", e.getMessage());
+			return new ArrayList<>();
 		} catch (Exception e) {
 			log.error("Error searching Google: {}", e.getMessage(), e);
 			return new ArrayList<>();
@@ -78,11 +143,32 @@ public class WebSearchService {
 	 * Search Bing for calculator information
 	 */
 	public List<SearchResult> searchBing(String query, int maxResults) {
+		return searchBing(query, maxResults, null);
+	}
+
+	/**
+	 * Search Bing for calculator information, keeping only results the filter accepts
+	 * @param filter Relevance filter applied while the response is decoded, or null to keep all results
+	 */
+	public List<SearchResult> searchBing(String query, int maxResults, RelevanceFilter filter) {
+		String operation = "web/" + maxResults + RelevanceFilter.keyOf(filter);
+		return new ArrayList<>(searchFlight.execute(flightKey("bing", operation, query),
+			() -> fetchBing(query, maxResults, filter, operation)));
+	}
+
+	private List<SearchResult> fetchBing(String query, int maxResults, RelevanceFilter filter, String operation) {
 		if (bingApiKey == null || bingApiKey.isEmpty()) {
 			log.warn("Bing API key not configured. Skipping Bing search.");
 			return new ArrayList<>();
 		}
 
+		// Serve repeated queries from cache without spending quota
+		List<SearchResult> cached = searchResultCache.get("bing", operation, query, SEARCH_RESULTS);
+		if (cached != null) {
+			log.debug("Bing search served from cache for query: {}", query);
+			return new ArrayList<>(cached);
+		}
+
 		// Check quota before making request
 		if (!quotaService.canMakeRequest("bing")) {
 			log.warn("Bing search quota/rate limit exceeded. Remaining: {}", 
@@ -92,20 +178,24 @@ public class WebSearchService {
 
 		try {
 			String url = String.format(
-				"https://api.bing.microsoft.com/v7.0/search?q=%s&count=%d",
-				java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
+				"%s/v7.0/search?q=%s&count=%d",
+				bingBaseUrl, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
 
-			Map<String, Object> response = webClient.get()
+			byte[] response = callProvider("bing", () -> bingClient.get()
 				.uri(url)
 				.header("Ocp-Apim-Subscription-Key", bingApiKey)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
-		List<SearchResult> results = parseBingResults(response);
+		List<SearchResult> results = decoded("Bing search", ProviderResponseDecoder.bingResults(response, filter), filter);
 		// Record successful request
 		quotaService.recordRequest("bing");
+		searchResultCache.put("bing", operation, query, results);
 		return results;
+	} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+		log.debug("Skipping Bing call: {}", e.getMessage());
+		return new ArrayList<>();
 	} catch (Exception e) {
 		log.error("Error searching Bing: {}", e.getMessage(), e);
 		return new ArrayList<>();
@@ -116,12 +206,33 @@ public class WebSearchService {
 	 * Search Google for calculator images
 	 */
 	public List<ImageSearchResult> searchGoogleImages(String query, int maxResults) {
+		return searchGoogleImages(query, maxResults, null);
+	}
+
+	/**
+	 * Search Google for calculator images, keeping only results the filter accepts
+	 * @param filter Relevance filter applied while the response is decoded, or null to keep all results
+	 */
+	public List<ImageSearchResult> searchGoogleImages(String query, int maxResults, RelevanceFilter filter) {
+		String operation = "images/" + maxResults + RelevanceFilter.keyOf(filter);
+		return new ArrayList<>(imageSearchFlight.execute(flightKey("google", operation, query),
+			() -> fetchGoogleImages(query, maxResults, filter, operation)));
+	}
+
+	private List<ImageSearchResult> fetchGoogleImages(String query, int maxResults, RelevanceFilter filter, String operation) {
 		if (googleApiKey == null || googleApiKey.isEmpty() || 
 			googleSearchEngineId == null || googleSearchEngineId.isEmpty()) {
 			log.warn("Google API key or search engine ID not configured. Skipping Google image search.");
 			return new ArrayList<>();
 		}
 
+		// Serve repeated queries from cache without spending quota
+		List<ImageSearchResult> cached = searchResultCache.get("google", operation, query, IMAGE_RESULTS);
+		if (cached != null) {
+			log.debug("Google image search served from cache for query: {}", query);
+			return new ArrayList<>(cached);
+		}
+
 		// Check quota before making request
 		if (!quotaService.canMakeRequest("google")) {
 			int remaining = quotaService.getRemainingQuota("google");
@@ -131,30 +242,32 @@ public class WebSearchService {
 
 		try {
 			String url = String.format(
-				"https://www.googleapis.com/customsearch/v1?key=%s&cx=%s&q=%s&num=%d&searchType=image",
-				googleApiKey, googleSearchEngineId, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
+				"%s/customsearch/v1?key=%s&cx=%s&q=%s&num=%d&searchType=image",
+				googleBaseUrl, googleApiKey, googleSearchEngineId, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
 
 			log.debug("Google image search URL: {}", url.replace(googleApiKey, "***"));
 			
-			Map<String, Object> response = webClient.get()
+			byte[] response = callProvider("google", () -> googleClient.get()
 				.uri(url)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
 			if (response == null) {
 				log.warn("Google image search returned null response");
 				return new ArrayList<>();
 			}
 			
-			log.debug("Google image search response keys: {}", response.keySet());
-			
-			List<ImageSearchResult> results = parseGoogleImageResults(response);
+			List<ImageSearchResult> results = decoded("Google image search", ProviderResponseDecoder.googleImages(response, filter), filter);
 			log.info("Google image search returned {} results", results.size());
 			
 			// Record successful request
 			quotaService.recordRequest("google");
+			searchResultCache.put("google", operation, query, results);
 			return results;
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Google call: {}", e.getMessage());
+			return new ArrayList<>();
 		} catch (org.springframework.web.reactive.function.client.WebClientResponseException e) {
 			log.error("Google image search API error: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
 			return new ArrayList<>();
@@ -168,11 +281,32 @@ public class WebSearchService {
 	 * Search Bing for calculator images
 	 */
 	public List<ImageSearchResult> searchBingImages(String query, int maxResults) {
+		return searchBingImages(query, maxResults, null);
+	}
+
+	/**
+	 * Search Bing for calculator images, keeping only results the filter accepts
+	 * @param filter Relevance filter applied while the response is decoded, or null to keep all results
+	 */
+	public List<ImageSearchResult> searchBingImages(String query, int maxResults, RelevanceFilter filter) {
+		String operation = "images/" + maxResults + RelevanceFilter.keyOf(filter);
+		return new ArrayList<>(imageSearchFlight.execute(flightKey("bing", operation, query),
+			() -> fetchBingImages(query, maxResults, filter, operation)));
+	}
+
+	private List<ImageSearchResult> fetchBingImages(String query, int maxResults, RelevanceFilter filter, String operation) {
 		if (bingApiKey == null || bingApiKey.isEmpty()) {
 			log.warn("Bing API key not configured. Skipping Bing image search.");
 			return new ArrayList<>();
 		}
 
+		// Serve repeated queries from cache without spending quota
+		List<ImageSearchResult> cached = searchResultCache.get("bing", operation, query, IMAGE_RESULTS);
+		if (cached != null) {
+			log.debug("Bing image search served from cache for query: {}", query);
+			return new ArrayList<>(cached);
+		}
+
 		// Check quota before making request
 		if (!quotaService.canMakeRequest("bing")) {
 			log.warn("Bing image search quota/rate limit exceeded. Remaining: {}", 
@@ -182,31 +316,33 @@ public class WebSearchService {
 
 		try {
 			String url = String.format(
-				"https://api.bing.microsoft.com/v7.0/images/search?q=%s&count=%d",
-				java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
+				"%s/v7.0/images/search?q=%s&count=%d",
+				bingBaseUrl, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
 
 			log.debug("Bing image search URL: {}", url);
 
-			Map<String, Object> response = webClient.get()
+			byte[] response = callProvider("bing", () -> bingClient.get()
 				.uri(url)
 				.header("Ocp-Apim-Subscription-Key", bingApiKey)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
 			if (response == null) {
 				log.warn("Bing image search returned null response");
 				return new ArrayList<>();
 			}
 
-			log.debug("Bing image search response keys: {}", response.keySet());
-
-			List<ImageSearchResult> results = parseBingImageResults(response);
+			List<ImageSearchResult> results = decoded("Bing image search", ProviderResponseDecoder.bingImages(response, filter), filter);
 			log.info("Bing image search returned {} results", results.size());
 			
 			// Record successful request
 			quotaService.recordRequest("bing");
+			searchResultCache.put("bing", operation, query, results);
 			return results;
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Bing call: {}", e.getMessage());
+			return new ArrayList<>();
 		} catch (org.springframework.web.reactive.function.client.WebClientResponseException e) {
 			log.error("Bing image search API error: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
 			return new ArrayList<>();
@@ -220,11 +356,32 @@ public class WebSearchService {
 	 * Search Brave for calculator images
 	 */
 	public List<ImageSearchResult> searchBraveImages(String query, int maxResults) {
+		return searchBraveImages(query, maxResults, null);
+	}
+
+	/**
+	 * Search Brave for calculator images, keeping only results the filter accepts
+	 * @param filter Relevance filter applied while the response is decoded, or null to keep all results
+	 */
+	public List<ImageSearchResult> searchBraveImages(String query, int maxResults, RelevanceFilter filter) {
+		String operation = "images/" + maxResults + RelevanceFilter.keyOf(filter);
+		return new ArrayList<>(imageSearchFlight.execute(flightKey("brave", operation, query),
+			() -> fetchBraveImages(query, maxResults, filter, operation)));
+	}
+
+	private List<ImageSearchResult> fetchBraveImages(String query, int maxResults, RelevanceFilter filter, String operation) {
 		if (braveApiKey == null || braveApiKey.isEmpty()) {
 			log.warn("Brave API key not configured. Skipping Brave image search.");
 			return new ArrayList<>();
 		}
 
+		// Serve repeated queries from cache without spending quota
+		List<ImageSearchResult> cached = searchResultCache.get("brave", operation, query, IMAGE_RESULTS);
+		if (cached != null) {
+			log.debug("Brave image search served from cache for query: {}", query);
+			return new ArrayList<>(cached);
+		}
+
 		// Check quota before making request
 		if (!quotaService.canMakeRequest("brave")) {
 			int remaining = quotaService.getRemainingQuota("brave");
@@ -234,33 +391,35 @@ public class WebSearchService {
 
 		try {
 			String url = String.format(
-				"https://api.search.brave.com/res/v1/images/search?q=%s&count=%d",
-				java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
+				"%s/res/v1/images/search?q=%s&count=%d",
+				braveBaseUrl, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
 
 			log.debug("Brave image search URL: {}", url);
 
-			Map<String, Object> response = webClient.get()
+			byte[] response = callProvider("brave", () -> braveClient.get()
 				.uri(url)
 				.header("Accept", "application/json")
 				.header("Accept-Encoding", "gzip")
 				.header("X-Subscription-Token", braveApiKey)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
 			if (response == null) {
 				log.warn("Brave image search returned null response");
 				return new ArrayList<>();
 			}
 
-			log.debug("Brave image search response keys: {}", response.keySet());
-
-			List<ImageSearchResult> results = parseBraveImageResults(response);
+			List<ImageSearchResult> results = decoded("Brave image search", ProviderResponseDecoder.braveImages(response, filter), filter);
 			log.info("Brave image search returned {} results", results.size());
 			
 			// Record successful request
 			quotaService.recordRequest("brave");
+			searchResultCache.put("brave", operation, query, results);
 			return results;
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Brave call: {}", e.getMessage());
+			return new ArrayList<>();
 		} catch (org.springframework.web.reactive.function.client.WebClientResponseException e) {
 			log.error("Brave image search API error: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
 			return new ArrayList<>();
@@ -274,11 +433,32 @@ public class WebSearchService {
 	 * Search Brave for calculator information
 	 */
 	public List<SearchResult> searchBrave(String query, int maxResults) {
+		return searchBrave(query, maxResults, null);
+	}
+
+	/**
+	 * Search Brave for calculator information, keeping only results the filter accepts
+	 * @param filter Relevance filter applied while the response is decoded, or null to keep all results
+	 */
+	public List<SearchResult> searchBrave(String query, int maxResults, RelevanceFilter filter) {
+		String operation = "web/" + maxResults + RelevanceFilter.keyOf(filter);
+		return new ArrayList<>(searchFlight.execute(flightKey("brave", operation, query),
+			() -> fetchBrave(query, maxResults, filter, operation)));
+	}
+
+	private List<SearchResult> fetchBrave(String query, int maxResults, RelevanceFilter filter, String operation) {
 		if (braveApiKey == null || braveApiKey.isEmpty()) {
 			log.warn("Brave API key not configured. Skipping Brave search.");
 			return new ArrayList<>();
 		}
 
+		// Serve repeated queries from cache without spending quota
+		List<SearchResult> cached = searchResultCache.get("brave", operation, query, SEARCH_RESULTS);
+		if (cached != null) {
+			log.debug("Brave search served from cache for query: {}", query);
+			return new ArrayList<>(cached);
+		}
+
 		// Check quota before making request
 		if (!quotaService.canMakeRequest("brave")) {
 			log.warn("Brave search quota/rate limit exceeded. Remaining: {}", 
@@ -288,22 +468,26 @@ public class WebSearchService {
 
 		try {
 			String url = String.format(
-				"https://api.search.brave.com/res/v1/web/search?q=%s&count=%d",
-				java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
+				"%s/res/v1/web/search?q=%s&count=%d",
+				braveBaseUrl, java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8), maxResults);
 
-			Map<String, Object> response = webClient.get()
+			byte[] response = callProvider("brave", () -> braveClient.get()
 				.uri(url)
 				.header("Accept", "application/json")
 				.header("Accept-Encoding", "gzip")
 				.header("X-Subscription-Token", braveApiKey)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
-			List<SearchResult> results = parseBraveResults(response);
+			List<SearchResult> results = decoded("Brave search", ProviderResponseDecoder.braveResults(response, filter), filter);
 			// Record successful request
 			quotaService.recordRequest("brave");
+			searchResultCache.put("brave", operation, query, results);
 			return results;
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Brave call: {}", e.getMessage());
+			return new ArrayList<>();
 		} catch (Exception e) {
 			log.error("Error searching Brave: {}", e.getMessage(), e);
 			return new ArrayList<>();
@@ -315,11 +499,24 @@ public class WebSearchService {
 	 * Uses a specific prompt format to get structured data in table format
 	 */
 	public BraveAIResult searchBraveAI(String manufacturer, String model) {
+		return braveAiFlight.execute(flightKey("brave", "ai", manufacturer + " " + model),
+			() -> fetchBraveAI(manufacturer, model));
+	}
+
+	private BraveAIResult fetchBraveAI(String manufacturer, String model) {
 		if (braveApiKey == null || braveApiKey.isEmpty()) {
 			log.warn("Brave API key not configured. Skipping Brave AI search.");
 			return null;
 		}
 
+		// Serve repeated queries from cache without spending quota
+		String cacheQuery = manufacturer + " " + model;
+		BraveAIResult cached = searchResultCache.get("brave", "ai", cacheQuery, BRAVE_AI_RESULT);
+		if (cached != null) {
+			log.debug("Brave AI search served from cache for: {}", cacheQuery);
+			return cached;
+		}
+
 		// Check quota before making request
 		if (!quotaService.canMakeRequest("brave")) {
 			log.warn("Brave AI search quota/rate limit exceeded. Remaining: {}", 
@@ -332,110 +529,33 @@ public class WebSearchService {
 				manufacturer, model);
 			
 			String url = String.format(
-				"https://api.search.brave.com/res/v1/web/search?q=%s",
-				java.net.URLEncoder.encode(prompt, java.nio.charset.StandardCharsets.UTF_8));
+				"%s/res/v1/web/search?q=%s",
+				braveBaseUrl, java.net.URLEncoder.encode(prompt, java.nio.charset.StandardCharsets.UTF_8));
 
-			Map<String, Object> response = webClient.get()
+			byte[] response = callProvider("brave", () -> braveClient.get()
 				.uri(url)
 				.header("Accept", "application/json")
 				.header("Accept-Encoding", "gzip")
 				.header("X-Subscription-Token", braveApiKey)
 				.retrieve()
-				.bodyToMono(Map.class)
-				.block();
+				.bodyToMono(byte[].class)
+				.block());
 
 			BraveAIResult result = parseBraveAIResults(response, manufacturer, model);
 			// Record successful request
 			quotaService.recordRequest("brave");
+			searchResultCache.put("brave", "ai", cacheQuery, result);
 			return result;
+		} catch (ProviderCircuitBreakers.ProviderUnavailableException e) {
+			log.debug("Skipping Brave call: {}", e.getMessage());
+			return null;
 		} catch (Exception e) {
 			log.error("Error searching Brave AI: {}", e.getMessage(), e);
 			return null;
 		}
 	}
 
-	private List<SearchResult> parseGoogleResults(Map<String, Object> response) {
-		List<SearchResult> results = new ArrayList<>();
-		if (response == null || !response.containsKey("items")) {
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("items");
-		if (items == null) {
-			return results;
-		}
-
-		for (Map<String, Object> item : items) {
-			SearchResult result = new SearchResult();
-			result.setTitle((String) item.get("title"));
-			result.setUrl((String) item.get("link"));
-			result.setSnippet((String) item.get("snippet"));
-			results.add(result);
-		}
-
-		return results;
-	}
-
-	private List<SearchResult> parseBingResults(Map<String, Object> response) {
-		List<SearchResult> results = new ArrayList<>();
-		if (response == null || !response.containsKey("webPages")) {
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		Map<String, Object> webPages = (Map<String, Object>) response.get("webPages");
-		if (webPages == null || !webPages.containsKey("value")) {
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		List<Map<String, Object>> items = (List<Map<String, Object>>) webPages.get("value");
-		if (items == null) {
-			return results;
-		}
-
-		for (Map<String, Object> item : items) {
-			SearchResult result = new SearchResult();
-			result.setTitle((String) item.get("name"));
-			result.setUrl((String) item.get("url"));
-			result.setSnippet((String) item.get("snippet"));
-			results.add(result);
-		}
-
-		return results;
-	}
-
-	private List<SearchResult> parseBraveResults(Map<String, Object> response) {
-		List<SearchResult> results = new ArrayList<>();
-		if (response == null || !response.containsKey("web")) {
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		Map<String, Object> web = (Map<String, Object>) response.get("web");
-		if (web == null || !web.containsKey("results")) {
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		List<Map<String, Object>> items = (List<Map<String, Object>>) web.get("results");
-		if (items == null) {
-			return results;
-		}
-
-		for (Map<String, Object> item : items) {
-			SearchResult result = new SearchResult();
-			result.setTitle((String) item.get("title"));
-			result.setUrl((String) item.get("url"));
-			result.setSnippet((String) item.get("description"));
-			results.add(result);
-		}
-
-		return results;
-	}
-
-	private BraveAIResult parseBraveAIResults(Map<String, Object> response, String manufacturer, String model) {
+	private BraveAIResult parseBraveAIResults(byte[] response, String manufacturer, String model) {
 		BraveAIResult aiResult = new BraveAIResult();
 		aiResult.setManufacturer(manufacturer);
 		aiResult.setModel(model);
@@ -444,57 +564,45 @@ public class WebSearchService {
 		
 		// Try to extract structured data from the search results
 		// The AI response typically appears in the first result's description or snippet
-		if (response != null && response.containsKey("web")) {
-			@SuppressWarnings("unchecked")
-			Map<String, Object> web = (Map<String, Object>) response.get("web");
-			if (web != null && web.containsKey("results")) {
-				@SuppressWarnings("unchecked")
-				List<Map<String, Object>> items = (List<Map<String, Object>>) web.get("results");
-				if (items != null && !items.isEmpty()) {
-					log.debug("Found {} results in Brave AI response", items.size());
-					
-					// Try to find the best result - look for one with description containing table-like data
-					for (Map<String, Object> result : items) {
-						String description = (String) result.get("description");
-						String title = (String) result.get("title");
-						
-						log.debug("Result title: {}, description length: {}", title, 
-							description != null ? description.length() : 0);
-						
-						if (description != null && !description.trim().isEmpty()) {
-							// Check if this looks like structured data (contains keywords/labels or table-like format)
-							String lowerDesc = description.toLowerCase();
-							if (lowerDesc.contains("keywords") || lowerDesc.contains("labels") || 
-								lowerDesc.contains("\t") || lowerDesc.contains("model") || 
-								lowerDesc.contains("manufacturer")) {
-								log.debug("Found structured data in result: {}", title);
-								aiResult.setStructuredData(parseStructuredTable(description));
-								aiResult.setRawResponse(description);
-								aiResult.setSourceUrl((String) result.get("url"));
-								break; // Use first matching result
-							}
-						}
-					}
-					
-					// If no structured data found, use first result anyway
-					if (aiResult.getRawResponse() == null && !items.isEmpty()) {
-						Map<String, Object> firstResult = items.get(0);
-						String description = (String) firstResult.get("description");
-						if (description != null && !description.trim().isEmpty()) {
-							log.debug("Using first result as fallback");
-							aiResult.setStructuredData(parseStructuredTable(description));
-							aiResult.setRawResponse(description);
-							aiResult.setSourceUrl((String) firstResult.get("url"));
-						}
+		List<ProviderResponseDecoder.BraveWebResult> items = ProviderResponseDecoder.braveWebResults(response).items();
+		if (!items.isEmpty()) {
+			log.debug("Found {} results in Brave AI response", items.size());
+			
+			// Try to find the best result - look for one with description containing table-like data
+			for (ProviderResponseDecoder.BraveWebResult result : items) {
+				String description = result.description();
+				
+				log.debug("Result title: {}, description length: {}", result.title(), 
+					description != null ? description.length() : 0);
+				
+				if (description != null && !description.trim().isEmpty()) {
+					// Check if this looks like structured data (contains keywords/labels or table-like format)
+					String lowerDesc = description.toLowerCase();
+					if (lowerDesc.contains("keywords") || lowerDesc.contains("labels") || 
+						lowerDesc.contains("\t") || lowerDesc.contains("model") || 
+						lowerDesc.contains("manufacturer")) {
+						log.debug("Found structured data in result: {}", result.title());
+						aiResult.setStructuredData(parseStructuredTable(description));
+						aiResult.setRawResponse(description);
+						aiResult.setSourceUrl(result.url());
+						break; // Use first matching result
 					}
-				} else {
-					log.warn("Brave AI response has no results");
 				}
-			} else {
-				log.warn("Brave AI response missing 'results' key");
+			}
+			
+			// If no structured data found, use first result anyway
+			if (aiResult.getRawResponse() == null) {
+				ProviderResponseDecoder.BraveWebResult firstResult = items.get(0);
+				String description = firstResult.description();
+				if (description != null && !description.trim().isEmpty()) {
+					log.debug("Using first result as fallback");
+					aiResult.setStructuredData(parseStructuredTable(description));
+					aiResult.setRawResponse(description);
+					aiResult.setSourceUrl(firstResult.url());
+				}
 			}
 		} else {
-			log.warn("Brave AI response missing 'web' key");
+			log.warn("Brave AI response has no results");
 		}
 		
 		log.debug("Brave AI Result - Structured Data entries: {}, Raw Response: {}", 
@@ -614,216 +722,46 @@ public class WebSearchService {
 		return structuredData;
 	}
 
-	private List<ImageSearchResult> parseGoogleImageResults(Map<String, Object> response) {
-		List<ImageSearchResult> results = new ArrayList<>();
-		if (response == null) {
-			log.warn("Google image search response is null");
-			return results;
-		}
-		
-		log.debug("Google image search response keys: {}", response.keySet());
-		
-		// Check for errors
-		if (response.containsKey("error")) {
-			@SuppressWarnings("unchecked")
-			Map<String, Object> error = (Map<String, Object>) response.get("error");
-			log.error("Google image search API error: {}", error);
-			return results;
-		}
-		
-		if (!response.containsKey("items")) {
-			log.warn("Google image search response has no 'items' key. Available keys: {}. Response: {}", 
-				response.keySet(), response);
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("items");
-		if (items == null || items.isEmpty()) {
-			log.debug("Google image search returned empty items list");
-			return results;
+	/**
+	 * Items of a decoded response, logging a provider error and how many results the filter kept
+	 */
+	private <T> List<T> decoded(String search, ProviderResponseDecoder.Decoded<T> decoded, RelevanceFilter filter) {
+		if (decoded.error() != null) {
+			log.error("{} API error: {}", search, decoded.error());
 		}
-
-		log.debug("Parsing {} Google image search results", items.size());
-		
-		for (Map<String, Object> item : items) {
-			try {
-				ImageSearchResult result = new ImageSearchResult();
-				
-				// Google Custom Search API for images returns:
-				// - link: direct image URL
-				// - title: image title
-				// - image.thumbnailLink: thumbnail URL
-				// - image.contextLink: source page URL
-				// - image.width/height: dimensions
-				
-				String imageUrl = (String) item.get("link");
-				if (imageUrl == null || imageUrl.trim().isEmpty()) {
-					log.debug("Skipping Google image result with no link");
-					continue;
-				}
-				result.setImageUrl(imageUrl);
-				result.setTitle((String) item.get("title"));
-				
-				@SuppressWarnings("unchecked")
-				Map<String, Object> image = (Map<String, Object>) item.get("image");
-				if (image != null) {
-					result.setThumbnailUrl((String) image.get("thumbnailLink"));
-					result.setSourceUrl((String) image.get("contextLink"));
-					
-					Object widthObj = image.get("width");
-					Object heightObj = image.get("height");
-					if (widthObj instanceof Number) {
-						result.setWidth(((Number) widthObj).intValue());
-					}
-					if (heightObj instanceof Number) {
-						result.setHeight(((Number) heightObj).intValue());
-					}
-				} else {
-					// Fallback: use link as thumbnail if image object is missing
-					result.setThumbnailUrl(imageUrl);
-					result.setSourceUrl((String) item.get("displayLink"));
-				}
-				
-				result.setSource("Google");
-				results.add(result);
-			} catch (Exception e) {
-				log.warn("Error parsing Google image search result: {}", e.getMessage(), e);
-			}
+		if (filter != null) {
+			log.info("{}: kept {} of {} results ({})", search, decoded.items().size(), decoded.total(), filter);
 		}
-
-		log.info("Successfully parsed {} Google image search results", results.size());
-		return results;
+		return decoded.items();
 	}
 
-	private List<ImageSearchResult> parseBingImageResults(Map<String, Object> response) {
-		List<ImageSearchResult> results = new ArrayList<>();
-		if (response == null) {
-			log.warn("Bing image search response is null");
-			return results;
-		}
-		
-		log.debug("Bing image search response keys: {}", response.keySet());
-		
-		if (!response.containsKey("value")) {
-			log.warn("Bing image search response has no 'value' key. Available keys: {}. Response: {}", 
-				response.keySet(), response);
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("value");
-		if (items == null || items.isEmpty()) {
-			log.debug("Bing image search returned empty items list");
-			return results;
-		}
-
-		log.debug("Parsing {} Bing image search results", items.size());
-
-		for (Map<String, Object> item : items) {
-			try {
-				ImageSearchResult result = new ImageSearchResult();
-				
-				// Bing Image Search API returns:
-				// - contentUrl: direct image URL
-				// - thumbnailUrl: thumbnail URL
-				// - name: image title
-				// - hostPageUrl: source page URL
-				// - width/height: dimensions
-				
-				String imageUrl = (String) item.get("contentUrl");
-				if (imageUrl == null || imageUrl.trim().isEmpty()) {
-					log.debug("Skipping Bing image result with no contentUrl");
-					continue;
-				}
-				result.setImageUrl(imageUrl);
-				result.setThumbnailUrl((String) item.get("thumbnailUrl"));
-				result.setTitle((String) item.get("name"));
-				result.setSourceUrl((String) item.get("hostPageUrl"));
-				
-				Object widthObj = item.get("width");
-				Object heightObj = item.get("height");
-				if (widthObj instanceof Number) {
-					result.setWidth(((Number) widthObj).intValue());
-				}
-				if (heightObj instanceof Number) {
-					result.setHeight(((Number) heightObj).intValue());
-				}
-				
-				result.setSource("Bing");
-				results.add(result);
-			} catch (Exception e) {
-				log.warn("Error parsing Bing image search result: {}", e.getMessage(), e);
-			}
+	/**
+	 * Run a search for the provider planner, reporting whether it called the provider. Results served
+	 * from the cache or shared with an identical search in flight, and searches skipped for quota or
+	 * an open circuit, do not.
+	 */
+	public <T> ProviderPlanner.ProviderResult<T> planned(Supplier<List<T>> search) {
+		boolean[] called = {false};
+		providerCalled.set(called);
+		try {
+			return new ProviderPlanner.ProviderResult<>(search.get(), called[0]);
+		} finally {
+			providerCalled.remove();
 		}
-
-		log.info("Successfully parsed {} Bing image search results", results.size());
-		return results;
 	}
 
-	private List<ImageSearchResult> parseBraveImageResults(Map<String, Object> response) {
-		List<ImageSearchResult> results = new ArrayList<>();
-		if (response == null) {
-			log.warn("Brave image search response is null");
-			return results;
-		}
-		
-		log.debug("Brave image search response keys: {}", response.keySet());
-		
-		if (!response.containsKey("results")) {
-			log.warn("Brave image search response has no 'results' key. Available keys: {}. Response: {}", 
-				response.keySet(), response);
-			return results;
-		}
-
-		@SuppressWarnings("unchecked")
-		List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("results");
-		if (items == null || items.isEmpty()) {
-			log.debug("Brave image search returned empty items list");
-			return results;
-		}
-
-		log.debug("Parsing {} Brave image search results", items.size());
-
-		for (Map<String, Object> item : items) {
-			try {
-				ImageSearchResult result = new ImageSearchResult();
-				
-				// Brave Image Search API returns:
-				// - url: direct image URL
-				// - thumbnail: thumbnail URL
-				// - title: image title
-				// - source: source page URL
-				// - width/height: dimensions
-				
-				String imageUrl = (String) item.get("url");
-				if (imageUrl == null || imageUrl.trim().isEmpty()) {
-					log.debug("Skipping Brave image result with no url");
-					continue;
-				}
-				result.setImageUrl(imageUrl);
-				result.setThumbnailUrl((String) item.get("thumbnail"));
-				result.setTitle((String) item.get("title"));
-				result.setSourceUrl((String) item.get("source"));
-				
-				Object widthObj = item.get("width");
-				Object heightObj = item.get("height");
-				if (widthObj instanceof Number) {
-					result.setWidth(((Number) widthObj).intValue());
-				}
-				if (heightObj instanceof Number) {
-					result.setHeight(((Number) heightObj).intValue());
-				}
-				
-				result.setSource("Brave");
-				results.add(result);
-			} catch (Exception e) {
-				log.warn("Error parsing Brave image search result: {}", e.getMessage(), e);
+	private <T> T callProvider(String provider, Supplier<T> call) {
+		return circuitBreakers.execute(provider, () -> {
+			boolean[] called = providerCalled.get();
+			if (called != null) {
+				called[0] = true;
 			}
-		}
+			return call.get();
+		});
+	}
 
-		log.info("Successfully parsed {} Brave image search results", results.size());
-		return results;
+	private static String flightKey(String provider, String operation, String query) {
+		return provider + "|" + operation + "|" + SearchResultCache.normalizeQuery(query);
 	}
 
 	/**
@@ -843,41 +781,11 @@ public class WebSearchService {
 			return results;
 		}
 		
-		String manufacturerLower = manufacturer.toLowerCase().trim();
-		String modelLower = model.toLowerCase().trim();
-		
+		RelevanceFilter filter = RelevanceFilter.forWeb(manufacturer, model);
 		List<SearchResult> filtered = new ArrayList<>();
-		
 		for (SearchResult result : results) {
-			if (result == null) {
-				continue;
-			}
-			
-			// Combine title, snippet, and URL for checking
-			String combinedText = "";
-			if (result.getTitle() != null) {
-				combinedText += result.getTitle() + " ";
-			}
-			if (result.getSnippet() != null) {
-				combinedText += result.getSnippet() + " ";
-			}
-			if (result.getUrl() != null) {
-				combinedText += result.getUrl() + " ";
-			}
-			
-			String combinedLower = combinedText.toLowerCase();
-			
-			// Check if result contains all required terms
-			boolean hasCalculator = combinedLower.contains("calculator");
-			boolean hasManufacturer = combinedLower.contains(manufacturerLower);
-			boolean hasModel = combinedLower.contains(modelLower);
-			
-			if (hasCalculator && hasManufacturer && hasModel) {
+			if (result != null && filter.accepts(result.getTitle(), result.getSnippet(), result.getUrl())) {
 				filtered.add(result);
-				log.debug("Result passed filter: {}", result.getTitle());
-			} else {
-				log.debug("Result filtered out - Calculator: {}, Manufacturer: {}, Model: {} - Title: {}", 
-					hasCalculator, hasManufacturer, hasModel, result.getTitle());
 			}
 		}
 		
@@ -907,43 +815,11 @@ public class WebSearchService {
 			return results;
 		}
 		
-		String manufacturerLower = manufacturer.toLowerCase().trim();
-		String modelLower = model.toLowerCase().trim();
-		
+		RelevanceFilter filter = RelevanceFilter.forImages(manufacturer, model);
 		List<ImageSearchResult> filtered = new ArrayList<>();
-		
 		for (ImageSearchResult result : results) {
-			if (result == null) {
-				continue;
-			}
-			
-			// Combine title, sourceUrl, and imageUrl for checking
-			String combinedText = "";
-			if (result.getTitle() != null) {
-				combinedText += result.getTitle() + " ";
-			}
-			if (result.getSourceUrl() != null) {
-				combinedText += result.getSourceUrl() + " ";
-			}
-			if (result.getImageUrl() != null) {
-				combinedText += result.getImageUrl() + " ";
-			}
-			
-			String combinedLower = combinedText.toLowerCase();
-			
-			// Less strict filtering for images: require "calculator" AND (manufacturer OR model)
-			boolean hasCalculator = combinedLower.contains("calculator");
-			boolean hasManufacturer = combinedLower.contains(manufacturerLower);
-			boolean hasModel = combinedLower.contains(modelLower);
-			
-			// Accept if it has "calculator" and at least one of manufacturer or model
-			if (hasCalculator && (hasManufacturer || hasModel)) {
+			if (result != null && filter.accepts(result.getTitle(), result.getSourceUrl(), result.getImageUrl())) {
 				filtered.add(result);
-				log.debug("Image result passed filter: {} (Calculator: {}, Manufacturer: {}, Model: {})", 
-					result.getTitle(), hasCalculator, hasManufacturer, hasModel);
-			} else {
-				log.debug("Image result filtered out - Calculator: {}, Manufacturer: {}, Model: {} - Title: {}", 
-					hasCalculator, hasManufacturer, hasModel, result.getTitle());
 			}
 		}
 		
@@ -953,10 +829,92 @@ public class WebSearchService {
 		return filtered;
 	}
 
+	/**
+	 * Relevance check for a calculator's search results: the text must mention "calculator" and the
+	 * manufacturer and model (web results), or "calculator" and the manufacturer or model (images).
+	 * Matching is case-insensitive and does not copy or lower-case the result text.
+	 */
+	public static class RelevanceFilter {
+		private final String manufacturer;
+		private final String model;
+		private final boolean requireBoth;
+
+		private RelevanceFilter(String manufacturer, String model, boolean requireBoth) {
+			this.manufacturer = manufacturer.trim();
+			this.model = model.trim();
+			this.requireBoth = requireBoth;
+		}
+
+		/**
+		 * Filter for web results, or null (no filtering) if manufacturer or model is missing
+		 */
+		public static RelevanceFilter forWeb(String manufacturer, String model) {
+			return isBlank(manufacturer) || isBlank(model) ? null : new RelevanceFilter(manufacturer, model, true);
+		}
+
+		/**
+		 * Less strict filter for image results, or null (no filtering) if manufacturer or model is missing
+		 */
+		public static RelevanceFilter forImages(String manufacturer, String model) {
+			return isBlank(manufacturer) || isBlank(model) ? null : new RelevanceFilter(manufacturer, model, false);
+		}
+
+		/**
+		 * Whether the result text, spread over the given fields, is relevant
+		 */
+		public boolean accepts(String... fields) {
+			boolean hasCalculator = containsIgnoreCase(fields, "calculator");
+			if (!hasCalculator) {
+				return false;
+			}
+			boolean hasManufacturer = containsIgnoreCase(fields, manufacturer);
+			if (requireBoth) {
+				return hasManufacturer && containsIgnoreCase(fields, model);
+			}
+			return hasManufacturer || containsIgnoreCase(fields, model);
+		}
+
+		/**
+		 * Part of cache and coalescing keys, so filtered and unfiltered results are kept apart
+		 */
+		static String keyOf(RelevanceFilter filter) {
+			if (filter == null) {
+				return "";
+			}
+			return (filter.requireBoth ? "/all:" : "/any:") + SearchResultCache.normalizeQuery(filter.manufacturer)
+				+ "|" + SearchResultCache.normalizeQuery(filter.model);
+		}
+
+		private static boolean containsIgnoreCase(String[] fields, String term) {
+			for (String field : fields) {
+				if (field == null) {
+					continue;
+				}
+				for (int i = 0, last = field.length() - term.length(); i <= last; i++) {
+					if (field.regionMatches(true, i, term, 0, term.length())) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private static boolean isBlank(String value) {
+			return value == null || value.trim().isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "manufacturer: " + manufacturer + ", model: " + model;
+		}
+	}
+
 	public static class SearchResult {
 		private String title;
 		private String url;
 		private String snippet;
+		// Providers that returned this result, best-ranked first
+		private List<String> providers = new ArrayList<>();
 
 		public String getTitle() {
 			return title;
@@ -981,6 +939,14 @@ public class WebSearchService {
 		public void setSnippet(String snippet) {
 			this.snippet = snippet;
 		}
+
+		public List<String> getProviders() {
+			return providers;
+		}
+
+		public void setProviders(List<String> providers) {
+			this.providers = providers;
+		}
 	}
 
 	/**
@@ -994,6 +960,8 @@ public class WebSearchService {
 		private Integer width;
 		private Integer height;
 		private String source;
+		// Providers that returned this image, best-ranked first
+		private List<String> providers = new ArrayList<>();
 
 		public String getImageUrl() {
 			return imageUrl;
@@ -1050,6 +1018,14 @@ public class WebSearchService {
 		public void setSource(String source) {
 			this.source = source;
 		}
+
+		public List<String> getProviders() {
+			return providers;
+		}
+
+		public void setProviders(List<String> providers) {
+			this.providers = providers;
+		}
 	}
 
 	/**
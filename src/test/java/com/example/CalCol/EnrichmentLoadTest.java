@@ -0,0 +1,232 @@
+package com.example.CalCol;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.Manufacturer;
+import com.example.CalCol.repository.CalculatorRepository;
+import com.example.CalCol.repository.ManufacturerRepository;
+import com.example.CalCol.service.EnrichmentJobService;
+import com.example.CalCol.service.QuotaService;
+import com.example.CalCol.service.StandInProviderServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Drives enrichment and the social-share flow against the provider stand-in server at increasing
+ * concurrency and reports throughput, latency percentiles, quota consumption and the calls the
+ * stand-in answered. Run with {@code mvn test -Dtest=EnrichmentLoadTest -Dbenchmarks=true}.
+ * Levels are set with {@code -Dloadtest.concurrency=1,4,16}; stand-in behavior with
+ * {@code -Dapp.standin.<provider>.*}, e.g. {@code -Dapp.standin.defaults.error-rate=0.05}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class EnrichmentLoadTest {
+
+	private static final List<String> QUOTA_SERVICES = List.of("google", "bing", "brave", "ai");
+	private static final int REQUESTS_PER_CALLER = 3;
+	private static final long JOB_TIMEOUT_MS = 120_000;
+
+	private static StandInProviderServer standIn;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private EnrichmentJobService enrichmentJobService;
+
+	@Autowired
+	private QuotaService quotaService;
+
+	@Autowired
+	private ManufacturerRepository manufacturerRepository;
+
+	@Autowired
+	private CalculatorRepository calculatorRepository;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AtomicInteger calculatorNumber = new AtomicInteger();
+
+	@DynamicPropertySource
+	static void standInProperties(DynamicPropertyRegistry registry) throws IOException {
+		standIn = new StandInProviderServer(new StandardEnvironment());
+		standIn.start();
+		for (String provider : StandInProviderServer.PROVIDERS) {
+			registry.add("app.http." + provider + ".base-url", standIn::getBaseUrl);
+		}
+		registry.add("app.search.google.api-key", () -> "standin");
+		registry.add("app.search.google.search-engine-id", () -> "standin");
+		registry.add("app.search.bing.api-key", () -> "standin");
+		registry.add("app.search.brave.api-key", () -> "standin");
+		registry.add("app.search.ai.api-key", () -> "standin");
+		registry.add("app.search.cache.enabled", () -> "false");
+		// Measure the application, not the quota's minimum spacing between calls
+		for (String service : QUOTA_SERVICES) {
+			registry.add("app.quota." + service + ".rate-limit", () -> "1000");
+			registry.add("app.quota." + service + ".monthly-limit", () -> "1000000");
+		}
+	}
+
+	@AfterAll
+	static void stopStandIn() {
+		standIn.stop();
+	}
+
+	@Test
+	void enrichmentAndSocialShareUnderIncreasingConcurrency() throws Exception {
+		int[] levels = Arrays.stream(System.getProperty("loadtest.concurrency", "1,4,16").split(","))
+			.mapToInt(level -> Integer.parseInt(level.trim()))
+			.toArray();
+
+		System.out.printf("%-13s %5s %5s %7s %8s %8s %8s %8s %s%n",
+			"scenario", "conc", "reqs", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "quota used / stand-in calls");
+		for (int concurrency : levels) {
+			run("enrich", concurrency, this::enrich);
+			run("social-share", concurrency, this::socialShare);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Scenario {
+		long execute(Long calculatorId) throws Exception;
+	}
+
+	private void run(String name, int concurrency, Scenario scenario) throws Exception {
+		int requests = concurrency * REQUESTS_PER_CALLER;
+		List<Long> calculatorIds = new ArrayList<>();
+		for (int i = 0; i < requests; i++) {
+			calculatorIds.add(createCalculator());
+		}
+		Map<String, Long> quotaBefore = quotaUsage();
+		Map<String, Long> callsBefore = standIn.getRequestCounts();
+
+		ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Long calculatorId : calculatorIds) {
+				futures.add(callers.submit(() -> {
+					latencies.add(scenario.execute(calculatorId));
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+		double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+		assertEquals(requests, latencies.size());
+		List<Long> sorted = new ArrayList<>(latencies);
+		Collections.sort(sorted);
+		System.out.printf("%-13s %5d %5d %7.2f %8d %8d %8d %8d %s / %s%n", name, concurrency, requests,
+			requests / elapsedSeconds, percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+			sorted.get(sorted.size() - 1), difference(quotaBefore, quotaUsage()),
+			difference(callsBefore, standIn.getRequestCounts()));
+	}
+
+	/**
+	 * Start an enrichment job and wait for it to finish
+	 */
+	private long enrich(Long calculatorId) throws Exception {
+		long start = System.nanoTime();
+		MvcResult result = mockMvc.perform(post("/calculators/" + calculatorId + "/enrich")
+				.accept(MediaType.APPLICATION_JSON)
+				.with(user("admin").roles("ADMIN", "USER"))
+				.with(csrf()))
+			.andReturn();
+		String jobId = objectMapper.readTree(result.getResponse().getContentAsByteArray()).get("jobId").asText();
+
+		long deadline = System.currentTimeMillis() + JOB_TIMEOUT_MS;
+		while (EnrichmentJobService.STATUS_RUNNING.equals(enrichmentJobService.getJob(jobId)
+				.map(EnrichmentJobService.EnrichmentJob::getStatus).orElse(EnrichmentJobService.STATUS_FAILED))) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Enrichment job " + jobId + " did not finish");
+			}
+			Thread.sleep(10);
+		}
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	/**
+	 * Generate every platform's post with fresh enrichment
+	 */
+	private long socialShare(Long calculatorId) throws Exception {
+		long start = System.nanoTime();
+		mockMvc.perform(post("/calculators/" + calculatorId + "/social-share/generate")
+				.param("platform", "all")
+				.param("enrich", "true")
+				.param("refresh", "true")
+				.with(user("admin").roles("ADMIN", "USER"))
+				.with(csrf()))
+			.andReturn();
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	private Long createCalculator() {
+		int number = calculatorNumber.incrementAndGet();
+		Manufacturer manufacturer = manufacturerRepository.findByName("Loadtest Instruments")
+			.orElseGet(() -> {
+				Manufacturer created = new Manufacturer();
+				created.setName("Loadtest Instruments");
+				return manufacturerRepository.save(created);
+			});
+		Calculator calculator = new Calculator();
+		calculator.setModel("LT-" + number);
+		calculator.setManufacturer(manufacturer);
+		return calculatorRepository.save(calculator).getId();
+	}
+
+	private Map<String, Long> quotaUsage() {
+		Map<String, Long> usage = new java.util.TreeMap<>();
+		for (String service : QUOTA_SERVICES) {
+			usage.put(service, (long) quotaService.getMonthlyUsage(service));
+		}
+		return usage;
+	}
+
+	private static Map<String, Long> difference(Map<String, Long> before, Map<String, Long> after) {
+		Map<String, Long> difference = new java.util.TreeMap<>();
+		after.forEach((key, value) -> {
+			long delta = value - before.getOrDefault(key, 0L);
+			if (delta != 0) {
+				difference.put(key, delta);
+			}
+		});
+		return difference;
+	}
+
+	private static long percentile(List<Long> sorted, int percentile) {
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+		return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+	}
+}
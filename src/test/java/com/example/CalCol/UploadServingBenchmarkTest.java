@@ -0,0 +1,156 @@
+package com.example.CalCol;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares serving uploads through UploadController with the resource handler used before it,
+ * over real HTTP on the embedded Tomcat. Reports requests/s, MB/s and process CPU per MB served;
+ * the HTTP client runs in the same JVM, so CPU figures compare the two handlers rather than
+ * give absolute server cost. Run with {@code mvn test -Dtest=UploadServingBenchmarkTest -Dbenchmarks=true}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class UploadServingBenchmarkTest {
+
+	private static final int CONCURRENCY = 8;
+	private static final long TARGET_BYTES = 512L * 1024 * 1024;
+	private static final int[] SIZES = {16 * 1024, 256 * 1024, 4 * 1024 * 1024};
+
+	@TempDir
+	static Path uploadDir;
+
+	@LocalServerPort
+	private int port;
+
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+	@DynamicPropertySource
+	static void uploadDirectory(DynamicPropertyRegistry registry) {
+		registry.add("app.upload.dir", uploadDir::toString);
+	}
+
+	@BeforeAll
+	static void writeFiles() throws Exception {
+		Random random = new Random(42);
+		for (int size : SIZES) {
+			byte[] content = new byte[size];
+			random.nextBytes(content);
+			Files.write(uploadDir.resolve(name(size)), content);
+		}
+	}
+
+	/**
+	 * The handler uploads were served with before UploadController, mounted next to it
+	 */
+	@TestConfiguration
+	static class LegacyHandlerConfig implements WebMvcConfigurer {
+
+		@Override
+		public void addResourceHandlers(ResourceHandlerRegistry registry) {
+			registry.addResourceHandler("/uploads-legacy/**")
+				.addResourceLocations("file:" + uploadDir.toAbsolutePath() + "/");
+		}
+
+		@Bean
+		@Order(0)
+		SecurityFilterChain legacyUploadsFilterChain(HttpSecurity http) throws Exception {
+			return http.securityMatcher("/uploads-legacy/**")
+				.authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+				.build();
+		}
+	}
+
+	@Test
+	void controllerVersusResourceHandler() throws Exception {
+		HttpResponse<Void> check = client.send(request("/uploads/" + name(SIZES[0])), HttpResponse.BodyHandlers.discarding());
+		assertEquals(200, check.statusCode());
+		assertTrue(check.headers().firstValue("Cache-Control").orElse("").contains("immutable"));
+
+		System.out.printf("%-10s %9s %8s %9s %9s %12s%n", "handler", "file", "reqs", "req/s", "MB/s", "CPU ms/MB");
+		for (int size : SIZES) {
+			int requests = (int) Math.max(200, Math.min(20_000, TARGET_BYTES / size));
+			for (String prefix : List.of("/uploads-legacy/", "/uploads/")) {
+				// Warm up, then measure
+				run(prefix + name(size), Math.max(CONCURRENCY, requests / 10), size);
+				long cpuBefore = processCpuNanos();
+				long start = System.nanoTime();
+				run(prefix + name(size), requests, size);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				double megabytes = (double) requests * size / (1024 * 1024);
+				System.out.printf("%-10s %8dK %8d %9.0f %9.1f %12.2f%n", prefix.contains("legacy") ? "resource" : "controller",
+					size / 1024, requests, requests / seconds, megabytes / seconds,
+					(processCpuNanos() - cpuBefore) / 1e6 / megabytes);
+			}
+		}
+	}
+
+	private void run(String path, int requests, int size) throws Exception {
+		AtomicLong received = new AtomicLong();
+		ExecutorService callers = Executors.newFixedThreadPool(CONCURRENCY);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int caller = 0; caller < CONCURRENCY; caller++) {
+				int share = requests / CONCURRENCY + (caller < requests % CONCURRENCY ? 1 : 0);
+				futures.add(callers.submit(() -> {
+					for (int i = 0; i < share; i++) {
+						HttpResponse<byte[]> response = client.send(request(path), HttpResponse.BodyHandlers.ofByteArray());
+						assertEquals(200, response.statusCode(), path);
+						received.addAndGet(response.body().length);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+		assertEquals((long) requests * size, received.get());
+	}
+
+	private HttpRequest request(String path) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+	}
+
+	private static long processCpuNanos() {
+		return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+	}
+
+	private static String name(int size) {
+		// Content-addressed style names, so the controller applies its immutable policy
+		return String.format("%064x", size) + ".bin";
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.CalCol.controller;
+
+import com.example.CalCol.service.FileStorageService;
+import com.example.CalCol.service.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Caching headers, conditional requests and byte ranges of served uploads
+ */
+class UploadControllerTest {
+
+	private static final String HASH = "3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b";
+	private static final String CONTENT = "0123456789abcdefghij";
+
+	@TempDir
+	Path uploadDir;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		FileStorageService fileStorageService = new FileStorageService(null, null, new LocalStorageBackend());
+		ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+		UploadController controller = new UploadController(fileStorageService);
+		ReflectionTestUtils.setField(controller, "immutableMaxAgeSeconds", 31536000L);
+		ReflectionTestUtils.setField(controller, "renditionMaxAgeSeconds", 86400L);
+		ReflectionTestUtils.setField(controller, "sendfileMinBytes", 49152L);
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+		Files.writeString(uploadDir.resolve(HASH + ".jpg"), CONTENT, StandardCharsets.US_ASCII);
+		Files.writeString(uploadDir.resolve(HASH + "-thumb.jpg"), CONTENT, StandardCharsets.US_ASCII);
+		Files.writeString(uploadDir.resolve("legacy-photo.png"), CONTENT, StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	void contentAddressedUploadsAreImmutable() throws Exception {
+		mockMvc.perform(get("/uploads/" + HASH + ".jpg"))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", "\"" + HASH + "\""))
+			.andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"))
+			.andExpect(header().string("Content-Type", "image/jpeg"))
+			.andExpect(header().string("Accept-Ranges", "bytes"))
+			.andExpect(content().string(CONTENT));
+		// Renditions change with the rendition settings, under the same name
+		mockMvc.perform(get("/uploads/" + HASH + "-thumb.jpg"))
+			.andExpect(header().string("Cache-Control", "public, max-age=86400"));
+		mockMvc.perform(get("/uploads/legacy-photo.png"))
+			.andExpect(status().isOk())
+			.andExpect(header().string("Cache-Control", "public, no-cache"));
+	}
+
+	@Test
+	void conditionalRequestsAreNotModified() throws Exception {
+		MvcResult first = mockMvc.perform(get("/uploads/legacy-photo.png")).andReturn();
+		String etag = first.getResponse().getHeader("ETag");
+
+		mockMvc.perform(get("/uploads/legacy-photo.png").header("If-None-Match", "\"other\", " + etag))
+			.andExpect(status().isNotModified())
+			.andExpect(content().string(""));
+		mockMvc.perform(get("/uploads/legacy-photo.png")
+				.header("If-Modified-Since", first.getResponse().getHeader("Last-Modified")))
+			.andExpect(status().isNotModified());
+	}
+
+	@Test
+	void servesSingleByteRanges() throws Exception {
+		String path = "/uploads/" + HASH + ".jpg";
+		mockMvc.perform(get(path).header("Range", "bytes=2-5"))
+			.andExpect(status().isPartialContent())
+			.andExpect(header().string("Content-Range", "bytes 2-5/20"))
+			.andExpect(header().longValue("Content-Length", 4))
+			.andExpect(content().string("2345"));
+		mockMvc.perform(get(path).header("Range", "bytes=-3"))
+			.andExpect(status().isPartialContent())
+			.andExpect(content().string("hij"));
+		mockMvc.perform(get(path).header("Range", "bytes=18-"))
+			.andExpect(content().string("ij"));
+		mockMvc.perform(get(path).header("Range", "bytes=20-"))
+			.andExpect(status().isRequestedRangeNotSatisfiable())
+			.andExpect(header().string("Content-Range", "bytes */20"));
+		mockMvc.perform(get(path).header("Range", "bytes=99999999999999999999-"))
+			.andExpect(status().isRequestedRangeNotSatisfiable());
+		mockMvc.perform(get(path).header("Range", "bytes=0-99999999999999999999"))
+			.andExpect(status().isRequestedRangeNotSatisfiable());
+		// A stale If-Range gets the whole file
+		mockMvc.perform(get(path).header("Range", "bytes=2-5").header("If-Range", "\"stale\""))
+			.andExpect(status().isOk())
+			.andExpect(content().string(CONTENT));
+		mockMvc.perform(head(path))
+			.andExpect(status().isOk())
+			.andExpect(header().longValue("Content-Length", 20))
+			.andExpect(content().string(""));
+	}
+
+	@Test
+	void redirectsToBackendThatServesReads() throws Exception {
+		FileStorageService fileStorageService = new FileStorageService(null, null, new LocalStorageBackend() {
+			@Override
+			public boolean isShared() {
+				return true;
+			}
+
+			@Override
+			public URI readUrl(String key) {
+				return URI.create("https://bucket.example/" + key + "?X-Amz-Signature=abc");
+			}
+		});
+		MockMvc redirecting = MockMvcBuilders.standaloneSetup(new UploadController(fileStorageService)).build();
+
+		redirecting.perform(get("/uploads/" + HASH + ".jpg"))
+			.andExpect(status().isFound())
+			.andExpect(header().string("Location", "https://bucket.example/" + HASH + ".jpg?X-Amz-Signature=abc"))
+			.andExpect(header().string("Cache-Control", "private, no-cache"));
+	}
+
+	@Test
+	void rejectsUnknownAndUnsafeNames() throws Exception {
+		mockMvc.perform(get("/uploads/missing.jpg")).andExpect(status().isNotFound());
+		mockMvc.perform(get("/uploads/.upload-123.tmp")).andExpect(status().isNotFound());
+		mockMvc.perform(get("/uploads/..%2Fsecret.txt")).andExpect(status().isNotFound());
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.CalCol.controller.api;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.Manufacturer;
+import com.example.CalCol.repository.CalculatorRepository;
+import com.example.CalCol.repository.ManufacturerRepository;
+import com.example.CalCol.service.EnrichmentRecordService;
+import com.example.CalCol.service.SpecExtractionEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Attribute filters of the calculator API over attributes extracted from enrichment text, and
+ * their combination with the search and manufacturer filters
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CalculatorRestControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ManufacturerRepository manufacturerRepository;
+
+	@Autowired
+	private CalculatorRepository calculatorRepository;
+
+	@Autowired
+	private EnrichmentRecordService enrichmentRecordService;
+
+	@Autowired
+	private SpecExtractionEngine specExtractionEngine;
+
+	private Manufacturer manufacturer;
+
+	@BeforeEach
+	void setUp() {
+		// A manufacturer of its own keeps other tests' calculators out of the results
+		manufacturer = new Manufacturer();
+		manufacturer.setName("Filter Test " + UUID.randomUUID());
+		manufacturer = manufacturerRepository.save(manufacturer);
+
+		calculator("HP-35", 1972, "Red LED display with 10 digits, RPN entry, runs on 3 x AA batteries.");
+		calculator("TI-30", null, "LCD, 8 digits, algebraic entry, solar powered, introduced in 1976.");
+		calculator("fx-7000G", 1985, "LCD with 10 digits and formula entry, powered by a battery.");
+		// Never enriched: no attributes, so only the year filters can match it
+		calculator("Unknown", 1974, null);
+	}
+
+	@Test
+	void filtersOnDisplayAndDigits() throws Exception {
+		expectModels("displayType=lcd", "TI-30", "fx-7000G");
+		expectModels("minDigits=10", "HP-35", "fx-7000G");
+		expectModels("displayType=LED&minDigits=9&maxDigits=10", "HP-35");
+		expectModels("displayType=VFD");
+	}
+
+	@Test
+	void filtersOnPowerSourceAndLogic() throws Exception {
+		expectModels("powerSource=solar", "TI-30");
+		expectModels("powerSource=BATTERY", "HP-35", "fx-7000G");
+		expectModels("logic=RPN", "HP-35");
+		expectModels("logic=formula&powerSource=battery", "fx-7000G");
+	}
+
+	@Test
+	void filtersOnYearsFallingBackToTheIntroductionYear() throws Exception {
+		expectModels("yearBefore=1980", "HP-35", "TI-30", "Unknown");
+		expectModels("yearFrom=1975&yearBefore=1980", "TI-30");
+		expectModels("yearFrom=1980", "fx-7000G");
+	}
+
+	@Test
+	void combinesSearchWithTheOtherFilters() throws Exception {
+		expectModels("search=hp&displayType=LED", "HP-35");
+		expectModels("search=hp&displayType=LCD");
+		expectModels("search=ti&yearBefore=1980", "TI-30");
+		expectModels("search=unk&yearBefore=1980", "Unknown");
+		// The manufacturer name matches too
+		expectModels("search=filter&minDigits=10", "HP-35", "fx-7000G");
+		// Search and manufacturer without attribute filters
+		expectModels("search=fx", "fx-7000G");
+	}
+
+	private void expectModels(String filters, String... models) throws Exception {
+		mockMvc.perform(get("/api/calculators?manufacturerId=" + manufacturer.getId() + "&" + filters)
+				.with(user("collector")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.success").value(true))
+			.andExpect(models.length == 0
+				? jsonPath("$.data.content", empty())
+				: jsonPath("$.data.content[*].model", containsInAnyOrder(models)));
+	}
+
+	private void calculator(String model, Integer soldFrom, String enrichmentText) {
+		Calculator calculator = new Calculator();
+		calculator.setModel(model);
+		calculator.setSoldFrom(soldFrom);
+		calculator.setManufacturer(manufacturer);
+		calculator = calculatorRepository.save(calculator);
+		if (enrichmentText != null) {
+			enrichmentRecordService.saveAttributes(calculator.getId(), specExtractionEngine.extract(List.of(enrichmentText)));
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.example.CalCol.repository;
+
+import com.example.CalCol.entity.EnrichmentBatchClaim;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Takeover of batch enrichment claims by the database's conditional update
+ */
+@SpringBootTest
+class EnrichmentBatchClaimRepositoryTest {
+
+	private static final AtomicLong NEXT_CALCULATOR_ID = new AtomicLong(System.nanoTime() % 1_000_000_000L + 1_000_000_000L);
+
+	private static final int LEASE_MINUTES = 30;
+	private static final int RETRY_HOURS = 24;
+	private static final int REFRESH_DAYS = 90;
+
+	@Autowired
+	private EnrichmentBatchClaimRepository claimRepository;
+
+	@Test
+	void onlyOneOfTwoRacingNodesTakesOverAnExpiredLease() throws Exception {
+		LocalDateTime now = LocalDateTime.now();
+		Long calculatorId = claim(EnrichmentBatchClaim.STATUS_CLAIMED, now.minusHours(2), null);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Integer>> takeovers = new ArrayList<>();
+			for (String node : List.of("node-a", "node-b")) {
+				takeovers.add(executor.submit(() -> {
+					start.await();
+					return reclaim(calculatorId, node, now);
+				}));
+			}
+			start.countDown();
+			int won = 0;
+			for (Future<Integer> takeover : takeovers) {
+				won += takeover.get();
+			}
+			assertEquals(1, won);
+		} finally {
+			executor.shutdownNow();
+		}
+		EnrichmentBatchClaim claim = find(calculatorId);
+		assertEquals(EnrichmentBatchClaim.STATUS_CLAIMED, claim.getStatus());
+		assertEquals(2, claim.getAttempts());
+	}
+
+	@Test
+	void liveLeasesAreNotTakenOver() {
+		LocalDateTime now = LocalDateTime.now();
+		Long live = claim(EnrichmentBatchClaim.STATUS_CLAIMED, now.minusMinutes(LEASE_MINUTES - 5), null);
+		Long expired = claim(EnrichmentBatchClaim.STATUS_CLAIMED, now.minusMinutes(LEASE_MINUTES + 5), null);
+
+		assertEquals(0, reclaim(live, "node-b", now));
+		assertEquals("node-a", find(live).getNodeId());
+		assertEquals(1, reclaim(expired, "node-b", now));
+		assertEquals("node-b", find(expired).getNodeId());
+	}
+
+	@Test
+	void failuresWaitForTheRetryDelayAndFinishedClaimsUntilStale() {
+		LocalDateTime now = LocalDateTime.now();
+		Long recentFailure = claim(EnrichmentBatchClaim.STATUS_FAILED, now.minusHours(1), now.minusHours(RETRY_HOURS - 1));
+		Long oldFailure = claim(EnrichmentBatchClaim.STATUS_FAILED, now.minusDays(2), now.minusHours(RETRY_HOURS + 1));
+		Long recentDone = claim(EnrichmentBatchClaim.STATUS_DONE, now.minusDays(2), now.minusDays(1));
+		Long staleDone = claim(EnrichmentBatchClaim.STATUS_DONE, now.minusDays(REFRESH_DAYS + 2), now.minusDays(REFRESH_DAYS + 1));
+
+		assertEquals(0, reclaim(recentFailure, "node-b", now));
+		assertEquals(EnrichmentBatchClaim.STATUS_FAILED, find(recentFailure).getStatus());
+		assertEquals(1, reclaim(oldFailure, "node-b", now));
+		assertEquals(0, reclaim(recentDone, "node-b", now));
+		assertEquals(EnrichmentBatchClaim.STATUS_DONE, find(recentDone).getStatus());
+		assertEquals(1, reclaim(staleDone, "node-b", now));
+		assertEquals(EnrichmentBatchClaim.STATUS_CLAIMED, find(staleDone).getStatus());
+	}
+
+	private int reclaim(Long calculatorId, String nodeId, LocalDateTime now) {
+		return claimRepository.reclaim(calculatorId, nodeId, now, now.minusDays(REFRESH_DAYS),
+			now.minusMinutes(LEASE_MINUTES), now.minusHours(RETRY_HOURS));
+	}
+
+	private Long claim(String status, LocalDateTime claimedAt, LocalDateTime completedAt) {
+		EnrichmentBatchClaim claim = new EnrichmentBatchClaim();
+		claim.setCalculatorId(NEXT_CALCULATOR_ID.getAndIncrement());
+		claim.setStatus(status);
+		claim.setNodeId("node-a");
+		claim.setClaimedAt(claimedAt);
+		claim.setCompletedAt(completedAt);
+		claim.setAttempts(1);
+		return claimRepository.saveAndFlush(claim).getCalculatorId();
+	}
+
+	private EnrichmentBatchClaim find(Long calculatorId) {
+		return claimRepository.findAll().stream()
+			.filter(claim -> claim.getCalculatorId().equals(calculatorId))
+			.findFirst().orElseThrow();
+	}
+}
@@ -0,0 +1,159 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batched AI search against a local stub of the OpenAI chat completions endpoint
+ */
+class AISearchServiceBatchTest {
+
+	private static final Pattern ITEM_HEADER = Pattern.compile("=== CALCULATOR (\\d+) ===");
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<List<String>> promptedIds = new CopyOnWriteArrayList<>();
+	private HttpServer server;
+	private volatile boolean failCalls;
+	private QuotaService quotaService;
+	private AISearchService aiSearchService;
+
+	@BeforeEach
+	void startStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/v1/chat/completions", exchange -> {
+			JsonNode request;
+			try (InputStream in = exchange.getRequestBody()) {
+				request = objectMapper.readTree(in);
+			}
+			String prompt = request.get("messages").get(1).get("content").asText();
+			List<String> ids = new ArrayList<>();
+			Matcher matcher = ITEM_HEADER.matcher(prompt);
+			while (matcher.find()) {
+				ids.add(matcher.group(1));
+			}
+			promptedIds.add(ids);
+			if (failCalls) {
+				exchange.sendResponseHeaders(500, -1);
+				exchange.close();
+				return;
+			}
+
+			// The first answer leaves out calculator 3, as a model running out of tokens would
+			StringBuilder answer = new StringBuilder();
+			for (String id : ids) {
+				if (id.equals("3") && promptedIds.size() == 1) {
+					continue;
+				}
+				answer.append("=== CALCULATOR ").append(id).append(" ===\n")
+					.append("Calculator ").append(id).append(" was introduced in 1972. See https://example.org/calc/")
+					.append(id).append("\n=== END ").append(id).append(" ===\n\n");
+			}
+			byte[] body = objectMapper.writeValueAsBytes(Map.of("choices",
+				List.of(Map.of("message", Map.of("role", "assistant", "content", answer.toString())))));
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+
+		MockEnvironment environment = new MockEnvironment()
+			.withProperty("app.http.openai.base-url", "http://127.0.0.1:" + server.getAddress().getPort());
+		quotaService = new QuotaService();
+		ReflectionTestUtils.setField(quotaService, "aiRateLimit", 100);
+		ReflectionTestUtils.setField(quotaService, "aiMonthlyLimit", 1000);
+		aiSearchService = new AISearchService(quotaService, new OutboundHttpClients(environment),
+			new ProviderCircuitBreakers(environment));
+		ReflectionTestUtils.setField(aiSearchService, "aiApiKey", "test-key");
+		ReflectionTestUtils.setField(aiSearchService, "aiProvider", "openai");
+		ReflectionTestUtils.setField(aiSearchService, "batchMaxItems", 8);
+		ReflectionTestUtils.setField(aiSearchService, "batchMaxPromptTokens", 6000);
+		ReflectionTestUtils.setField(aiSearchService, "batchOutputTokensPerItem", 500);
+		ReflectionTestUtils.setField(aiSearchService, "batchMaxOutputTokens", 4000);
+		ReflectionTestUtils.setField(aiSearchService, "batchRetries", 1);
+	}
+
+	@AfterEach
+	void stopStub() {
+		server.stop(0);
+	}
+
+	@Test
+	void batchSplitsAnswersAndRetriesOnlyMissingItems() {
+		List<AISearchService.AIBatchItem> items = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			items.add(item(String.valueOf(i), "Calculator number " + i));
+		}
+
+		Map<String, AISearchService.AISearchResult> results = aiSearchService.searchWithAIBatch(items);
+
+		assertEquals(5, results.size());
+		for (int i = 1; i <= 5; i++) {
+			AISearchService.AISearchResult result = results.get(String.valueOf(i));
+			assertTrue(result.getContent().startsWith("Calculator " + i + " was introduced"));
+			assertEquals(List.of("https://example.org/calc/" + i), result.getLinks());
+		}
+		assertEquals(List.of(List.of("1", "2", "3", "4", "5"), List.of("3")), promptedIds);
+		assertEquals(2, quotaService.getMonthlyUsage("ai"));
+	}
+
+	@Test
+	void failedCallIsNeitherChargedNorRetried() {
+		failCalls = true;
+		List<AISearchService.AIBatchItem> items = new ArrayList<>();
+		for (int i = 1; i <= 3; i++) {
+			items.add(item(String.valueOf(i), "Calculator number " + i));
+		}
+
+		Map<String, AISearchService.AISearchResult> results = aiSearchService.searchWithAIBatch(items);
+
+		assertTrue(results.isEmpty());
+		assertEquals(List.of(List.of("1", "2", "3")), promptedIds);
+		assertEquals(0, quotaService.getMonthlyUsage("ai"));
+	}
+
+	@Test
+	void batchesStayWithinTokenBudget() {
+		ReflectionTestUtils.setField(aiSearchService, "batchMaxPromptTokens", 1000);
+		List<AISearchService.AIBatchItem> items = new ArrayList<>();
+		for (int i = 1; i <= 6; i++) {
+			// About 300 tokens of description each, so only a few fit in one prompt
+			items.add(item(String.valueOf(i), "x".repeat(1200)));
+		}
+
+		List<List<AISearchService.AIBatchItem>> batches = aiSearchService.planBatches(items);
+
+		assertTrue(batches.size() > 1);
+		assertEquals(6, batches.stream().mapToInt(List::size).sum());
+		Map<String, AISearchService.AISearchResult> results = aiSearchService.searchWithAIBatch(items);
+		assertEquals(6, results.size());
+		assertEquals(batches.size(), promptedIds.size());
+		assertEquals(batches.size(), quotaService.getMonthlyUsage("ai"));
+	}
+
+	private static AISearchService.AIBatchItem item(String id, String description) {
+		return new AISearchService.AIBatchItem(id, description, List.of("Scientific"), List.of("Has trig functions"),
+			List.of());
+	}
+}
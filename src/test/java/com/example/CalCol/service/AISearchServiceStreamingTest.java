@@ -0,0 +1,139 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streamed AI answers from local stubs of the OpenAI and Anthropic streaming endpoints
+ */
+class AISearchServiceStreamingTest {
+
+	// Links are split across chunks to exercise incremental extraction
+	private static final List<String> PIECES = List.of(
+		"The HP-35 (1972) was the first pocket scientific calculator. See ht", "tps://www.hpmuseum.org/",
+		"hp35.htm and https://example.org/hp", "35");
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private HttpServer server;
+	private AISearchService aiSearchService;
+	private QuotaService quotaService;
+	// The stub stops before the end marker, as when the connection drops mid-answer
+	private volatile boolean cutOff;
+
+	@BeforeEach
+	void startStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/v1/chat/completions", exchange -> {
+			StringBuilder body = new StringBuilder();
+			for (String piece : PIECES) {
+				body.append("data: ").append(objectMapper.writeValueAsString(
+					Map.of("choices", List.of(Map.of("index", 0, "delta", Map.of("content", piece)))))).append("\n\n");
+			}
+			if (!cutOff) {
+				body.append("data: [DONE]\n\n");
+			}
+			sendEventStream(exchange, body.toString());
+		});
+		server.createContext("/v1/messages", exchange -> {
+			StringBuilder body = new StringBuilder();
+			body.append("event: message_start\ndata: {\"type\":\"message_start\",\"message\":{}}\n\n");
+			for (String piece : PIECES) {
+				body.append("event: content_block_delta\ndata: ").append(objectMapper.writeValueAsString(
+					Map.of("type", "content_block_delta", "index", 0, "delta", Map.of("type", "text_delta", "text", piece))))
+					.append("\n\n");
+			}
+			if (!cutOff) {
+				body.append("event: message_stop\ndata: {\"type\":\"message_stop\"}\n\n");
+			}
+			sendEventStream(exchange, body.toString());
+		});
+		server.start();
+
+		String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+		MockEnvironment environment = new MockEnvironment()
+			.withProperty("app.http.openai.base-url", baseUrl)
+			.withProperty("app.http.anthropic.base-url", baseUrl);
+		quotaService = new QuotaService();
+		ReflectionTestUtils.setField(quotaService, "aiRateLimit", 100);
+		ReflectionTestUtils.setField(quotaService, "aiMonthlyLimit", 1000);
+		aiSearchService = new AISearchService(quotaService, new OutboundHttpClients(environment),
+			new ProviderCircuitBreakers(environment));
+		ReflectionTestUtils.setField(aiSearchService, "aiApiKey", "test-key");
+	}
+
+	@AfterEach
+	void stopStub() {
+		server.stop(0);
+	}
+
+	@Test
+	void streamsOpenAIAnswer() {
+		assertStreamed("openai");
+	}
+
+	@Test
+	void streamsAnthropicAnswer() {
+		assertStreamed("anthropic");
+	}
+
+	@Test
+	void cutOffStreamIsIncompleteAndNotCharged() {
+		cutOff = true;
+		for (String provider : List.of("openai", "anthropic")) {
+			ReflectionTestUtils.setField(aiSearchService, "aiProvider", provider);
+			int remaining = quotaService.getRemainingQuota("ai");
+			List<String> deltas = new CopyOnWriteArrayList<>();
+
+			AISearchService.AISearchResult result = aiSearchService.searchWithAI("HP-35", List.of(), List.of(),
+				List.of(), deltas::add);
+
+			assertEquals(PIECES, deltas);
+			assertTrue(result.isIncomplete());
+			assertNull(result.getContent());
+			assertTrue(result.getLinks().isEmpty());
+			assertEquals(String.join("", PIECES), result.getPartialContent());
+			assertEquals(remaining, quotaService.getRemainingQuota("ai"));
+		}
+	}
+
+	private void assertStreamed(String provider) {
+		ReflectionTestUtils.setField(aiSearchService, "aiProvider", provider);
+		List<String> deltas = new CopyOnWriteArrayList<>();
+
+		AISearchService.AISearchResult result = aiSearchService.searchWithAI("HP-35", List.of(), List.of(),
+			List.of(), deltas::add);
+
+		assertEquals(PIECES, deltas);
+		assertFalse(result.isIncomplete());
+		assertEquals(String.join("", PIECES), result.getContent());
+		assertEquals(List.of("https://www.hpmuseum.org/hp35.htm", "https://example.org/hp35"), result.getLinks());
+	}
+
+	private static void sendEventStream(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
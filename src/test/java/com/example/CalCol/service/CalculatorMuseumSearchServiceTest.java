@@ -0,0 +1,58 @@
+package com.example.CalCol.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Index hits and live site searches combined, with sites that do not answer
+ */
+class CalculatorMuseumSearchServiceTest {
+
+	private static final String MIRRORED_SITE = "https://mirrored.example/";
+	private static final String LIVE_SITE = "https://live.example/";
+
+	@TempDir
+	Path mirrorDir;
+
+	@Test
+	void hangingLiveSiteKeepsTheIndexHits() throws IOException {
+		Path page = mirrorDir.resolve("hp35.html.gz");
+		try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(page))) {
+			output.write("<html><head><title>HP-35</title></head><body>The HP 35 of 1972.</body></html>"
+				.getBytes(StandardCharsets.UTF_8));
+		}
+		MuseumIndex index = new MuseumIndex();
+		index.rebuild(List.of(new MuseumIndex.IndexedPage(MIRRORED_SITE, MIRRORED_SITE + "hp35", "HP-35", page)));
+		MockEnvironment environment = new MockEnvironment();
+		// A call that never completes and ignores the site's own timeout
+		ProviderCircuitBreakers hanging = new ProviderCircuitBreakers(environment) {
+			@Override
+			public <T> Mono<T> guard(String provider, Mono<T> call) {
+				return Mono.never();
+			}
+		};
+		CalculatorMuseumSearchService service = new CalculatorMuseumSearchService(index,
+			new OutboundHttpClients(environment), hanging,
+			List.of(new CalculatorMuseumSearchService.SiteAdapter(MIRRORED_SITE, null),
+				new CalculatorMuseumSearchService.SiteAdapter(LIVE_SITE, "search?q=")),
+			Duration.ofMillis(50), 1024);
+
+		List<CalculatorMuseumSearchService.MuseumSearchResult> results = service.searchMuseums("HP", "35");
+
+		assertEquals(List.of(MIRRORED_SITE + "hp35"),
+			results.stream().map(CalculatorMuseumSearchService.MuseumSearchResult::getSearchUrl).toList());
+	}
+}
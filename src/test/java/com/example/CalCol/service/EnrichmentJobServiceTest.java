@@ -0,0 +1,326 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.Manufacturer;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import com.example.CalCol.repository.CalculatorLabelRepository;
+import com.example.CalCol.repository.CalculatorRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Job lifecycle and event order with sections that finish in a controlled order or fail
+ */
+class EnrichmentJobServiceTest {
+
+	private static final Pattern EVENT_NAME = Pattern.compile("event:(\\w+)");
+	private static final ObjectMapper JSON = new ObjectMapper();
+	private static final List<String> SECTIONS = List.of("web", "images", "braveAi", "museums", "ai");
+
+	private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+	private final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+	private final AtomicInteger saves = new AtomicInteger();
+	private volatile SocialMediaPostService.EnrichmentData saved;
+	private CalculatorRepository calculatorRepository;
+	private EnrichmentJobService jobService;
+
+	@BeforeEach
+	void setUp() {
+		Calculator calculator = new Calculator();
+		calculator.setId(35L);
+		calculator.setModel("HP-35");
+		Manufacturer manufacturer = new Manufacturer();
+		manufacturer.setName("Hewlett-Packard");
+		calculator.setManufacturer(manufacturer);
+		calculatorRepository = (CalculatorRepository) Proxy.newProxyInstance(
+			getClass().getClassLoader(), new Class<?>[] {CalculatorRepository.class}, (proxy, method, args) -> {
+				if (method.getName().equals("findByIdWithManufacturer")) {
+					return Optional.of(calculator).filter(c -> c.getId().equals(args[0]));
+				}
+				throw new UnsupportedOperationException(method.getName());
+			});
+		for (String section : SECTIONS) {
+			gates.put(section, new CountDownLatch(0));
+		}
+		jobService = new EnrichmentJobService(new StubEnrichmentService(), calculatorRepository, SECTIONS.size());
+	}
+
+	@AfterEach
+	void tearDown() {
+		jobService.shutdown();
+	}
+
+	@Test
+	void sectionsArePublishedAsTheyFinishThenCompleted() throws Exception {
+		List<String> order = List.of("museums", "ai", "web", "braveAi", "images");
+		for (String section : SECTIONS) {
+			gates.put(section, new CountDownLatch(1));
+		}
+		EnrichmentJobService.EnrichmentJob job = jobService.startJob(35L, "admin").orElseThrow();
+		RecordingEmitter live = new RecordingEmitter();
+		job.addSubscriber(live);
+
+		for (int i = 0; i < order.size(); i++) {
+			gates.get(order.get(i)).countDown();
+			awaitCompletedSections(job, i + 1);
+		}
+		awaitFinished(job);
+
+		assertEquals(EnrichmentJobService.STATUS_COMPLETED, job.getStatus());
+		assertEquals(List.of("museums", "aiDelta", "ai", "web", "braveAi", "images", "complete"), live.events);
+		assertTrue(live.completed);
+		assertEquals(List.of("museums", "ai", "web", "braveAi", "images", "complete"), job.getCompletedSections());
+		assertEquals(1, saves.get());
+		assertEquals(1, saved.getWebResults().size());
+		assertEquals("The HP-35 was released in 1972.", saved.getAiContent().getContent());
+
+		// A late subscriber gets the history without the transient AI deltas, then completion
+		RecordingEmitter late = new RecordingEmitter();
+		job.addSubscriber(late);
+		assertEquals(List.of("museums", "ai", "web", "braveAi", "images", "complete"), late.events);
+		assertTrue(late.completed);
+	}
+
+	@Test
+	void failedSectionIsReportedAndTheRestIsSaved() throws Exception {
+		failures.put("images", new IllegalStateException("image provider down"));
+
+		EnrichmentJobService.EnrichmentJob job = jobService.startJob(35L, "admin").orElseThrow();
+		awaitFinished(job);
+
+		assertEquals(EnrichmentJobService.STATUS_PARTIAL, job.getStatus());
+		assertEquals(List.of("images"), job.getFailedSections());
+		RecordingEmitter subscriber = new RecordingEmitter();
+		job.addSubscriber(subscriber);
+		assertTrue(subscriber.events.contains("sectionError"));
+		assertEquals("complete", subscriber.events.get(subscriber.events.size() - 1));
+		assertTrue(subscriber.data.stream().anyMatch(data -> data.contains("image provider down")));
+		assertTrue(subscriber.data.get(subscriber.data.size() - 1).contains("\"failedSections\":[\"images\"]"));
+		assertEquals(1, saves.get());
+		assertNull(saved.getImageResults());
+		assertEquals(1, saved.getWebResults().size());
+	}
+
+	@Test
+	void jobFailsWhenEverySectionFails() throws Exception {
+		for (String section : SECTIONS) {
+			failures.put(section, new IllegalStateException(section + " down"));
+		}
+
+		EnrichmentJobService.EnrichmentJob job = jobService.startJob(35L, "admin").orElseThrow();
+		awaitFinished(job);
+
+		assertEquals(EnrichmentJobService.STATUS_FAILED, job.getStatus());
+		assertEquals(SECTIONS.size(), job.getFailedSections().size());
+		RecordingEmitter subscriber = new RecordingEmitter();
+		job.addSubscriber(subscriber);
+		assertEquals(SECTIONS.size(), subscriber.events.stream().filter("sectionError"::equals).count());
+		assertEquals("error", subscriber.events.get(subscriber.events.size() - 1));
+		assertEquals(0, saves.get());
+	}
+
+	@Test
+	void secondStartJoinsTheRunningJob() throws Exception {
+		gates.put("web", new CountDownLatch(1));
+		EnrichmentJobService.EnrichmentJob first = jobService.startJob(35L, "admin").orElseThrow();
+
+		assertEquals(first.getId(), jobService.startJob(35L, "admin").orElseThrow().getId());
+		assertTrue(jobService.startJob(41L, "admin").isEmpty());
+
+		gates.get("web").countDown();
+		awaitFinished(first);
+		assertNotEquals(first.getId(), jobService.startJob(35L, "admin").orElseThrow().getId());
+	}
+
+	@Test
+	void providerFailuresSwallowedBelowTheEnrichmentServiceFailTheirSection() throws Exception {
+		MockEnvironment environment = new MockEnvironment();
+		QuotaService quotaService = new QuotaService();
+		OutboundHttpClients httpClients = new OutboundHttpClients(environment);
+		ProviderCircuitBreakers circuitBreakers = new ProviderCircuitBreakers(environment);
+		// No search provider configured: the web, image and Brave AI sections have nothing to do
+		WebSearchService webSearchService = new WebSearchService(quotaService,
+			new SearchResultCache(new SimpleMeterRegistry(), 10), httpClients, circuitBreakers);
+		CalculatorMuseumSearchService museumSearchService = new CalculatorMuseumSearchService(new MuseumIndex(),
+				httpClients, circuitBreakers, List.of(), Duration.ofSeconds(1), 1024) {
+			@Override
+			public List<MuseumSearchResult> searchMuseums(String manufacturer, String model) {
+				throw new IllegalStateException("museum index unreadable");
+			}
+		};
+		// A configured AI whose call failed: logged by the AI service, answered with an empty result
+		AISearchService aiSearchService = new AISearchService(quotaService, httpClients, circuitBreakers) {
+			@Override
+			public AISearchResult searchWithAI(String description, List<String> labels, List<String> labelDescriptions,
+					List<String> imageUrls, Consumer<String> onDelta) {
+				return new AISearchResult();
+			}
+		};
+		ReflectionTestUtils.setField(aiSearchService, "aiApiKey", "configured");
+		EnrichmentService enrichmentService = new EnrichmentService(webSearchService, museumSearchService,
+				aiSearchService, repository(CalculatorLabelRepository.class), repository(CalculatorImageRepository.class),
+				null, null, null, null, new ProviderPlanner(quotaService, new SimpleMeterRegistry()),
+				new SearchResultMerger()) {
+			@Override
+			public EnrichmentSaveResult saveEnrichment(Calculator calculator, SocialMediaPostService.EnrichmentData enrichment,
+					String username) {
+				saves.incrementAndGet();
+				saved = enrichment;
+				return new EnrichmentSaveResult(true, true, 0);
+			}
+		};
+		jobService.shutdown();
+		jobService = new EnrichmentJobService(enrichmentService, calculatorRepository, SECTIONS.size());
+
+		EnrichmentJobService.EnrichmentJob job = jobService.startJob(35L, "admin").orElseThrow();
+		awaitFinished(job);
+
+		assertEquals(EnrichmentJobService.STATUS_PARTIAL, job.getStatus());
+		assertEquals(List.of("ai", "museums"), job.getFailedSections().stream().sorted().toList());
+		assertEquals(1, saves.get());
+		assertEquals(List.of(), saved.getWebResults());
+		assertNull(saved.getAiContent());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T repository(Class<T> type) {
+		return (T) Proxy.newProxyInstance(EnrichmentJobServiceTest.class.getClassLoader(), new Class<?>[] {type},
+			(proxy, method, args) -> List.of());
+	}
+
+	private static void awaitCompletedSections(EnrichmentJobService.EnrichmentJob job, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (job.getCompletedSections().size() < count) {
+			assertTrue(System.currentTimeMillis() < deadline, "sections completed: " + job.getCompletedSections());
+			Thread.sleep(5);
+		}
+	}
+
+	private static void awaitFinished(EnrichmentJobService.EnrichmentJob job) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (job.getFinishedAt() == null) {
+			assertTrue(System.currentTimeMillis() < deadline, "job still " + job.getStatus());
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * Records the names and data of the events sent to it
+	 */
+	private static class RecordingEmitter extends SseEmitter {
+		private final List<String> events = new CopyOnWriteArrayList<>();
+		private final List<String> data = new CopyOnWriteArrayList<>();
+		private volatile boolean completed;
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+				if (part.getData() instanceof String text) {
+					Matcher matcher = EVENT_NAME.matcher(text);
+					if (matcher.find()) {
+						events.add(matcher.group(1));
+					}
+				} else {
+					data.add(JSON.writeValueAsString(part.getData()));
+				}
+			}
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+	}
+
+	/**
+	 * Sections that wait for their gate, then answer or throw
+	 */
+	private class StubEnrichmentService extends EnrichmentService {
+
+		StubEnrichmentService() {
+			super(null, null, null, null, null, null, null, null, null, null, null);
+		}
+
+		@Override
+		public List<WebSearchService.SearchResult> fetchWeb(Calculator calculator) {
+			await("web");
+			WebSearchService.SearchResult result = new WebSearchService.SearchResult();
+			result.setUrl("https://example.org/hp35");
+			return List.of(result);
+		}
+
+		@Override
+		public List<WebSearchService.ImageSearchResult> fetchImages(Calculator calculator) {
+			await("images");
+			return List.of(new WebSearchService.ImageSearchResult());
+		}
+
+		@Override
+		public WebSearchService.BraveAIResult fetchBraveAI(Calculator calculator) {
+			await("braveAi");
+			return new WebSearchService.BraveAIResult();
+		}
+
+		@Override
+		public List<CalculatorMuseumSearchService.MuseumSearchResult> fetchMuseums(Calculator calculator) {
+			await("museums");
+			return List.of();
+		}
+
+		@Override
+		public AISearchService.AISearchResult fetchAI(Calculator calculator, Consumer<String> onDelta) {
+			await("ai");
+			onDelta.accept("The HP-35 ");
+			AISearchService.AISearchResult result = new AISearchService.AISearchResult();
+			result.setContent("The HP-35 was released in 1972.");
+			return result;
+		}
+
+		@Override
+		public EnrichmentSaveResult saveEnrichment(Calculator calculator, SocialMediaPostService.EnrichmentData enrichment,
+				String username) {
+			saves.incrementAndGet();
+			saved = enrichment;
+			return new EnrichmentSaveResult(true, true, 1);
+		}
+
+		private void await(String section) {
+			try {
+				assertTrue(gates.get(section).await(5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			RuntimeException failure = failures.get(section);
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+}
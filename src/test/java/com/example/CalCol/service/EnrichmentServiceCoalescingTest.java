@@ -0,0 +1,106 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.Manufacturer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Simultaneous enrichments of one calculator share a run but not its result
+ */
+class EnrichmentServiceCoalescingTest {
+
+	private static final int CALLERS = 4;
+
+	private final AtomicInteger runs = new AtomicInteger();
+	private final WebSearchService.SearchResult page = new WebSearchService.SearchResult();
+	private final AISearchService.AISearchResult aiContent = new AISearchService.AISearchResult();
+
+	private final EnrichmentService service = new EnrichmentService(null, null, null, null, null, null, null, null, null, null, null) {
+		@Override
+		public List<WebSearchService.SearchResult> searchWeb(Calculator calculator) {
+			runs.incrementAndGet();
+			try {
+				// Keep the run in flight long enough for every caller to arrive
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new ArrayList<>(List.of(page));
+		}
+
+		@Override
+		public List<WebSearchService.ImageSearchResult> searchImages(Calculator calculator) {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public WebSearchService.BraveAIResult searchBraveAI(Calculator calculator) {
+			return null;
+		}
+
+		@Override
+		public List<CalculatorMuseumSearchService.MuseumSearchResult> searchMuseums(Calculator calculator) {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public AISearchService.AISearchResult searchAI(Calculator calculator) {
+			return aiContent;
+		}
+	};
+
+	@Test
+	void everyCallerGetsACopyItCanChange() throws Exception {
+		Manufacturer manufacturer = new Manufacturer();
+		manufacturer.setName("HP");
+		Calculator calculator = new Calculator();
+		calculator.setId(35L);
+		calculator.setModel("HP-35");
+		calculator.setManufacturer(manufacturer);
+
+		ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<SocialMediaPostService.EnrichmentData> results = new ArrayList<>();
+		try {
+			List<Future<SocialMediaPostService.EnrichmentData>> futures = new ArrayList<>();
+			for (int i = 0; i < CALLERS; i++) {
+				futures.add(callers.submit(() -> {
+					start.await();
+					return service.enrichCalculator(calculator);
+				}));
+			}
+			start.countDown();
+			for (Future<SocialMediaPostService.EnrichmentData> future : futures) {
+				results.add(future.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+
+		assertEquals(1, runs.get());
+		SocialMediaPostService.EnrichmentData first = results.get(0);
+		SocialMediaPostService.EnrichmentData second = results.get(1);
+		assertNotSame(first, second);
+		assertNotSame(first.getWebResults(), second.getWebResults());
+		assertSame(page, second.getWebResults().get(0));
+
+		// As the job service does when it replaces a section
+		first.setAiContent(null);
+		first.getWebResults().clear();
+		assertSame(aiContent, second.getAiContent());
+		assertEquals(List.of(page), second.getWebResults());
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reuse of stored enrichment, and who may run a new one
+ */
+class EnrichmentStoreTest {
+
+	private final SocialMediaPostService.EnrichmentData saved = new SocialMediaPostService.EnrichmentData();
+	private final AtomicInteger enrichments = new AtomicInteger();
+	private final AtomicInteger saves = new AtomicInteger();
+	private SocialMediaPostService.EnrichmentData stored;
+	private EnrichmentStore store;
+
+	@BeforeEach
+	void setUp() {
+		EnrichmentService enrichmentService = new EnrichmentService(null, null, null, null, null, null, null, null, null, null, null) {
+			@Override
+			public SocialMediaPostService.EnrichmentData enrichCalculator(Calculator calculator) {
+				enrichments.incrementAndGet();
+				return new SocialMediaPostService.EnrichmentData();
+			}
+
+			@Override
+			public EnrichmentSaveResult saveEnrichment(Calculator calculator, SocialMediaPostService.EnrichmentData enrichment,
+					String username) {
+				saves.incrementAndGet();
+				calculator.setEnrichedAt(LocalDateTime.now());
+				return null;
+			}
+		};
+		EnrichmentRecordService enrichmentRecordService = new EnrichmentRecordService(null, null, null, null, null, null) {
+			@Override
+			public SocialMediaPostService.EnrichmentData load(Long calculatorId) {
+				return stored;
+			}
+		};
+		store = new EnrichmentStore(enrichmentService, enrichmentRecordService);
+		ReflectionTestUtils.setField(store, "freshTtlHours", 168L);
+	}
+
+	@Test
+	void usersWithoutTheRightGetTheStoredEnrichmentHoweverOld() {
+		LocalDateTime stale = LocalDateTime.now().minusYears(1);
+		Calculator calculator = calculator(stale);
+		stored = saved;
+
+		EnrichmentStore.StoredEnrichment result = store.getEnrichment(calculator, true, "collector", false);
+
+		assertSame(saved, result.getEnrichment());
+		assertEquals(stale, result.getEnrichedAt());
+		assertTrue(result.isReused());
+		// Never enriched: nothing to reuse, and still nothing run
+		stored = null;
+		assertNull(store.getEnrichment(calculator(null), false, "collector", false).getEnrichment());
+		assertEquals(0, enrichments.get());
+		assertEquals(0, saves.get());
+	}
+
+	@Test
+	void adminsEnrichAgainWhenStaleOrAsked() {
+		stored = saved;
+
+		assertSame(saved, store.getEnrichment(calculator(LocalDateTime.now().minusHours(1)), false, "admin", true).getEnrichment());
+		assertEquals(0, enrichments.get());
+
+		EnrichmentStore.StoredEnrichment stale = store.getEnrichment(calculator(LocalDateTime.now().minusYears(1)), false, "admin", true);
+		assertFalse(stale.isReused());
+		store.getEnrichment(calculator(LocalDateTime.now()), true, "admin", true);
+		assertEquals(2, enrichments.get());
+		assertEquals(2, saves.get());
+	}
+
+	private static Calculator calculator(LocalDateTime enrichedAt) {
+		Calculator calculator = new Calculator();
+		calculator.setId(1L);
+		calculator.setEnrichedAt(enrichedAt);
+		return calculator;
+	}
+}
@@ -0,0 +1,272 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.entity.Manufacturer;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import com.example.CalCol.repository.CalculatorRepository;
+import com.example.CalCol.repository.ManufacturerRepository;
+import com.example.CalCol.repository.StoredFileRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Identical uploads share one content-addressed file that goes with its last reference
+ */
+@SpringBootTest
+class FileStorageServiceTest {
+
+	@TempDir
+	static Path uploadDir;
+
+	@Autowired
+	private FileStorageService fileStorageService;
+
+	@Autowired
+	private StoredFileRepository storedFileRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private UploadMigrationService uploadMigrationService;
+
+	@Autowired
+	private CalculatorImageRepository imageRepository;
+
+	@Autowired
+	private CalculatorRepository calculatorRepository;
+
+	@Autowired
+	private ManufacturerRepository manufacturerRepository;
+
+	@DynamicPropertySource
+	static void uploadDirectory(DynamicPropertyRegistry registry) {
+		registry.add("app.upload.dir", uploadDir::toString);
+	}
+
+	@Test
+	void identicalUploadsShareOneFile() throws IOException {
+		String first = fileStorageService.storeFile(upload("hp35.JPG", "HP-35 photo"));
+		String second = fileStorageService.storeFile(upload("IMG_0001.jpg", "HP-35 photo"));
+		String other = fileStorageService.storeFile(upload("hp45.jpg", "HP-45 photo"));
+
+		assertEquals(first, second);
+		assertNotEquals(first, other);
+		assertTrue(FileStorageService.isContentAddressed(first));
+		assertTrue(first.endsWith(".jpg"));
+		assertEquals(2, storedFileRepository.findById(first).orElseThrow().getRefCount());
+		// Only the two blobs, each in its shard directory; no temp files are left behind
+		try (var files = Files.walk(uploadDir)) {
+			assertEquals(2, files.filter(Files::isRegularFile).count());
+		}
+		assertEquals(uploadDir.resolve(first.substring(0, 2)).resolve(first.substring(2, 4)).resolve(first),
+			fileStorageService.loadFile(first));
+		assertTrue(Files.exists(fileStorageService.loadFile(first)));
+	}
+
+	@Test
+	void lastReleaseDeletesFileAndDerivatives() throws IOException {
+		String filename = fileStorageService.storeFile(upload("casio.png", "Casio fx-7000G photo"));
+		fileStorageService.storeFile(upload("casio.png", "Casio fx-7000G photo"));
+		List<String> derivatives = ImageDerivativeService.derivativePaths(filename);
+		Files.writeString(fileStorageService.loadFile(derivatives.get(0)), "thumbnail");
+
+		fileStorageService.release(filename, derivatives);
+		assertTrue(Files.exists(fileStorageService.loadFile(filename)));
+		assertTrue(Files.exists(fileStorageService.loadFile(derivatives.get(0))));
+
+		fileStorageService.release(filename, derivatives);
+		assertFalse(Files.exists(fileStorageService.loadFile(filename)));
+		assertFalse(Files.exists(fileStorageService.loadFile(derivatives.get(0))));
+		assertTrue(storedFileRepository.findById(filename).isEmpty());
+	}
+
+	@Test
+	void rolledBackUploadReleasesItsReference() throws IOException {
+		String kept = fileStorageService.storeFile(upload("sharp.jpg", "Sharp EL-5100 photo"));
+		AtomicReference<String> discarded = new AtomicReference<>();
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			assertEquals(kept, store(upload("sharp-again.jpg", "Sharp EL-5100 photo")));
+			discarded.set(store(upload("sinclair.jpg", "Sinclair Cambridge photo")));
+			// Committed on its own, so other uploads of the same content see it meanwhile
+			assertEquals(1, storedFileRepository.findById(discarded.get()).orElseThrow().getRefCount());
+			status.setRollbackOnly();
+		});
+
+		assertEquals(1, storedFileRepository.findById(kept).orElseThrow().getRefCount());
+		assertTrue(Files.exists(fileStorageService.loadFile(kept)));
+		assertTrue(storedFileRepository.findById(discarded.get()).isEmpty());
+		assertFalse(Files.exists(fileStorageService.loadFile(discarded.get())));
+		fileStorageService.release(kept, List.of());
+	}
+
+	@Test
+	void migratedImagesAddReferencesToAFileAlreadyInUse() throws IOException {
+		String stored = fileStorageService.storeFile(upload("hp25.jpg", "HP-25 photo"));
+		String legacyPath = UUID.randomUUID() + ".jpg";
+		Path legacyFile = fileStorageService.loadFile(legacyPath);
+		Files.createDirectories(legacyFile.getParent());
+		Files.writeString(legacyFile, "HP-25 photo");
+		Manufacturer manufacturer = new Manufacturer();
+		manufacturer.setName("Migration Test " + UUID.randomUUID());
+		Calculator calculator = new Calculator();
+		calculator.setModel("HP-25");
+		calculator.setManufacturer(manufacturerRepository.save(manufacturer));
+		calculator = calculatorRepository.save(calculator);
+		List<CalculatorImage> images = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			CalculatorImage image = new CalculatorImage();
+			image.setCalculator(calculator);
+			image.setImagePath(legacyPath);
+			image.setUploadedBy("collector");
+			image.setUploadedAt(LocalDateTime.now());
+			images.add(imageRepository.save(image));
+		}
+
+		uploadMigrationService.run();
+
+		assertEquals(stored, imageRepository.findById(images.get(0).getId()).orElseThrow().getImagePath());
+		assertEquals(3, storedFileRepository.findById(stored).orElseThrow().getRefCount());
+		assertFalse(Files.exists(legacyFile));
+		// A rename that fails adds nothing
+		assertThrows(IllegalStateException.class, () -> fileStorageService.moveReferences(stored, () -> {
+			throw new IllegalStateException("rename failed");
+		}));
+		assertEquals(3, storedFileRepository.findById(stored).orElseThrow().getRefCount());
+
+		imageRepository.deleteAll(images);
+		for (int i = 0; i < 3; i++) {
+			fileStorageService.release(stored, List.of());
+		}
+		assertFalse(Files.exists(fileStorageService.loadFile(stored)));
+	}
+
+	@Test
+	void sharedBackendRetriesFailedDeletesAndPutsBackFilesStoredAgain(@TempDir Path nodeDir) throws IOException {
+		InMemoryBackend backend = new InMemoryBackend();
+		FileStorageService node = new FileStorageService(storedFileRepository, transactionManager, backend);
+		ReflectionTestUtils.setField(node, "uploadDir", nodeDir.toString());
+
+		// The bucket is unreachable when the last reference goes: the row stays for a retry
+		String filename = node.storeFile(upload("ti30.jpg", "TI-30 photo"));
+		List<String> derivatives = ImageDerivativeService.derivativePaths(filename);
+		Files.writeString(node.localPath(derivatives.get(0)), "thumbnail");
+		node.publish(derivatives.get(0));
+		backend.failDeletes = true;
+		node.release(filename, derivatives);
+		assertEquals(0, storedFileRepository.findById(filename).orElseThrow().getRefCount());
+		assertTrue(backend.objects.containsKey(filename));
+		assertTrue(Files.exists(node.localPath(filename)));
+
+		backend.failDeletes = false;
+		assertEquals(1, node.retryPendingDeletes());
+		assertTrue(storedFileRepository.findById(filename).isEmpty());
+		assertTrue(backend.objects.isEmpty());
+		assertFalse(Files.exists(node.localPath(filename)));
+
+		// Another node stores the same photo while this one deletes the objects
+		filename = node.storeFile(upload("ti30.jpg", "TI-30 photo"));
+		Files.writeString(node.localPath(derivatives.get(0)), "thumbnail");
+		node.publish(derivatives.get(0));
+		String storedAgain = filename;
+		TransactionTemplate otherNode = new TransactionTemplate(transactionManager);
+		backend.onDelete = key -> {
+			if (key.equals(storedAgain)) {
+				otherNode.executeWithoutResult(status -> storedFileRepository.addReferences(storedAgain, 1));
+			}
+		};
+		node.release(filename, derivatives);
+		assertEquals(1, storedFileRepository.findById(filename).orElseThrow().getRefCount());
+		assertEquals("TI-30 photo", new String(backend.objects.get(filename)));
+		assertEquals("thumbnail", new String(backend.objects.get(derivatives.get(0))));
+	}
+
+	private String store(MockMultipartFile file) {
+		try {
+			return fileStorageService.storeFile(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static MockMultipartFile upload(String name, String content) {
+		return new MockMultipartFile("file", name, "image/jpeg", content.getBytes());
+	}
+
+	/**
+	 * Shared backend double whose deletes can fail or run a hook, as another node would
+	 */
+	private static class InMemoryBackend implements StorageBackend {
+		private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+		private volatile boolean failDeletes;
+		private volatile Consumer<String> onDelete = key -> { };
+
+		@Override
+		public boolean isShared() {
+			return true;
+		}
+
+		@Override
+		public void put(String key, Path source) throws IOException {
+			objects.put(key, Files.readAllBytes(source));
+		}
+
+		@Override
+		public boolean fetch(String key, Path target) throws IOException {
+			byte[] object = objects.get(key);
+			if (object != null) {
+				Files.write(target, object);
+			}
+			return object != null;
+		}
+
+		@Override
+		public boolean exists(String key) {
+			return objects.containsKey(key);
+		}
+
+		@Override
+		public void delete(String key) throws IOException {
+			if (failDeletes) {
+				throw new IOException("Connection refused");
+			}
+			objects.remove(key);
+			onDelete.accept(key);
+		}
+
+		@Override
+		public URI readUrl(String key) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Generation of the thumb, card and full renditions of uploaded images, and the backfill of
+ * images that have none
+ */
+class ImageDerivativeServiceTest {
+
+	@TempDir
+	Path uploadDir;
+
+	private FileStorageService fileStorageService;
+	private ImageDerivativeService service;
+
+	@BeforeEach
+	void setUp() {
+		fileStorageService = new FileStorageService(null, null, new LocalStorageBackend());
+		ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+		service = new ImageDerivativeService(null, fileStorageService, 1, 1);
+		ReflectionTestUtils.setField(service, "thumbSize", 200);
+		ReflectionTestUtils.setField(service, "cardSize", 480);
+		ReflectionTestUtils.setField(service, "fullSize", 1600);
+		ReflectionTestUtils.setField(service, "jpegQuality", 0.85f);
+	}
+
+	@Test
+	void scalesLargeUploadsToEverySize() throws IOException {
+		write("large.png", 3200, 1800);
+
+		Map<String, String> paths = service.generate("large.png");
+
+		assertEquals(Map.of("thumb", "large-thumb.jpg", "card", "large-card.jpg", "full", "large-full.jpg"), paths);
+		assertSize(paths.get("thumb"), 200, 113);
+		assertSize(paths.get("card"), 480, 270);
+		assertSize(paths.get("full"), 1600, 900);
+	}
+
+	@Test
+	void neverEnlargesSmallUploads() throws IOException {
+		write("small.png", 300, 400);
+
+		Map<String, String> paths = service.generate("small.png");
+
+		assertSize(paths.get("thumb"), 150, 200);
+		// The original fits the card size, so card and full share one rendition at original size
+		assertEquals("small-card.jpg", paths.get("card"));
+		assertEquals("small-card.jpg", paths.get("full"));
+		assertSize(paths.get("card"), 300, 400);
+		assertFalse(Files.exists(fileStorageService.loadFile("small-full.jpg")));
+	}
+
+	@Test
+	void rendersPhotosTheWayTheCameraHeldThem() throws IOException {
+		// A landscape sensor image the camera marks as "rotate 90° clockwise"
+		Path photo = uploadDir.resolve("photo.jpg");
+		ImageDerivativeService.writeJpeg(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), photo, 0.85f, false);
+		Files.write(photo, ImageOptimizerServiceTest.withOrientation(Files.readAllBytes(photo), 6, ByteOrder.BIG_ENDIAN));
+
+		Map<String, String> paths = service.generate("photo.jpg");
+
+		assertSize(paths.get("thumb"), 150, 200);
+		assertSize(paths.get("card"), 300, 400);
+		// Only the renditions are left behind, no temp files
+		try (Stream<Path> files = Files.walk(uploadDir)) {
+			assertEquals(Set.of("photo.jpg", "photo-thumb.jpg", "photo-card.jpg"), files.filter(Files::isRegularFile)
+				.map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+		}
+	}
+
+	@Test
+	void unreadableFormatsKeepTheOriginal() throws IOException {
+		Files.write(uploadDir.resolve("photo.webp"), new byte[] {'R', 'I', 'F', 'F', 0, 0, 0, 0});
+
+		Map<String, String> paths = service.generate("photo.webp");
+
+		assertEquals(Map.of("thumb", "photo.webp", "card", "photo.webp", "full", "photo.webp"), paths);
+		// Released with the upload, without ever naming the original itself
+		assertFalse(ImageDerivativeService.derivativePaths("photo.webp").contains("photo.webp"));
+	}
+
+	@Test
+	void backfillGivesUpOnImagesThatKeepFailing() throws Exception {
+		CalculatorImage image = new CalculatorImage();
+		image.setId(7L);
+		image.setImagePath("missing.png");
+		ImageDerivativeService backfill = new ImageDerivativeService(repository(image), fileStorageService, 1, 1);
+		ReflectionTestUtils.setField(backfill, "maxAttempts", 3);
+		try {
+			for (int attempt = 1; attempt <= 3; attempt++) {
+				assertEquals(1, backfill.backfill());
+				awaitAttempts(backfill, image, attempt);
+			}
+			assertNotNull(image.getDerivativeFailedAt());
+			assertEquals("Can't read input file!", image.getDerivativeError());
+
+			assertEquals(0, backfill.backfill());
+
+			// A replaced upload gets fresh attempts
+			write("replaced.png", 300, 400);
+			image.setImagePath("replaced.png");
+			image.setDerivativeAttempts(null);
+			assertEquals(1, backfill.backfill());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (image.getThumbPath() == null) {
+				assertTrue(System.currentTimeMillis() < deadline, "renditions not stored");
+				Thread.sleep(5);
+			}
+			assertEquals("replaced-thumb.jpg", image.getThumbPath());
+		} finally {
+			backfill.shutdown();
+		}
+	}
+
+	/**
+	 * A repository over one image, applying the backfill queries and updates to it
+	 */
+	private static CalculatorImageRepository repository(CalculatorImage image) {
+		return (CalculatorImageRepository) Proxy.newProxyInstance(ImageDerivativeServiceTest.class.getClassLoader(),
+			new Class<?>[] {CalculatorImageRepository.class}, (proxy, method, args) -> {
+				synchronized (image) {
+					switch (method.getName()) {
+						case "findIdsWithoutDerivatives":
+							int attempts = image.getDerivativeAttempts() == null ? 0 : image.getDerivativeAttempts();
+							return image.getThumbPath() == null && attempts < (int) args[0] ? List.of(image.getId()) : List.of();
+						case "findById":
+							return Optional.of(image);
+						case "findFirstByImagePathAndThumbPathIsNotNull":
+							return Optional.empty();
+						case "recordDerivativeFailure":
+							image.setDerivativeAttempts(image.getDerivativeAttempts() == null ? 1 : image.getDerivativeAttempts() + 1);
+							image.setDerivativeFailedAt((LocalDateTime) args[2]);
+							image.setDerivativeError((String) args[3]);
+							return 1;
+						case "updateDerivatives":
+							image.setThumbPath((String) args[2]);
+							image.setCardPath((String) args[3]);
+							image.setFullPath((String) args[4]);
+							return 1;
+						default:
+							throw new UnsupportedOperationException(method.getName());
+					}
+				}
+			});
+	}
+
+	/**
+	 * Wait until the failure is recorded and the worker has let go of the image
+	 */
+	private static void awaitAttempts(ImageDerivativeService backfill, CalculatorImage image, int attempts)
+			throws InterruptedException {
+		Set<?> inFlight = (Set<?>) ReflectionTestUtils.getField(backfill, "inFlight");
+		long deadline = System.currentTimeMillis() + 5000;
+		while (true) {
+			synchronized (image) {
+				if (image.getDerivativeAttempts() != null && image.getDerivativeAttempts() == attempts && inFlight.isEmpty()) {
+					break;
+				}
+			}
+			assertTrue(System.currentTimeMillis() < deadline, "attempts: " + image.getDerivativeAttempts());
+			Thread.sleep(5);
+		}
+	}
+
+	private void write(String name, int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		ImageIO.write(image, "png", uploadDir.resolve(name).toFile());
+	}
+
+	private void assertSize(String path, int width, int height) throws IOException {
+		BufferedImage image = ImageIO.read(fileStorageService.loadFile(path).toFile());
+		assertEquals(width, image.getWidth(), path);
+		assertEquals(height, image.getHeight(), path);
+	}
+}
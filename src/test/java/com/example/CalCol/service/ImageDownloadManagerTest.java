@@ -0,0 +1,204 @@
+package com.example.CalCol.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validation, size cap, timeouts and pool bounds of image imports from URLs, and cleanup of
+ * downloads that finish after the caller gave up
+ */
+class ImageDownloadManagerTest {
+
+	private static final int MAX_BYTES = 64 * 1024;
+
+	@TempDir
+	Path uploadDir;
+
+	private HttpServer server;
+	private String baseUrl;
+	private ImageDownloadManager manager;
+	private volatile long storeDelayMs;
+	private final List<String> released = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void setUp() throws IOException {
+		byte[] png = png();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/photo.png", exchange -> respond(exchange, "image/png", png));
+		server.createContext("/page", exchange -> respond(exchange, "text/html", "<html></html>".getBytes(StandardCharsets.UTF_8)));
+		server.createContext("/fake.jpg", exchange -> respond(exchange, "image/jpeg", "not an image".getBytes(StandardCharsets.UTF_8)));
+		server.createContext("/huge.jpg", exchange -> {
+			// Chunked, so only the streamed byte count can catch it
+			exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+				for (int i = 0; i < 32; i++) {
+					body.write(new byte[8 * 1024]);
+				}
+			} catch (IOException e) {
+				// Client hung up after the cap
+			}
+		});
+		server.createContext("/slow.png", exchange -> {
+			try {
+				Thread.sleep(1500);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, "image/png", png);
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+		manager = manager(2, 10, 5000);
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	void storesValidImagesUnderTheirSignature() throws IOException {
+		String filename = manager.download(baseUrl + "/photo.png");
+
+		assertEquals("stored.png", filename);
+		assertTrue(Files.exists(uploadDir.resolve(filename)));
+		// Temp files are cleaned up
+		try (var files = Files.list(uploadDir)) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@Test
+	void rejectsWhatIsNotAnImage() {
+		assertTrue(assertThrows(IOException.class, () -> manager.download(baseUrl + "/page"))
+			.getMessage().contains("Not an image"));
+		assertTrue(assertThrows(IOException.class, () -> manager.download(baseUrl + "/fake.jpg"))
+			.getMessage().contains("Not a JPEG"));
+		assertTrue(assertThrows(IOException.class, () -> manager.download(baseUrl + "/missing.png"))
+			.getMessage().contains("404"));
+		assertTrue(assertThrows(IOException.class, () -> manager.download("file:///etc/passwd"))
+			.getMessage().contains("http"));
+	}
+
+	@Test
+	void stopsAtTheSizeCap() {
+		IOException error = assertThrows(IOException.class, () -> manager.download(baseUrl + "/huge.jpg"));
+
+		assertTrue(error.getMessage().contains("larger than " + MAX_BYTES), error.getMessage());
+	}
+
+	@Test
+	void timesOutSlowDownloads() {
+		ImageDownloadManager impatient = manager(2, 10, 300);
+
+		assertTrue(assertThrows(IOException.class, () -> impatient.download(baseUrl + "/slow.png"))
+			.getMessage().contains("timed out"));
+	}
+
+	@Test
+	void releasesFilesStoredAfterTheCallerGaveUp() throws Exception {
+		// Storing outlasts the wait for the download, which is twice the download timeout
+		storeDelayMs = 900;
+		ImageDownloadManager impatient = manager(1, 1, 300);
+
+		assertTrue(assertThrows(IOException.class, () -> impatient.download(baseUrl + "/photo.png"))
+			.getMessage().contains("timed out"));
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (released.isEmpty()) {
+			assertTrue(System.currentTimeMillis() < deadline, "stored file was not released");
+			Thread.sleep(10);
+		}
+		assertEquals(List.of("stored.png"), released);
+	}
+
+	@Test
+	void downloadsBatchesWithinThePoolBounds() {
+		List<ImageDownloadManager.DownloadResult> results = manager.downloadAll(List.of(
+			baseUrl + "/photo.png", baseUrl + "/page", baseUrl + "/photo.png"));
+
+		assertEquals(2, results.size());
+		assertEquals("stored.png", results.get(0).getFilename());
+		assertFalse(results.get(1).isSuccess());
+
+		// One worker and one queue slot: the third download is turned away
+		ImageDownloadManager small = manager(1, 1, 5000);
+		List<ImageDownloadManager.DownloadResult> bounded = small.downloadAll(List.of(
+			baseUrl + "/slow.png?1", baseUrl + "/slow.png?2", baseUrl + "/slow.png?3"));
+		assertTrue(bounded.get(0).isSuccess());
+		assertTrue(bounded.get(1).isSuccess());
+		assertNull(bounded.get(2).getFilename());
+		assertTrue(bounded.get(2).getError().contains("Too many downloads"));
+	}
+
+	private ImageDownloadManager manager(int threads, int queueCapacity, long timeoutMs) {
+		FileStorageService fileStorageService = new FileStorageService(null, null, new LocalStorageBackend()) {
+			@Override
+			public String storeTempFile(Path tempPath, String extension) throws IOException {
+				try {
+					Thread.sleep(storeDelayMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				Files.copy(tempPath, uploadDir.resolve("stored" + extension), StandardCopyOption.REPLACE_EXISTING);
+				return "stored" + extension;
+			}
+
+			@Override
+			public void release(String filename, Collection<String> derivedFiles) {
+				released.add(filename);
+			}
+		};
+		ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+		ImageDownloadManager downloadManager = new ImageDownloadManager(new OutboundHttpClients(new MockEnvironment()),
+			fileStorageService, threads, queueCapacity);
+		ReflectionTestUtils.setField(downloadManager, "maxBytes", (long) MAX_BYTES);
+		ReflectionTestUtils.setField(downloadManager, "timeoutMs", timeoutMs);
+		return downloadManager;
+	}
+
+	private static void respond(com.sun.net.httpserver.HttpExchange exchange, String contentType, byte[] body)
+			throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(body.length == 0 ? -1 : 200, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	private static byte[] png() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", output);
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,205 @@
+package com.example.CalCol.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Orientation, downscaling and re-encoding of uploads by the ingest optimizer
+ */
+class ImageOptimizerServiceTest {
+
+	private static final String GPS_LATITUDE = "52 22 37.9 N";
+
+	@TempDir
+	Path uploadDir;
+
+	private ImageOptimizerService service;
+
+	@BeforeEach
+	void setUp() {
+		FileStorageService fileStorageService = new FileStorageService(null, null, new LocalStorageBackend()) {
+			@Override
+			public String storeTempFile(Path tempPath, String extension) throws IOException {
+				Files.copy(tempPath, uploadDir.resolve("stored" + extension), StandardCopyOption.REPLACE_EXISTING);
+				return "stored" + extension;
+			}
+		};
+		ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+		service = new ImageOptimizerService(null, fileStorageService, null, new SimpleMeterRegistry(), 1, 1);
+		ReflectionTestUtils.setField(service, "maxDimension", 1024);
+		ReflectionTestUtils.setField(service, "jpegQuality", 0.82f);
+		ReflectionTestUtils.setField(service, "minSavingsPercent", 5);
+	}
+
+	@Test
+	void rotatesScalesAndStripsPhotos() throws IOException {
+		// A landscape sensor image the camera marks as "rotate 90° clockwise"
+		Path photo = uploadDir.resolve("photo.jpg");
+		ImageDerivativeService.writeJpeg(noise(2000, 1500), photo, 1.0f, false);
+		Files.write(photo, withOrientation(Files.readAllBytes(photo), 6, ByteOrder.BIG_ENDIAN));
+		assertEquals(6, ImageOptimizerService.exifOrientation(photo));
+
+		ImageOptimizerService.Optimized result = service.optimizeFile("photo.jpg");
+
+		assertNotNull(result);
+		assertEquals("stored.jpg", result.getFilename());
+		assertEquals(Files.size(photo), result.getOriginalBytes());
+		assertTrue(result.getBytesSaved() > 0);
+		Path stored = uploadDir.resolve("stored.jpg");
+		BufferedImage image = ImageIO.read(stored.toFile());
+		assertEquals(768, image.getWidth());
+		assertEquals(1024, image.getHeight());
+		byte[] bytes = Files.readAllBytes(stored);
+		assertFalse(new String(bytes, StandardCharsets.ISO_8859_1).contains("Exif"));
+		assertTrue(hasMarker(bytes, 0xC2), "progressive JPEG");
+	}
+
+	@Test
+	void leavesTransparentAndAlreadyCompactImagesAlone() throws IOException {
+		BufferedImage transparent = new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_ARGB);
+		ImageIO.write(transparent, "png", uploadDir.resolve("logo.png").toFile());
+		ImageDerivativeService.writeJpeg(noise(800, 600), uploadDir.resolve("compact.jpg"), 0.5f, true);
+
+		assertNull(service.optimizeFile("logo.png"));
+		assertNull(service.optimizeFile("compact.jpg"));
+		assertFalse(Files.exists(uploadDir.resolve("stored.jpg")));
+	}
+
+	@Test
+	void stripsGpsPositionEvenWhenReEncodingSavesNothing() throws IOException {
+		Path photo = uploadDir.resolve("located.jpg");
+		ImageDerivativeService.writeJpeg(noise(800, 600), photo, 0.5f, true);
+		Files.write(photo, withGps(Files.readAllBytes(photo)));
+		assertTrue(ImageOptimizerService.jpegMetadata(photo).present());
+		assertEquals(1, ImageOptimizerService.exifOrientation(photo));
+
+		ImageOptimizerService.Optimized result = service.optimizeFile("located.jpg");
+
+		assertNotNull(result);
+		Path stored = uploadDir.resolve(result.getFilename());
+		assertFalse(ImageOptimizerService.jpegMetadata(stored).present());
+		String bytes = new String(Files.readAllBytes(stored), StandardCharsets.ISO_8859_1);
+		assertFalse(bytes.contains("Exif"));
+		assertFalse(bytes.contains(GPS_LATITUDE), "GPS position kept");
+	}
+
+	@Test
+	void appliesEveryOrientation() throws IOException {
+		// 3x2 image; each pixel holds its index
+		BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+		for (int i = 0; i < 6; i++) {
+			image.setRGB(i % 3, i / 3, i);
+		}
+		assertPixels(ImageOptimizerService.orient(image, 1), 3, 0, 1, 2, 3, 4, 5);
+		assertPixels(ImageOptimizerService.orient(image, 2), 3, 2, 1, 0, 5, 4, 3);
+		assertPixels(ImageOptimizerService.orient(image, 3), 3, 5, 4, 3, 2, 1, 0);
+		assertPixels(ImageOptimizerService.orient(image, 4), 3, 3, 4, 5, 0, 1, 2);
+		assertPixels(ImageOptimizerService.orient(image, 5), 2, 0, 3, 1, 4, 2, 5);
+		assertPixels(ImageOptimizerService.orient(image, 6), 2, 3, 0, 4, 1, 5, 2);
+		assertPixels(ImageOptimizerService.orient(image, 7), 2, 5, 2, 4, 1, 3, 0);
+		assertPixels(ImageOptimizerService.orient(image, 8), 2, 2, 5, 1, 4, 0, 3);
+
+		Path photo = uploadDir.resolve("intel.jpg");
+		ImageDerivativeService.writeJpeg(image, photo, 0.8f, false);
+		assertEquals(1, ImageOptimizerService.exifOrientation(photo));
+		Files.write(photo, withOrientation(Files.readAllBytes(photo), 8, ByteOrder.LITTLE_ENDIAN));
+		assertEquals(8, ImageOptimizerService.exifOrientation(photo));
+	}
+
+	private static void assertPixels(BufferedImage image, int width, int... expected) {
+		assertEquals(width, image.getWidth());
+		assertEquals(expected.length / width, image.getHeight());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], image.getRGB(i % width, i / width) & 0xFFFFFF, "pixel " + i);
+		}
+	}
+
+	/**
+	 * Insert an APP1 Exif segment with only an orientation tag right after the SOI marker
+	 */
+	static byte[] withOrientation(byte[] jpeg, int orientation, ByteOrder order) {
+		ByteBuffer tiff = ByteBuffer.allocate(26).order(order);
+		tiff.put(order == ByteOrder.BIG_ENDIAN ? (byte) 'M' : (byte) 'I');
+		tiff.put(order == ByteOrder.BIG_ENDIAN ? (byte) 'M' : (byte) 'I');
+		tiff.putShort((short) 42).putInt(8);
+		tiff.putShort((short) 1);
+		tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+		tiff.putInt(0);
+		return withExif(jpeg, tiff);
+	}
+
+	/**
+	 * Insert an APP1 Exif segment whose IFD0 only points at a GPS IFD holding a latitude
+	 */
+	private static byte[] withGps(byte[] jpeg) {
+		byte[] latitude = GPS_LATITUDE.getBytes(StandardCharsets.ISO_8859_1);
+		ByteBuffer tiff = ByteBuffer.allocate(44 + latitude.length);
+		tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+		// IFD0: the GPS IFD pointer
+		tiff.putShort((short) 1);
+		tiff.putShort((short) 0x8825).putShort((short) 4).putInt(1).putInt(26);
+		tiff.putInt(0);
+		// GPS IFD: GPSLatitude as text, stored after the IFD
+		tiff.putShort((short) 1);
+		tiff.putShort((short) 0x0002).putShort((short) 2).putInt(latitude.length).putInt(44);
+		tiff.putInt(0);
+		tiff.put(latitude);
+		return withExif(jpeg, tiff);
+	}
+
+	private static byte[] withExif(byte[] jpeg, ByteBuffer tiff) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(jpeg, 0, 2);
+		int length = 2 + 6 + tiff.capacity();
+		output.write(0xFF);
+		output.write(0xE1);
+		output.write(length >> 8);
+		output.write(length & 0xFF);
+		output.writeBytes("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+		output.writeBytes(tiff.array());
+		output.write(jpeg, 2, jpeg.length - 2);
+		return output.toByteArray();
+	}
+
+	private static boolean hasMarker(byte[] jpeg, int marker) {
+		for (int i = 0; i + 1 < jpeg.length; i++) {
+			if ((jpeg[i] & 0xFF) == 0xFF && (jpeg[i + 1] & 0xFF) == marker) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static BufferedImage noise(int width, int height) {
+		Random random = new Random(7);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int shade = (x * 255 / width + random.nextInt(32)) & 0xFF;
+				image.setRGB(x, y, shade << 16 | (y * 255 / height) << 8 | random.nextInt(64));
+			}
+		}
+		return image;
+	}
+}
@@ -0,0 +1,80 @@
+package com.example.CalCol.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Phrase matching and scoring from the positions stored in the index
+ */
+class MuseumIndexTest {
+
+	private static final String SITE_A = "https://museum-a.example/";
+	private static final String SITE_B = "https://museum-b.example/";
+
+	@TempDir
+	Path mirrorDir;
+
+	private final List<MuseumIndex.IndexedPage> pages = new ArrayList<>();
+
+	@Test
+	void matchesWholeTokensInPhraseOrder() throws IOException {
+		page(SITE_A, "reversed", "Calculators", "<p>Model 35 HP, not quite the phrase.</p>");
+		page(SITE_A, "inside", "Calculators", "<p>The SHP 35 is another machine.</p>");
+		page(SITE_B, "hp35", "Pocket calculators", "<p>The <b>HP-35</b> was the first scientific pocket calculator.</p>");
+		MuseumIndex index = index();
+
+		List<CalculatorMuseumSearchService.MuseumSearchResult> hits = index.search("HP 35");
+
+		assertEquals(1, hits.size());
+		assertEquals(SITE_B + "hp35", hits.get(0).getSearchUrl());
+		// The page text includes its title
+		assertEquals("pocket calculators the hp 35 was the first scientific pocket calculator", hits.get(0).getSnippet());
+		assertTrue(index.search("35 HP").get(0).getSearchUrl().startsWith(SITE_A));
+		assertTrue(index.search("HP 45").isEmpty());
+	}
+
+	@Test
+	void ranksByOccurrencesAndTitleThenKeepsTheBestPagePerSite() throws IOException {
+		page(SITE_A, "mention", "Catalogue", "<p>HP 35, HP 35 and HP 35 again.</p>");
+		page(SITE_A, "article", "The HP-35", "<p>About the HP 35.</p>");
+		page(SITE_B, "list", "Catalogue", "<p>HP 35 and HP 35.</p>");
+		MuseumIndex index = index();
+
+		List<CalculatorMuseumSearchService.MuseumSearchResult> hits = index.search("hp-35");
+
+		// The title bonus outweighs the extra mentions
+		assertEquals(List.of(SITE_A + "article", SITE_B + "list"),
+			hits.stream().map(CalculatorMuseumSearchService.MuseumSearchResult::getSearchUrl).toList());
+		// Overlapping repetitions count once: two occurrences here, not three
+		page(SITE_B, "echo", "Catalogue", "<p>HP HP HP HP</p>");
+		page(SITE_B, "pair", "Catalogue", "<p>HP HP, then HP HP, then HP HP</p>");
+		assertEquals(SITE_B + "pair", index().search("hp hp").get(0).getSearchUrl());
+	}
+
+	private MuseumIndex index() {
+		MuseumIndex index = new MuseumIndex();
+		index.rebuild(pages);
+		return index;
+	}
+
+	private void page(String siteUrl, String path, String title, String body) throws IOException {
+		Path file = mirrorDir.resolve(pages.size() + ".html.gz");
+		try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file))) {
+			output.write(("<html><head><title>" + title + "</title></head><body>" + body + "</body></html>")
+				.getBytes(StandardCharsets.UTF_8));
+		}
+		pages.add(new MuseumIndex.IndexedPage(siteUrl, siteUrl + path, title, file));
+	}
+}
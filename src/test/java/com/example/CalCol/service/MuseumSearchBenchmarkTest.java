@@ -0,0 +1,151 @@
+package com.example.CalCol.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the previous sequential, fully buffered museum scan with the streaming, concurrent one.
+ * Run with {@code mvn test -Dtest=MuseumSearchBenchmarkTest -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class MuseumSearchBenchmarkTest {
+
+	private static final int SITES = 8;
+	private static final int PAGE_BYTES = 3 * 1024 * 1024;
+	private static final int RESPONSE_DELAY_MS = 50;
+	private static final int ITERATIONS = 10;
+	private static final String QUERY = "Texas Instruments SR-50";
+
+	private HttpServer server;
+	private List<CalculatorMuseumSearchService.SiteAdapter> adapters;
+
+	@BeforeEach
+	void startServer() throws Exception {
+		byte[] page = buildPage();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newFixedThreadPool(SITES));
+		server.createContext("/", exchange -> {
+			try {
+				Thread.sleep(RESPONSE_DELAY_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.getResponseHeaders().set("Content-Type", "text/html");
+			exchange.sendResponseHeaders(200, page.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(page);
+			} catch (Exception e) {
+				// Client stopped reading early
+			}
+		});
+		server.start();
+
+		adapters = new ArrayList<>();
+		for (int i = 0; i < SITES; i++) {
+			adapters.add(new CalculatorMuseumSearchService.SiteAdapter(
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/site" + i + "/", null));
+		}
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void compareBufferedAndStreamingScan() {
+		CalculatorMuseumSearchService streaming = new CalculatorMuseumSearchService(
+			new MuseumIndex(), new OutboundHttpClients(new StandardEnvironment()),
+			new ProviderCircuitBreakers(new StandardEnvironment()), adapters,
+			Duration.ofSeconds(10), 2 * 1024 * 1024);
+		WebClient legacyClient = WebClient.builder()
+			.codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024))
+			.build();
+
+		// Warm up both paths
+		assertEquals(SITES, legacySearch(legacyClient).size());
+		assertEquals(SITES, streaming.searchMuseums("Texas Instruments", "SR-50").size());
+
+		Measurement legacy = measure(() -> legacySearch(legacyClient));
+		Measurement current = measure(() -> streaming.searchMuseums("Texas Instruments", "SR-50"));
+
+		System.out.printf("Museum search over %d sites (%d KB pages, %d ms latency), %d iterations%n",
+			SITES, PAGE_BYTES / 1024, RESPONSE_DELAY_MS, ITERATIONS);
+		System.out.printf("  buffered, sequential: %6d ms/op %8d KB allocated/op%n",
+			legacy.millisPerOp(), legacy.kilobytesPerOp());
+		System.out.printf("  streaming, parallel:  %6d ms/op %8d KB allocated/op%n",
+			current.millisPerOp(), current.kilobytesPerOp());
+	}
+
+	/**
+	 * The museum scan as it was before: one site after another, whole page as a String
+	 */
+	private List<String> legacySearch(WebClient client) {
+		List<String> snippets = new ArrayList<>();
+		for (CalculatorMuseumSearchService.SiteAdapter adapter : adapters) {
+			String html = client.get().uri(adapter.siteUrl()).retrieve().bodyToMono(String.class)
+				.timeout(Duration.ofSeconds(5)).block();
+			String lowerQuery = QUERY.toLowerCase();
+			String lowerHtml = html.toLowerCase();
+			if (lowerHtml.contains(lowerQuery)) {
+				int index = lowerHtml.indexOf(lowerQuery);
+				int start = Math.max(0, index - 100);
+				int end = Math.min(html.length(), index + QUERY.length() + 100);
+				snippets.add(html.substring(start, end).replaceAll("\\s+", " ").trim());
+			}
+		}
+		return snippets;
+	}
+
+	private static Measurement measure(Runnable operation) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long allocatedBefore = totalAllocatedBytes(threads);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			operation.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = totalAllocatedBytes(threads) - allocatedBefore;
+		return new Measurement(elapsed / 1_000_000 / ITERATIONS, allocated / 1024 / ITERATIONS);
+	}
+
+	private static long totalAllocatedBytes(com.sun.management.ThreadMXBean threads) {
+		long total = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			total += Math.max(0, allocated);
+		}
+		return total;
+	}
+
+	private static byte[] buildPage() {
+		StringBuilder page = new StringBuilder("<html><body>");
+		String filler = "<p>Mechanical and electronic calculators from the collection.</p>\n";
+		while (page.length() < PAGE_BYTES / 10) {
+			page.append(filler);
+		}
+		page.append("<h2>").append(QUERY).append("</h2>\n");
+		while (page.length() < PAGE_BYTES) {
+			page.append(filler);
+		}
+		return page.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private record Measurement(long millisPerOp, long kilobytesPerOp) {
+	}
+}
@@ -0,0 +1,129 @@
+package com.example.CalCol.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crawls a small fixture site served from a local HTTP server
+ */
+class MuseumSiteCrawlerTest {
+
+	private static final Map<String, String> PAGES = Map.of(
+		"/", "<html><head><title>Fixture Museum</title></head><body>"
+			+ "<a href=\"/hp35.html\">HP</a> <a href=\"ti/sr50.html\">TI</a> <a href=\"/private/admin.html\">x</a>"
+			+ "<a href=\"https://elsewhere.example/\">ext</a> <a href=\"/logo.png\">logo</a></body></html>",
+		"/hp35.html", "<html><head><title>HP-35</title></head><body><p>The HP 35 was the first "
+			+ "scientific pocket calculator.</p><script>var hp = 'HP 35';</script><a href=\"/\">home</a></body></html>",
+		"/ti/sr50.html", "<html><head><title>SR-50</title></head><body>Texas Instruments SR 50</body></html>",
+		"/private/admin.html", "<html><body>HP 35 secret</body></html>"
+	);
+
+	@TempDir
+	Path mirrorDir;
+
+	private HttpServer server;
+	private String siteUrl;
+	private final Map<String, AtomicInteger> fullResponses = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> notModifiedResponses = new ConcurrentHashMap<>();
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		siteUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void mirrorsSiteAndRevalidatesWithConditionalRequests() throws IOException {
+		MuseumIndex index = new MuseumIndex();
+		MuseumSiteCrawler crawler = new MuseumSiteCrawler(index,
+			new OutboundHttpClients(new StandardEnvironment()), mirrorDir.toString(), 0, 50, 1024 * 1024, "test");
+
+		MuseumSiteCrawler.CrawlResult first = crawler.crawlSite(siteUrl);
+		assertEquals(3, first.getFetched());
+		assertEquals(0, first.getNotModified());
+		assertFalse(fullResponses.containsKey("/private/admin.html"), "robots.txt must be honoured");
+		assertFalse(fullResponses.containsKey("/logo.png"), "binary links must not be followed");
+
+		try (var files = Files.walk(mirrorDir)) {
+			assertEquals(3, files.filter(f -> f.toString().endsWith(".html.gz")).count());
+		}
+
+		MuseumSiteCrawler.CrawlResult second = crawler.crawlSite(siteUrl);
+		assertEquals(0, second.getFetched());
+		assertEquals(3, second.getNotModified());
+		assertEquals(1, fullResponses.get("/hp35.html").get());
+		assertEquals(1, notModifiedResponses.get("/hp35.html").get());
+
+		crawler.rebuildIndex();
+		assertEquals(3, index.size());
+		assertTrue(index.hasSite(siteUrl));
+
+		List<CalculatorMuseumSearchService.MuseumSearchResult> hits = index.search("HP-35");
+		assertEquals(1, hits.size());
+		assertEquals(siteUrl + "hp35.html", hits.get(0).getSearchUrl());
+		assertTrue(hits.get(0).getSnippet().contains("hp 35 was the first scientific"));
+
+		assertEquals(siteUrl + "ti/sr50.html", index.search("Texas Instruments SR-50").get(0).getSearchUrl());
+		assertTrue(index.search("casio fx 7000g").isEmpty());
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		if ("/robots.txt".equals(path)) {
+			respond(exchange, 200, "User-agent: *\nDisallow: /private/\n", "text/plain");
+			return;
+		}
+		String page = PAGES.get(path);
+		if (page == null) {
+			respond(exchange, 404, "not found", "text/plain");
+			return;
+		}
+		String etag = "\"" + Integer.toHexString(page.hashCode()) + "\"";
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			notModifiedResponses.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+			exchange.getResponseHeaders().set("ETag", etag);
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		fullResponses.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+		exchange.getResponseHeaders().set("ETag", etag);
+		respond(exchange, 200, page, "text/html; charset=utf-8");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body, String contentType) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.example.CalCol.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives many concurrent calls at a slow local stub and checks that timeouts and per-provider
+ * pools keep the damage contained
+ */
+class OutboundHttpClientsLoadTest {
+
+	private static final int SLOW_RESPONSE_MS = 3000;
+	private static final int CONCURRENT_CALLS = 40;
+
+	private HttpServer server;
+	private String baseUrl;
+	private final AtomicInteger inFlightSlow = new AtomicInteger();
+	private final AtomicInteger maxInFlightSlow = new AtomicInteger();
+
+	@BeforeEach
+	void startStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/slow", this::slow);
+		server.createContext("/fast", exchange -> respond(exchange, "{\"ok\":true}"));
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	void stopStub() {
+		server.stop(0);
+	}
+
+	@Test
+	void slowProviderTimesOutWithoutStarvingOtherProviders() {
+		MockEnvironment environment = new MockEnvironment()
+			.withProperty("app.http.slow.response-timeout-ms", "500")
+			.withProperty("app.http.slow.max-connections", "4")
+			.withProperty("app.http.slow.pending-acquire-timeout-ms", "300")
+			.withProperty("app.http.slow.base-url", baseUrl + "/")
+			.withProperty("app.http.fast.base-url", baseUrl);
+		OutboundHttpClients httpClients = new OutboundHttpClients(environment);
+		WebClient slowClient = httpClients.client("slow");
+		WebClient fastClient = httpClients.client("fast");
+		String slowUrl = httpClients.baseUrl("slow", "https://unused.example") + "/slow";
+		String fastUrl = httpClients.baseUrl("fast", "https://unused.example") + "/fast";
+
+		try {
+			long start = System.nanoTime();
+			Mono<List<String>> slowCalls = Flux.range(0, CONCURRENT_CALLS)
+				.flatMap(i -> slowClient.get().uri(slowUrl).retrieve().bodyToMono(String.class)
+					.map(body -> "ok")
+					.onErrorResume(e -> Mono.just("failed")), CONCURRENT_CALLS)
+				.collectList();
+			Mono<List<String>> fastCalls = Flux.range(0, CONCURRENT_CALLS)
+				.flatMap(i -> fastClient.get().uri(fastUrl).retrieve().bodyToMono(String.class), CONCURRENT_CALLS)
+				.collectList();
+
+			List<String> fastResults = fastCalls.block(Duration.ofSeconds(5));
+			long fastElapsedMs = (System.nanoTime() - start) / 1_000_000;
+			List<String> slowResults = slowCalls.block(Duration.ofSeconds(10));
+			long slowElapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+			assertEquals(CONCURRENT_CALLS, fastResults.size());
+			assertTrue(fastElapsedMs < SLOW_RESPONSE_MS, "fast provider was held up: " + fastElapsedMs + " ms");
+
+			assertEquals(CONCURRENT_CALLS, slowResults.stream().filter("failed"::equals).count());
+			assertTrue(slowElapsedMs < SLOW_RESPONSE_MS, "slow calls were not cut off: " + slowElapsedMs + " ms");
+			assertTrue(maxInFlightSlow.get() <= 4, "pool limit exceeded: " + maxInFlightSlow.get());
+		} finally {
+			httpClients.shutdown();
+		}
+	}
+
+	private void slow(HttpExchange exchange) throws IOException {
+		int inFlight = inFlightSlow.incrementAndGet();
+		maxInFlightSlow.accumulateAndGet(inFlight, Math::max);
+		try {
+			Thread.sleep(SLOW_RESPONSE_MS);
+			respond(exchange, "{\"ok\":true}");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			// Client gave up
+		} finally {
+			inFlightSlow.decrementAndGet();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.example.CalCol.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Breaker state machine: opening on failure and slow-call rates, the half-open probe, and calls
+ * that were already in flight when the circuit opened
+ */
+class ProviderCircuitBreakersTest {
+
+	private static final String PROVIDER = "test";
+	private static final long SLOW_CALL_MS = 100;
+	private static final long OPEN_MS = 200;
+
+	private ProviderCircuitBreakers breakers;
+	private ExecutorService callers;
+
+	@BeforeEach
+	void setUp() {
+		MockEnvironment environment = new MockEnvironment()
+			.withProperty("app.resilience.defaults.window-size", "4")
+			.withProperty("app.resilience.defaults.minimum-calls", "4")
+			.withProperty("app.resilience.defaults.failure-rate-threshold", "0.5")
+			.withProperty("app.resilience.defaults.slow-call-rate-threshold", "0.5")
+			.withProperty("app.resilience.defaults.slow-call-ms", String.valueOf(SLOW_CALL_MS))
+			.withProperty("app.resilience.defaults.open-ms", String.valueOf(OPEN_MS))
+			.withProperty("app.resilience.defaults.max-concurrent-calls", "4")
+			.withProperty("app.resilience.defaults.max-wait-ms", "0");
+		breakers = new ProviderCircuitBreakers(environment);
+		callers = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	void tearDown() {
+		callers.shutdownNow();
+	}
+
+	@Test
+	void opensOnFailureRate() {
+		succeed();
+		succeed();
+		fail();
+		assertEquals(ProviderCircuitBreakers.CLOSED, state());
+
+		fail();
+
+		assertEquals(ProviderCircuitBreakers.OPEN, state());
+		assertUnavailable("circuit open");
+		assertEquals(1, breakers.getAllStatus().get(PROVIDER).getRejectedCalls());
+	}
+
+	@Test
+	void opensOnSlowCallRate() {
+		succeed();
+		succeed();
+		slow();
+		assertEquals(ProviderCircuitBreakers.CLOSED, state());
+
+		slow();
+
+		assertEquals(ProviderCircuitBreakers.OPEN, state());
+		assertEquals(0.0, breakers.getAllStatus().get(PROVIDER).getFailureRate());
+	}
+
+	@Test
+	void successfulProbeClosesTheCircuit() throws Exception {
+		open();
+		assertUnavailable("circuit open");
+
+		Thread.sleep(OPEN_MS + 50);
+		succeed();
+
+		assertEquals(ProviderCircuitBreakers.CLOSED, state());
+		assertEquals(0, breakers.getAllStatus().get(PROVIDER).getRecordedCalls());
+		succeed();
+	}
+
+	@Test
+	void failedProbeReopensTheCircuit() throws Exception {
+		open();
+		Thread.sleep(OPEN_MS + 50);
+
+		fail();
+
+		assertEquals(ProviderCircuitBreakers.OPEN, state());
+		assertUnavailable("circuit open");
+
+		// A slow probe counts as failed too
+		Thread.sleep(OPEN_MS + 50);
+		slow();
+		assertEquals(ProviderCircuitBreakers.OPEN, state());
+	}
+
+	@Test
+	void onlyOneProbeAtATime() throws Exception {
+		open();
+		Thread.sleep(OPEN_MS + 50);
+
+		CountDownLatch probeRelease = new CountDownLatch(1);
+		Future<String> probe = blocked(probeRelease, true);
+		awaitInFlight(1);
+
+		assertEquals(ProviderCircuitBreakers.HALF_OPEN, state());
+		assertUnavailable("probe in flight");
+
+		probeRelease.countDown();
+		probe.get(5, TimeUnit.SECONDS);
+		assertEquals(ProviderCircuitBreakers.CLOSED, state());
+	}
+
+	@Test
+	void stragglerFromTheClosedPeriodDoesNotDecideTheProbe() throws Exception {
+		// Started while closed, still running when the circuit opens and goes half-open
+		CountDownLatch stragglerRelease = new CountDownLatch(1);
+		Future<String> straggler = blocked(stragglerRelease, false);
+		awaitInFlight(1);
+		open();
+		Thread.sleep(OPEN_MS + 50);
+
+		CountDownLatch probeRelease = new CountDownLatch(1);
+		Future<String> probe = blocked(probeRelease, true);
+		awaitInFlight(2);
+		assertEquals(ProviderCircuitBreakers.HALF_OPEN, state());
+
+		// The straggler fails: neither reopens the circuit nor frees the probe slot
+		stragglerRelease.countDown();
+		assertThrows(Exception.class, () -> straggler.get(5, TimeUnit.SECONDS));
+		assertEquals(ProviderCircuitBreakers.HALF_OPEN, state());
+		assertUnavailable("probe in flight");
+
+		probeRelease.countDown();
+		probe.get(5, TimeUnit.SECONDS);
+		assertEquals(ProviderCircuitBreakers.CLOSED, state());
+		assertEquals(0, breakers.getAllStatus().get(PROVIDER).getRecordedCalls());
+	}
+
+	@Test
+	void stragglerFinishingAfterTheProbeIsNotRecorded() throws Exception {
+		CountDownLatch stragglerRelease = new CountDownLatch(1);
+		Future<String> straggler = blocked(stragglerRelease, false);
+		awaitInFlight(1);
+		open();
+		Thread.sleep(OPEN_MS + 50);
+		succeed();
+		assertEquals(ProviderCircuitBreakers.CLOSED, state());
+
+		stragglerRelease.countDown();
+		assertThrows(Exception.class, () -> straggler.get(5, TimeUnit.SECONDS));
+
+		assertEquals(0, breakers.getAllStatus().get(PROVIDER).getRecordedCalls());
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++) {
+			fail();
+		}
+		assertEquals(ProviderCircuitBreakers.OPEN, state());
+	}
+
+	private void succeed() {
+		assertEquals("ok", breakers.execute(PROVIDER, () -> "ok"));
+	}
+
+	private void fail() {
+		assertThrows(IllegalStateException.class, () -> breakers.execute(PROVIDER, () -> {
+			throw new IllegalStateException("provider error");
+		}));
+	}
+
+	private void slow() {
+		breakers.execute(PROVIDER, () -> {
+			sleep(SLOW_CALL_MS + 20);
+			return "slow";
+		});
+	}
+
+	/**
+	 * A call that stays in flight until released, then succeeds or fails
+	 */
+	private Future<String> blocked(CountDownLatch release, boolean success) {
+		return callers.submit(() -> breakers.execute(PROVIDER, () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (!success) {
+				throw new IllegalStateException("provider error");
+			}
+			return "ok";
+		}));
+	}
+
+	private void awaitInFlight(int calls) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (breakers.getAllStatus().get(PROVIDER) == null
+				|| breakers.getAllStatus().get(PROVIDER).getInFlightCalls() != calls) {
+			assertTrue(System.currentTimeMillis() < deadline, "calls in flight: expected " + calls);
+			Thread.sleep(5);
+		}
+	}
+
+	private void assertUnavailable(String reason) {
+		ProviderCircuitBreakers.ProviderUnavailableException e = assertThrows(
+			ProviderCircuitBreakers.ProviderUnavailableException.class, () -> breakers.execute(PROVIDER, () -> "ok"));
+		assertTrue(e.getMessage().contains(reason), e.getMessage());
+	}
+
+	private String state() {
+		return breakers.getAllStatus().get(PROVIDER).getState();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.example.CalCol.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Provider planning against canned searches with known yields
+ */
+class ProviderPlannerTest {
+
+	private static final List<String> PROVIDERS = List.of("google", "bing", "brave");
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final List<String> called = new ArrayList<>();
+	private QuotaService quotaService;
+	private ProviderPlanner planner;
+
+	@BeforeEach
+	void setUp() {
+		quotaService = new QuotaService();
+		for (String provider : PROVIDERS) {
+			ReflectionTestUtils.setField(quotaService, provider + "MonthlyLimit", 1000);
+		}
+		planner = new ProviderPlanner(quotaService, meterRegistry);
+		ReflectionTestUtils.setField(planner, "enabled", true);
+		ReflectionTestUtils.setField(planner, "minSamples", 3);
+		ReflectionTestUtils.setField(planner, "minYield", 0.1);
+		ReflectionTestUtils.setField(planner, "exploreEvery", 4);
+		ReflectionTestUtils.setField(planner, "quotaReserve", 0.05);
+	}
+
+	@Test
+	void stopsOnceTargetIsReached() {
+		Map<String, List<String>> results = run(10, provider -> 1.0);
+
+		assertEquals(List.of("google"), called);
+		assertEquals(10, results.get("google").size());
+		assertEquals(1.0, meterRegistry.get("enrichment.planner.decisions")
+			.tags("provider", "bing", "decision", ProviderPlanner.DECISION_SKIP_ENOUGH).counter().count());
+	}
+
+	@Test
+	void skipsUnconfiguredAndExhaustedProviders() {
+		ReflectionTestUtils.setField(quotaService, "bingMonthlyLimit", 0);
+
+		planner.run("web", PROVIDERS, provider -> !provider.equals("google"), 10, 100, this::search);
+
+		assertEquals(List.of("brave"), called);
+	}
+
+	@Test
+	void skipsLowYieldProviderAndExploresItNowAndThen() {
+		// Google's results are all filtered out, Bing's all kept
+		for (int i = 0; i < 3; i++) {
+			run(100, provider -> provider.equals("google") ? 0.0 : 1.0);
+		}
+		called.clear();
+
+		for (int i = 0; i < 4; i++) {
+			run(100, provider -> provider.equals("google") ? 0.0 : 1.0);
+		}
+
+		assertEquals(1, Collections.frequency(called, "google"));
+		assertEquals(4, Collections.frequency(called, "bing"));
+		assertTrue(planner.getAllStats().get("google/web").getYield() < 0.1);
+	}
+
+	@Test
+	void requestsOnlyWhatTheTargetNeeds() {
+		assertEquals(5, planner.resultsToRequest("bing", 1.0, 3, 10));
+		assertEquals(20, planner.resultsToRequest("bing", 0.5, 10, 10));
+		// Never more than twice the default or what the provider returns per call
+		assertEquals(20, planner.resultsToRequest("bing", 0.1, 10, 10));
+		assertEquals(10, planner.resultsToRequest("google", 0.1, 10, 10));
+	}
+
+	@Test
+	void searchesAnsweredWithoutCallingTheProviderAreNotRecorded() {
+		run(100, provider -> 1.0);
+		long samples = planner.getAllStats().get("google/web").getSamples();
+		double latencyMs = planner.getAllStats().get("google/web").getLatencyMs();
+
+		// Served from the cache, instantly and with nothing filtered out
+		Map<String, List<String>> results = planner.run("web", PROVIDERS, provider -> true, 10, 100,
+			(provider, maxResults) -> new ProviderPlanner.ProviderResult<>(List.of(provider + "-cached"), false));
+
+		assertEquals(List.of("google-cached"), results.get("google"));
+		ProviderPlanner.ProviderStatsView google = planner.getAllStats().get("google/web");
+		assertEquals(samples, google.getSamples());
+		assertEquals(latencyMs, google.getLatencyMs());
+		assertEquals(3, meterRegistry.get("enrichment.planner.call.latency").tags("provider", "google").timer().count()
+			+ meterRegistry.get("enrichment.planner.call.latency").tags("provider", "bing").timer().count()
+			+ meterRegistry.get("enrichment.planner.call.latency").tags("provider", "brave").timer().count());
+	}
+
+	@Test
+	void callsEveryProviderWhenDisabled() {
+		ReflectionTestUtils.setField(planner, "enabled", false);
+
+		Map<String, List<String>> results = run(1, provider -> 1.0);
+
+		assertEquals(PROVIDERS, called);
+		assertEquals(PROVIDERS, new ArrayList<>(results.keySet()));
+		assertFalse(meterRegistry.find("enrichment.planner.decisions").counters().iterator().hasNext());
+	}
+
+	private Map<String, List<String>> run(int target, java.util.function.ToDoubleFunction<String> yield) {
+		return planner.run("web", PROVIDERS, provider -> true, 10, target,
+			(provider, maxResults) -> {
+				called.add(provider);
+				quotaService.recordRequest(provider);
+				List<String> kept = new ArrayList<>();
+				for (int i = 0; i < Math.round(maxResults * yield.applyAsDouble(provider)); i++) {
+					kept.add(provider + "-" + i);
+				}
+				return new ProviderPlanner.ProviderResult<>(kept, true);
+			});
+	}
+
+	private ProviderPlanner.ProviderResult<String> search(String provider, int maxResults) {
+		called.add(provider);
+		return new ProviderPlanner.ProviderResult<>(List.of(provider), true);
+	}
+}
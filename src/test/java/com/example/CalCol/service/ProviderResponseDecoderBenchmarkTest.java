@@ -0,0 +1,134 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares allocation per image search response between generic Map decoding (as the search
+ * service used to do) and the streaming decoder with the relevance filter applied while decoding.
+ * Run with {@code mvn test -Dtest=ProviderResponseDecoderBenchmarkTest -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class ProviderResponseDecoderBenchmarkTest {
+
+	private static final int RESULTS_PER_RESPONSE = 100;
+	private static final int WARMUP = 2000;
+	private static final int ITERATIONS = 5000;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void allocationPerBraveImageResponse() throws Exception {
+		byte[] body = objectMapper.writeValueAsBytes(braveImageResponse());
+		WebSearchService.RelevanceFilter filter = WebSearchService.RelevanceFilter.forImages("Hewlett-Packard", "HP-35");
+
+		List<WebSearchService.ImageSearchResult> legacy = legacyDecode(body, filter);
+		List<WebSearchService.ImageSearchResult> streamed = ProviderResponseDecoder.braveImages(body, filter).items();
+		assertEquals(legacy.size(), streamed.size());
+		for (int i = 0; i < legacy.size(); i++) {
+			assertEquals(legacy.get(i).getImageUrl(), streamed.get(i).getImageUrl());
+			assertEquals(legacy.get(i).getTitle(), streamed.get(i).getTitle());
+			assertEquals(legacy.get(i).getWidth(), streamed.get(i).getWidth());
+		}
+
+		for (int i = 0; i < WARMUP; i++) {
+			legacyDecode(body, filter);
+			ProviderResponseDecoder.braveImages(body, filter);
+		}
+		long legacyBytes = allocatedPerCall(() -> legacyDecode(body, filter));
+		long streamedBytes = allocatedPerCall(() -> ProviderResponseDecoder.braveImages(body, filter));
+
+		System.out.printf("Brave image response: %d bytes, %d results, %d relevant%n",
+			body.length, RESULTS_PER_RESPONSE, streamed.size());
+		System.out.printf("  Map decoding + copy + filter: %8d bytes allocated/response%n", legacyBytes);
+		System.out.printf("  streaming decoder, filtered:  %8d bytes allocated/response%n", streamedBytes);
+	}
+
+	private static long allocatedPerCall(Runnable decode) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().threadId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ITERATIONS; i++) {
+			decode.run();
+		}
+		return (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+	}
+
+	/**
+	 * Decoding as the search service did before: a generic Map tree, cast and copied into
+	 * results, then filtered
+	 */
+	@SuppressWarnings("unchecked")
+	private List<WebSearchService.ImageSearchResult> legacyDecode(byte[] body, WebSearchService.RelevanceFilter filter) {
+		try {
+			Map<String, Object> response = objectMapper.readValue(body, Map.class);
+			List<WebSearchService.ImageSearchResult> results = new ArrayList<>();
+			for (Map<String, Object> item : (List<Map<String, Object>>) response.get("results")) {
+				WebSearchService.ImageSearchResult result = new WebSearchService.ImageSearchResult();
+				result.setImageUrl((String) item.get("url"));
+				Object thumbnail = item.get("thumbnail");
+				result.setThumbnailUrl(thumbnail instanceof Map<?, ?> map ? (String) map.get("src") : (String) thumbnail);
+				result.setTitle((String) item.get("title"));
+				result.setSourceUrl((String) item.get("source"));
+				if (item.get("width") instanceof Number width) {
+					result.setWidth(width.intValue());
+				}
+				if (item.get("height") instanceof Number height) {
+					result.setHeight(height.intValue());
+				}
+				result.setSource("Brave");
+				results.add(result);
+			}
+			List<WebSearchService.ImageSearchResult> filtered = new ArrayList<>();
+			for (WebSearchService.ImageSearchResult result : results) {
+				String combined = (result.getTitle() + " " + result.getSourceUrl() + " " + result.getImageUrl()).toLowerCase();
+				if (filter.accepts(combined)) {
+					filtered.add(result);
+				}
+			}
+			return filtered;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Brave-style image response: each result carries nested metadata the app never reads
+	 */
+	private static Map<String, Object> braveImageResponse() {
+		List<Map<String, Object>> results = new ArrayList<>();
+		for (int i = 0; i < RESULTS_PER_RESPONSE; i++) {
+			boolean relevant = i % 3 == 0;
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("type", "image_result");
+			result.put("title", relevant ? "HP-35 calculator photo " + i : "Slide rule collection " + i);
+			result.put("url", "https://images.example.org/" + (relevant ? "hp-35-calculator-" : "slide-rule-") + i + ".jpg");
+			result.put("source", "https://example.org/page/" + i);
+			result.put("page_fetched", "2024-05-01T12:00:00Z");
+			result.put("thumbnail", Map.of("src", "https://thumbs.example.org/" + i + ".jpg", "width", 200, "height", 150));
+			result.put("properties", Map.of("url", "https://images.example.org/full/" + i + ".jpg",
+				"placeholder", "https://thumbs.example.org/placeholder/" + i + ".jpg", "width", 1600, "height", 1200));
+			result.put("meta_url", Map.of("scheme", "https", "netloc", "example.org", "hostname", "example.org",
+				"favicon", "https://imgs.example.org/favicon/" + i + ".png", "path", "› page › " + i));
+			result.put("confidence", relevant ? "high" : "low");
+			result.put("width", 1600);
+			result.put("height", 1200);
+			results.add(result);
+		}
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("type", "images");
+		response.put("query", Map.of("original", "HP-35 calculator", "spellcheck_off", true,
+			"show_strict_warning", false));
+		response.put("results", results);
+		return response;
+	}
+}
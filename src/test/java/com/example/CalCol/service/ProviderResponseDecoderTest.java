@@ -0,0 +1,401 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks each streaming decoder against decoding the same body as an ObjectMapper tree, the way
+ * the search and AI services read provider responses before
+ */
+class ProviderResponseDecoderTest {
+
+	private static final WebSearchService.RelevanceFilter WEB_FILTER =
+		WebSearchService.RelevanceFilter.forWeb("Hewlett-Packard", "HP-35");
+	private static final WebSearchService.RelevanceFilter IMAGE_FILTER =
+		WebSearchService.RelevanceFilter.forImages("Hewlett-Packard", "HP-35");
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void googleWebResults() throws Exception {
+		byte[] body = json("""
+			{"kind": "customsearch#search",
+			 "searchInformation": {"totalResults": "2", "items": [{"title": "decoy"}]},
+			 "items": [
+			  {"title": "HP-35 calculator", "link": "https://example.org/hp35", "snippet": "Hewlett-Packard, 1972",
+			   "pagemap": {"metatags": [{"og:title": "nested", "items": []}]}},
+			  {"title": "HP-35 calculator manual", "link": "https://example.org/manual"},
+			  {"title": "Slide rules", "link": "https://example.org/slide", "snippet": "Hewlett-Packard HP-35 rival"}
+			 ]}
+			""");
+
+		assertWebResults(treeResults(body, "items", null, "title", "link", "snippet", null),
+			ProviderResponseDecoder.googleResults(body, null), 3);
+		assertWebResults(treeResults(body, "items", null, "title", "link", "snippet", WEB_FILTER),
+			ProviderResponseDecoder.googleResults(body, WEB_FILTER), 3);
+		assertEquals(1, ProviderResponseDecoder.googleResults(body, WEB_FILTER).items().size());
+	}
+
+	@Test
+	void bingWebResultsAreReadFromTheNestedArray() throws Exception {
+		byte[] body = json("""
+			{"_type": "SearchResponse",
+			 "value": [{"name": "top-level decoy", "url": "https://example.org/decoy"}],
+			 "queryContext": {"originalQuery": "HP-35 calculator"},
+			 "webPages": {"totalEstimatedMatches": 2, "value": [
+			  {"id": "0", "name": "HP-35 calculator", "url": "https://example.org/hp35", "snippet": "Hewlett-Packard",
+			   "deepLinks": [{"name": "Specs", "url": "https://example.org/hp35/specs"}]},
+			  {"name": "HP-35 museum", "url": "https://example.org/museum", "snippet": null}
+			 ]}}
+			""");
+
+		assertWebResults(treeResults(body, "webPages", "value", "name", "url", "snippet", null),
+			ProviderResponseDecoder.bingResults(body, null), 2);
+		assertWebResults(treeResults(body, "webPages", "value", "name", "url", "snippet", WEB_FILTER),
+			ProviderResponseDecoder.bingResults(body, WEB_FILTER), 2);
+	}
+
+	@Test
+	void braveWebResultsAreReadFromTheNestedArray() throws Exception {
+		byte[] body = json("""
+			{"type": "search",
+			 "mixed": {"main": [{"type": "web", "index": 0}], "results": [{"title": "decoy"}]},
+			 "web": {"type": "search", "results": [
+			  {"title": "HP-35 calculator", "url": "https://example.org/hp35", "description": "Hewlett-Packard <b>HP-35</b>",
+			   "profile": {"name": "Example"}, "meta_url": {"hostname": "example.org"}},
+			  {"url": "https://example.org/untitled", "description": "calculator"}
+			 ]}}
+			""");
+
+		assertWebResults(treeResults(body, "web", "results", "title", "url", "description", null),
+			ProviderResponseDecoder.braveResults(body, null), 2);
+		assertWebResults(treeResults(body, "web", "results", "title", "url", "description", WEB_FILTER),
+			ProviderResponseDecoder.braveResults(body, WEB_FILTER), 2);
+
+		List<ProviderResponseDecoder.BraveWebResult> records = ProviderResponseDecoder.braveWebResults(body).items();
+		assertEquals(List.of(
+			new ProviderResponseDecoder.BraveWebResult("HP-35 calculator", "https://example.org/hp35",
+				"Hewlett-Packard <b>HP-35</b>"),
+			new ProviderResponseDecoder.BraveWebResult(null, "https://example.org/untitled", "calculator")), records);
+	}
+
+	@Test
+	void googleImagesFallBackToTheLinkWithoutImageDetails() throws Exception {
+		byte[] body = json("""
+			{"items": [
+			  {"title": "HP-35 calculator", "link": "https://img.example.org/hp35.jpg", "displayLink": "example.org",
+			   "image": {"contextLink": "https://example.org/hp35", "thumbnailLink": "https://thumbs.example.org/hp35.jpg",
+			    "width": 1600, "height": 1200, "byteSize": 123456}},
+			  {"title": "HP-35 calculator back", "link": "https://img.example.org/back.jpg", "displayLink": "example.org"},
+			  {"title": "HP-35 calculator without link", "image": {"contextLink": "https://example.org/nolink"}},
+			  {"title": "HP-35 calculator blank link", "link": "  "}
+			 ]}
+			""");
+
+		assertImages(treeGoogleImages(body, null), ProviderResponseDecoder.googleImages(body, null), 4);
+		assertImages(treeGoogleImages(body, IMAGE_FILTER), ProviderResponseDecoder.googleImages(body, IMAGE_FILTER), 4);
+		assertEquals("https://img.example.org/back.jpg",
+			ProviderResponseDecoder.googleImages(body, null).items().get(1).getThumbnailUrl());
+	}
+
+	@Test
+	void bingImages() throws Exception {
+		byte[] body = json("""
+			{"_type": "Images", "webSearchUrl": "https://bing.example/search",
+			 "value": [
+			  {"name": "HP-35 calculator", "contentUrl": "https://img.example.org/hp35.jpg",
+			   "thumbnailUrl": "https://tse.example.org/hp35", "hostPageUrl": "https://example.org/hp35",
+			   "width": 1600.0, "height": 1200, "thumbnail": {"width": 300, "height": 225},
+			   "insightsMetadata": {"pagesIncludingCount": 3}},
+			  {"name": "Slide rule", "contentUrl": "https://img.example.org/slide.jpg", "hostPageUrl": "https://example.org/slide"},
+			  {"name": "HP-35 calculator without content URL", "thumbnailUrl": "https://tse.example.org/none"}
+			 ]}
+			""");
+
+		Function<JsonNode, WebSearchService.ImageSearchResult> convert = item -> image(text(item, "contentUrl"),
+			text(item, "thumbnailUrl"), text(item, "name"), text(item, "hostPageUrl"), integer(item, "width"),
+			integer(item, "height"), "Bing");
+		assertImages(treeImages(body, "value", "contentUrl", convert, null),
+			ProviderResponseDecoder.bingImages(body, null), 3);
+		assertImages(treeImages(body, "value", "contentUrl", convert, IMAGE_FILTER),
+			ProviderResponseDecoder.bingImages(body, IMAGE_FILTER), 3);
+	}
+
+	@Test
+	void braveImagesReadThumbnailsGivenAsTextOrObject() throws Exception {
+		byte[] body = json("""
+			{"type": "images", "query": {"original": "HP-35 calculator", "results": []},
+			 "results": [
+			  {"title": "HP-35 calculator", "url": "https://img.example.org/hp35.jpg", "source": "https://example.org/hp35",
+			   "thumbnail": {"src": "https://thumbs.example.org/hp35.jpg", "width": 200}, "width": 1600, "height": 1200,
+			   "properties": {"url": "https://img.example.org/full/hp35.jpg", "width": 3200}},
+			  {"title": "HP-35 calculator keyboard", "url": "https://img.example.org/keys.jpg",
+			   "thumbnail": "https://thumbs.example.org/keys.jpg"},
+			  {"title": "HP-35 calculator without url", "thumbnail": "https://thumbs.example.org/none.jpg"}
+			 ]}
+			""");
+
+		Function<JsonNode, WebSearchService.ImageSearchResult> convert = item -> {
+			JsonNode thumbnail = item.path("thumbnail");
+			return image(text(item, "url"), thumbnail.isObject() ? text(thumbnail, "src") : text(item, "thumbnail"),
+				text(item, "title"), text(item, "source"), integer(item, "width"), integer(item, "height"), "Brave");
+		};
+		assertImages(treeImages(body, "results", "url", convert, null),
+			ProviderResponseDecoder.braveImages(body, null), 3);
+		assertImages(treeImages(body, "results", "url", convert, IMAGE_FILTER),
+			ProviderResponseDecoder.braveImages(body, IMAGE_FILTER), 3);
+	}
+
+	@Test
+	void openAIContentIsTheMessageOfTheFirstChoice() throws Exception {
+		byte[] body = json("""
+			{"id": "chatcmpl-1", "object": "chat.completion",
+			 "choices": [
+			  {"index": 0, "logprobs": null, "finish_reason": "stop",
+			   "message": {"role": "assistant", "content": "The HP-35 was released in 1972.", "refusal": null,
+			    "tool_calls": [{"function": {"content": "decoy"}}]}},
+			  {"index": 1, "message": {"role": "assistant", "content": "Second choice"}}
+			 ],
+			 "usage": {"prompt_tokens": 12, "completion_tokens": 9}}
+			""");
+
+		JsonNode tree = objectMapper.readTree(body);
+		List<String> contents = ProviderResponseDecoder.openAIContent(body).items();
+		assertEquals(tree.path("choices").path(0).path("message").path("content").asText(), contents.get(0));
+		assertEquals(List.of("The HP-35 was released in 1972.", "Second choice"), contents);
+	}
+
+	@Test
+	void anthropicContentIsEveryTextBlock() throws Exception {
+		byte[] body = json("""
+			{"id": "msg_1", "type": "message", "role": "assistant",
+			 "content": [
+			  {"type": "text", "text": "The HP-35 ", "citations": [{"text": "decoy"}]},
+			  {"type": "tool_use", "id": "toolu_1", "input": {"text": "decoy"}},
+			  {"type": "text", "text": "was released in 1972."}
+			 ],
+			 "stop_reason": "end_turn", "usage": {"input_tokens": 10, "output_tokens": 8}}
+			""");
+
+		List<String> tree = new ArrayList<>();
+		for (JsonNode block : objectMapper.readTree(body).path("content")) {
+			if (block.path("text").isTextual()) {
+				tree.add(block.path("text").asText());
+			}
+		}
+		assertEquals(tree, ProviderResponseDecoder.anthropicContent(body).items());
+	}
+
+	@Test
+	void errorBodiesReportTheProviderMessage() throws Exception {
+		byte[] google = json("""
+			{"error": {"code": 429, "message": "Quota exceeded for quota metric 'Queries'",
+			 "errors": [{"message": "decoy", "domain": "usageLimits"}], "status": "RESOURCE_EXHAUSTED"}}
+			""");
+		ProviderResponseDecoder.Decoded<WebSearchService.SearchResult> decoded =
+			ProviderResponseDecoder.googleResults(google, null);
+		assertEquals(objectMapper.readTree(google).path("error").path("message").asText(), decoded.error());
+		assertTrue(decoded.items().isEmpty());
+		assertEquals(0, decoded.total());
+
+		assertEquals("Invalid API key", ProviderResponseDecoder.openAIContent(json("""
+			{"error": {"type": "invalid_request_error", "message": "Invalid API key"}}
+			""")).error());
+		assertEquals("subscription expired", ProviderResponseDecoder.braveImages(json("""
+			{"error": "subscription expired"}
+			"""), null).error());
+		assertEquals("unknown error", ProviderResponseDecoder.bingImages(json("""
+			{"error": {"code": "InvalidRequest"}}
+			"""), null).error());
+		// An error next to results still returns the results
+		ProviderResponseDecoder.Decoded<WebSearchService.ImageSearchResult> partial = ProviderResponseDecoder.braveImages(json("""
+			{"error": {"message": "partial"}, "results": [{"url": "https://img.example.org/a.jpg"}]}
+			"""), null);
+		assertEquals("partial", partial.error());
+		assertEquals(1, partial.items().size());
+	}
+
+	@Test
+	void missingFieldsAndPathsDecodeAsEmpty() throws Exception {
+		assertEmpty(ProviderResponseDecoder.googleResults(null, null));
+		assertEmpty(ProviderResponseDecoder.googleResults(new byte[0], null));
+		assertEmpty(ProviderResponseDecoder.googleResults(json("{}"), null));
+		assertEmpty(ProviderResponseDecoder.googleResults(json("[{\"items\": []}]"), null));
+		assertEmpty(ProviderResponseDecoder.bingResults(json("{\"webPages\": {\"totalEstimatedMatches\": 0}}"), null));
+		assertEmpty(ProviderResponseDecoder.braveResults(json("{\"web\": null}"), null));
+		assertEmpty(ProviderResponseDecoder.braveResults(json("{\"web\": {\"results\": null}}"), null));
+		ProviderResponseDecoder.Decoded<String> noContent =
+			ProviderResponseDecoder.openAIContent(json("{\"choices\": [{\"message\": {\"role\": \"assistant\"}}]}"));
+		assertTrue(noContent.items().isEmpty());
+		assertEquals(1, noContent.total());
+
+		byte[] body = json("{\"items\": [{}]}");
+		WebSearchService.SearchResult empty = ProviderResponseDecoder.googleResults(body, null).items().get(0);
+		assertWebResults(treeResults(body, "items", null, "title", "link", "snippet", null),
+			ProviderResponseDecoder.googleResults(body, null), 1);
+		assertNull(empty.getTitle());
+		assertNull(empty.getUrl());
+		assertNull(empty.getSnippet());
+	}
+
+	@Test
+	void unexpectedTokensAreSkippedOrReadAsNull() throws Exception {
+		byte[] body = json("""
+			{"web": {"results": [
+			  "not an object", 42, null, ["nested", {"title": "inside an array"}],
+			  {"title": 35, "url": ["https://example.org/a", "https://example.org/b"], "description": {"text": "object"}},
+			  {"title": "HP-35 calculator", "url": "https://example.org/hp35", "description": true}
+			 ]}}
+			""");
+		ProviderResponseDecoder.Decoded<ProviderResponseDecoder.BraveWebResult> decoded =
+			ProviderResponseDecoder.braveWebResults(body);
+		assertEquals(List.of(new ProviderResponseDecoder.BraveWebResult(null, null, null),
+			new ProviderResponseDecoder.BraveWebResult("HP-35 calculator", "https://example.org/hp35", null)), decoded.items());
+		assertEquals(2, decoded.total());
+		assertWebResults(treeResults(body, "web", "results", "title", "url", "description", null),
+			ProviderResponseDecoder.braveResults(body, null), 2);
+
+		// A path segment of the wrong type is skipped, including everything below it
+		assertEmpty(ProviderResponseDecoder.bingResults(json("""
+			{"webPages": [{"value": [{"name": "decoy"}]}], "value": [{"name": "decoy"}]}
+			"""), null));
+		assertEmpty(ProviderResponseDecoder.braveImages(json("{\"results\": {\"url\": \"https://example.org/a.jpg\"}}"), null));
+
+		// Image details and dimensions of the wrong type
+		WebSearchService.ImageSearchResult image = ProviderResponseDecoder.googleImages(json("""
+			{"items": [{"link": "https://img.example.org/a.jpg", "displayLink": "example.org", "image": "broken"}]}
+			"""), null).items().get(0);
+		assertEquals("https://img.example.org/a.jpg", image.getThumbnailUrl());
+		assertEquals("example.org", image.getSourceUrl());
+		WebSearchService.ImageSearchResult sized = ProviderResponseDecoder.bingImages(json("""
+			{"value": [{"contentUrl": "https://img.example.org/a.jpg", "width": "1600", "height": {"px": 1200}}]}
+			"""), null).items().get(0);
+		assertNull(sized.getWidth());
+		assertNull(sized.getHeight());
+
+		assertThrows(IllegalStateException.class, () -> ProviderResponseDecoder.googleResults(json("{\"items\": [{\"title\": "), null));
+	}
+
+	// Reference decoding over an ObjectMapper tree
+
+	private List<WebSearchService.SearchResult> treeResults(byte[] body, String field, String nested, String title,
+			String url, String snippet, WebSearchService.RelevanceFilter filter) throws Exception {
+		JsonNode array = objectMapper.readTree(body).path(field);
+		if (nested != null) {
+			array = array.path(nested);
+		}
+		List<WebSearchService.SearchResult> results = new ArrayList<>();
+		for (JsonNode item : array) {
+			if (!item.isObject()) {
+				continue;
+			}
+			WebSearchService.SearchResult result = new WebSearchService.SearchResult();
+			result.setTitle(text(item, title));
+			result.setUrl(text(item, url));
+			result.setSnippet(text(item, snippet));
+			if (filter == null || filter.accepts(result.getTitle(), result.getSnippet(), result.getUrl())) {
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
+	private List<WebSearchService.ImageSearchResult> treeGoogleImages(byte[] body,
+			WebSearchService.RelevanceFilter filter) throws Exception {
+		return treeImages(body, "items", "link", item -> {
+			JsonNode image = item.path("image");
+			if (image.isObject()) {
+				return image(text(item, "link"), text(image, "thumbnailLink"), text(item, "title"),
+					text(image, "contextLink"), integer(image, "width"), integer(image, "height"), "Google");
+			}
+			return image(text(item, "link"), text(item, "link"), text(item, "title"), text(item, "displayLink"),
+				null, null, "Google");
+		}, filter);
+	}
+
+	private List<WebSearchService.ImageSearchResult> treeImages(byte[] body, String field, String urlField,
+			Function<JsonNode, WebSearchService.ImageSearchResult> convert, WebSearchService.RelevanceFilter filter)
+			throws Exception {
+		List<WebSearchService.ImageSearchResult> results = new ArrayList<>();
+		for (JsonNode item : objectMapper.readTree(body).path(field)) {
+			String url = text(item, urlField);
+			if (url == null || url.trim().isEmpty()) {
+				continue;
+			}
+			WebSearchService.ImageSearchResult result = convert.apply(item);
+			if (filter == null || filter.accepts(result.getTitle(), result.getSourceUrl(), result.getImageUrl())) {
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
+	private static String text(JsonNode node, String field) {
+		JsonNode value = node.path(field);
+		return value.isTextual() ? value.asText() : null;
+	}
+
+	private static Integer integer(JsonNode node, String field) {
+		JsonNode value = node.path(field);
+		return value.isNumber() ? value.intValue() : null;
+	}
+
+	private static WebSearchService.ImageSearchResult image(String imageUrl, String thumbnailUrl, String title,
+			String sourceUrl, Integer width, Integer height, String source) {
+		WebSearchService.ImageSearchResult result = new WebSearchService.ImageSearchResult();
+		result.setImageUrl(imageUrl);
+		result.setThumbnailUrl(thumbnailUrl);
+		result.setTitle(title);
+		result.setSourceUrl(sourceUrl);
+		result.setWidth(width);
+		result.setHeight(height);
+		result.setSource(source);
+		return result;
+	}
+
+	private static void assertWebResults(List<WebSearchService.SearchResult> expected,
+			ProviderResponseDecoder.Decoded<WebSearchService.SearchResult> decoded, int total) {
+		assertEquals(describeResults(expected), describeResults(decoded.items()));
+		assertEquals(total, decoded.total());
+		assertNull(decoded.error());
+	}
+
+	private static void assertImages(List<WebSearchService.ImageSearchResult> expected,
+			ProviderResponseDecoder.Decoded<WebSearchService.ImageSearchResult> decoded, int total) {
+		assertEquals(describeImages(expected), describeImages(decoded.items()));
+		assertEquals(total, decoded.total());
+		assertNull(decoded.error());
+	}
+
+	private static void assertEmpty(ProviderResponseDecoder.Decoded<?> decoded) {
+		assertTrue(decoded.items().isEmpty());
+		assertEquals(0, decoded.total());
+		assertNull(decoded.error());
+	}
+
+	private static List<String> describeResults(List<WebSearchService.SearchResult> results) {
+		return results.stream().map(result -> result.getTitle() + " | " + result.getUrl() + " | " + result.getSnippet())
+			.toList();
+	}
+
+	private static List<String> describeImages(List<WebSearchService.ImageSearchResult> results) {
+		return results.stream().map(result -> String.join(" | ", result.getImageUrl(), result.getThumbnailUrl(),
+			result.getTitle(), result.getSourceUrl(), String.valueOf(result.getWidth()),
+			String.valueOf(result.getHeight()), result.getSource())).toList();
+	}
+
+	private static byte[] json(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+}
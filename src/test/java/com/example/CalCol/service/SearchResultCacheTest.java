@@ -0,0 +1,188 @@
+package com.example.CalCol.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Memory and disk tiers of the search result cache
+ */
+class SearchResultCacheTest {
+
+	private static final TypeReference<List<WebSearchService.SearchResult>> SEARCH_RESULTS = new TypeReference<>() {};
+	private static final TypeReference<WebSearchService.BraveAIResult> BRAVE_AI_RESULT = new TypeReference<>() {};
+
+	@TempDir
+	Path cacheDir;
+
+	@Test
+	void hitAfterPutAndMissOtherwise() {
+		SearchResultCache cache = cache(10);
+
+		assertNull(cache.get("google", "web/5", "HP-35 calculator", SEARCH_RESULTS));
+		cache.put("google", "web/5", "HP-35 calculator", List.of(result("HP-35")));
+
+		// Equivalent spelling hits; another operation or provider misses
+		assertEquals("HP-35", cache.get("google", "web/5", "  hp-35   CALCULATOR", SEARCH_RESULTS).get(0).getTitle());
+		assertNull(cache.get("google", "web/10", "HP-35 calculator", SEARCH_RESULTS));
+		assertNull(cache.get("bing", "web/5", "HP-35 calculator", SEARCH_RESULTS));
+		assertEquals(1.0 / 4, cache.getHitRatio());
+	}
+
+	@Test
+	void entriesExpireAfterTheTtl() throws Exception {
+		SearchResultCache cache = cache(10);
+		ReflectionTestUtils.setField(cache, "ttlHours", 0L);
+		cache.put("google", "web/5", "HP-35 calculator", List.of(result("HP-35")));
+		Thread.sleep(5);
+
+		assertNull(cache.get("google", "web/5", "HP-35 calculator", SEARCH_RESULTS));
+		// The expired disk entry is deleted on the way
+		assertEquals(0, diskEntries());
+	}
+
+	@Test
+	void emptyResultsExpireAfterTheShortEmptyTtl() throws Exception {
+		SearchResultCache cache = cache(10);
+		ReflectionTestUtils.setField(cache, "emptyTtlMinutes", 0L);
+		cache.put("google", "web/5", "HP-35 calculator", List.of(result("HP-35")));
+		cache.put("google", "web/5", "HP-99 calculator", List.of());
+		Thread.sleep(5);
+
+		assertEquals(1, cache.get("google", "web/5", "HP-35 calculator", SEARCH_RESULTS).size());
+		assertNull(cache.get("google", "web/5", "HP-99 calculator", SEARCH_RESULTS));
+		// Also when read back from disk, e.g. after a restart
+		SearchResultCache restarted = cache(10);
+		ReflectionTestUtils.setField(restarted, "emptyTtlMinutes", 0L);
+		cache.put("google", "web/5", "HP-99 calculator", List.of());
+		Thread.sleep(5);
+		assertNull(restarted.get("google", "web/5", "HP-99 calculator", SEARCH_RESULTS));
+		assertEquals(1, diskEntries());
+
+		// Within the empty TTL the empty answer is served, saving the call
+		SearchResultCache fresh = cache(10);
+		fresh.put("google", "web/5", "HP-99 calculator", List.of());
+		assertEquals(List.of(), fresh.get("google", "web/5", "HP-99 calculator", SEARCH_RESULTS));
+	}
+
+	@Test
+	void diskTierServesWhatMemoryNoLongerHolds() {
+		SearchResultCache first = cache(1);
+		first.put("brave", "web/5", "HP-35 calculator", List.of(result("HP-35")));
+		first.put("brave", "web/5", "HP-45 calculator", List.of(result("HP-45")));
+
+		// Evicted from the one-entry memory tier, still on disk
+		assertEquals("HP-35", first.get("brave", "web/5", "HP-35 calculator", SEARCH_RESULTS).get(0).getTitle());
+		// A new instance (e.g. after a restart) starts with an empty memory tier
+		SearchResultCache second = cache(10);
+		assertEquals("HP-45", second.get("brave", "web/5", "HP-45 calculator", SEARCH_RESULTS).get(0).getTitle());
+	}
+
+	@Test
+	void callersGetTheirOwnCopies() {
+		SearchResultCache cache = cache(10);
+		List<WebSearchService.SearchResult> stored = new ArrayList<>(List.of(result("HP-35")));
+		cache.put("google", "web/5", "HP-35 calculator", stored);
+		stored.get(0).setTitle("changed after put");
+		stored.clear();
+
+		List<WebSearchService.SearchResult> first = cache.get("google", "web/5", "HP-35 calculator", SEARCH_RESULTS);
+		first.get(0).setTitle("changed by the first caller");
+		first.add(result("added by the first caller"));
+		List<WebSearchService.SearchResult> second = cache.get("google", "web/5", "HP-35 calculator", SEARCH_RESULTS);
+
+		assertNotSame(first, second);
+		assertEquals(1, second.size());
+		assertEquals("HP-35", second.get(0).getTitle());
+
+		WebSearchService.BraveAIResult ai = new WebSearchService.BraveAIResult();
+		ai.setModel("HP-35");
+		ai.setStructuredData(new HashMap<>(Map.of("Year", "1972")));
+		cache.put("brave", "ai", "HP HP-35", ai);
+		cache.get("brave", "ai", "HP HP-35", BRAVE_AI_RESULT).getStructuredData().put("Year", "changed");
+		assertEquals("1972", cache.get("brave", "ai", "HP HP-35", BRAVE_AI_RESULT).getStructuredData().get("Year"));
+	}
+
+	@Test
+	void sweepRemovesExpiredThenOldestEntries() throws IOException {
+		SearchResultCache cache = cache(10);
+		ReflectionTestUtils.setField(cache, "diskMaxEntries", 2);
+		for (int i = 0; i < 5; i++) {
+			cache.put("google", "web/5", "query " + i, List.of(result("result " + i)));
+		}
+		// Entry 0 is past the TTL, entries 1 to 4 were stored in that order
+		List<Path> files = diskFiles();
+		Instant now = Instant.now();
+		for (int i = 0; i < 5; i++) {
+			Path file = diskFile(files, "query " + i);
+			Duration age = i == 0 ? Duration.ofHours(200) : Duration.ofMinutes(10 - i);
+			Files.setLastModifiedTime(file, FileTime.from(now.minus(age)));
+		}
+
+		cache.sweepDisk();
+
+		assertEquals(2, diskEntries());
+		SearchResultCache restarted = cache(10);
+		for (int i = 0; i < 3; i++) {
+			assertNull(restarted.get("google", "web/5", "query " + i, SEARCH_RESULTS));
+		}
+		assertEquals("result 4", restarted.get("google", "web/5", "query 4", SEARCH_RESULTS).get(0).getTitle());
+	}
+
+	private SearchResultCache cache(int memoryMaxEntries) {
+		SearchResultCache cache = new SearchResultCache(new SimpleMeterRegistry(), memoryMaxEntries);
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "cacheDir", cacheDir.toString());
+		ReflectionTestUtils.setField(cache, "ttlHours", 168L);
+		ReflectionTestUtils.setField(cache, "emptyTtlMinutes", 30L);
+		ReflectionTestUtils.setField(cache, "diskMaxEntries", 1000);
+		return cache;
+	}
+
+	/**
+	 * The disk file of a query, found by the key stored in it
+	 */
+	private static Path diskFile(List<Path> files, String query) throws IOException {
+		for (Path file : files) {
+			if (Files.readString(file).contains("\"google|web/5|" + query + "\"")) {
+				return file;
+			}
+		}
+		throw new IllegalStateException("No disk entry for " + query);
+	}
+
+	private List<Path> diskFiles() throws IOException {
+		try (Stream<Path> files = Files.walk(cacheDir)) {
+			return files.filter(file -> file.toString().endsWith(".json")).toList();
+		}
+	}
+
+	private long diskEntries() throws IOException {
+		return diskFiles().size();
+	}
+
+	private static WebSearchService.SearchResult result(String title) {
+		WebSearchService.SearchResult result = new WebSearchService.SearchResult();
+		result.setTitle(title);
+		result.setUrl("https://example.org/" + title.replace(' ', '-'));
+		return result;
+	}
+}
@@ -0,0 +1,133 @@
+package com.example.CalCol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Merging of overlapping results from several search providers
+ */
+class SearchResultMergerTest {
+
+	private static final String SNIPPET = "The HP-35 was Hewlett-Packard's first pocket calculator and the world's "
+		+ "first handheld scientific calculator, introduced in 1972 at a price of 395 dollars.";
+
+	private SearchResultMerger merger;
+
+	@BeforeEach
+	void setUp() {
+		merger = new SearchResultMerger();
+		ReflectionTestUtils.setField(merger, "maxDistance", 6);
+		ReflectionTestUtils.setField(merger, "imageMaxDistance", 16);
+	}
+
+	@Test
+	void canonicalizesTrivialUrlDifferences() {
+		String canonical = SearchResultMerger.canonicalUrl("https://www.hpmuseum.org/hp35.htm", Set.of());
+
+		assertEquals("hpmuseum.org/hp35.htm", canonical);
+		assertEquals(canonical, SearchResultMerger.canonicalUrl("http://HPMuseum.org:80/hp35.htm#top", Set.of()));
+		assertEquals(canonical, SearchResultMerger.canonicalUrl(
+			"https://www.hpmuseum.org/hp35.htm?utm_source=bing&fbclid=abc", Set.of()));
+		assertEquals(SearchResultMerger.canonicalUrl("https://example.org/calculators", Set.of()),
+			SearchResultMerger.canonicalUrl("https://example.org/calculators/index.html", Set.of()));
+		assertEquals("example.org/search?a=1&q=hp35",
+			SearchResultMerger.canonicalUrl("https://example.org/search/?q=hp35&a=1&utm_medium=x", Set.of()));
+		// Path case is significant
+		assertNotEquals(canonical, SearchResultMerger.canonicalUrl("https://www.hpmuseum.org/HP35.htm", Set.of()));
+	}
+
+	@Test
+	void foldsImageRenditions() {
+		String key = SearchResultMerger.imageKey("https://img.example.org/photos/hp-35.jpg");
+
+		assertEquals(key, SearchResultMerger.imageKey("https://img.example.org/photos/hp-35-300x200.jpg"));
+		assertEquals(key, SearchResultMerger.imageKey("https://img.example.org/photos/hp-35_thumb.jpg?w=300&h=200"));
+		assertNotEquals(key, SearchResultMerger.imageKey("https://img.example.org/photos/hp-45.jpg"));
+		assertTrue(Long.bitCount(SearchResultMerger.urlFingerprint(key)
+			^ SearchResultMerger.urlFingerprint(SearchResultMerger.imageKey("https://other-site.net/images/hp-35.jpg"))) > 16);
+	}
+
+	@Test
+	void mergesDuplicateWebResultsKeepingBestRankedCopy() {
+		Map<String, List<WebSearchService.SearchResult>> byProvider = new LinkedHashMap<>();
+		byProvider.put("google", List.of(
+			web("HP-35 - HP Museum", "https://www.hpmuseum.org/hp35.htm", SNIPPET),
+			web("Slide rules", "https://example.org/slide-rules", "A collection of slide rules.")));
+		byProvider.put("bing", List.of(
+			web("HP 35 calculator", "https://example.com/hp35", "Photos and manuals for the HP 35."),
+			web("HP-35", "http://hpmuseum.org/hp35.htm?utm_source=bing", "Other snippet")));
+		// Same text under another URL, cut short by the provider
+		byProvider.put("brave", List.of(
+			web("HP-35 - HP Museum", "https://mirror.example.net/hp35", SNIPPET.replace(" of 395 dollars.", " ..."))));
+
+		List<WebSearchService.SearchResult> merged = merger.mergeWeb(byProvider);
+
+		assertEquals(3, merged.size());
+		WebSearchService.SearchResult museum = merged.get(0);
+		assertEquals("https://www.hpmuseum.org/hp35.htm", museum.getUrl());
+		assertEquals(List.of("Google", "Brave", "Bing"), museum.getProviders());
+		assertEquals("https://example.com/hp35", merged.get(1).getUrl());
+		assertEquals(List.of("Bing"), merged.get(1).getProviders());
+		assertEquals("https://example.org/slide-rules", merged.get(2).getUrl());
+		// Inputs are not modified
+		assertTrue(byProvider.get("google").get(0).getProviders().isEmpty());
+	}
+
+	@Test
+	void mergesImageRenditionsAcrossProviders() {
+		Map<String, List<WebSearchService.ImageSearchResult>> byProvider = new LinkedHashMap<>();
+		byProvider.put("bing", List.of(image("https://img.example.org/photos/hp-35-1024x768.jpg", "Bing")));
+		byProvider.put("google", List.of(image("https://img.example.org/photos/hp-35.jpg", "Google"),
+			image("https://img.example.org/photos/hp-45.jpg", "Google")));
+		// The same file from another host of the site, and a same-named file on another site
+		byProvider.put("brave", List.of(image("https://cdn.example.org/photos/large/hp-35.jpg", "Brave"),
+			image("https://other-site.net/images/hp-35.jpg", "Brave")));
+
+		List<WebSearchService.ImageSearchResult> merged = merger.mergeImages(byProvider);
+
+		assertEquals(3, merged.size());
+		assertEquals("Bing", merged.get(0).getSource());
+		assertEquals(List.of("Bing", "Google", "Brave"), merged.get(0).getProviders());
+		assertEquals("https://img.example.org/photos/hp-45.jpg", merged.get(1).getImageUrl());
+		assertEquals("https://other-site.net/images/hp-35.jpg", merged.get(2).getImageUrl());
+	}
+
+	@Test
+	void fingerprintsOnlyTextsLongEnough() {
+		assertNull(SearchResultMerger.fingerprint("HP-35 calculator"));
+		long original = SearchResultMerger.fingerprint(SNIPPET);
+		long edited = SearchResultMerger.fingerprint(SNIPPET.replace("1972", "1972."));
+		long other = SearchResultMerger.fingerprint("Texas Instruments SR-50, an early scientific calculator "
+			+ "with algebraic entry sold from 1974 onwards.");
+
+		assertEquals(original, edited);
+		assertTrue(Long.bitCount(original ^ other) > 6);
+	}
+
+	private static WebSearchService.SearchResult web(String title, String url, String snippet) {
+		WebSearchService.SearchResult result = new WebSearchService.SearchResult();
+		result.setTitle(title);
+		result.setUrl(url);
+		result.setSnippet(snippet);
+		return result;
+	}
+
+	private static WebSearchService.ImageSearchResult image(String url, String source) {
+		WebSearchService.ImageSearchResult result = new WebSearchService.ImageSearchResult();
+		result.setImageUrl(url);
+		result.setTitle("HP-35");
+		result.setSource(source);
+		return result;
+	}
+}
@@ -0,0 +1,144 @@
+package com.example.CalCol.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs spec extraction over a synthetic catalog, comparing the previous inline extraction
+ * (patterns compiled for every text) with the precompiled engine.
+ * Run with {@code mvn test -Dtest=SpecExtractionBenchmarkTest -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SpecExtractionBenchmarkTest {
+
+	private static final int CALCULATORS = 5000;
+	private static final int TEXTS_PER_CALCULATOR = 12;
+	private static final int ITERATIONS = 5;
+
+	private static final String[] DISPLAYS = {"LED", "VFD", "LCD", "vacuum fluorescent"};
+	private static final String[] LOGIC = {"RPN", "algebraic", "AOS", "reverse Polish"};
+	private static final String FILLER = " Further reading on calculator history and related models follows in the article text.";
+
+	@Test
+	void extractOverCatalog() {
+		List<List<String>> catalog = buildCatalog();
+		SpecExtractionEngine engine = new SpecExtractionEngine();
+
+		// Warm up and check both paths agree on the specs the old code produced
+		for (int i = 0; i < 200; i++) {
+			Map<String, String> legacy = legacyExtract(catalog.get(i));
+			Map<String, String> current = engine.extract(catalog.get(i)).getSpecs();
+			assertEquals(legacy.get("Display Type"), current.get("Display Type"));
+			assertEquals(legacy.get("Resolution"), current.get("Resolution"));
+		}
+
+		long legacyNanos = time(() -> catalog.forEach(SpecExtractionBenchmarkTest::legacyExtract));
+		int[] withAttributes = new int[1];
+		long engineNanos = time(() -> {
+			withAttributes[0] = 0;
+			for (List<String> texts : catalog) {
+				if (engine.extract(texts).hasAttributes()) {
+					withAttributes[0]++;
+				}
+			}
+		});
+
+		assertTrue(withAttributes[0] > 0);
+		System.out.printf("Spec extraction over %d calculators x %d texts, %d iterations%n",
+			CALCULATORS, TEXTS_PER_CALCULATOR, ITERATIONS);
+		System.out.printf("  inline, compiled per text: %6d ms/catalog%n", legacyNanos / 1_000_000 / ITERATIONS);
+		System.out.printf("  precompiled engine:        %6d ms/catalog (%d with typed attributes)%n",
+			engineNanos / 1_000_000 / ITERATIONS, withAttributes[0]);
+	}
+
+	private static long time(Runnable operation) {
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			operation.run();
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static List<List<String>> buildCatalog() {
+		Random random = new Random(42);
+		List<List<String>> catalog = new ArrayList<>();
+		for (int c = 0; c < CALCULATORS; c++) {
+			String model = "Model " + c;
+			List<String> texts = new ArrayList<>();
+			for (int t = 0; t < TEXTS_PER_CALCULATOR; t++) {
+				String text = switch (random.nextInt(7)) {
+					case 0 -> "The " + model + " was introduced in " + (1965 + random.nextInt(30)) + " with a "
+						+ (6 + random.nextInt(8)) + "-digit " + DISPLAYS[random.nextInt(DISPLAYS.length)] + " display.";
+					case 1 -> "It uses " + LOGIC[random.nextInt(LOGIC.length)] + " logic and runs on 4 x AA batteries.";
+					case 2 -> "Measuring " + (120 + random.nextInt(60)) + " x " + (70 + random.nextInt(20)) + " x "
+						+ (15 + random.nextInt(20)) + " mm, it fits in a shirt pocket.";
+					case 3 -> "Retail price of $" + (50 + random.nextInt(400)) + " at launch.";
+					case 4 -> "Collectors value the " + model + " for its build quality; see the museum page for photos.";
+					case 5 -> "A solar powered variant with an LCD display followed later.";
+					default -> "<b>Processor</b>: custom chip, firmware version unknown.";
+				};
+				texts.add(text + FILLER);
+			}
+			catalog.add(texts);
+		}
+		return catalog;
+	}
+
+	/**
+	 * Spec extraction as it was inlined in EnrichmentService.saveEnrichment
+	 */
+	private static Map<String, String> legacyExtract(List<String> textSources) {
+		Map<String, String> technicalSpecs = new LinkedHashMap<>();
+		for (String text : textSources) {
+			java.util.regex.Matcher displayMatcher = java.util.regex.Pattern.compile(
+				"(?i)\\b(lcd|led|vfd|oled|vacuum\\s+fluorescent|dot\\s+matrix|segmented)\\b").matcher(text);
+			if (displayMatcher.find() && !technicalSpecs.containsKey("Display Type")) {
+				technicalSpecs.put("Display Type", displayMatcher.group(1).toUpperCase());
+			}
+			java.util.regex.Matcher widthMatcher = java.util.regex.Pattern.compile(
+				"(?i)(?:display|screen|width|size)[^\\d]*(\\d+)\\s*(?:digit|char|character|dot|pixel|segments?|\\s*x\\s*\\d+)")
+				.matcher(text);
+			if (widthMatcher.find() && !technicalSpecs.containsKey("Display Width")) {
+				technicalSpecs.put("Display Width", widthMatcher.group(1) + " digits/characters");
+			}
+			java.util.regex.Matcher resolutionMatcher = java.util.regex.Pattern.compile(
+				"(?i)(\\d+)\\s*x\\s*(\\d+)\\s*(?:pixel|dot|resolution)").matcher(text);
+			if (resolutionMatcher.find() && !technicalSpecs.containsKey("Resolution")) {
+				technicalSpecs.put("Resolution", resolutionMatcher.group(1) + "x" + resolutionMatcher.group(2));
+			}
+			java.util.regex.Matcher processorMatcher = java.util.regex.Pattern.compile(
+				"(?i)\\b(cpu|processor|microprocessor|chip|ic|integrated\\s+circuit)[^\\w]*(?:type|model|name)?[^\\w]*([A-Z0-9\\-]+)")
+				.matcher(text);
+			if (processorMatcher.find() && !technicalSpecs.containsKey("Processor")) {
+				technicalSpecs.put("Processor", processorMatcher.group(2));
+			}
+			java.util.regex.Matcher osMatcher = java.util.regex.Pattern.compile(
+				"(?i)\\b(os|operating\\s+system|firmware|rom|software)[^\\w]*(?:version|type|name)?[^\\w]*([A-Z0-9\\-\\.]+)")
+				.matcher(text);
+			if (osMatcher.find() && !technicalSpecs.containsKey("OS/Firmware")) {
+				technicalSpecs.put("OS/Firmware", osMatcher.group(2));
+			}
+			if (text.toLowerCase().contains("batter") && !technicalSpecs.containsKey("Power Supply")) {
+				technicalSpecs.put("Power Supply", "Batteries");
+			} else if (text.toLowerCase().contains("solar") && !technicalSpecs.containsKey("Power Supply")) {
+				technicalSpecs.put("Power Supply", "Solar powered");
+			}
+			java.util.regex.Matcher dateMatcher = java.util.regex.Pattern.compile(
+				"(?i)(introduced|released|discontinued|manufactured|produced)\\s+(?:in\\s+)?(\\d{4})")
+				.matcher(text.replaceAll("<[^>]+>", "").replaceAll("\\s+", " "));
+			while (dateMatcher.find()) {
+				technicalSpecs.putIfAbsent("fact:" + dateMatcher.group(2), dateMatcher.group(1));
+			}
+		}
+		return technicalSpecs;
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.CalCol.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Typed attributes, specs and facts extracted from enrichment text
+ */
+class SpecExtractionEngineTest {
+
+	private final SpecExtractionEngine engine = new SpecExtractionEngine();
+
+	@Test
+	void convertsDimensionsToMillimetres() {
+		SpecExtractionEngine.Extraction centimetres = engine.extract(List.of("It measures 15 x 8.1 x 3 cm."));
+		assertEquals(150.0, centimetres.getLengthMm());
+		assertEquals(81.0, centimetres.getWidthMm());
+		assertEquals(30.0, centimetres.getDepthMm());
+		// The spec keeps the unit of the source
+		assertEquals("15 x 8.1 x 3 cm", centimetres.getSpecs().get("Dimensions"));
+
+		SpecExtractionEngine.Extraction inches = engine.extract(List.of("Case: 5.8 x 3.2 x 1.3 inches"));
+		assertEquals(147.3, inches.getLengthMm());
+		assertEquals(81.3, inches.getWidthMm());
+		assertEquals(33.0, inches.getDepthMm());
+
+		SpecExtractionEngine.Extraction millimetres = engine.extract(List.of("147 × 81 × 34 mm, 250 g"));
+		assertEquals(147.0, millimetres.getLengthMm());
+		assertEquals(34.0, millimetres.getDepthMm());
+	}
+
+	@Test
+	void skipsValuesOutsideTheirRange() {
+		// 99 digits is a precision, not a display; 100 is not a digit count at all
+		SpecExtractionEngine.Extraction extraction = engine.extract(List.of(
+			"Computes pi to 100 digits and 99 digits internally, but shows 10 digits on its LED display."));
+		assertEquals(10, extraction.getDisplayDigits());
+		assertEquals(SpecExtractionEngine.DISPLAY_LED, extraction.getDisplayType());
+
+		// Only introduction or release dates count as the year
+		SpecExtractionEngine.Extraction dates = engine.extract(List.of(
+			"Discontinued in 1983 after it was introduced in 1972 at a retail price of $395."));
+		assertEquals(1972, dates.getIntroducedYear());
+		assertEquals(List.of("Discontinued 1983", "introduced 1972", "Retail price: $395"), List.copyOf(dates.getFacts()));
+	}
+
+	@Test
+	void leavesMissingValuesEmpty() {
+		SpecExtractionEngine.Extraction extraction = engine.extract(Arrays.asList(null, "", "A handsome pocket calculator."));
+
+		assertFalse(extraction.hasAttributes());
+		assertNull(extraction.getDisplayType());
+		assertNull(extraction.getDisplayDigits());
+		assertNull(extraction.getPowerSource());
+		assertNull(extraction.getLogic());
+		assertNull(extraction.getLengthMm());
+		assertNull(extraction.getIntroducedYear());
+		assertTrue(extraction.getSpecs().isEmpty());
+		assertTrue(extraction.getFacts().isEmpty());
+		assertFalse(engine.extract((SocialMediaPostService.EnrichmentData) null).hasAttributes());
+
+		// A battery without a count is still a power source
+		SpecExtractionEngine.Extraction battery = engine.extract(List.of("Powered by a battery."));
+		assertEquals(SpecExtractionEngine.POWER_BATTERY, battery.getPowerSource());
+		assertEquals("Batteries", battery.getSpecs().get("Power Supply"));
+	}
+
+	@Test
+	void firstSourceWinsAndValuesAreNormalized() {
+		WebSearchService.SearchResult web = new WebSearchService.SearchResult();
+		web.setSnippet("<b>Vacuum fluorescent</b> display &amp; RPN entry, runs on 3 x AA batteries");
+		AISearchService.AISearchResult ai = new AISearchService.AISearchResult();
+		ai.setContent("An LCD model with algebraic entry and 12 digits, solar powered");
+		SocialMediaPostService.EnrichmentData enrichment = new SocialMediaPostService.EnrichmentData();
+		enrichment.setWebResults(List.of(web));
+		enrichment.setAiContent(ai);
+
+		assertEquals(List.of("Vacuum fluorescent display & RPN entry, runs on 3 x AA batteries",
+			"An LCD model with algebraic entry and 12 digits, solar powered"), engine.collectText(enrichment));
+		SpecExtractionEngine.Extraction extraction = engine.extract(enrichment);
+
+		assertEquals(SpecExtractionEngine.DISPLAY_VFD, extraction.getDisplayType());
+		assertEquals("VACUUM FLUORESCENT", extraction.getSpecs().get("Display Type"));
+		assertEquals(SpecExtractionEngine.LOGIC_RPN, extraction.getLogic());
+		assertEquals(SpecExtractionEngine.POWER_BATTERY, extraction.getPowerSource());
+		assertEquals("3x AA", extraction.getSpecs().get("Power Supply"));
+		// Only the second source has a digit count
+		assertEquals(12, extraction.getDisplayDigits());
+	}
+}
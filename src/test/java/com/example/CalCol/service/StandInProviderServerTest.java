@@ -0,0 +1,130 @@
+package com.example.CalCol.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The search, AI and museum services decode what the provider stand-in server answers
+ */
+class StandInProviderServerTest {
+
+	private static final String QUERY = "Hewlett-Packard HP-35";
+
+	private StandInProviderServer server;
+	private MockEnvironment environment;
+	private QuotaService quotaService;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		MockEnvironment serverEnvironment = new MockEnvironment()
+			.withProperty("app.standin.defaults.latency-median-ms", "0")
+			.withProperty("app.standin.openai.latency-median-ms", "0")
+			.withProperty("app.standin.anthropic.latency-median-ms", "0")
+			.withProperty("app.standin.museum.latency-median-ms", "0")
+			.withProperty("app.standin.defaults.stream-chunk-delay-ms", "0")
+			.withProperty("app.standin.defaults.relevant-fraction", "1.0")
+			.withProperty("app.standin.bing.throttle-rate", "1.0");
+		server = new StandInProviderServer(serverEnvironment);
+		server.start();
+
+		environment = new MockEnvironment();
+		for (String provider : StandInProviderServer.PROVIDERS) {
+			environment.setProperty("app.http." + provider + ".base-url", server.getBaseUrl());
+		}
+		quotaService = new QuotaService();
+		// Above 1000 per second the rate limit no longer spaces calls, which the instant stand-in needs
+		for (String provider : List.of("google", "bing", "brave", "ai")) {
+			ReflectionTestUtils.setField(quotaService, provider + "RateLimit", 10_000);
+			ReflectionTestUtils.setField(quotaService, provider + "MonthlyLimit", 1000);
+		}
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	void searchResultsDecode() {
+		WebSearchService webSearchService = new WebSearchService(quotaService,
+			new SearchResultCache(new SimpleMeterRegistry(), 10), new OutboundHttpClients(environment),
+			new ProviderCircuitBreakers(environment));
+		ReflectionTestUtils.setField(webSearchService, "googleApiKey", "standin");
+		ReflectionTestUtils.setField(webSearchService, "googleSearchEngineId", "standin");
+		ReflectionTestUtils.setField(webSearchService, "bingApiKey", "standin");
+		ReflectionTestUtils.setField(webSearchService, "braveApiKey", "standin");
+
+		List<WebSearchService.SearchResult> google = webSearchService.searchGoogle(QUERY, 5);
+		assertEquals(5, google.size());
+		assertTrue(google.get(0).getTitle().contains(QUERY));
+		List<WebSearchService.SearchResult> brave = webSearchService.searchBrave(QUERY, 8);
+		assertEquals(8, brave.size());
+		// Same query, same results at every provider
+		assertEquals(google.get(0).getUrl(), brave.get(0).getUrl());
+		assertEquals(4, webSearchService.searchGoogleImages(QUERY + " calculator", 4).size());
+		assertEquals(6, webSearchService.searchBraveImages(QUERY + " calculator", 6).size());
+		// Every Bing call is throttled with 429
+		assertTrue(webSearchService.searchBing(QUERY, 5).isEmpty());
+		assertTrue(webSearchService.searchBingImages(QUERY + " calculator", 5).isEmpty());
+		assertEquals(2L, server.getRequestCounts().get("bing 429"));
+	}
+
+	@Test
+	void aiAnswersDecodePlainAndStreamed() throws InterruptedException {
+		AISearchService aiSearchService = new AISearchService(quotaService, new OutboundHttpClients(environment),
+			new ProviderCircuitBreakers(environment));
+		ReflectionTestUtils.setField(aiSearchService, "aiApiKey", "standin");
+
+		for (String provider : List.of("openai", "anthropic")) {
+			ReflectionTestUtils.setField(aiSearchService, "aiProvider", provider);
+			List<String> deltas = new ArrayList<>();
+			AISearchService.AISearchResult streamed = aiSearchService.searchWithAI(QUERY, List.of(), List.of(),
+				List.of(), deltas::add);
+			assertTrue(deltas.size() > 1, provider);
+			assertEquals(2, streamed.getLinks().size(), provider);
+		}
+
+		ReflectionTestUtils.setField(aiSearchService, "aiProvider", "openai");
+		ReflectionTestUtils.setField(aiSearchService, "batchMaxItems", 8);
+		ReflectionTestUtils.setField(aiSearchService, "batchMaxPromptTokens", 6000);
+		ReflectionTestUtils.setField(aiSearchService, "batchOutputTokensPerItem", 500);
+		ReflectionTestUtils.setField(aiSearchService, "batchMaxOutputTokens", 4000);
+		// Keep the quota's minimum spacing between AI calls
+		Thread.sleep(10);
+		assertEquals(3, aiSearchService.searchWithAIBatch(List.of(item("1"), item("2"), item("3"))).size());
+	}
+
+	@Test
+	void museumPagesAreScanned() {
+		CalculatorMuseumSearchService museumSearchService = new CalculatorMuseumSearchService(new MuseumIndex(),
+			new OutboundHttpClients(environment), new ProviderCircuitBreakers(environment),
+			CalculatorMuseumSearchService.rebase(CalculatorMuseumSearchService.SITE_ADAPTERS, server.getBaseUrl()),
+			Duration.ofSeconds(5), 2 * 1024 * 1024);
+
+		List<CalculatorMuseumSearchService.MuseumSearchResult> results =
+			museumSearchService.searchMuseums("Hewlett-Packard", "HP-35");
+
+		// Only the sites with a search page get the query; the real site URLs are reported
+		assertEquals(2, results.size());
+		assertTrue(results.stream().allMatch(CalculatorMuseumSearchService.MuseumSearchResult::getFound));
+		assertFalse(results.stream().anyMatch(result -> result.getSiteUrl().contains("127.0.0.1")));
+		assertTrue(server.getRequestCounts().get("museum 200") >= CalculatorMuseumSearchService.SITE_ADAPTERS.size());
+	}
+
+	private static AISearchService.AIBatchItem item(String id) {
+		return new AISearchService.AIBatchItem(id, "Calculator " + id, List.of(), List.of(), List.of());
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.CalCol.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Online migration from the flat upload directory to the sharded layout, and the layout check
+ */
+class UploadLayoutServiceTest {
+
+	private static final String HASH = "3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b";
+
+	@TempDir
+	Path uploadDir;
+
+	private FileStorageService fileStorageService;
+	private UploadLayoutService service;
+
+	@BeforeEach
+	void setUp() {
+		fileStorageService = new FileStorageService(null, null, new LocalStorageBackend());
+		ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+		service = new UploadLayoutService(fileStorageService, null, null);
+		ReflectionTestUtils.setField(service, "migrationEnabled", true);
+		ReflectionTestUtils.setField(service, "batchSize", 2);
+	}
+
+	@Test
+	void movesFlatFilesInBatchesWhileBothLayoutsAreReadable() throws IOException {
+		Files.writeString(uploadDir.resolve(HASH + ".jpg"), "photo");
+		Files.writeString(uploadDir.resolve(HASH + "-thumb.jpg"), "thumbnail");
+		Files.writeString(uploadDir.resolve("legacy-photo.png"), "legacy");
+		Files.writeString(uploadDir.resolve(".upload-123.tmp"), "in progress");
+		assertEquals(uploadDir.resolve(HASH + ".jpg"), fileStorageService.loadFile(HASH + ".jpg"));
+
+		assertEquals(2, service.migrateBatch());
+		assertEquals(1, service.migrateBatch());
+		assertFalse(service.getStatus().isMigrationComplete());
+		assertEquals(0, service.migrateBatch());
+		assertTrue(service.getStatus().isMigrationComplete());
+
+		Path photo = fileStorageService.loadFile(HASH + ".jpg");
+		assertEquals(uploadDir.resolve("3a/7b/" + HASH + ".jpg"), photo);
+		assertEquals("photo", Files.readString(photo));
+		// Renditions share the directory of their upload
+		assertEquals(photo.getParent(), fileStorageService.loadFile(HASH + "-thumb.jpg").getParent());
+		assertEquals("legacy", Files.readString(fileStorageService.loadFile("legacy-photo.png")));
+		assertTrue(Files.exists(uploadDir.resolve(".upload-123.tmp")));
+	}
+
+	@Test
+	void checkFindsAndRepairsMisplacedFiles() throws IOException {
+		// A flat copy left next to its sharded copy, and a file in the wrong shard directory
+		Path sharded = fileStorageService.shardedPath(HASH + ".jpg");
+		FileStorageService.prepareDirectory(sharded);
+		Files.writeString(sharded, "photo");
+		Files.writeString(uploadDir.resolve(HASH + ".jpg"), "photo");
+		Path misplaced = uploadDir.resolve("00/00/" + HASH + ".png");
+		FileStorageService.prepareDirectory(misplaced);
+		Files.writeString(misplaced, "drawing");
+
+		UploadLayoutService.LayoutReport report = new UploadLayoutService.LayoutReport();
+		service.scanFiles(report, true);
+
+		assertEquals(1, report.getFlatFiles());
+		assertEquals(1, report.getShardedFiles());
+		assertEquals(2, report.getMisplacedFiles());
+		assertEquals(2, report.getRepairedFiles());
+		assertFalse(Files.exists(uploadDir.resolve(HASH + ".jpg")));
+		assertEquals("drawing", Files.readString(fileStorageService.shardedPath(HASH + ".png")));
+
+		UploadLayoutService.LayoutReport again = new UploadLayoutService.LayoutReport();
+		service.scanFiles(again, false);
+		assertEquals(0, again.getMisplacedFiles());
+		assertEquals(2, again.getShardedFiles());
+	}
+}
@@ -0,0 +1,169 @@
+package com.example.CalCol.service;
+
+import com.example.CalCol.entity.Calculator;
+import com.example.CalCol.entity.CalculatorImage;
+import com.example.CalCol.entity.Manufacturer;
+import com.example.CalCol.repository.CalculatorImageRepository;
+import com.example.CalCol.repository.CalculatorRepository;
+import com.example.CalCol.repository.ManufacturerRepository;
+import com.example.CalCol.repository.StoredFileRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Orphan uploads go through quarantine, missing uploads and renditions are reconciled
+ */
+@SpringBootTest
+class UploadReconciliationServiceTest {
+
+	private static final String MISSING = "0".repeat(64) + ".jpg";
+
+	@TempDir
+	static Path uploadDir;
+
+	@Autowired
+	private UploadReconciliationService service;
+
+	@Autowired
+	private FileStorageService fileStorageService;
+
+	@Autowired
+	private CalculatorImageRepository imageRepository;
+
+	@Autowired
+	private CalculatorRepository calculatorRepository;
+
+	@Autowired
+	private ManufacturerRepository manufacturerRepository;
+
+	@Autowired
+	private StoredFileRepository storedFileRepository;
+
+	@DynamicPropertySource
+	static void uploadDirectory(DynamicPropertyRegistry registry) {
+		registry.add("app.upload.dir", uploadDir::toString);
+		registry.add("app.uploads.gc.enabled", () -> "false");
+	}
+
+	@Test
+	void quarantinesOrphansRestoresUsedFilesAndReclaimsSpace() throws IOException {
+		Calculator calculator = calculator();
+		String used = fileStorageService.storeFile(upload("hp41.jpg", "HP-41C photo"));
+		List<String> usedRenditions = ImageDerivativeService.derivativePaths(used);
+		Files.writeString(fileStorageService.loadFile(usedRenditions.get(0)), "thumbnail");
+		// Card and full renditions were lost
+		CalculatorImage usedImage = image(calculator, used, usedRenditions);
+		image(calculator, MISSING, null);
+
+		String orphan = fileStorageService.storeFile(upload("ti59.jpg", "TI-59 photo, image row lost"));
+		// The reference was released, but deleting the file failed
+		storedFileRepository.deleteById(orphan);
+		String orphanThumb = ImageDerivativeService.derivativePaths(orphan).get(0);
+		Files.writeString(fileStorageService.loadFile(orphanThumb), "orphan thumbnail");
+		String recent = fileStorageService.storeFile(upload("fx602p.jpg", "FX-602P photo, row not saved yet"));
+		// Stored again long after it was first written: counted, but its image row is not committed yet
+		String pending = fileStorageService.storeFile(upload("hp67.jpg", "HP-67 photo, row not saved yet"));
+		age(used, usedRenditions.get(0), orphan, orphanThumb, pending);
+
+		UploadReconciliationService.ReconciliationReport report = service.reconcile();
+
+		assertEquals(2, report.getQuarantinedFiles());
+		assertFalse(Files.exists(fileStorageService.loadFile(orphan)));
+		assertFalse(Files.exists(fileStorageService.loadFile(orphanThumb)));
+		assertTrue(storedFileRepository.findById(orphan).isEmpty());
+		assertTrue(Files.exists(fileStorageService.loadFile(recent)));
+		assertTrue(Files.exists(fileStorageService.loadFile(pending)));
+		assertEquals(1, storedFileRepository.findById(pending).orElseThrow().getRefCount());
+		assertTrue(Files.exists(fileStorageService.loadFile(used)));
+		assertTrue(Files.exists(fileStorageService.loadFile(usedRenditions.get(0))));
+		assertEquals(1, report.getDanglingImages());
+		assertEquals(1, report.getResetRenditions());
+		assertNull(imageRepository.findById(usedImage.getId()).orElseThrow().getThumbPath());
+
+		// An image turns up that uses the quarantined upload after all
+		image(calculator, orphan, null);
+		report = service.reconcile();
+
+		assertEquals(1, report.getRestoredFiles());
+		assertTrue(Files.exists(fileStorageService.loadFile(orphan)));
+		assertEquals(1, storedFileRepository.findById(orphan).orElseThrow().getRefCount());
+
+		// The orphan rendition is still in quarantine; purge it
+		ReflectionTestUtils.setField(service, "quarantineHours", 0L);
+		try (Stream<Path> runs = Files.list(uploadDir.resolve(UploadReconciliationService.QUARANTINE_DIR))) {
+			for (Path run : runs.toList()) {
+				Files.setLastModifiedTime(run, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+			}
+		}
+		report = service.reconcile();
+		ReflectionTestUtils.setField(service, "quarantineHours", 168L);
+
+		assertEquals(1, report.getPurgedFiles());
+		assertEquals("orphan thumbnail".length(), report.getBytesReclaimed());
+	}
+
+	@Test
+	void renditionsBelongToTheirUpload() {
+		String[] references = {"3a7b.jpg", "legacy.photo.png", "plain"};
+
+		assertTrue(UploadReconciliationService.hasUploadWithBase(references, "3a7b"));
+		assertTrue(UploadReconciliationService.hasUploadWithBase(references, "legacy.photo"));
+		assertTrue(UploadReconciliationService.hasUploadWithBase(references, "plain"));
+		assertFalse(UploadReconciliationService.hasUploadWithBase(references, "legacy"));
+		assertFalse(UploadReconciliationService.hasUploadWithBase(references, "3a7"));
+	}
+
+	private Calculator calculator() {
+		Manufacturer manufacturer = new Manufacturer();
+		manufacturer.setName("Reconciliation Test Instruments");
+		manufacturer = manufacturerRepository.save(manufacturer);
+		Calculator calculator = new Calculator();
+		calculator.setModel("GC-1");
+		calculator.setManufacturer(manufacturer);
+		return calculatorRepository.save(calculator);
+	}
+
+	private CalculatorImage image(Calculator calculator, String imagePath, List<String> renditions) {
+		CalculatorImage image = new CalculatorImage();
+		image.setCalculator(calculator);
+		image.setImagePath(imagePath);
+		image.setUploadedBy("collector");
+		if (renditions != null) {
+			image.setThumbPath(renditions.get(0));
+			image.setCardPath(renditions.get(1));
+			image.setFullPath(renditions.get(2));
+		}
+		return imageRepository.save(image);
+	}
+
+	private void age(String... filenames) throws IOException {
+		FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+		for (String filename : filenames) {
+			Files.setLastModifiedTime(fileStorageService.loadFile(filename), old);
+		}
+	}
+
+	private static MockMultipartFile upload(String name, String content) {
+		return new MockMultipartFile("file", name, "image/jpeg", content.getBytes());
+	}
+}
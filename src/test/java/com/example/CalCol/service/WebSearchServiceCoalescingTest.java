@@ -0,0 +1,108 @@
+package com.example.CalCol.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Simultaneous identical searches must share a single outbound call
+ */
+class WebSearchServiceCoalescingTest {
+
+	private static final int CALLERS = 16;
+	private static final String BRAVE_RESPONSE = "{\"web\":{\"results\":[{\"title\":\"HP-35\","
+		+ "\"url\":\"https://example.org/hp35\",\"description\":\"The HP-35 calculator\"}]}}";
+
+	private HttpServer server;
+	private final AtomicInteger outboundCalls = new AtomicInteger();
+
+	@BeforeEach
+	void startStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/res/v1/web/search", exchange -> {
+			outboundCalls.incrementAndGet();
+			try {
+				// Keep the call in flight long enough for every caller to arrive
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = BRAVE_RESPONSE.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopStub() {
+		server.stop(0);
+	}
+
+	@Test
+	void simultaneousIdenticalSearchesMakeOneOutboundCall() throws Exception {
+		MockEnvironment environment = new MockEnvironment()
+			.withProperty("app.http.brave.base-url", "http://127.0.0.1:" + server.getAddress().getPort());
+		QuotaService quotaService = new QuotaService();
+		ReflectionTestUtils.setField(quotaService, "braveRateLimit", 1);
+		ReflectionTestUtils.setField(quotaService, "braveMonthlyLimit", 1000);
+		// Result cache stays disabled, so only coalescing can prevent duplicate calls
+		SearchResultCache cache = new SearchResultCache(new SimpleMeterRegistry(), 10);
+		WebSearchService webSearchService = new WebSearchService(quotaService, cache,
+			new OutboundHttpClients(environment), new ProviderCircuitBreakers(environment));
+		ReflectionTestUtils.setField(webSearchService, "braveApiKey", "test-key");
+
+		ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<ProviderPlanner.ProviderResult<WebSearchService.SearchResult>>> futures = new ArrayList<>();
+			for (int i = 0; i < CALLERS; i++) {
+				// Differently spelled but equivalent queries coalesce too
+				String query = i % 2 == 0 ? "HP 35 calculator" : "  hp 35   CALCULATOR ";
+				futures.add(callers.submit(() -> {
+					start.await();
+					return webSearchService.planned(() -> webSearchService.searchBrave(query, 5));
+				}));
+			}
+			start.countDown();
+
+			int reportedCalls = 0;
+			for (Future<ProviderPlanner.ProviderResult<WebSearchService.SearchResult>> future : futures) {
+				ProviderPlanner.ProviderResult<WebSearchService.SearchResult> result = future.get(10, TimeUnit.SECONDS);
+				assertEquals(1, result.results().size());
+				assertEquals("https://example.org/hp35", result.results().get(0).getUrl());
+				reportedCalls += result.providerCalled() ? 1 : 0;
+			}
+			// Only the caller whose search went out counts for the planner's statistics
+			assertEquals(1, reportedCalls);
+		} finally {
+			callers.shutdownNow();
+		}
+
+		assertEquals(1, outboundCalls.get());
+		assertEquals(1, quotaService.getMonthlyUsage("brave"));
+	}
+}